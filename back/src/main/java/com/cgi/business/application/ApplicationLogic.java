@@ -1,19 +1,10 @@
 package com.cgi.business.application;
 
 
-import com.cgi.commons.db.DB;
+import com.cgi.business.position.LocalisationWriteBehind;
+import com.cgi.business.position.PositionSampler;
 import com.cgi.commons.logic.DefaultApplicationLogic;
 import com.cgi.commons.ref.context.ApplicationContext;
-import com.cgi.commons.ref.context.RequestContext;
-import com.cgi.models.beans.Localisation;
-import com.cgi.models.constants.LocalisationConstants;
-
-import java.util.Timer;
-import java.util.TimerTask;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.TimeUnit;
 
 /**
  * Class used to store application logic methods.
@@ -21,33 +12,17 @@ import java.util.concurrent.TimeUnit;
  */
 public class ApplicationLogic extends DefaultApplicationLogic {
 	
-	private ScheduledExecutorService scheduler;
-	private ScheduledFuture<?> scheduledFuture;
-	
 	@Override
 	public void initializeApplication(ApplicationContext context) {
-		
-		scheduler = Executors.newScheduledThreadPool(1);
-		scheduledFuture = scheduler.scheduleAtFixedRate(new Thread(				
-				new TimerTask() {
-			  @Override
-			  public void run() {
-				RequestContext ctx = new RequestContext(new User("admin"));
-			    DB.insert(new Localisation(), Localisation.getEntityModel().getAction(LocalisationConstants.Actions.ACTION_CREATE), ctx);
-			    //System.out.println("done");
-			    ctx.getDbConnection().commit();
-			    ctx.close();
-			  }
-			})			
-				, 1*1000, 200, TimeUnit.MILLISECONDS);
+		LocalisationWriteBehind.start();
+		PositionSampler.startDefault();
 		super.initializeApplication(context);
 	}
 	
 	@Override
 	public void finalizeApplication(ApplicationContext context) {
-		if (scheduledFuture != null)
-			scheduledFuture.cancel(true);
-		scheduler.shutdown();
+		PositionSampler.stopDefault();
+		LocalisationWriteBehind.stop();
 		super.finalizeApplication(context);
 	}
 
@@ -1,10 +1,15 @@
 package com.cgi.business.logic;
 
+import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import com.cgi.business.application.DefaultLogic;
+import com.cgi.business.position.Position;
+import com.cgi.business.position.PositionRingBuffer;
 import com.cgi.commons.db.DB;
 import com.cgi.commons.ref.context.RequestContext;
 import com.cgi.commons.ref.controller.Request;
@@ -12,6 +17,7 @@ import com.cgi.commons.ref.entity.Action;
 import com.cgi.commons.ref.entity.Key;
 import com.cgi.commons.ref.entity.Action.Persistence;
 import com.cgi.commons.utils.DateUtils;
+import com.cgi.commons.utils.MessageUtils;
 import com.cgi.models.beans.Localisation;
 import com.cgi.models.constants.LocalisationConstants;
 
@@ -25,6 +31,12 @@ import java.io.InputStreamReader;
  *
  */
 public class LocalisationLogic extends DefaultLogic<Localisation> implements LocalisationConstants {
+
+	/** Server property giving the position file written by the serial reader, read only when the buffer is empty (debug). */
+	public static final String POSITION_DEBUG_FILE = "position.debug.file";
+
+	/** Default beacon. */
+	public static final Long DEFAULT_BALISE_ID = Long.valueOf(1);
 	
 	@Override
 	public List<Key> doCustomAction(Request<Localisation> request, Localisation entity, RequestContext ctx) {
@@ -43,19 +55,93 @@ public class LocalisationLogic extends DefaultLogic<Localisation> implements Loc
 		}
 		if (Persistence.INSERT.equals(action.getPersistence())) {
 			bean.setHeure(DateUtils.todayNow());
-			bean.setBaliseId(new Long(1));
-			Localisation temp = getPositionString();
-			if (temp != null) {
-				bean.setCoordX(temp.getCoordX());
-				bean.setCoordY(temp.getCoordY());
-			}			
+			if (bean.getBaliseId() == null) {
+				bean.setBaliseId(DEFAULT_BALISE_ID);
+			}
+			PositionRingBuffer buffer = PositionRingBuffer.getInstance();
+			if (bean.getCoordX() != null && bean.getCoordY() != null) {
+				// Fix pushed by the gateway : it becomes the latest known position of the beacon
+				buffer.publish(bean.getBaliseId(), bean.getCoordX(), bean.getCoordY(), bean.getHeure().getTime());
+			} else {
+				Position last = buffer.latest(bean.getBaliseId());
+				if (last != null) {
+					bean.setCoordX(last.getX());
+					bean.setCoordY(last.getY());
+				} else {
+					Localisation temp = readDebugPosition();
+					if (temp != null) {
+						bean.setCoordX(temp.getCoordX());
+						bean.setCoordY(temp.getCoordY());
+					}
+				}
+			}
 		}
 		super.dbOnSave(bean, action, ctx);
 	}
+
+	/**
+	 * Batch ingestion : same rules as {@link #dbOnSave(Localisation, Action, RequestContext)}, evaluated once for the batch. Fixes keep
+	 * their own time if they have one, missing coordinates are taken from the previous fix of the beacon and only the last fix of each
+	 * beacon is published into the position buffer, if it is newer than the latest one.
+	 */
+	@Override
+	public void dbOnSaveBatch(List<Localisation> beans, Action action, RequestContext ctx) {
+		if (!Persistence.INSERT.equals(action.getPersistence())) {
+			super.dbOnSaveBatch(beans, action, ctx);
+			return;
+		}
+		Date now = DateUtils.todayNow();
+		boolean alert = action.is(Actions.ACTION_CREATE_ALERT);
+		PositionRingBuffer buffer = PositionRingBuffer.getInstance();
+		Map<Long, Localisation> lastByBalise = new HashMap<Long, Localisation>();
+		for (Localisation bean : beans) {
+			if (alert) {
+				bean.setStatut(false);
+			}
+			if (bean.getHeure() == null) {
+				bean.setHeure(now);
+			}
+			if (bean.getBaliseId() == null) {
+				bean.setBaliseId(DEFAULT_BALISE_ID);
+			}
+			if (bean.getCoordX() != null && bean.getCoordY() != null) {
+				lastByBalise.put(bean.getBaliseId(), bean);
+				continue;
+			}
+			Localisation last = lastByBalise.get(bean.getBaliseId());
+			if (last != null) {
+				bean.setCoordX(last.getCoordX());
+				bean.setCoordY(last.getCoordY());
+			} else {
+				Position position = buffer.latest(bean.getBaliseId());
+				if (position != null) {
+					bean.setCoordX(position.getX());
+					bean.setCoordY(position.getY());
+				}
+			}
+		}
+		for (Localisation last : lastByBalise.values()) {
+			Position latest = buffer.latest(last.getBaliseId());
+			if (latest != null && latest.getTimestamp() >= last.getHeure().getTime()) {
+				// Older fix, or fix of the debug file already published by the position sampler
+				continue;
+			}
+			buffer.publish(last.getBaliseId(), last.getCoordX(), last.getCoordY(), last.getHeure().getTime());
+		}
+	}
 	
-	private Localisation getPositionString() {
+	/**
+	 * Reads the position from the debug file, if the server property {@value #POSITION_DEBUG_FILE} is set.
+	 * 
+	 * @return the position read, <code>null</code> if the debug file is not configured or not readable
+	 */
+	public static Localisation readDebugPosition() {
+		String debugFile = MessageUtils.getServerProperty(POSITION_DEBUG_FILE);
+		if (debugFile == null || debugFile.isEmpty()) {
+			return null;
+		}
 		try {
-			FileInputStream fis = new FileInputStream(new File("C:\\tmp\\position.json"));
+			FileInputStream fis = new FileInputStream(new File(debugFile));
 			BufferedReader br = new BufferedReader(new InputStreamReader(fis));
 			String line = null;
 			Localisation temp = new Localisation();
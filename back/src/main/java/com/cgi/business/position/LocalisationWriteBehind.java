@@ -0,0 +1,134 @@
+package com.cgi.business.position;
+
+import java.util.Date;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+
+import com.cgi.commons.db.WriteBehindQueue;
+import com.cgi.commons.db.WriteBehindQueue.OverflowPolicy;
+import com.cgi.commons.utils.MessageUtils;
+import com.cgi.models.beans.Localisation;
+import com.cgi.models.constants.LocalisationConstants;
+
+/**
+ * Write-behind queue of the position fixes, enabled with the server property {@value #ENABLED}.<br/>
+ * Fixes are timestamped when accepted, so the flush delay does not shift their <code>heure</code>.
+ */
+public final class LocalisationWriteBehind {
+
+	/** Logger. */
+	private static final Logger LOGGER = Logger.getLogger(LocalisationWriteBehind.class);
+
+	/** Server property : <code>true</code> to enable the queue. */
+	public static final String ENABLED = "localisation.writeBehind";
+	/** Server property : max number of waiting fixes. */
+	public static final String CAPACITY = "localisation.writeBehind.capacity";
+	/** Server property : max number of fixes inserted in one flush. */
+	public static final String BATCH_SIZE = "localisation.writeBehind.batchSize";
+	/** Server property : max time a fix waits before being flushed, in ms. */
+	public static final String FLUSH_INTERVAL = "localisation.writeBehind.flushInterval";
+	/** Server property : BLOCK, DROP_OLDEST or REJECT. */
+	public static final String OVERFLOW = "localisation.writeBehind.overflow";
+	/** Server property : max wait of the BLOCK policy, in ms. */
+	public static final String BLOCK_TIMEOUT = "localisation.writeBehind.blockTimeout";
+
+	/** Max wait for the last flush when the application stops, in ms. */
+	private static final long STOP_TIMEOUT = 10000L;
+
+	/** Running queue, null if disabled or stopped. */
+	private static volatile WriteBehindQueue<Localisation> queue;
+
+	/**
+	 * Private constructor.
+	 */
+	private LocalisationWriteBehind() {
+	}
+
+	/**
+	 * Starts the queue if it is enabled.
+	 */
+	public static synchronized void start() {
+		if (queue != null || !Boolean.parseBoolean(MessageUtils.getServerProperty(ENABLED))) {
+			return;
+		}
+		OverflowPolicy policy = OverflowPolicy.BLOCK;
+		String overflow = MessageUtils.getServerProperty(OVERFLOW);
+		if (overflow != null) {
+			try {
+				policy = OverflowPolicy.valueOf(overflow.trim());
+			} catch (IllegalArgumentException e) {
+				LOGGER.warn("Invalid " + OVERFLOW + " " + overflow + ", " + policy + " is used");
+			}
+		}
+		WriteBehindQueue<Localisation> created = new WriteBehindQueue<Localisation>("localisation",
+				Localisation.getEntityModel().getAction(LocalisationConstants.Actions.ACTION_CREATE),
+				getInt(CAPACITY, 10000), getInt(BATCH_SIZE, 500), getInt(FLUSH_INTERVAL, 1000), policy, getInt(BLOCK_TIMEOUT, 2000));
+		created.start();
+		queue = created;
+		LOGGER.info("Localisation write-behind queue started, capacity " + created.getCapacity() + ", overflow " + policy);
+	}
+
+	/**
+	 * Flushes the waiting fixes and stops the queue.
+	 */
+	public static synchronized void stop() {
+		if (queue != null) {
+			queue.stop(STOP_TIMEOUT);
+			queue = null;
+		}
+	}
+
+	/**
+	 * @return the running queue, <code>null</code> if fixes are inserted synchronously
+	 */
+	public static WriteBehindQueue<Localisation> getQueue() {
+		return queue;
+	}
+
+	/**
+	 * @return <code>true</code> if the queue is running
+	 */
+	public static boolean isEnabled() {
+		return queue != null;
+	}
+
+	/**
+	 * Timestamps and queues fixes.
+	 *
+	 * @param fixes Fixes to insert.
+	 * @return Number of fixes accepted, the others are rejected because the queue is full or stopped.
+	 */
+	public static int offerAll(List<Localisation> fixes) {
+		WriteBehindQueue<Localisation> current = queue;
+		if (current == null) {
+			return 0;
+		}
+		Date now = new Date();
+		for (Localisation fix : fixes) {
+			if (fix.getHeure() == null) {
+				fix.setHeure(now);
+			}
+		}
+		return current.offerAll(fixes);
+	}
+
+	/**
+	 * Reads an integer server property.
+	 *
+	 * @param key Property key.
+	 * @param defaultValue Value used if the property is missing or invalid.
+	 * @return Property value.
+	 */
+	private static int getInt(String key, int defaultValue) {
+		String value = MessageUtils.getServerProperty(key);
+		if (value != null) {
+			try {
+				return Integer.parseInt(value.trim());
+			} catch (NumberFormatException e) {
+				LOGGER.warn("Invalid " + key + " " + value + ", " + defaultValue + " is used");
+			}
+		}
+		return defaultValue;
+	}
+}
@@ -0,0 +1,75 @@
+package com.cgi.business.position;
+
+/**
+ * Position fix of a beacon. Immutable, can be shared between threads.
+ */
+public final class Position {
+
+	/** Beacon identifier. */
+	private final long beaconId;
+	/** Sequence of the fix in the beacon stream. */
+	private final long sequence;
+	/** X coordinate. */
+	private final int x;
+	/** Y coordinate. */
+	private final int y;
+	/** Reception time in milliseconds. */
+	private final long timestamp;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param beaconId Beacon identifier.
+	 * @param sequence Sequence of the fix in the beacon stream.
+	 * @param x X coordinate.
+	 * @param y Y coordinate.
+	 * @param timestamp Reception time in milliseconds.
+	 */
+	public Position(long beaconId, long sequence, int x, int y, long timestamp) {
+		this.beaconId = beaconId;
+		this.sequence = sequence;
+		this.x = x;
+		this.y = y;
+		this.timestamp = timestamp;
+	}
+
+	/**
+	 * @return the beacon identifier
+	 */
+	public long getBeaconId() {
+		return beaconId;
+	}
+
+	/**
+	 * @return the sequence of the fix in the beacon stream, starting at 0
+	 */
+	public long getSequence() {
+		return sequence;
+	}
+
+	/**
+	 * @return the X coordinate
+	 */
+	public int getX() {
+		return x;
+	}
+
+	/**
+	 * @return the Y coordinate
+	 */
+	public int getY() {
+		return y;
+	}
+
+	/**
+	 * @return the reception time in milliseconds
+	 */
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	@Override
+	public String toString() {
+		return "x:" + x + " y:" + y;
+	}
+}
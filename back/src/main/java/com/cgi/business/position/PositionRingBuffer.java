@@ -0,0 +1,248 @@
+package com.cgi.business.position;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free ring buffer holding the latest N position fixes of each beacon.<br/>
+ * Any number of consumers, never blocked. Each slot is guarded by the sequence of the fix it holds (seqlock): a reader overlapping a
+ * write sees a changed stamp and retries or skips. Publishing does not allocate. In the webapp fixes come from concurrent HTTP requests,
+ * so publishers of a beacon are serialized on its ring.
+ */
+public final class PositionRingBuffer {
+
+	/** Number of fixes kept per beacon. */
+	public static final int DEFAULT_CAPACITY = 64;
+
+	/** Shared instance. */
+	private static final PositionRingBuffer INSTANCE = new PositionRingBuffer(DEFAULT_CAPACITY);
+
+	/** Number of fixes kept per beacon, power of 2. */
+	private final int capacity;
+
+	/** Rings by beacon identifier. */
+	private final ConcurrentMap<Long, Ring> rings = new ConcurrentHashMap<Long, Ring>();
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param capacity Number of fixes kept per beacon, rounded up to the next power of 2.
+	 */
+	public PositionRingBuffer(int capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("capacity must be positive: " + capacity);
+		}
+		int size = 1;
+		while (size < capacity) {
+			size <<= 1;
+		}
+		this.capacity = size;
+	}
+
+	/**
+	 * Returns the shared instance.
+	 * 
+	 * @return the shared buffer
+	 */
+	public static PositionRingBuffer getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * @return the number of fixes kept per beacon
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Returns the ring of a beacon, created on first call. Producers should keep the reference.
+	 * 
+	 * @param beaconId Beacon identifier.
+	 * @return the ring
+	 */
+	public Ring ring(long beaconId) {
+		Long key = Long.valueOf(beaconId);
+		Ring ring = rings.get(key);
+		if (ring == null) {
+			Ring created = new Ring(beaconId, capacity);
+			ring = rings.putIfAbsent(key, created);
+			if (ring == null) {
+				ring = created;
+			}
+		}
+		return ring;
+	}
+
+	/**
+	 * Publishes a fix, from any thread.
+	 * 
+	 * @param beaconId Beacon identifier.
+	 * @param x X coordinate.
+	 * @param y Y coordinate.
+	 * @param timestamp Reception time in milliseconds.
+	 * @return the sequence of the fix
+	 */
+	public long publish(long beaconId, int x, int y, long timestamp) {
+		return ring(beaconId).publish(x, y, timestamp);
+	}
+
+	/**
+	 * Latest fix of a beacon.
+	 * 
+	 * @param beaconId Beacon identifier.
+	 * @return the latest fix, or <code>null</code> if none was published
+	 */
+	public Position latest(long beaconId) {
+		Ring ring = rings.get(Long.valueOf(beaconId));
+		return ring == null ? null : ring.latest();
+	}
+
+	/**
+	 * @return identifiers of the beacons which published at least one fix
+	 */
+	public Set<Long> beacons() {
+		return rings.keySet();
+	}
+
+	/**
+	 * Ring of a single beacon.
+	 */
+	public static final class Ring {
+
+		/** Stamp of a slot being written. */
+		private static final long WRITING = -1L;
+
+		/** Beacon identifier. */
+		private final long beaconId;
+		/** Index mask. */
+		private final int mask;
+		/** Sequence of the fix held by each slot, WRITING during a write. */
+		private final AtomicLongArray stamps;
+		/** X in the 32 high bits, Y in the 32 low bits. */
+		private final AtomicLongArray coords;
+		/** Reception times. */
+		private final AtomicLongArray timestamps;
+		/** Number of fixes published, which is also the sequence of the next one. */
+		private final AtomicLong published = new AtomicLong();
+
+		/**
+		 * Constructor.
+		 * 
+		 * @param beaconId Beacon identifier.
+		 * @param capacity Number of slots, power of 2.
+		 */
+		Ring(long beaconId, int capacity) {
+			this.beaconId = beaconId;
+			this.mask = capacity - 1;
+			this.stamps = new AtomicLongArray(capacity);
+			this.coords = new AtomicLongArray(capacity);
+			this.timestamps = new AtomicLongArray(capacity);
+			for (int i = 0; i < capacity; i++) {
+				stamps.set(i, WRITING);
+			}
+		}
+
+		/**
+		 * @return the beacon identifier
+		 */
+		public long getBeaconId() {
+			return beaconId;
+		}
+
+		/**
+		 * Publishes a fix, overwriting the oldest one when the ring is full. Publishers are serialized on the ring : two of them would
+		 * otherwise claim the same sequence and write the same slot. Readers do not lock.
+		 * 
+		 * @param x X coordinate.
+		 * @param y Y coordinate.
+		 * @param timestamp Reception time in milliseconds.
+		 * @return the sequence of the fix
+		 */
+		public synchronized long publish(int x, int y, long timestamp) {
+			long seq = published.get();
+			int slot = (int) seq & mask;
+			stamps.set(slot, WRITING);
+			coords.set(slot, ((long) x << 32) | (y & 0xFFFFFFFFL));
+			timestamps.set(slot, timestamp);
+			stamps.set(slot, seq);
+			published.set(seq + 1);
+			return seq;
+		}
+
+		/**
+		 * @return the total number of fixes published
+		 */
+		public long published() {
+			return published.get();
+		}
+
+		/**
+		 * @return the latest fix, or <code>null</code> if none was published
+		 */
+		public Position latest() {
+			while (true) {
+				long next = published.get();
+				if (next == 0) {
+					return null;
+				}
+				Position p = read(next - 1);
+				if (p != null) {
+					return p;
+				}
+				// Overwritten while reading, read the newest one again
+			}
+		}
+
+		/**
+		 * Reads the fix of a given sequence.
+		 * 
+		 * @param seq Sequence of the fix.
+		 * @return the fix, or <code>null</code> if it is already overwritten or not yet published
+		 */
+		public Position read(long seq) {
+			int slot = (int) seq & mask;
+			if (stamps.get(slot) != seq) {
+				return null;
+			}
+			long xy = coords.get(slot);
+			long ts = timestamps.get(slot);
+			if (stamps.get(slot) != seq) {
+				return null;
+			}
+			return new Position(beaconId, seq, (int) (xy >> 32), (int) xy, ts);
+		}
+
+		/**
+		 * Adds to <code>out</code> the fixes published since sequence <code>from</code>, oldest first. Overwritten fixes are skipped.
+		 * 
+		 * @param from First sequence to read.
+		 * @param out Fixes read.
+		 * @return the sequence to pass on next call
+		 */
+		public long readFrom(long from, List<Position> out) {
+			long next = published.get();
+			for (long seq = Math.max(from, next - (mask + 1)); seq < next; seq++) {
+				Position p = read(seq);
+				if (p != null) {
+					out.add(p);
+				}
+			}
+			return next;
+		}
+
+		/**
+		 * @return the fixes still held by the ring, oldest first
+		 */
+		public List<Position> snapshot() {
+			List<Position> out = new ArrayList<Position>(mask + 1);
+			readFrom(0, out);
+			return out;
+		}
+	}
+}
@@ -0,0 +1,454 @@
+package com.cgi.business.position;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+
+import com.cgi.business.application.User;
+import com.cgi.business.logic.LocalisationLogic;
+import com.cgi.commons.db.DB;
+import com.cgi.commons.ref.context.RequestContext;
+import com.cgi.commons.ref.entity.Action;
+import com.cgi.commons.utils.MessageUtils;
+import com.cgi.models.beans.Localisation;
+import com.cgi.models.constants.LocalisationConstants;
+
+/**
+ * Records the trail of the beacons : reads the fixes received but not persisted yet and inserts a {@link Localisation} only when the
+ * beacon moved.<br/>
+ * The sampler reads its own feed, not the shared {@link PositionRingBuffer} : the fixes published there by the create actions are
+ * already inserted. Its feed is filled by the debug position file.<br/>
+ * A fix is recorded if it is at least {@value #MIN_DISTANCE} away from the last recorded one and {@value #MIN_INTERVAL} ms after it.
+ * A beacon which does not move is recorded again every {@value #MAX_SILENCE} ms (heartbeat), so the trail shows it is still alive.
+ * Recorded fixes are inserted in batches by a single thread, on one connection kept open between batches.<br/>
+ * Enabled unless the server property {@value #ENABLED} is <code>false</code>.
+ */
+public final class PositionSampler {
+
+	/** Logger. */
+	private static final Logger LOGGER = Logger.getLogger(PositionSampler.class);
+
+	/** Server property : <code>false</code> to disable the sampler. */
+	public static final String ENABLED = "position.sampler";
+	/** Server property : time between two reads of the buffer, in ms. */
+	public static final String PERIOD = "position.sampler.period";
+	/** Server property : min distance between two recorded fixes of a beacon, in coordinate units. */
+	public static final String MIN_DISTANCE = "position.sampler.minDistance";
+	/** Server property : min time between two recorded fixes of a beacon, in ms. */
+	public static final String MIN_INTERVAL = "position.sampler.minInterval";
+	/** Server property : max time without a recorded fix for a beacon, in ms. 0 disables the heartbeat. */
+	public static final String MAX_SILENCE = "position.sampler.maxSilence";
+	/** Server property : max number of fixes inserted at once. */
+	public static final String BATCH_SIZE = "position.sampler.batchSize";
+	/** Server property : max time a recorded fix waits before being inserted, in ms. */
+	public static final String FLUSH_INTERVAL = "position.sampler.flushInterval";
+
+	/** Max wait for the last batch when the application stops, in ms. */
+	private static final long STOP_TIMEOUT = 10000L;
+
+	/** Running sampler, null if disabled or stopped. */
+	private static PositionSampler instance;
+
+	/** Fixes not persisted yet. */
+	private final PositionRingBuffer buffer;
+	/** Insert action. */
+	private final Action action;
+	/** Time between two reads of the buffer, in ms. */
+	private final long period;
+	/** Square of the min distance. */
+	private final long minDistance2;
+	/** Min time between two recorded fixes, in ms. */
+	private final long minInterval;
+	/** Max time without a recorded fix, in ms. */
+	private final long maxSilence;
+	/** Max number of fixes inserted at once. */
+	private final int batchSize;
+	/** Max time a recorded fix waits, in ms. */
+	private final long flushInterval;
+
+	/** Sampling state by beacon, only used by the sampler thread. */
+	private final Map<Long, Track> tracks = new HashMap<Long, Track>();
+	/** Recorded fixes waiting for insert, only used by the sampler thread. */
+	private final List<Localisation> pending = new ArrayList<Localisation>();
+	/** Time the oldest pending fix was recorded. */
+	private long pendingSince;
+	/** Connection kept between batches, only used by the sampler thread. */
+	private RequestContext ctx;
+	/** Last modification time of the debug position file. */
+	private long debugFileModified;
+
+	/** Sampler thread. */
+	private ScheduledExecutorService executor;
+
+	/** Fixes read from the buffer. */
+	private final AtomicLong read = new AtomicLong();
+	/** Fixes recorded because the beacon moved. */
+	private final AtomicLong moves = new AtomicLong();
+	/** Fixes recorded because the beacon was silent for too long. */
+	private final AtomicLong heartbeats = new AtomicLong();
+	/** Fixes inserted. */
+	private final AtomicLong inserted = new AtomicLong();
+	/** Fixes lost on an insert error. */
+	private final AtomicLong failed = new AtomicLong();
+	/** Number of batches inserted. */
+	private final AtomicLong batches = new AtomicLong();
+
+	/**
+	 * Constructor.
+	 *
+	 * @param buffer Fixes not persisted yet, read only by this sampler.
+	 * @param action Insert action.
+	 * @param period Time between two reads of the buffer, in ms.
+	 * @param minDistance Min distance between two recorded fixes of a beacon.
+	 * @param minInterval Min time between two recorded fixes of a beacon, in ms.
+	 * @param maxSilence Max time without a recorded fix for a beacon, in ms, 0 for no heartbeat.
+	 * @param batchSize Max number of fixes inserted at once.
+	 * @param flushInterval Max time a recorded fix waits before being inserted, in ms.
+	 */
+	public PositionSampler(PositionRingBuffer buffer, Action action, long period, int minDistance, long minInterval, long maxSilence,
+			int batchSize, long flushInterval) {
+		this.buffer = buffer;
+		this.action = action;
+		this.period = Math.max(1, period);
+		this.minDistance2 = (long) minDistance * minDistance;
+		this.minInterval = minInterval;
+		this.maxSilence = maxSilence;
+		this.batchSize = Math.max(1, batchSize);
+		this.flushInterval = flushInterval;
+	}
+
+	/**
+	 * Starts the shared sampler if it is enabled.
+	 */
+	public static synchronized void startDefault() {
+		if (instance != null || "false".equalsIgnoreCase(MessageUtils.getServerProperty(ENABLED))) {
+			return;
+		}
+		PositionSampler created = createDefault();
+		created.start();
+		instance = created;
+		LOGGER.info("Position sampler started, heartbeat every " + created.maxSilence + " ms");
+	}
+
+	/**
+	 * Creates a sampler configured by the server properties, with its own feed.
+	 *
+	 * @return the sampler, not started
+	 */
+	static PositionSampler createDefault() {
+		return new PositionSampler(new PositionRingBuffer(PositionRingBuffer.DEFAULT_CAPACITY),
+				Localisation.getEntityModel().getAction(LocalisationConstants.Actions.ACTION_CREATE), getInt(PERIOD, 200),
+				getInt(MIN_DISTANCE, 1), getInt(MIN_INTERVAL, 200), getInt(MAX_SILENCE, 60000), getInt(BATCH_SIZE, 500),
+				getInt(FLUSH_INTERVAL, 1000));
+	}
+
+	/**
+	 * Inserts the pending fixes and stops the shared sampler.
+	 */
+	public static synchronized void stopDefault() {
+		if (instance != null) {
+			instance.stop(STOP_TIMEOUT);
+			instance = null;
+		}
+	}
+
+	/**
+	 * @return the shared sampler, <code>null</code> if it is disabled
+	 */
+	public static synchronized PositionSampler getInstance() {
+		return instance;
+	}
+
+	/**
+	 * Starts the sampler thread.
+	 */
+	public synchronized void start() {
+		if (executor != null) {
+			return;
+		}
+		executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "position-sampler");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		executor.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					sample(System.currentTimeMillis());
+				} catch (RuntimeException e) {
+					// An exception would cancel the task
+					LOGGER.error("Position sampler : sampling failed", e);
+				}
+			}
+		}, period, period, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Stops the sampler thread, after a last read of the buffer and an insert of the pending fixes.
+	 *
+	 * @param timeout Max wait in ms.
+	 */
+	public synchronized void stop(long timeout) {
+		if (executor == null) {
+			return;
+		}
+		executor.submit(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					sample(System.currentTimeMillis());
+					flush();
+				} finally {
+					closeQuietly();
+				}
+			}
+		});
+		executor.shutdown();
+		try {
+			if (!executor.awaitTermination(timeout, TimeUnit.MILLISECONDS)) {
+				LOGGER.warn("Position sampler stopped with " + pending.size() + " fixes not inserted");
+				executor.shutdownNow();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			executor.shutdownNow();
+		}
+		executor = null;
+	}
+
+	/**
+	 * Reads the fixes published since the last call and inserts the recorded ones when the batch is full or old enough.
+	 *
+	 * @param now Current time in ms.
+	 */
+	void sample(long now) {
+		readDebugFile();
+		List<Position> fixes = new ArrayList<Position>();
+		for (Long beaconId : buffer.beacons()) {
+			Track track = tracks.get(beaconId);
+			if (track == null) {
+				track = new Track();
+				tracks.put(beaconId, track);
+			}
+			fixes.clear();
+			track.cursor = buffer.ring(beaconId.longValue()).readFrom(track.cursor, fixes);
+			read.addAndGet(fixes.size());
+			for (Position fix : fixes) {
+				if (track.last == null || isMove(track.last, fix)) {
+					record(fix, fix.getTimestamp(), now);
+					moves.incrementAndGet();
+					track.last = fix;
+					track.recordedAt = fix.getTimestamp();
+				}
+				track.latest = fix;
+			}
+			if (maxSilence > 0 && track.latest != null && now - track.recordedAt >= maxSilence) {
+				record(track.latest, now, now);
+				heartbeats.incrementAndGet();
+				track.last = track.latest;
+				track.recordedAt = now;
+			}
+		}
+		if (pending.size() >= batchSize || (!pending.isEmpty() && now - pendingSince >= flushInterval)) {
+			flush();
+		}
+	}
+
+	/**
+	 * @param last Last recorded fix.
+	 * @param fix New fix.
+	 * @return <code>true</code> if the new fix is far enough in space and time from the last recorded one
+	 */
+	private boolean isMove(Position last, Position fix) {
+		long dx = fix.getX() - last.getX();
+		long dy = fix.getY() - last.getY();
+		return (dx != 0 || dy != 0) && dx * dx + dy * dy >= minDistance2 && fix.getTimestamp() - last.getTimestamp() >= minInterval;
+	}
+
+	/**
+	 * Adds a fix to the pending batch.
+	 *
+	 * @param fix Fix.
+	 * @param time Time recorded for the fix.
+	 * @param now Current time.
+	 */
+	private void record(Position fix, long time, long now) {
+		Localisation bean = new Localisation();
+		bean.setBaliseId(Long.valueOf(fix.getBeaconId()));
+		bean.setCoordX(Integer.valueOf(fix.getX()));
+		bean.setCoordY(Integer.valueOf(fix.getY()));
+		bean.setHeure(new Date(time));
+		if (pending.isEmpty()) {
+			pendingSince = now;
+		}
+		pending.add(bean);
+	}
+
+	/**
+	 * Inserts the pending fixes, by batches of at most batchSize.
+	 */
+	private void flush() {
+		while (!pending.isEmpty()) {
+			List<Localisation> batch = pending.subList(0, Math.min(batchSize, pending.size()));
+			int size = batch.size();
+			if (ctx == null) {
+				ctx = new RequestContext(new User("admin"));
+			}
+			try {
+				DB.insertBatch(new ArrayList<Localisation>(batch), action, ctx);
+				ctx.getDbConnection().commit();
+				inserted.addAndGet(size);
+				batches.incrementAndGet();
+			} catch (RuntimeException e) {
+				failed.addAndGet(size);
+				LOGGER.error("Position sampler : cannot insert " + size + " fixes " + ctx.getMessages(), e);
+				try {
+					ctx.getDbConnection().rollback();
+				} catch (RuntimeException r) {
+					LOGGER.error("Position sampler : rollback failed", r);
+				}
+				// The connection may be broken, a new one is opened for the next batch
+				closeQuietly();
+			} finally {
+				if (ctx != null) {
+					ctx.getMessages().clear();
+				}
+			}
+			batch.clear();
+		}
+	}
+
+	/**
+	 * Publishes the position of the debug file for the default beacon when the file changed : into the feed of the sampler, and into
+	 * the shared buffer as the latest known position.
+	 */
+	private void readDebugFile() {
+		String debugFile = MessageUtils.getServerProperty(LocalisationLogic.POSITION_DEBUG_FILE);
+		if (debugFile == null || debugFile.isEmpty()) {
+			return;
+		}
+		long modified = new File(debugFile).lastModified();
+		if (modified == 0L || modified == debugFileModified) {
+			return;
+		}
+		debugFileModified = modified;
+		Localisation position = LocalisationLogic.readDebugPosition();
+		if (position != null && position.getCoordX() != null && position.getCoordY() != null) {
+			long now = System.currentTimeMillis();
+			buffer.publish(LocalisationLogic.DEFAULT_BALISE_ID.longValue(), position.getCoordX(), position.getCoordY(), now);
+			PositionRingBuffer.getInstance().publish(LocalisationLogic.DEFAULT_BALISE_ID.longValue(), position.getCoordX(),
+					position.getCoordY(), now);
+		}
+	}
+
+	/**
+	 * Closes the connection.
+	 */
+	private void closeQuietly() {
+		if (ctx == null) {
+			return;
+		}
+		try {
+			ctx.close();
+		} catch (RuntimeException e) {
+			LOGGER.warn("Position sampler : cannot close connection", e);
+		}
+		ctx = null;
+	}
+
+	/**
+	 * @return the number of fixes read from the feed
+	 */
+	public long getReadCount() {
+		return read.get();
+	}
+
+	/**
+	 * @return the number of fixes recorded because the beacon moved
+	 */
+	public long getMoveCount() {
+		return moves.get();
+	}
+
+	/**
+	 * @return the number of fixes recorded because the beacon was silent
+	 */
+	public long getHeartbeatCount() {
+		return heartbeats.get();
+	}
+
+	/**
+	 * @return the number of fixes read but not recorded
+	 */
+	public long getSkippedCount() {
+		return read.get() - moves.get();
+	}
+
+	/**
+	 * @return the number of fixes inserted
+	 */
+	public long getInsertedCount() {
+		return inserted.get();
+	}
+
+	/**
+	 * @return the number of fixes lost on an insert error
+	 */
+	public long getFailedCount() {
+		return failed.get();
+	}
+
+	/**
+	 * @return the number of batches inserted
+	 */
+	public long getBatchCount() {
+		return batches.get();
+	}
+
+	/**
+	 * Reads an integer server property.
+	 *
+	 * @param key Property key.
+	 * @param defaultValue Value used if the property is missing or invalid.
+	 * @return Property value.
+	 */
+	private static int getInt(String key, int defaultValue) {
+		String value = MessageUtils.getServerProperty(key);
+		if (value != null) {
+			try {
+				return Integer.parseInt(value.trim());
+			} catch (NumberFormatException e) {
+				LOGGER.warn("Invalid " + key + " " + value + ", " + defaultValue + " is used");
+			}
+		}
+		return defaultValue;
+	}
+
+	/**
+	 * Sampling state of a beacon.
+	 */
+	private static final class Track {
+		/** Sequence of the next fix to read. */
+		private long cursor;
+		/** Last recorded fix. */
+		private Position last;
+		/** Time of the last recorded fix. */
+		private long recordedAt;
+		/** Latest fix read. */
+		private Position latest;
+	}
+}
@@ -0,0 +1,321 @@
+package com.cgi.commons.db;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.log4j.Logger;
+
+import com.cgi.commons.utils.MessageUtils;
+
+/**
+ * Contents of {@code BLOB} or {@code CLOB} variables read from the database, kept in memory for the next downloads.<br/>
+ * The cache is bounded by the total size of the contents, the least recently read ones are removed first. Each content has an entity
+ * tag (hash of the content) and the date it was read, to answer HTTP conditional requests.<br/>
+ * A content is removed when it is saved ({@link FileDbManager#saveFile()}) and again when the transaction which saved it is committed,
+ * so a content read by another request before the commit is not kept.
+ */
+public final class BlobCache {
+
+	/** Logger. */
+	private static final Logger LOGGER = Logger.getLogger(BlobCache.class);
+
+	/** Server property : max total size of the cached contents in bytes, 0 to disable the cache. */
+	public static final String SIZE = "file.cache.size";
+	/** Server property : max size in bytes of a cached content, larger contents are not cached. */
+	public static final String MAX_ENTRY_SIZE = "file.cache.maxEntrySize";
+
+	/** Default max total size of the cached contents. */
+	private static final long DEFAULT_SIZE = 32L * 1024 * 1024;
+	/** Default max size of a cached content. */
+	private static final long DEFAULT_MAX_ENTRY_SIZE = 1024L * 1024;
+
+	/** Shared instance. */
+	private static final BlobCache INSTANCE = new BlobCache(readSize(SIZE, DEFAULT_SIZE), readSize(MAX_ENTRY_SIZE, DEFAULT_MAX_ENTRY_SIZE));
+
+	/** Cached contents by key, in read order. */
+	private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+	/** Max total size of the cached contents. */
+	private final long maxSize;
+	/** Max size of a cached content. */
+	private final long maxEntrySize;
+	/** Total size of the cached contents. */
+	private long size;
+	/** Number of removals, a content read before a removal is not cached. */
+	private long invalidations;
+
+	/** Downloads found in cache. */
+	private final AtomicLong hits = new AtomicLong();
+	/** Downloads read from the database. */
+	private final AtomicLong misses = new AtomicLong();
+
+	/**
+	 * Cached content of a variable.
+	 */
+	public static final class Entry {
+		/** Content, without the file name. */
+		private final byte[] content;
+		/** File name. */
+		private final String name;
+		/** Entity tag : hash of the content. */
+		private final String tag;
+		/** Date the content was read from the database. */
+		private final long lastModified;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param content Content, without the file name.
+		 * @param name File name.
+		 */
+		private Entry(byte[] content, String name) {
+			this.content = content;
+			this.name = name;
+			this.tag = DigestUtils.md5Hex(content);
+			// HTTP dates have a precision of one second
+			this.lastModified = System.currentTimeMillis() / 1000 * 1000;
+		}
+
+		/**
+		 * @return the content, without the file name. It must not be modified.
+		 */
+		public byte[] getContent() {
+			return content;
+		}
+
+		/**
+		 * @return the file name
+		 */
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * @return the entity tag of the content
+		 */
+		public String getTag() {
+			return tag;
+		}
+
+		/**
+		 * @return the date the content was read from the database
+		 */
+		public long getLastModified() {
+			return lastModified;
+		}
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param maxSize Max total size of the cached contents, 0 to disable the cache.
+	 * @param maxEntrySize Max size of a cached content.
+	 */
+	private BlobCache(long maxSize, long maxEntrySize) {
+		this.maxSize = maxSize;
+		this.maxEntrySize = Math.min(maxEntrySize, maxSize);
+	}
+
+	/**
+	 * Returns the shared instance.
+	 *
+	 * @return the shared cache
+	 */
+	public static BlobCache getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Returns the cache key of a variable.
+	 *
+	 * @param entityName Entity name.
+	 * @param encodedKey Encoded primary key of the entity (see {@link com.cgi.commons.ref.entity.Key#getEncodedValue()}).
+	 * @param varName Variable name.
+	 * @return the key
+	 */
+	public static String key(String entityName, String encodedKey, String varName) {
+		return entityName + '/' + encodedKey + '/' + varName;
+	}
+
+	/**
+	 * Returns the cache key of a content derived from a variable (a thumbnail for example), removed with the variable.
+	 *
+	 * @param key Cache key of the variable.
+	 * @param variant Name of the derived content.
+	 * @return the key
+	 */
+	public static String variantKey(String key, String variant) {
+		return key + '#' + variant;
+	}
+
+	/**
+	 * Returns a cached content.
+	 *
+	 * @param key Cache key.
+	 * @return the content, or null if it is not cached
+	 */
+	public Entry get(String key) {
+		Entry entry;
+		synchronized (this) {
+			entry = entries.get(key);
+		}
+		if (entry != null) {
+			hits.incrementAndGet();
+		} else {
+			misses.incrementAndGet();
+		}
+		return entry;
+	}
+
+	/**
+	 * Returns the stamp to give to {@link #put(String, byte[], String, long)}, taken before the content is read from the database.
+	 *
+	 * @return the stamp
+	 */
+	public synchronized long stamp() {
+		return invalidations;
+	}
+
+	/**
+	 * Indicates if a content may be cached.
+	 *
+	 * @param length Length of the content in bytes.
+	 * @return true if the content is not larger than the max size of a cached content
+	 */
+	public boolean accepts(long length) {
+		return maxSize > 0 && length >= 0 && length <= maxEntrySize;
+	}
+
+	/**
+	 * Caches a content. The least recently read contents are removed to keep the total size under its max.
+	 *
+	 * @param key Cache key.
+	 * @param content Content, without the file name.
+	 * @param name File name.
+	 * @param stamp Value of {@link #stamp()} before the content was read : the content is not cached if a content was removed since.
+	 * @return the cached content, returned even if it could not be cached
+	 */
+	public Entry put(String key, byte[] content, String name, long stamp) {
+		Entry entry = new Entry(content, name);
+		if (!accepts(content.length)) {
+			return entry;
+		}
+		synchronized (this) {
+			if (stamp != invalidations) {
+				return entry;
+			}
+			Entry previous = entries.put(key, entry);
+			if (previous != null) {
+				size -= previous.content.length;
+			}
+			size += content.length;
+			Iterator<Entry> iter = entries.values().iterator();
+			while (size > maxSize && iter.hasNext()) {
+				size -= iter.next().content.length;
+				iter.remove();
+			}
+		}
+		return entry;
+	}
+
+	/**
+	 * Removes a content and the contents derived from it.
+	 *
+	 * @param key Cache key.
+	 */
+	public void invalidate(String key) {
+		String variants = variantKey(key, "");
+		synchronized (this) {
+			invalidations++;
+			Iterator<Map.Entry<String, Entry>> iter = entries.entrySet().iterator();
+			while (iter.hasNext()) {
+				Map.Entry<String, Entry> cached = iter.next();
+				if (cached.getKey().equals(key) || cached.getKey().startsWith(variants)) {
+					size -= cached.getValue().content.length;
+					iter.remove();
+				}
+			}
+		}
+		if (LOGGER.isDebugEnabled()) {
+			LOGGER.debug("File " + key + " removed from cache");
+		}
+	}
+
+	/**
+	 * Removes contents.
+	 *
+	 * @param keys Cache keys.
+	 */
+	public void invalidate(Collection<String> keys) {
+		for (String key : keys) {
+			invalidate(key);
+		}
+	}
+
+	/**
+	 * Empties the cache.
+	 */
+	public synchronized void clear() {
+		invalidations++;
+		entries.clear();
+		size = 0;
+	}
+
+	/**
+	 * @return the number of cached contents
+	 */
+	public synchronized int count() {
+		return entries.size();
+	}
+
+	/**
+	 * @return the total size of the cached contents in bytes
+	 */
+	public synchronized long size() {
+		return size;
+	}
+
+	/**
+	 * @return the number of downloads found in cache
+	 */
+	public long getHitCount() {
+		return hits.get();
+	}
+
+	/**
+	 * @return the number of downloads read from the database
+	 */
+	public long getMissCount() {
+		return misses.get();
+	}
+
+	/**
+	 * @return the share of downloads found in cache, between 0 and 1
+	 */
+	public double getHitRatio() {
+		long total = hits.get() + misses.get();
+		return total == 0 ? 0d : (double) hits.get() / total;
+	}
+
+	/**
+	 * Reads a size property.
+	 *
+	 * @param property Name of the property.
+	 * @param defaultValue Default value.
+	 * @return the server property, or its default value
+	 */
+	private static long readSize(String property, long defaultValue) {
+		String value = MessageUtils.getServerProperty(property);
+		if (value != null) {
+			try {
+				return Long.parseLong(value.trim());
+			} catch (NumberFormatException e) {
+				LOGGER.warn("Invalid " + property + " " + value + ", " + defaultValue + " is used");
+			}
+		}
+		return defaultValue;
+	}
+}
@@ -2,23 +2,50 @@ package com.cgi.commons.db;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collection;
 import java.util.Collections;
-import java.util.Comparator;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+
+import com.cgi.commons.utils.DurationHistogram;
+import com.cgi.commons.utils.MessageUtils;
 
 /**
- * Log all Db Connections.
+ * Log all Db Connections.<br/>
+ * The registry is shared by the request threads without lock. Walking the stack of the opener costs more than opening a pooled
+ * connection : the stack is only captured for one connection out of {@value #STACK_SAMPLING}, so the registry stays on in production.
+ * The time each connection stays open is recorded in a histogram.
  */
 public class ConnectionLogger {
 
-	/** ArrayList who save all connections opened. */
-	private Map<Integer, ConnectionObject> mapConnections = new HashMap<Integer, ConnectionObject>();
+	/** Logger. */
+	private static final Logger LOGGER = Logger.getLogger(ConnectionLogger.class);
+
+	/** Server property : the stack of the opener is captured for one connection out of this number, 1 for all, 0 for none. */
+	public static final String STACK_SAMPLING = "db.connectionLogger.stackSampling";
+
+	/** Default sampling of the stacks. */
+	private static final int DEFAULT_STACK_SAMPLING = 100;
+
+	/** Opened connections, sorted by id. */
+	private final ConcurrentNavigableMap<Integer, ConnectionObject> mapConnections = new ConcurrentSkipListMap<Integer, ConnectionObject>();
 
-	/** Next Connection id. */
-	private int nextId = 1;
+	/** Last Connection id. */
+	private final AtomicInteger lastId = new AtomicInteger();
+
+	/** Number of closed connections. */
+	private final AtomicLong closed = new AtomicLong();
+
+	/** Time the connections stayed open, in ms. */
+	private final DurationHistogram openDurations = new DurationHistogram();
+
+	/** One connection out of this number captures the stack of the opener. */
+	private final int stackSampling = readStackSampling();
 
 	/** Private constructor. */
 	private ConnectionLogger() {
@@ -29,7 +56,7 @@ public class ConnectionLogger {
 
 	/**
 	 * Entry point to the unique instance of the class.
-	 * 
+	 *
 	 * @return The instance.
 	 */
 	public static ConnectionLogger getInstance() {
@@ -37,72 +64,118 @@ public class ConnectionLogger {
 	}
 
 	/**
-	 * Register a new DB connection and save the stackTrace's five first line.
-	 * 
+	 * Register a new DB connection, with the stack of the opener if it is sampled.
+	 *
 	 * @param conn
 	 *            The new DB Connection to register.
 	 * @return An unique id for the connection.
 	 */
 	public int register(DbConnection conn) {
-		int id = nextId++;
-		StackTraceElement[] stackTrace = new Exception().getStackTrace();
-		ConnectionObject c = new ConnectionObject(id, conn, Arrays.copyOfRange(stackTrace, 1, stackTrace.length - 1));
-		mapConnections.put(id, c);
+		int id = lastId.incrementAndGet();
+		StackTraceElement[] stack = null;
+		if (stackSampling > 0 && id % stackSampling == 0) {
+			StackTraceElement[] stackTrace = new Exception().getStackTrace();
+			stack = Arrays.copyOfRange(stackTrace, 1, stackTrace.length - 1);
+		}
+		mapConnections.put(id, new ConnectionObject(id, conn, stack));
 		return id;
 	}
 
 	/**
 	 * Drop an already registered connection.
-	 * 
+	 *
 	 * @param id
 	 *            The unique id returned by the register method.
 	 */
 	public void drop(int id) {
-		mapConnections.remove(id);
+		ConnectionObject conn = mapConnections.remove(id);
+		if (conn != null) {
+			closed.incrementAndGet();
+			openDurations.record(System.currentTimeMillis() - conn.getOpened());
+		}
 	}
 
 	/**
 	 * Map all opened connections.
-	 * 
-	 * @return The map.
+	 *
+	 * @return The map, sorted by id. It is updated as connections are opened and closed.
 	 */
 	public Map<Integer, ConnectionObject> getOpenedConnections() {
-		return mapConnections;
+		return Collections.unmodifiableMap(mapConnections);
 	}
 
 	/**
 	 * Close a connection.
-	 * 
+	 *
 	 * @param id
 	 *            The connection's id.
 	 */
 	public void closeConnection(int id) {
-		if (mapConnections.containsKey(id)) {
-			ConnectionObject conn = mapConnections.get(id);
-			if (conn != null) {
-				conn.close();
-			}
+		ConnectionObject conn = mapConnections.get(id);
+		if (conn != null) {
+			conn.close();
 		}
-		mapConnections.remove(id);
+		drop(id);
 	}
-	
+
 	/**
 	 * Get the list of the connections opened.
-	 * 
-	 * @return The list of the connections opened.
+	 *
+	 * @return The list of the connections opened, sorted by id.
 	 */
 	public List<ConnectionObject> getListConnections() {
-		List<ConnectionObject> list = new ArrayList<ConnectionObject>();
-		Collection<ConnectionObject> openedConn = getOpenedConnections().values();
-		if (openedConn.size() > 0) {
-			list.addAll(openedConn);
-			Collections.sort(list, new Comparator<ConnectionObject>() {
-				@Override
-				public int compare(ConnectionObject o1, ConnectionObject o2) {
-					return o1.getId() - o2.getId();
-				}
-			});
+		return new ArrayList<ConnectionObject>(mapConnections.values());
+	}
+
+	/**
+	 * @return the number of opened connections
+	 */
+	public int getOpenedCount() {
+		return mapConnections.size();
+	}
+
+	/**
+	 * @return the number of connections registered since the start
+	 */
+	public long getRegisteredCount() {
+		return lastId.get();
+	}
+
+	/**
+	 * @return the number of connections closed since the start
+	 */
+	public long getClosedCount() {
+		return closed.get();
+	}
+
+	/**
+	 * @return the time the closed connections stayed open, in ms
+	 */
+	public DurationHistogram getOpenDurations() {
+		return openDurations;
+	}
+
+	/**
+	 * @return one connection out of this number captures the stack of the opener, 0 if none does
+	 */
+	public int getStackSampling() {
+		return stackSampling;
+	}
+
+	/**
+	 * Reads the sampling of the stacks.
+	 *
+	 * @return the server property {@value #STACK_SAMPLING}, or its default value
+	 */
+	private static int readStackSampling() {
+		String value = MessageUtils.getServerProperty(STACK_SAMPLING);
+		if (value != null) {
+			try {
+				return Math.max(0, Integer.parseInt(value.trim()));
+			} catch (NumberFormatException e) {
+				LOGGER.warn("Invalid " + STACK_SAMPLING + " " + value + ", " + DEFAULT_STACK_SAMPLING + " is used");
+			}
 		}
-		return list;
+		return DEFAULT_STACK_SAMPLING;
 	}
 }
@@ -12,19 +12,25 @@ public class ConnectionObject {
 	
 	/** The real connection object. */
 	private Object connection;
-	/** The stack trace. */
+	/** The stack trace, null if it was not captured. */
 	private StackTraceElement[] stackTrace;
+	/** Opening date, in ms. */
+	private long opened;
+	/** Name of the opener thread. */
+	private String threadName;
 
 	/** 
 	 * Constructor. 
 	 * 
 	 * @param idConn Unique id.
 	 * @param conn The real connection object.
-	 * @param stack The stack trace.
+	 * @param stack The stack trace, null if it was not captured.
 	 */
 	public ConnectionObject(int idConn, Object conn, StackTraceElement[] stack) {
 		this.id = idConn;
 		this.connection = conn;
+		this.opened = System.currentTimeMillis();
+		this.threadName = Thread.currentThread().getName();
 		if (stack != null) {
 			this.stackTrace = Arrays.copyOf(stack, stack.length);
 		}
@@ -40,12 +46,28 @@ public class ConnectionObject {
 
 	/**
 	 * Getter for the stack trace.
-	 * @return The stack trace.
+	 * @return The stack trace, null if it was not captured.
 	 */
 	public StackTraceElement[] getStackTrace() {
 		return this.stackTrace;
 	}
 
+	/**
+	 * Getter for the opening date.
+	 * @return The opening date, in ms.
+	 */
+	public long getOpened() {
+		return this.opened;
+	}
+
+	/**
+	 * Getter for the name of the opener thread.
+	 * @return The name of the opener thread.
+	 */
+	public String getThreadName() {
+		return this.threadName;
+	}
+
 	/**
 	 * Return the class of the connection object.
 	 * @return the class of the connection object.
@@ -0,0 +1,485 @@
+package com.cgi.commons.db;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.naming.NamingException;
+
+import org.apache.log4j.Logger;
+
+import com.cgi.commons.utils.DbException;
+import com.cgi.commons.utils.MessageUtils;
+
+/**
+ * Pool of physical connections, for deployments without a pooled container DataSource (standalone, embedded server).<br/>
+ * Connections are opened from the JDBC url {@value #URL}, or from the DataSource {@value DbConnection#DATASOURCE}. Idle connections
+ * are kept in a lock-free stack, the most recently used first, with the statements they prepared. The number of borrowed connections
+ * is bounded by {@value #MAX_SIZE} : further borrowers wait up to {@value #MAX_WAIT} ms.<br/>
+ * A connection idle for more than {@value #VALIDATION_INTERVAL} ms is validated before it is borrowed. A background task closes the
+ * connections idle for more than {@value #IDLE_TIMEOUT} ms above {@value #MIN_SIZE}, and reports the connections borrowed for more than
+ * {@value #LEAK_THRESHOLD} ms. The stack of the borrower is only captured for one borrow out of {@value #LEAK_SAMPLING}.
+ */
+public final class ConnectionPool {
+
+	/** Logger. */
+	private static final Logger LOGGER = Logger.getLogger(ConnectionPool.class);
+
+	/** Server property : true to use the pool. */
+	public static final String ENABLED = "db.pool.enabled";
+	/** Server property : JDBC url, the DataSource is used if empty. */
+	public static final String URL = "db.pool.url";
+	/** Server property : user of the JDBC url. */
+	public static final String USER = "db.pool.user";
+	/** Server property : password of the JDBC url. */
+	public static final String PASSWORD = "db.pool.password";
+	/** Server property : number of connections kept open. */
+	public static final String MIN_SIZE = "db.pool.minSize";
+	/** Server property : max number of borrowed connections. */
+	public static final String MAX_SIZE = "db.pool.maxSize";
+	/** Server property : max wait for a connection, in ms. */
+	public static final String MAX_WAIT = "db.pool.maxWait";
+	/** Server property : idle time after which a connection is validated before it is borrowed, in ms. */
+	public static final String VALIDATION_INTERVAL = "db.pool.validationInterval";
+	/** Server property : idle time after which a connection above the min size is closed, in ms. */
+	public static final String IDLE_TIMEOUT = "db.pool.idleTimeout";
+	/** Server property : time between two evictions of the idle connections, in ms. */
+	public static final String EVICTION_INTERVAL = "db.pool.evictionInterval";
+	/** Server property : borrow time after which a connection is reported as leaked, in ms, 0 to disable. */
+	public static final String LEAK_THRESHOLD = "db.pool.leakThreshold";
+	/** Server property : the stack of the borrower is captured for one borrow out of this number, 0 to never capture it. */
+	public static final String LEAK_SAMPLING = "db.pool.leakSampling";
+
+	/** Max time of a validation, in seconds. */
+	private static final int VALIDATION_TIMEOUT = 5;
+
+	/** Indicates if the pool is used. */
+	private static final boolean ENABLED_VALUE = "true".equalsIgnoreCase(MessageUtils.getServerProperty(ENABLED));
+
+	/** Shared instance, created on first use. */
+	private static ConnectionPool instance;
+
+	/** JDBC url, null to use the DataSource. */
+	private final String url;
+	/** User of the JDBC url. */
+	private final String user;
+	/** Password of the JDBC url. */
+	private final String password;
+	/** Number of connections kept open. */
+	private final int minSize;
+	/** Max number of borrowed connections. */
+	private final int maxSize;
+	/** Max wait for a connection, in ms. */
+	private final long maxWait;
+	/** Idle time after which a connection is validated, in ms. */
+	private final long validationInterval;
+	/** Idle time after which a connection is closed, in ms. */
+	private final long idleTimeout;
+	/** Borrow time after which a connection is reported, in ms. */
+	private final long leakThreshold;
+	/** One borrow out of this number captures the stack of the borrower. */
+	private final int leakSampling;
+
+	/** Idle connections, most recently used first. */
+	private final ConcurrentLinkedDeque<PooledConnection> idle = new ConcurrentLinkedDeque<PooledConnection>();
+	/** Borrowed connections. */
+	private final Set<PooledConnection> active = Collections.newSetFromMap(new ConcurrentHashMap<PooledConnection, Boolean>());
+	/** Borrow permits. */
+	private final Semaphore permits;
+	/** Number of open connections. */
+	private final AtomicInteger total = new AtomicInteger();
+	/** Background task closing the idle connections and reporting the leaks. */
+	private final ScheduledExecutorService evictor;
+	/** Indicates if the pool is shut down. */
+	private volatile boolean closed;
+
+	/** Number of borrows. */
+	private final AtomicLong borrows = new AtomicLong();
+	/** Number of borrows which waited for a connection. */
+	private final AtomicLong waits = new AtomicLong();
+	/** Total wait time, in ns. */
+	private final AtomicLong waitNanos = new AtomicLong();
+	/** Longest wait time, in ns. */
+	private final AtomicLong maxWaitNanos = new AtomicLong();
+	/** Number of borrows which got no connection in time. */
+	private final AtomicLong timeouts = new AtomicLong();
+	/** Number of opened connections. */
+	private final AtomicLong opened = new AtomicLong();
+	/** Number of closed connections. */
+	private final AtomicLong destroyed = new AtomicLong();
+	/** Number of connections which failed their validation. */
+	private final AtomicLong validationFailures = new AtomicLong();
+	/** Number of connections reported as leaked. */
+	private final AtomicLong leaks = new AtomicLong();
+
+	/**
+	 * Constructor, from the server properties.
+	 */
+	private ConnectionPool() {
+		String jdbcUrl = MessageUtils.getServerProperty(URL);
+		this.url = (jdbcUrl == null || jdbcUrl.trim().isEmpty()) ? null : jdbcUrl.trim();
+		this.user = MessageUtils.getServerProperty(USER);
+		this.password = MessageUtils.getServerProperty(PASSWORD);
+		this.maxSize = Math.max(1, getInt(MAX_SIZE, 20));
+		this.minSize = Math.min(maxSize, Math.max(0, getInt(MIN_SIZE, 2)));
+		this.maxWait = getInt(MAX_WAIT, 30000);
+		this.validationInterval = getInt(VALIDATION_INTERVAL, 5000);
+		this.idleTimeout = getInt(IDLE_TIMEOUT, 600000);
+		this.leakThreshold = getInt(LEAK_THRESHOLD, 60000);
+		this.leakSampling = getInt(LEAK_SAMPLING, 20);
+		this.permits = new Semaphore(maxSize, true);
+
+		long evictionInterval = Math.max(1000, getInt(EVICTION_INTERVAL, 30000));
+		evictor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "connection-pool");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		evictor.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					evict(System.currentTimeMillis());
+				} catch (RuntimeException e) {
+					// An exception would cancel the task
+					LOGGER.error("Connection pool : eviction failed", e);
+				}
+			}
+		}, 0, evictionInterval, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Returns the shared pool.
+	 *
+	 * @return the pool, null if it is disabled (server property {@value #ENABLED})
+	 */
+	public static synchronized ConnectionPool getInstance() {
+		if (instance == null && ENABLED_VALUE) {
+			instance = new ConnectionPool();
+			LOGGER.info("Connection pool started, " + instance.minSize + " to " + instance.maxSize + " connections");
+		}
+		return instance;
+	}
+
+	/**
+	 * Closes the idle connections and stops the shared pool. Borrowed connections are closed when they are given back.
+	 */
+	public static synchronized void shutdown() {
+		if (instance != null) {
+			instance.closed = true;
+			instance.evictor.shutdownNow();
+			PooledConnection pc;
+			while ((pc = instance.idle.pollFirst()) != null) {
+				instance.destroy(pc);
+			}
+			instance = null;
+		}
+	}
+
+	/**
+	 * Borrows a connection, waiting for one if they are all borrowed.
+	 *
+	 * @return the connection, to give back with {@link #release(PooledConnection, boolean)}
+	 * @throws DbException If no connection is available in time, or a connection cannot be opened.
+	 */
+	PooledConnection borrow() {
+		if (closed) {
+			throw new DbException("Connection pool is shut down.");
+		}
+		if (!permits.tryAcquire()) {
+			waits.incrementAndGet();
+			long start = System.nanoTime();
+			boolean acquired;
+			try {
+				acquired = permits.tryAcquire(maxWait, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new DbException("Interrupted while waiting for a connection.", e);
+			} finally {
+				recordWait(System.nanoTime() - start);
+			}
+			if (!acquired) {
+				timeouts.incrementAndGet();
+				throw new DbException("No connection available after " + maxWait + " ms, " + active.size() + " connections borrowed.");
+			}
+		}
+		try {
+			PooledConnection pc;
+			while ((pc = idle.pollFirst()) != null && !validate(pc)) {
+				destroy(pc);
+			}
+			if (pc == null) {
+				pc = open();
+			}
+			long count = borrows.incrementAndGet();
+			pc.borrowed = System.currentTimeMillis();
+			pc.leakReported = false;
+			pc.borrowStack = (leakSampling > 0 && count % leakSampling == 0) ? new Exception("Connection borrowed here") : null;
+			active.add(pc);
+			return pc;
+		} catch (RuntimeException e) {
+			permits.release();
+			throw e;
+		}
+	}
+
+	/**
+	 * Gives back a borrowed connection, after its transaction was rolled back or committed.
+	 *
+	 * @param pc The connection.
+	 * @param broken True if the connection failed and must be closed.
+	 */
+	void release(PooledConnection pc, boolean broken) {
+		if (!active.remove(pc)) {
+			return;
+		}
+		try {
+			pc.statements.closeBorrowed();
+			if (closed || broken || pc.cnx.isClosed()) {
+				destroy(pc);
+			} else {
+				pc.borrowStack = null;
+				pc.lastUsed = System.currentTimeMillis();
+				idle.offerFirst(pc);
+			}
+		} catch (SQLException e) {
+			destroy(pc);
+		} finally {
+			permits.release();
+		}
+	}
+
+	/**
+	 * Validates an idle connection if it was not used recently.
+	 *
+	 * @param pc The connection.
+	 * @return true if the connection can be borrowed
+	 */
+	private boolean validate(PooledConnection pc) {
+		if (System.currentTimeMillis() - pc.lastUsed < validationInterval) {
+			return true;
+		}
+		if (DbConnection.isValid(pc.cnx, VALIDATION_TIMEOUT)) {
+			pc.lastUsed = System.currentTimeMillis();
+			return true;
+		}
+		validationFailures.incrementAndGet();
+		LOGGER.warn("Connection pool : idle connection failed its validation, it is closed");
+		return false;
+	}
+
+	/**
+	 * Opens a connection.
+	 *
+	 * @return the connection
+	 * @throws DbException If the connection cannot be opened.
+	 */
+	private PooledConnection open() {
+		try {
+			Connection cnx = (url != null) ? DriverManager.getConnection(url, user, password) : DbConnection.getDataSource().getConnection();
+			cnx.setAutoCommit(false);
+			total.incrementAndGet();
+			opened.incrementAndGet();
+			return new PooledConnection(cnx);
+		} catch (SQLException e) {
+			LOGGER.fatal("Connection failed.", e);
+			throw new DbException("Connection failed.", e);
+		} catch (NamingException e) {
+			LOGGER.fatal("Datasource not found", e);
+			throw new DbException("Datasource not found.", e);
+		}
+	}
+
+	/**
+	 * Closes a connection and its statements.
+	 *
+	 * @param pc The connection.
+	 */
+	private void destroy(PooledConnection pc) {
+		total.decrementAndGet();
+		destroyed.incrementAndGet();
+		pc.statements.close();
+		try {
+			pc.cnx.close();
+		} catch (SQLException e) {
+			LOGGER.warn("Connection pool : error closing connection", e);
+		}
+	}
+
+	/**
+	 * Closes the connections idle for too long, opens connections up to the min size, and reports the connections borrowed for too
+	 * long.
+	 *
+	 * @param now Current time in ms.
+	 */
+	void evict(long now) {
+		for (PooledConnection pc : idle) {
+			if (total.get() > minSize && now - pc.lastUsed > idleTimeout && idle.removeFirstOccurrence(pc)) {
+				destroy(pc);
+			}
+		}
+		while (!closed && total.get() < minSize) {
+			idle.offerLast(open());
+		}
+		if (leakThreshold <= 0) {
+			return;
+		}
+		for (PooledConnection pc : active) {
+			long held = now - pc.borrowed;
+			if (!pc.leakReported && held > leakThreshold) {
+				pc.leakReported = true;
+				leaks.incrementAndGet();
+				if (pc.borrowStack != null) {
+					LOGGER.warn("Connection pool : connection borrowed for " + held + " ms, it may be leaked", pc.borrowStack);
+				} else {
+					LOGGER.warn("Connection pool : connection borrowed for " + held + " ms, it may be leaked (the borrower stack is captured for"
+							+ " one borrow out of " + leakSampling + ", see " + LEAK_SAMPLING + ")");
+				}
+			}
+		}
+	}
+
+	/**
+	 * Records the wait time of a borrow.
+	 *
+	 * @param nanos Wait time, in ns.
+	 */
+	private void recordWait(long nanos) {
+		waitNanos.addAndGet(nanos);
+		long max = maxWaitNanos.get();
+		while (nanos > max && !maxWaitNanos.compareAndSet(max, nanos)) {
+			max = maxWaitNanos.get();
+		}
+	}
+
+	/**
+	 * @return the number of borrowed connections
+	 */
+	public int getActiveCount() {
+		return active.size();
+	}
+
+	/**
+	 * @return the number of idle connections
+	 */
+	public int getIdleCount() {
+		return idle.size();
+	}
+
+	/**
+	 * @return the number of open connections
+	 */
+	public int getTotalCount() {
+		return total.get();
+	}
+
+	/**
+	 * @return the max number of borrowed connections
+	 */
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * @return the number of borrowers waiting for a connection
+	 */
+	public int getWaitingCount() {
+		return permits.getQueueLength();
+	}
+
+	/**
+	 * @return the number of borrows
+	 */
+	public long getBorrowCount() {
+		return borrows.get();
+	}
+
+	/**
+	 * @return the number of borrows which waited for a connection
+	 */
+	public long getWaitCount() {
+		return waits.get();
+	}
+
+	/**
+	 * @return the total wait time of the borrows, in ms
+	 */
+	public long getTotalWaitMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(waitNanos.get());
+	}
+
+	/**
+	 * @return the longest wait time of a borrow, in ms
+	 */
+	public long getMaxWaitMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get());
+	}
+
+	/**
+	 * @return the number of borrows which got no connection in time
+	 */
+	public long getTimeoutCount() {
+		return timeouts.get();
+	}
+
+	/**
+	 * @return the number of opened connections
+	 */
+	public long getOpenedCount() {
+		return opened.get();
+	}
+
+	/**
+	 * @return the number of closed connections
+	 */
+	public long getDestroyedCount() {
+		return destroyed.get();
+	}
+
+	/**
+	 * @return the number of idle connections which failed their validation
+	 */
+	public long getValidationFailureCount() {
+		return validationFailures.get();
+	}
+
+	/**
+	 * @return the number of connections reported as leaked
+	 */
+	public long getLeakCount() {
+		return leaks.get();
+	}
+
+	/**
+	 * Reads an integer property.
+	 *
+	 * @param property Name of the property.
+	 * @param defaultValue Default value.
+	 * @return the server property, or its default value
+	 */
+	private static int getInt(String property, int defaultValue) {
+		String value = MessageUtils.getServerProperty(property);
+		if (value != null) {
+			try {
+				return Integer.parseInt(value.trim());
+			} catch (NumberFormatException e) {
+				LOGGER.warn("Invalid " + property + " " + value + ", " + defaultValue + " is used");
+			}
+		}
+		return defaultValue;
+	}
+}
@@ -1,7 +1,9 @@
 package com.cgi.commons.db;
 
+import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.SQLIntegrityConstraintViolationException;
+import java.sql.Savepoint;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -43,6 +45,12 @@ public class DB {
 	/** Indicates if DB is initialized or not. */
 	private static boolean initialized = false;
 
+	/** Server property : <code>true</code> to write through SELECT ... FOR UPDATE and an updatable ResultSet, for drivers that need it. */
+	public static final String UPDATABLE_RESULTSET = "db.updatableResultSet";
+
+	/** Writes use the cached statements of {@link EntityStatements}, unless {@value #UPDATABLE_RESULTSET} is set. */
+	private static final boolean USE_STATEMENTS = !Boolean.parseBoolean(MessageUtils.getServerProperty(UPDATABLE_RESULTSET));
+
 	static {
 		QUERIES = new HashMap<String, AbstractEntityQuery>();
 		QUERY_MAIN_ENTITY = new HashMap<String, String>();
@@ -454,23 +462,66 @@ public class DB {
 		DbManagerUpdatable dbMgr = null;
 
 		try {
+			// A key allocated here cannot exist yet : no update to try and no duplicate key to recover from
+			boolean newKey = allocatesPrimaryKey(domain);
 			DbManagerUpdatable.fillAutoIncrement(domain, ctx);
 
-			DbQuery query = new DbQuery(domain.name(), "T01");
-			if (domain.getInitialKey() != null) {
-				query.addCondKey(domain.getInitialKey(), "T01");
-			} else {
-				query.addCondKey(domain.getPrimaryKey(), "T01");
+			Key key = domain.getInitialKey() != null ? domain.getInitialKey() : domain.getPrimaryKey();
+			EntityStatements statements = EntityStatements.get(domain.getModel());
+			if (USE_STATEMENTS && statements.supports(key)) {
+				if (newKey) {
+					statements.insert(domain, ctx);
+					return true;
+				}
+				if (statements.update(domain, key, ctx) > 0) {
+					return false;
+				}
+				Savepoint savepoint = setSavepoint(ctx);
+				try {
+					statements.insert(domain, ctx);
+					releaseSavepoint(savepoint, ctx);
+				} catch (SQLException sqlEx) {
+					// Inserted by a concurrent request since the update : the row is updated instead
+					if (!isDuplicateKey(sqlEx)) {
+						throw sqlEx;
+					}
+					rollbackToSavepoint(savepoint, ctx);
+					if (statements.update(domain, key, ctx) > 0) {
+						return false;
+					}
+					throw sqlEx;
+				}
+				return true;
 			}
+
+			DbQuery query = new DbQuery(domain.name(), "T01");
+			query.addCondKey(key, "T01");
 			query.setForUpdate(true);
 
 			dbMgr = new DbManagerUpdatable(ctx, query);
 			if (dbMgr.rs.next()) {
 				dbMgr.updateRow(domain);
 				return false;
-			} else {
+			}
+			Savepoint savepoint = newKey ? null : setSavepoint(ctx);
+			try {
 				dbMgr.insertRow(domain);
+				releaseSavepoint(savepoint, ctx);
 				return true;
+			} catch (SQLException sqlEx) {
+				// SELECT ... FOR UPDATE does not lock a missing row : a concurrent request may have inserted it since
+				if (!isDuplicateKey(sqlEx)) {
+					throw sqlEx;
+				}
+				rollbackToSavepoint(savepoint, ctx);
+				dbMgr.close();
+				dbMgr = null;
+				dbMgr = new DbManagerUpdatable(ctx, query);
+				if (dbMgr.rs.next()) {
+					dbMgr.updateRow(domain);
+					return false;
+				}
+				throw sqlEx;
 			}
 		} catch (SQLException sqlEx) {
 			throw new DbException(sqlEx.getMessage(), sqlEx);
@@ -481,6 +532,90 @@ public class DB {
 		}
 	}
 
+	/**
+	 * Indicates if an error is the violation of a unique or primary key.
+	 * 
+	 * @param sqlEx
+	 *            Error.
+	 * @return <code>true</code> for an integrity constraint violation (SQL state class 23). Other violations, such as a foreign key, make
+	 *         the retried update find no row, and the error is thrown anyway.
+	 */
+	private static boolean isDuplicateKey(SQLException sqlEx) {
+		return sqlEx instanceof SQLIntegrityConstraintViolationException
+				|| (sqlEx.getSQLState() != null && sqlEx.getSQLState().startsWith("23"));
+	}
+
+	/**
+	 * Sets a savepoint before an insert which may fail on a duplicate key, when the database aborts the whole transaction on error
+	 * (PostgreSQL). Other databases only roll back the failed statement.
+	 * 
+	 * @param ctx
+	 *            Current context.
+	 * @return the savepoint, null if not needed
+	 * @throws SQLException
+	 *             if error.
+	 */
+	private static Savepoint setSavepoint(RequestContext ctx) throws SQLException {
+		Connection cnx = ctx.getDbConnection().getCnx();
+		if (DbConnection.getDbType() != DbConnection.Type.PostgreSQL || cnx.getAutoCommit()) {
+			return null;
+		}
+		return cnx.setSavepoint();
+	}
+
+	/**
+	 * Releases a savepoint set by {@link #setSavepoint(RequestContext)} once the insert succeeded, so that it does not live until the end
+	 * of the transaction.
+	 * 
+	 * @param savepoint
+	 *            Savepoint, may be null.
+	 * @param ctx
+	 *            Current context.
+	 * @throws SQLException
+	 *             if error.
+	 */
+	private static void releaseSavepoint(Savepoint savepoint, RequestContext ctx) throws SQLException {
+		if (savepoint != null) {
+			ctx.getDbConnection().getCnx().releaseSavepoint(savepoint);
+		}
+	}
+
+	/**
+	 * Indicates if the primary key of a new domain object is filled by {@link DbManagerUpdatable#fillAutoIncrement(Entity, RequestContext)}.
+	 * 
+	 * @param domain
+	 *            Domain object, before its autoincrement fields are filled.
+	 * @return <code>true</code> if an autoincrement field of the primary key is empty.
+	 */
+	private static boolean allocatesPrimaryKey(Entity domain) {
+		if (domain.getInitialKey() != null) {
+			return false;
+		}
+		EntityModel entityModel = domain.getModel();
+		for (String fieldName : entityModel.getKeyModel().getFields()) {
+			if (entityModel.isAutoIncrementField(fieldName) && domain.invokeGetter(fieldName) == null) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Rolls back to a savepoint set by {@link #setSavepoint(RequestContext)}.
+	 * 
+	 * @param savepoint
+	 *            Savepoint, may be null.
+	 * @param ctx
+	 *            Current context.
+	 * @throws SQLException
+	 *             if error.
+	 */
+	private static void rollbackToSavepoint(Savepoint savepoint, RequestContext ctx) throws SQLException {
+		if (savepoint != null) {
+			ctx.getDbConnection().getCnx().rollback(savepoint);
+		}
+	}
+
 	/**
 	 * Persist a domain object into database.
 	 * 
@@ -536,6 +671,11 @@ public class DB {
 		try {
 			DbManagerUpdatable.fillAutoIncrement(entity, ctx);
 
+			if (USE_STATEMENTS) {
+				EntityStatements.get(entity.getModel()).insert(entity, ctx);
+				return;
+			}
+
 			DbQuery query = new DbQuery(entity.name(), "T01");
 			query.addCondKey(entity.getPrimaryKey(), "T01");
 			query.setForUpdate(true);
@@ -575,6 +715,50 @@ public class DB {
 		logic.internalDbPostSave(domain, action, ctx);
 	}
 
+	/**
+	 * Insert a list of domain objects of the same type into database. Business hooks before save are called once for the whole list
+	 * (see {@link DomainLogic#dbOnSaveBatch(List, Action, RequestContext)}), then rows are sent with JDBC batch statements, or inserted one
+	 * by one through an updatable ResultSet when {@value #UPDATABLE_RESULTSET} is set. Commit is left to the caller, so that the whole list
+	 * is inserted in one transaction.
+	 * 
+	 * @param <E>
+	 *            Entity class.
+	 * @param domains
+	 *            Domain objects to persist.
+	 * @param action
+	 *            The Action.
+	 * @param ctx
+	 *            Current context.
+	 * @return Number of rows inserted.
+	 */
+	@SuppressWarnings("unchecked")
+	public static <E extends Entity> int insertBatch(List<E> domains, Action action, RequestContext ctx) {
+		if (domains.isEmpty()) {
+			return 0;
+		}
+		DomainLogic<E> logic = ((DomainLogic<E>) DomainUtils.getLogic(domains.get(0), ctx));
+		logic.internalDbOnSaveBatch(domains, action, ctx);
+		for (E domain : domains) {
+			if (logic.internalDoCheck(domain, action, ctx)) {
+				throw new FunctionalException(new ArrayList<Message>(ctx.getMessages()));
+			}
+		}
+		DbManagerUpdatable.fillAutoIncrement(domains, ctx);
+		int inserted;
+		if (USE_STATEMENTS) {
+			inserted = EntityStatements.get(domains.get(0).getModel()).insertBatch(domains, ctx);
+		} else {
+			for (E domain : domains) {
+				insertEntity(domain, ctx);
+			}
+			inserted = domains.size();
+		}
+		for (E domain : domains) {
+			logic.internalDbPostSave(domain, action, ctx);
+		}
+		return inserted;
+	}
+
 	/**
 	 * Update a domain object into database. Will fail if entity does not exists in database.
 	 * 
@@ -605,18 +789,23 @@ public class DB {
 		try {
 			DbManagerUpdatable.fillAutoIncrement(entity, ctx);
 
-			DbQuery query = new DbQuery(entity.name(), "T01");
-			if (entity.getInitialKey() != null) {
-				query.addCondKey(entity.getInitialKey(), "T01");
+			Key key = entity.getInitialKey() != null ? entity.getInitialKey() : entity.getPrimaryKey();
+			EntityStatements statements = EntityStatements.get(entity.getModel());
+			boolean updated;
+			if (USE_STATEMENTS && statements.supports(key)) {
+				updated = statements.update(entity, key, ctx) > 0;
 			} else {
-				query.addCondKey(entity.getPrimaryKey(), "T01");
+				DbQuery query = new DbQuery(entity.name(), "T01");
+				query.addCondKey(key, "T01");
+				query.setForUpdate(true);
+
+				dbMgr = new DbManagerUpdatable(ctx, query);
+				updated = dbMgr.rs.next();
+				if (updated) {
+					dbMgr.updateRow(entity);
+				}
 			}
-			query.setForUpdate(true);
-
-			dbMgr = new DbManagerUpdatable(ctx, query);
-			if (dbMgr.rs.next()) {
-				dbMgr.updateRow(entity);
-			} else {
+			if (!updated) {
 				// if the expected object is not found, it throws an exception
 				EntityNotFoundException entityNotFoundException = new EntityNotFoundException(ctx);
 				ctx.getMessages().addAll(entityNotFoundException.getMessages());
@@ -684,6 +873,10 @@ public class DB {
 
 		try {
 			boolean removed = false;
+			EntityStatements statements = EntityStatements.get(entity.getModel());
+			if (USE_STATEMENTS && statements.supports(entity.getPrimaryKey())) {
+				return statements.delete(entity.getPrimaryKey(), ctx) > 0;
+			}
 			DbQuery query = new DbQuery(entity.name(), "T01");
 			query.addCondKey(entity.getPrimaryKey(), "T01");
 			query.setForUpdate(true);
@@ -4,6 +4,9 @@ import java.io.Closeable;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.HashSet;
+import java.util.Set;
 
 import javax.naming.InitialContext;
 import javax.naming.NamingException;
@@ -49,18 +52,39 @@ public class DbConnection implements Closeable {
 	/** The type of the database. */
 	private static Type dbType;
 
+	/** DataSource found with the server property {@value #DATASOURCE}, looked up once. */
+	private static volatile DataSource sharedDataSource;
+
 	/** Unique id of the connection (for the ConnectionLogger). */
 	private int id;
 
+	/** Statements kept for reuse : those of the pooled connection, kept with it between borrows. */
+	private StatementCache statements;
+
+	/** Pool of the connection, null if it was not borrowed from a pool. */
+	private ConnectionPool pool;
+	/** Connection borrowed from the pool. */
+	private PooledConnection pooled;
+
+	/** Keys in {@link BlobCache} of the files saved by the current transaction, removed again from the cache on commit. */
+	private final Set<String> savedFiles = new HashSet<String>();
+
 	/**
 	 * Constructor.
 	 */
 	public DbConnection() {
 		try {
-			String dbJndiName = MessageUtils.getServerProperty(DATASOURCE);
-			dataSource = (DataSource) new InitialContext().lookup(dbJndiName);
-			cnx = dataSource.getConnection();
-			cnx.setAutoCommit(false);
+			pool = ConnectionPool.getInstance();
+			if (pool != null) {
+				pooled = pool.borrow();
+				cnx = pooled.cnx;
+				statements = pooled.statements;
+			} else {
+				dataSource = getDataSource();
+				cnx = dataSource.getConnection();
+				cnx.setAutoCommit(false);
+				statements = new StatementCache();
+			}
 
 			// Register the connection's opening.
 			id = ConnectionLogger.getInstance().register(this);
@@ -73,6 +97,27 @@ public class DbConnection implements Closeable {
 		}
 	}
 
+	/**
+	 * Returns the DataSource of the server property {@value #DATASOURCE}. It is looked up once.
+	 * 
+	 * @return the DataSource
+	 * @throws NamingException If the DataSource is not found.
+	 */
+	static DataSource getDataSource() throws NamingException {
+		DataSource ds = sharedDataSource;
+		if (ds == null) {
+			synchronized (DbConnection.class) {
+				ds = sharedDataSource;
+				if (ds == null) {
+					String dbJndiName = MessageUtils.getServerProperty(DATASOURCE);
+					ds = (DataSource) new InitialContext().lookup(dbJndiName);
+					sharedDataSource = ds;
+				}
+			}
+		}
+		return ds;
+	}
+
 	/**
 	 * Initialize the connection to database.
 	 * 
@@ -133,6 +178,7 @@ public class DbConnection implements Closeable {
 	 */
 	public DbConnection(StandaloneDbConnection standalone) {
 		cnx = standalone.getCnx();
+		statements = new StatementCache();
 		if (dbType == null) {
 			initializeDbType(cnx);
 		}
@@ -145,6 +191,7 @@ public class DbConnection implements Closeable {
 	 */
 	public DbConnection(Connection connection) {
 		cnx = connection;
+		statements = new StatementCache();
 	}
 
 	/**
@@ -156,13 +203,49 @@ public class DbConnection implements Closeable {
 		return cnx;
 	}
 
+	/**
+	 * Returns a prepared statement of this connection, reused if the same SQL was already prepared and released.
+	 * 
+	 * @param sql SQL statement.
+	 * @param resultSetType Result set type.
+	 * @param resultSetConcurrency Result set concurrency.
+	 * @return the statement, to give back with {@link #releaseStatement(PreparedStatement)} instead of closing it
+	 * @throws SQLException If error.
+	 */
+	public PreparedStatement prepareStatement(String sql, int resultSetType, int resultSetConcurrency) throws SQLException {
+		return statements.prepare(cnx, sql, resultSetType, resultSetConcurrency);
+	}
+
+	/**
+	 * Gives back a statement returned by {@link #prepareStatement(String, int, int)}, for reuse.
+	 * 
+	 * @param ps The statement.
+	 * @throws SQLException If error.
+	 */
+	public void releaseStatement(PreparedStatement ps) throws SQLException {
+		statements.release(ps);
+	}
+
 	/**
 	 * Close the connection.
 	 * 
 	 * @throws DbException If error.
 	 */
 	public void close() throws DbException {
-		if (cnx != null) {
+		if (cnx != null && pooled != null) {
+			boolean broken = true;
+			try {
+				rollback();
+				broken = false;
+			} finally {
+				// The connection and its statements go back to the pool
+				pool.release(pooled, broken);
+				pooled = null;
+				cnx = null;
+				ConnectionLogger.getInstance().drop(id);
+			}
+		} else if (cnx != null) {
+			statements.close();
 			try {
 				rollback();
 			} finally {
@@ -184,6 +267,25 @@ public class DbConnection implements Closeable {
 	 * @return true if connection ok
 	 */
 	public boolean check() {
+		return isValid(cnx, 5);
+	}
+
+	/**
+	 * Validates a connection with {@link Connection#isValid(int)}, or with a {@code SELECT 1} if the driver does not implement it.
+	 * 
+	 * @param cnx The connection.
+	 * @param timeout Max time of the validation, in seconds.
+	 * @return true if the connection is valid
+	 */
+	static boolean isValid(Connection cnx, int timeout) {
+		try {
+			return cnx.isValid(timeout);
+		} catch (AbstractMethodError | SQLFeatureNotSupportedException e) {
+			// JDBC 3 driver
+		} catch (Exception e) {
+			LOGGER.error("Error checking DB connection", e);
+			return false;
+		}
 		PreparedStatement ps = null;
 		try {
 			String query = "SELECT 1";
@@ -191,6 +293,7 @@ public class DbConnection implements Closeable {
 				query += " FROM DUAL";
 			}
 			ps = cnx.prepareStatement(query);
+			ps.setQueryTimeout(timeout);
 			return ps.execute();
 		} catch (Exception e) {
 			LOGGER.error("Error checking DB connection", e);
@@ -205,6 +308,15 @@ public class DbConnection implements Closeable {
 		}
 	}
 
+	/**
+	 * Registers a file saved by the current transaction : it is removed from {@link BlobCache} when the transaction is committed.
+	 * 
+	 * @param key Key of the file in the cache.
+	 */
+	public void fileSaved(String key) {
+		savedFiles.add(key);
+	}
+
 	/**
 	 * commit de la transaction.
 	 * 
@@ -213,6 +325,11 @@ public class DbConnection implements Closeable {
 	public void commit() throws DbException {
 		try {
 			this.getCnx().commit();
+			if (!savedFiles.isEmpty()) {
+				// Contents read by other requests before the commit are not kept
+				BlobCache.getInstance().invalidate(savedFiles);
+				savedFiles.clear();
+			}
 		} catch (SQLException e) {
 			LOGGER.error("Error committing connection.", e);
 			throw new DbException(e.getMessage(), e);
@@ -226,6 +343,7 @@ public class DbConnection implements Closeable {
 	 */
 	public void rollback() throws DbException {
 		try {
+			savedFiles.clear();
 			this.getCnx().rollback();
 		} catch (SQLException e) {
 			LOGGER.error("Error rollbacking connection.", e);
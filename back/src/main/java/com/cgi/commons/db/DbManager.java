@@ -1,6 +1,7 @@
 package com.cgi.commons.db;
 
 import java.io.Closeable;
+import java.io.IOException;
 import java.io.InputStream;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
@@ -14,6 +15,7 @@ import java.sql.SQLException;
 import java.sql.Time;
 import java.sql.Timestamp;
 import java.text.DateFormat;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.Locale;
@@ -27,16 +29,17 @@ import com.cgi.commons.ref.context.RequestContext;
 import com.cgi.commons.ref.data.ListCategoryData;
 import com.cgi.commons.ref.data.ListData;
 import com.cgi.commons.ref.data.Row;
+import com.cgi.commons.ref.data.RowSchema;
 import com.cgi.commons.ref.entity.Entity;
+import com.cgi.commons.ref.entity.EntityAccessors;
 import com.cgi.commons.ref.entity.EntityField;
 import com.cgi.commons.ref.entity.EntityField.Memory;
 import com.cgi.commons.ref.entity.EntityField.SqlTypes;
+import com.cgi.commons.ref.entity.EntityModel;
 import com.cgi.commons.ref.entity.FileContainer;
 import com.cgi.commons.ref.entity.Key;
-import com.cgi.commons.utils.ApplicationUtils;
 import com.cgi.commons.utils.DbException;
 import com.cgi.commons.utils.TechnicalException;
-import com.cgi.commons.utils.TmpFileManager;
 import com.cgi.commons.utils.reflect.DomainUtils;
 
 /**
@@ -64,6 +67,30 @@ public class DbManager implements Closeable {
 	/** store sql statement for error logging */
 	protected String sqlString;
 
+	/** Connection which prepared the statement, it is given back to it on close. */
+	private DbConnection connection;
+
+	/** Keys of the rows of the query, built on first use. */
+	private RowSchema rowSchema;
+
+	/** Columns of the results, resolved on first use. */
+	private ResultBinder binder;
+
+	/** Context the statement was executed with, for its timings. */
+	private RequestContext timedContext;
+	/** Bind values of the statement, for the slow statements log. */
+	private Object[] binds;
+	/** Time spent preparing and binding the statement, in ns. */
+	private long prepareNanos;
+	/** Time spent executing the statement, in ns. */
+	private long executeNanos;
+	/** Time spent fetching the rows, in ns. */
+	private long fetchNanos;
+	/** Fetched rows. */
+	private long fetchedRows;
+	/** Indicates if the statement is executed and not yet recorded in {@link SqlStats}. */
+	private boolean timed;
+
 	/**
 	 * Initialize a DbManager by executing the query and getting the result set from the database.
 	 * 
@@ -82,13 +109,14 @@ public class DbManager implements Closeable {
 
 		// keep sql statement for logging
 		sqlString = sql;
+		long start = System.nanoTime();
 
 		/* create a PreparedStatement from the SQL query */
 		try {
-			ps = ctx.getDbConnection().getCnx().prepareStatement(sql, resultsetType, resultsetConcurrency);
-			if (dbQuery != null) {
-				ps.setFetchSize(dbQuery.getFetchSize());
-			}
+			connection = ctx.getDbConnection();
+			ps = connection.prepareStatement(sql, resultsetType, resultsetConcurrency);
+			// A reused statement keeps the fetch size of its previous query
+			ps.setFetchSize(getFetchSize(resultsetType, resultsetConcurrency));
 		} catch (SQLException e) {
 			LOGGER.error("PrepareStatement failed [" + sqlString + "]", e);
 			throw new DbException("Init DbManager: PrepareStatement failed [" + sqlString + "]", e);
@@ -118,14 +146,22 @@ public class DbManager implements Closeable {
 		}
 
 		/* Execution of the prepared statement and getting the result set */
+		long prepared = System.nanoTime();
 		try {
 			ps.execute();
 			// Increment query count
 			ctx.incQueryNbRequests();
 		} catch (SQLException e) {
+			SqlStats.getInstance().record(sqlString, parms, ctx, prepared - start, System.nanoTime() - prepared, 0, 0, true);
 			LOGGER.error("Execute failed [" + sqlString + "]", e);
 			throw new DbException("Init DbManager: execute failed [" + sqlString + "]", e);
 		}
+		// Fetch time is added by next(), the statement is recorded on close
+		timedContext = ctx;
+		binds = parms;
+		prepareNanos = prepared - start;
+		executeNanos = System.nanoTime() - prepared;
+		timed = true;
 		try {
 			rs = ps.getResultSet();
 		} catch (SQLException e) {
@@ -197,7 +233,7 @@ public class DbManager implements Closeable {
 				logic.internalDbSecure(query, ctx);
 				query.secured = true;
 			}
-			String sqlString = ApplicationUtils.getApplicationLogic().getSqlBuilder(query).toSql();
+			String sqlString = SqlCache.getInstance().toSql(query);
 			params = query.getBindValues().toArray();
 			init(ctx, sqlString, params, resultsetType, resultsetConcurrency);
 		}
@@ -222,9 +258,13 @@ public class DbManager implements Closeable {
 	 */
 	public boolean next() throws DbException {
 		try {
+			long start = System.nanoTime();
 			boolean results = rs.next();
+			fetchNanos += System.nanoTime() - start;
 			if (!results) {
 				close();
+			} else {
+				fetchedRows++;
 			}
 			return results;
 		} catch (SQLException e) {
@@ -663,6 +703,10 @@ public class DbManager implements Closeable {
 	 *             Exception thrown if an error occurs.
 	 */
 	public void close() throws DbException {
+		if (timed) {
+			timed = false;
+			SqlStats.getInstance().record(sqlString, binds, timedContext, prepareNanos, executeNanos, fetchNanos, fetchedRows, false);
+		}
 		try {
 			if (rs != null) {
 				rs.close();
@@ -672,7 +716,12 @@ public class DbManager implements Closeable {
 		} finally {
 			if (ps != null) {
 				try {
-					ps.close();
+					if (connection != null) {
+						connection.releaseStatement(ps);
+					} else {
+						ps.close();
+					}
+					ps = null;
 				} catch (SQLException e) {
 					throw new DbException("Error closing preparedStatement", e);
 				}
@@ -697,22 +746,100 @@ public class DbManager implements Closeable {
 			data = new ListCategoryData(dbQuery.getMainEntity().name());
 			((ListCategoryData) data).setCategoryBreak(dbQuery.getCategoryBreak());
 		}
+		RowSchema schema = getRowSchema();
+		int rownumOrdinal = schema.indexOf(Constants.RESULT_ROWNUM);
+		data.setSchema(schema);
+
+		DomainLogic<E> domainLogic = (DomainLogic<E>) DomainUtils.getLogic(dbQuery.getMainEntity(), ctx);
+
+		Keyset keyset = dbQuery.getKeyset();
+		int rownum = keyset != null ? keyset.getPosition() : dbQuery.getMinRownum();
+		int rows = 0;
+		try {
+			while (next()) {
+				if (dbQuery.isLookAhead() && rows == dbQuery.getMaxRownum()) {
+					// Row of the next page
+					data.setHasMore(true);
+					break;
+				}
+				if (rows == 0 && dbQuery.isWindowCount()) {
+					Integer index = dbQuery.indexes.get(DbQuery.WINDOW_COUNT);
+					if (index != null) {
+						data.setTotalRowCount((keyset != null ? keyset.getSkippedRows() : 0) + rs.getInt(index.intValue()));
+					}
+				}
+				Object[] values = getNextValues(domainLogic, null, null, null);
+				values[rownumOrdinal] = Integer.valueOf(rownum++);
+				data.addValues(values);
+				rows++;
+				if (keyset != null && rows == dbQuery.getMaxRownum()) {
+					// Full page : there may be a next one
+					data.setContinuationToken(keyset.next(dbQuery, rs, rows));
+				}
+			}
+			if (dbQuery.isLookAhead() && !data.isHasMore()) {
+				data.setContinuationToken(null);
+			}
+		} catch (SQLException ex) {
+			throw new DbException(ex.getMessage(), ex);
+		} finally {
+			close();
+		}
+		return data;
+	}
+
+	/**
+	 * Returns the fetch size of the statement. MySQL Connector/J ignores a positive fetch size and reads all the rows at once, unless the
+	 * connection has <code>useCursorFetch=true</code> : on MySQL, a {@link DbQuery#isStreamed() streamed} query is read row by row
+	 * instead, with the <code>Integer.MIN_VALUE</code> fetch size of a forward-only, read-only statement. No other statement may run on the
+	 * connection until the streamed results are read or closed, so the other queries keep their fetch size.
+	 * 
+	 * @param resultsetType Result set type.
+	 * @param resultsetConcurrency Concurrency type.
+	 * @return the fetch size, 0 for the driver default
+	 */
+	private int getFetchSize(int resultsetType, int resultsetConcurrency) {
+		int fetchSize = dbQuery != null ? dbQuery.getFetchSize() : 0;
+		if (fetchSize > 0 && dbQuery.isStreamed() && DbConnection.getDbType() == DbConnection.Type.MySQL
+				&& resultsetType == ResultSet.TYPE_FORWARD_ONLY && resultsetConcurrency == ResultSet.CONCUR_READ_ONLY) {
+			return Integer.MIN_VALUE;
+		}
+		return fetchSize;
+	}
+
+	/**
+	 * Reads the results of the query row by row : each row is given to the handler and then dropped, so memory does not grow with the
+	 * number of rows. The rows are fetched by {@link DbQuery#getFetchSize()}, or one at a time on MySQL for a {@link DbQuery#isStreamed()
+	 * streamed} query.
+	 * 
+	 * @param <E> Entity class.
+	 * @param handler Receives the rows.
+	 * @return Number of rows read.
+	 * @throws IOException If the handler fails.
+	 * @throws DbException If error.
+	 */
+	@SuppressWarnings("unchecked")
+	public <E extends Entity> int forEachRow(RowHandler handler) throws IOException, DbException {
+		if (dbQuery == null)
+			throw new IllegalStateException("Illegal use of forEachRow method on a DbManager opened with a native SQL statement.");
 
 		DomainLogic<E> domainLogic = (DomainLogic<E>) DomainUtils.getLogic(dbQuery.getMainEntity(), ctx);
 
 		int rownum = dbQuery.getMinRownum();
+		int rows = 0;
 		try {
 			while (next()) {
 				Row r = getNextRow(domainLogic);
 				r.put(Constants.RESULT_ROWNUM, rownum++);
-				data.add(r);
+				handler.handle(r);
+				rows++;
 			}
 		} catch (SQLException ex) {
 			throw new DbException(ex.getMessage(), ex);
 		} finally {
 			close();
 		}
-		return data;
+		return rows;
 	}
 
 	/**
@@ -750,7 +877,63 @@ public class DbManager implements Closeable {
 		if (dbQuery == null)
 			throw new IllegalStateException("Illegal use of getNextRow method on a DbManager opened with a native SQL statement.");
 
-		Row row = new Row();
+		return getRowSchema().toRow(getNextValues(domainLogic, dateFormatter, timeFormatter, timestampFormatter));
+	}
+
+	/**
+	 * Keys of the rows of the query : for each selected column its alias, followed by <code>Val_</code> + alias for columns with defined
+	 * values, then the calculated columns, {@link Constants#RESULT_PK} and {@link Constants#RESULT_ROWNUM}.
+	 * 
+	 * @return The keys of the rows, shared by all the rows of the query.
+	 */
+	public RowSchema getRowSchema() {
+		if (dbQuery == null)
+			throw new IllegalStateException("Illegal use of getRowSchema method on a DbManager opened with a native SQL statement.");
+
+		if (rowSchema == null) {
+			List<String> keys = new ArrayList<String>();
+			for (DbQuery.Var var : dbQuery.getOutVars()) {
+				if (var.model.isFromDatabase()) {
+					keys.add(var.getColumnAlias());
+					if (var.model.hasDefinedValues()) {
+						keys.add("Val_" + var.getColumnAlias());
+					}
+				}
+			}
+			for (DbQuery.Var var : dbQuery.getOutVars()) {
+				if (!var.model.isFromDatabase() && var.model.getMemory() != Memory.NEVER) {
+					keys.add(var.tableId + "_" + var.name);
+				}
+			}
+			keys.add(Constants.RESULT_PK);
+			keys.add(Constants.RESULT_ROWNUM);
+			rowSchema = new RowSchema(keys.toArray(new String[keys.size()]));
+		}
+		return rowSchema;
+	}
+
+	/**
+	 * Get the values of the next row from the database results, by ordinal of {@link #getRowSchema()}. Its
+	 * {@link Constants#RESULT_ROWNUM} is not set.
+	 * 
+	 * @param <E> Entity class.
+	 * @param domainLogic Domain Logic.
+	 * @param dateFormatter formatter for Date.
+	 * @param timeFormatter formatter for Time.
+	 * @param timestampFormatter formatter for Timestamp.
+	 * @return The values of the next row.
+	 * @throws SQLException If error.
+	 */
+	public <E extends Entity> Object[] getNextValues(DomainLogic<E> domainLogic, DateFormat dateFormatter,
+			DateFormat timeFormatter, DateFormat timestampFormatter)
+			throws SQLException {
+
+		if (dbQuery == null)
+			throw new IllegalStateException("Illegal use of getNextValues method on a DbManager opened with a native SQL statement.");
+
+		RowSchema schema = getRowSchema();
+		Object[] values = schema.newValues();
+		int ordinal = 0;
 
 		// Pour chaque ligne du result set, on construit la PK
 		Key pk = dbQuery.getMainEntity().getPrimaryKey();
@@ -758,39 +941,41 @@ public class DbManager implements Closeable {
 
 		// Pour chaque variable attendue, on rcupre le nom et le type SQL.
 		Locale locale = ctx.getUser().getLocale();
-		for (DbQuery.Var var : dbQuery.getOutVars()) {
-			if (!var.model.isFromDatabase()) {
-				continue;
-			}
+		for (ResultBinder.Column column : getBinder().getColumns()) {
+			DbQuery.Var var = column.var;
+			int index = column.index;
 
 			/* Get the rsResult (object in the resultset) and the rsResultDisplay (object converted to a displayable shape, most likely a String) */
 			Object rsResult = null;
 			Object rsResultDisplay = null;
-			String sqlName = var.tableId + "_" + var.model.getSqlName();
-			int index = dbQuery.getIndex(sqlName);
 			try {
-				if (var.model.getSqlType() == SqlTypes.INTEGER) {
+				switch (column.sqlType) {
+				case INTEGER:
 					rsResult = rs.getInt(index);
 					if (rs.wasNull()) {
 						rsResult = null;
 					}
-				} else if (var.model.getSqlType() == SqlTypes.BOOLEAN) {
+					break;
+				case BOOLEAN:
 					rsResult = rs.getBoolean(index);
-				} else if (var.model.getSqlType() == SqlTypes.VARCHAR2) {
-					rsResult = rs.getString(index);
-				} else if (var.model.getSqlType() == SqlTypes.CHAR) {
+					break;
+				case VARCHAR2:
+				case CHAR:
 					rsResult = rs.getString(index);
-				} else if (var.model.getSqlType() == SqlTypes.DATE) {
+					break;
+				case DATE:
 					rsResult = rs.getDate(index);
 					if (rsResult != null && dateFormatter != null) {
 						rsResultDisplay = dateFormatter.format(rsResult);
 					}
-				} else if (var.model.getSqlType() == SqlTypes.TIME) {
+					break;
+				case TIME:
 					rsResult = rs.getTime(index);
 					if (rsResult != null && timeFormatter != null) {
 						rsResultDisplay = timeFormatter.format(rsResult);
 					}
-				} else if (var.model.getSqlType() == SqlTypes.TIMESTAMP) {
+					break;
+				case TIMESTAMP:
 					try {
 						rsResult = rs.getTimestamp(index);
 					} catch (SQLException ex) {
@@ -806,23 +991,25 @@ public class DbManager implements Closeable {
 					if (rsResult != null && timestampFormatter != null) {
 						rsResultDisplay = timestampFormatter.format(rsResult);
 					}
-				} else if (var.model.getSqlType() == SqlTypes.DECIMAL) {
+					break;
+				case DECIMAL:
 					rsResult = rs.getBigDecimal(index);
 					if (rsResult != null && var.model.getSqlAccuracy() == 0) {
 						// convert BigDecimal to Long
 						rsResult = ((BigDecimal) rsResult).longValueExact();
 					}
-				} else {
-					LOGGER.warn("Type non gr !!! : " + var.model.getSqlType());
+					break;
+				default:
+					LOGGER.warn("Type non gr !!! : " + column.sqlType);
 				}
 
 				// Check for defined values field
-				if (var.model.hasDefinedValues()) {
+				if (column.definedValues) {
 					// For dates, this will override formated value
 					rsResultDisplay = var.model.getDefinedLabel(rsResult, locale);
 				}
 			} catch (SQLException ex) {
-				throw new TechnicalException("Erreur  la rcupration du champ " + sqlName, ex);
+				throw new TechnicalException("Erreur  la rcupration du champ " + var.tableId + "_" + var.model.getSqlName(), ex);
 			}
 
 			// Compute display value
@@ -832,30 +1019,34 @@ public class DbManager implements Closeable {
 			}
 
 			// Allow custom value formating
-			rsResultDisplay = domainLogic.dbQueryFormatValue(dbQuery, dbQuery.getEntity(var.tableId), var.name, rsResult, rsResultDisplay, ctx);
+			rsResultDisplay = domainLogic.dbQueryFormatValue(dbQuery, column.entityName, var.name, rsResult, rsResultDisplay, ctx);
 
-			if (dbQuery.getMainEntityAlias().equals(var.tableId)
-					&& dbQuery.getMainEntity().getModel().getKeyModel().getFields().contains(var.name)) {
+			if (column.primaryKey) {
 				pk.setValue(var.name, rsResult);
 			}
 
-			row.put(var.getColumnAlias(), rsResultDisplay);
-			if (var.model.hasDefinedValues()) {
+			values[ordinal++] = rsResultDisplay;
+			if (column.definedValues) {
 				// Return DB value in addition of the label
-				row.put("Val_" + var.getColumnAlias(), rsResult);
+				values[ordinal++] = rsResult;
 			}
 		}
 
 		String queryName = dbQuery.getName();
-		/* manage calculated values */
+		/* manage calculated values : they are computed from a row map */
+		Row row = null;
 		for (DbQuery.Var var : dbQuery.getOutVars()) {
 			if (!var.model.isFromDatabase() && var.model.getMemory() != Memory.NEVER) {
+				if (row == null) {
+					row = schema.toRow(values);
+				}
 				Object uiVarValue = domainLogic.internalDbQueryVarValue(row, queryName, dbQuery.getEntity(var.tableId), var.name, ctx);
 				row.put(var.tableId + "_" + var.name, uiVarValue);
+				values[ordinal++] = uiVarValue;
 			}
 		}
-		row.put(Constants.RESULT_PK, pk);
-		return row;
+		values[ordinal] = pk;
+		return values;
 	}
 
 	/**
@@ -898,6 +1089,24 @@ public class DbManager implements Closeable {
 		return count;
 	}
 
+	/**
+	 * Returns the number of records in database corresponding to the query, counting at most <code>limit</code> records.
+	 * 
+	 * @param ctx
+	 * @param query
+	 * @param limit Max number of records counted.
+	 * @return the number of records, <code>limit</code> if there are more.
+	 * @throws DbException
+	 */
+	public static int count(RequestContext ctx, DbQuery query, int limit) throws DbException {
+		query.setCountLimit(limit);
+		try {
+			return count(ctx, query);
+		} finally {
+			query.setCountLimit(0);
+		}
+	}
+
 	/**
 	 * Retrieve an entity in a Result Set.
 	 * 
@@ -905,94 +1114,102 @@ public class DbManager implements Closeable {
 	 * @param tableAlias Alias of this entity in the result set.
 	 * @return The Entity filled.
 	 */
-	@SuppressWarnings("deprecation")
 	protected Entity getFromResultSet(Entity entity, String tableAlias) {
-		for (Field field : entity.getFields()) {
+		EntityModel model = entity.getModel();
+		EntityAccessors accessors = model.getAccessors();
+		ResultBinder.EntityColumns columns = getBinder().getEntityColumns(model, tableAlias);
+		for (int c = 0; c < columns.fields.length; c++) {
+			int i = columns.fields[c];
+			int index = columns.indexes[c];
 			try {
-				String methodName = "set" + field.getName().substring(0, 1).toUpperCase() + field.getName().substring(1);
-				Method method = entity.getClass().getDeclaredMethod(methodName, field.getType());
-				String className = field.getType().getName();
-
-				EntityField eField = entity.getModel().getField(field.getName());
-				String dbName = tableAlias + "_" + eField.getSqlName();
-				Integer index = (dbQuery == null ? null : dbQuery.getIndex(dbName));
-
-				if (eField.getSqlType() == SqlTypes.BLOB || eField.getSqlType() == SqlTypes.CLOB) {
-					InputStream is;
-					if (eField.getSqlType() == SqlTypes.BLOB) {
-						is = (index == null ? rs.getBinaryStream(dbName) : rs.getBinaryStream(index));
-					} else {
-						is = (index == null ? rs.getAsciiStream(dbName) : rs.getAsciiStream(index));
-					}
+				switch (columns.kinds[c]) {
+				case ResultBinder.BLOB:
+				case ResultBinder.CLOB:
+					// The content is not read : the file name stored at its beginning is read on first use
+					InputStream is = columns.kinds[c] == ResultBinder.BLOB ? rs.getBinaryStream(index) : rs.getAsciiStream(index);
 					FileContainer container = new FileContainer();
-					if (!rs.wasNull()) {
-						container.setName(new TmpFileManager(is).extractName());
-						IOUtils.closeQuietly(is);
+					if (is != null && !rs.wasNull()) {
+						container.setLob(new LobHandle(ctx, entity, accessors.getName(i)));
 					} else {
 						container.setNull(true);
 					}
-					method.invoke(entity, container);
-					continue;
-				}
-
-				Object rsResult = (index == null ? rs.getObject(dbName) : rs.getObject(index));
-
-				if (rsResult == null || rs.wasNull()) {
-					// Null values are processed here
-					method.invoke(entity, (Object) null);
-
-				} else if (String.class.getName().equals(className)) {
-					method.invoke(entity, (index == null ? rs.getString(dbName) : rs.getString(index)));
-
-				} else if (Date.class.getName().equals(className)) {
-					SqlTypes sqlType = eField.getSqlType();
-					if (SqlTypes.DATE.equals(sqlType)){
-						Date dt = (index == null ? rs.getDate(dbName) : rs.getDate(index));
-						method.invoke(entity, (dt == null ? null : new java.util.Date(dt.getTime())));
-					} else if (SqlTypes.TIMESTAMP.equals(sqlType)) {
-						Timestamp dt = (index == null ? rs.getTimestamp(dbName) : rs.getTimestamp(index));
-						method.invoke(entity, (dt == null ? null : new java.util.Date(dt.getTime())));
-					} else if (SqlTypes.TIME.equals(sqlType)) {
-						Time dt = (index == null ? rs.getTime(dbName) : rs.getTime(index));
-						method.invoke(entity, (dt == null ? null : new java.util.Date(dt.getTime())));
-					}
-
-				} else if (Integer.class.getName().equals(className)) {
-					method.invoke(entity, (index == null ? rs.getInt(dbName) : rs.getInt(index)));
-
-				} else if (Long.class.getName().equals(className)) {
-					method.invoke(entity, (index == null ? rs.getBigDecimal(dbName) : rs.getBigDecimal(index)).longValueExact());
-
-				} else if (Boolean.class.getName().equals(className)) {
-					int bVal = (index == null ? rs.getInt(dbName) : rs.getInt(index));
-					if (bVal == 1) {
-						method.invoke(entity, Boolean.TRUE);
-					} else {
-						method.invoke(entity, Boolean.FALSE);
+					IOUtils.closeQuietly(is);
+					accessors.set(entity, i, container);
+					break;
+				case ResultBinder.STRING:
+					accessors.set(entity, i, rs.getString(index));
+					break;
+				case ResultBinder.DATE:
+					Date date = rs.getDate(index);
+					accessors.set(entity, i, (date == null ? null : new java.util.Date(date.getTime())));
+					break;
+				case ResultBinder.TIMESTAMP:
+					Timestamp timestamp = rs.getTimestamp(index);
+					accessors.set(entity, i, (timestamp == null ? null : new java.util.Date(timestamp.getTime())));
+					break;
+				case ResultBinder.TIME:
+					Time time = rs.getTime(index);
+					accessors.set(entity, i, (time == null ? null : new java.util.Date(time.getTime())));
+					break;
+				case ResultBinder.INTEGER:
+					int intValue = rs.getInt(index);
+					accessors.set(entity, i, (rs.wasNull() ? null : Integer.valueOf(intValue)));
+					break;
+				case ResultBinder.LONG:
+					BigDecimal decimal = rs.getBigDecimal(index);
+					accessors.set(entity, i, (decimal == null ? null : Long.valueOf(decimal.longValueExact())));
+					break;
+				case ResultBinder.BOOLEAN:
+					int bVal = rs.getInt(index);
+					accessors.set(entity, i, (rs.wasNull() ? null : Boolean.valueOf(bVal == 1)));
+					break;
+				case ResultBinder.NULL_ONLY:
+					if (rs.getObject(index) == null || rs.wasNull()) {
+						// Null values are processed here
+						accessors.set(entity, i, null);
 					}
-				} else {
-					method.invoke(entity, rsResult);
+					break;
+				default:
+					Object rsResult = rs.getObject(index);
+					accessors.set(entity, i, (rs.wasNull() ? null : rsResult));
 				}
 			} catch (Exception e) {
-				LOGGER.error("Building entity from resultset: error on variable " + field.getName(), e);
+				LOGGER.error("Building entity from resultset: error on variable " + accessors.getName(i), e);
 			}
 		}
 		return entity;
 	}
 
+	/**
+	 * Returns the columns of the results, resolved on first use.
+	 * 
+	 * @return the columns of the results
+	 */
+	private ResultBinder getBinder() {
+		if (binder == null) {
+			binder = new ResultBinder(dbQuery, rs);
+		}
+		return binder;
+	}
+
 	/**
 	 * Put an entity in a Result Set.
 	 * @param entity The entity.
 	 * @param rs The Result Set.
 	 * @param updateNullValues Indicates if null values must be updated or not.
 	 */
-	@SuppressWarnings("deprecation")
 	protected void putToResultSet(Entity entity, ResultSet rs, boolean updateNullValues) {
-		for (Field field : entity.getFields()) {
+		EntityModel model = entity.getModel();
+		EntityAccessors accessors = model.getAccessors();
+		for (int i = 0; i < accessors.size(); i++) {
+			String fieldName = accessors.getName(i);
+			EntityField eField = model.getField(fieldName);
+			if (!eField.isFromDatabase()) {
+				continue;
+			}
 			try {
-				Object result = getValue(entity, field);
+				Object result = accessors.get(entity, i);
 
-				EntityField eField = entity.getModel().getField(field.getName());
 				String columnName = eField.getSqlName();
 				SqlTypes type = eField.getSqlType();
 
@@ -1001,7 +1218,7 @@ public class DbManager implements Closeable {
 					continue;
 				}
 
-				boolean isUnloadedFile = isUnloadedFile(field, type, result);
+				boolean isUnloadedFile = isUnloadedFile(type, result);
 				if (result == null && updateNullValues && !isUnloadedFile) {
 					rs.updateNull(columnName);
 					continue;
@@ -1057,11 +1274,11 @@ public class DbManager implements Closeable {
 				}
 
 			} catch (SQLException e) {
-				String msg = "Update failed for variable " + field.getName() + " in entity " + entity.name();
+				String msg = "Update failed for variable " + fieldName + " in entity " + entity.name();
 				LOGGER.error(msg, e);
 				throw new DbException(msg, e);
 			} catch (IllegalArgumentException e) {
-				String msg = "Update failed for variable " + field.getName() + " in entity " + entity.name();
+				String msg = "Update failed for variable " + fieldName + " in entity " + entity.name();
 				LOGGER.error(msg, e);
 				throw new TechnicalException(msg, e);
 			}
@@ -1071,8 +1288,6 @@ public class DbManager implements Closeable {
 	/**
 	 * Indicates whether the given field is a file (BLOB or CLOB) which was not loaded.
 	 * 
-	 * @param field
-	 *            Field to check.
 	 * @param type
 	 *            Field's Sql Type
 	 * @param result
@@ -1081,7 +1296,7 @@ public class DbManager implements Closeable {
 	 *         which is not {@code null}; {@code false} otherwise.
 	 * @see FileContainer#isNull()
 	 */
-	private boolean isUnloadedFile(Field field, SqlTypes type, Object result) {
+	private boolean isUnloadedFile(SqlTypes type, Object result) {
 		boolean isLob = (type == SqlTypes.BLOB || type == SqlTypes.CLOB);
 		if (isLob && result != null) {
 			FileContainer container = (FileContainer) result;
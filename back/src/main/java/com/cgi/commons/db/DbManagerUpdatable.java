@@ -14,7 +14,6 @@ import org.apache.log4j.Logger;
 import com.cgi.commons.ref.entity.Entity;
 import com.cgi.commons.ref.context.RequestContext;
 import com.cgi.commons.ref.entity.EntityModel;
-import com.cgi.commons.utils.MessageUtils;
 
 /**
  * Evolve the DbManager for Updates.
@@ -121,49 +120,58 @@ public class DbManagerUpdatable extends DbManager {
 	}
 
 	/**
-	 * Gestion des id : si seulement un id est du type Compteur, alors set automatique avec la nextVal.
+	 * Gestion des id : si seulement un id est du type Compteur, alors set automatique avec la nextVal.<br/>
+	 * Values come from the {@link IdAllocator} of the entity, see {@link IdAllocators}.
 	 * 
 	 * @param entity Current entity
 	 * @param ctx Current request context
 	 * @return the given entity with autoincrement fields updated
 	 */
 	public static Entity fillAutoIncrement(Entity entity, RequestContext ctx) {
-		for (String fieldName : entity.getModel().getFields()) {
-			if (entity.getModel().isAutoIncrementField(fieldName) && entity.invokeGetter(fieldName) == null) {
+		EntityModel entityModel = entity.getModel();
+		for (String fieldName : entityModel.getFields()) {
+			if (entityModel.isAutoIncrementField(fieldName) && entity.invokeGetter(fieldName) == null) {
 				// Auto Increment field is not filled
-				EntityModel entityModel = entity.getModel();
-				// Get table name
-				String tableName = entity.getModel().dbName();
-				// Look for schema name
-				String schemaName = null;
-				String schemaId = entityModel.getDbSchemaName();
-				if (!schemaId.isEmpty()) {
-					schemaName = MessageUtils.getServerProperty("schema." + schemaId);
-				}
-				if (schemaName == null || schemaName.isEmpty()) {
-					// try default schema if any
-					schemaName = MessageUtils.getServerProperty("schema.default");
-				}
-				if (schemaName != null && !schemaName.isEmpty()) {
-					tableName = schemaName + "." + tableName;
-				}
-
-				// Auto Increment field is not filled
-				String selectNextValSql = "SELECT MAX(" + entityModel.getField(fieldName).getSqlName() + ") + 1 FROM " + tableName;
-				DbManager dbManager = new DbManager(ctx, selectNextValSql);
-				long nextVal = 1;
-				if (dbManager.next()) {
-					if (dbManager.getBigDecimal(1) != null) {
-						nextVal = dbManager.getBigDecimal(1).longValue();
-					}
-					dbManager.close();
-				}
-				entity.invokeSetter(fieldName, nextVal);
+				entity.invokeSetter(fieldName, IdAllocators.get(entityModel).allocate(entityModel, fieldName, 1, ctx)[0]);
 			}
 		}
 		return entity;
 	}
 
+	/**
+	 * Same as {@link #fillAutoIncrement(Entity, RequestContext)} for a list of entities of the same type : the values of all entities are
+	 * allocated at once.
+	 * 
+	 * @param <E> Entity class
+	 * @param entities Entities of the same type
+	 * @param ctx Current request context
+	 * @return the given entities with autoincrement fields updated
+	 */
+	public static <E extends Entity> List<E> fillAutoIncrement(List<E> entities, RequestContext ctx) {
+		if (entities.isEmpty()) {
+			return entities;
+		}
+		EntityModel entityModel = entities.get(0).getModel();
+		for (String fieldName : entityModel.getFields()) {
+			if (!entityModel.isAutoIncrementField(fieldName)) {
+				continue;
+			}
+			List<E> toFill = new ArrayList<E>();
+			for (E entity : entities) {
+				if (entity.invokeGetter(fieldName) == null) {
+					toFill.add(entity);
+				}
+			}
+			if (toFill.isEmpty()) {
+				continue;
+			}
+			long[] ids = IdAllocators.get(entityModel).allocate(entityModel, fieldName, toFill.size(), ctx);
+			for (int i = 0; i < ids.length; i++) {
+				toFill.get(i).invokeSetter(fieldName, ids[i]);
+			}
+		}
+		return entities;
+	}
 
 	/**
 	 * Get the underlying result set
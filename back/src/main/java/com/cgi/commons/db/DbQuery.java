@@ -456,6 +456,8 @@ public class DbQuery implements Cloneable {
 	public static final String ASC = "ASC";
 	/** Constant for descending (DESC). */
 	public static final String DESC = "DESC";
+	/** Alias of the total row count column selected by a window count. */
+	public static final String WINDOW_COUNT = "WINDOW_COUNT_";
 
 	/** Indicates if search is done with (false) or without (true) case sensitive. */
 	protected boolean caseInsensitiveSearch = true;
@@ -500,6 +502,16 @@ public class DbQuery implements Cloneable {
 	protected int minRownum = 0;
 	/** ResultSet Fetch size */
 	protected int fetchSize = 0;
+	/** Indicates if the rows are streamed : no other statement runs on the connection while they are read. */
+	protected boolean streamed = false;
+	/** Keyset of the page, to build the continuation token. */
+	protected Keyset keyset = null;
+	/** Indicates if the total row count is selected with the rows (<code>COUNT(*) OVER()</code>). */
+	protected boolean windowCount = false;
+	/** Indicates if one more row than the page is read, to know if there is a next page. */
+	protected boolean lookAhead = false;
+	/** Max number of rows counted by a count query, 0 for no limit. */
+	protected int countLimit = 0;
 
 	/** Indicates if the query is a count query. */
 	protected boolean count = false;
@@ -591,7 +603,7 @@ public class DbQuery implements Cloneable {
 	}
 
 	/** Sorting. */
-	private static class SortVar implements Cloneable {
+	static class SortVar implements Cloneable {
 		/** Var of the sort. */
 		Var inVar = null;
 		/** Direction : "ASC" or "DESC". */
@@ -2318,6 +2330,218 @@ public class DbQuery implements Cloneable {
 		return null;
 	}
 
+	/**
+	 * Writes the structure of the query into a cache key (tables, joins, columns, condition skeleton, sort, paging mode) and collects its
+	 * bind values in the order {@link SqlBuilder#toSql()} adds them. Values which change the generated SQL (null, <code>*NOW</code>,
+	 * size of a list, constants) are written in the key.
+	 * 
+	 * @param key
+	 *            The key being built.
+	 * @param binds
+	 *            The bind values.
+	 * @return <code>false</code> if the query references an unknown column : it must then be built without cache.
+	 */
+	boolean appendShape(StringBuilder key, List<Object> binds) {
+		if (count && countLimit > 0) {
+			// Built from a paged clone of the query
+			return false;
+		}
+		key.append(count ? 'C' : maxRownum > 0 ? 'P' : 'A').append(distinct ? 'D' : '-').append(forUpdate ? 'U' : '-')
+				.append(caseInsensitiveSearch ? 'I' : '-').append(windowCount && !count ? 'W' : '-');
+		for (Table table : tables) {
+			key.append("|T").append(table.extern).append(' ').append(table.alias).append(table.bExtJoin ? '+' : ' ');
+			for (JoinedLink link : table.joinedLinks) {
+				key.append("|L").append(link.srcAlias).append(link.srcKey.getFields()).append(link.dstKey.getFields());
+				// User join conditions are written once per link, as by the builder
+				for (Cond cond : table.userJoinConds) {
+					if (!appendCondShape(cond, key, binds)) {
+						return false;
+					}
+				}
+			}
+		}
+		for (Var var : inVars) {
+			key.append("|V").append(var.tableId).append('.').append(var.name).append(' ').append(var.model.getSqlName()).append(' ')
+					.append(var.model.getSqlType()).append(' ').append(var.expr);
+		}
+		for (Var var : outVars) {
+			key.append("|O").append(var.tableId).append('.').append(var.name).append(' ').append(var.model.getSqlName()).append(' ')
+					.append(var.alias).append(' ').append(var.expr).append(var.model.isFromDatabase() ? 'D' : '-')
+					.append(var.isGrouping ? 'G' : '-');
+		}
+		for (Const c : outConsts) {
+			key.append("|K").append(c.name).append('=').append(c.value);
+		}
+		for (Cond cond : whereConds) {
+			key.append("|W");
+			if (!appendCondShape(cond, key, binds)) {
+				return false;
+			}
+		}
+		for (Cond cond : havingConds) {
+			key.append("|H");
+			if (!appendHavingShape(cond, key, binds)) {
+				return false;
+			}
+		}
+		for (Cond cond : groupByConds) {
+			key.append("|G").append(cond.tableAliases).append(cond.colAliases);
+		}
+		for (SortVar sortVar : sortVars) {
+			key.append("|S").append(sortVar.inVar.tableId).append('.').append(sortVar.inVar.alias).append(' ')
+					.append(sortVar.inVar.model.getSqlName()).append(' ').append(sortVar.direction);
+		}
+		if (!count && maxRownum > 0) {
+			SqlBuilder.addPagingValues(this, binds);
+		}
+		return true;
+	}
+
+	/**
+	 * Writes a where or join condition into a cache key.
+	 * 
+	 * @param cond
+	 *            The condition.
+	 * @param key
+	 *            The key being built.
+	 * @param binds
+	 *            The bind values.
+	 * @return <code>false</code> if the condition cannot be resolved.
+	 */
+	private boolean appendCondShape(Cond cond, StringBuilder key, List<Object> binds) {
+		key.append(cond.type).append(' ').append(cond.op).append(cond.tableAliases).append(cond.colAliases);
+		Object value1 = cond.valuesList.size() > 0 ? cond.valuesList.get(0) : null;
+		Object value2 = cond.valuesList.size() > 1 ? cond.valuesList.get(1) : null;
+		switch (cond.type) {
+		case IS_EXIST_COND:
+		case IS_SUB_QUERY:
+			if (cond.subQuery == null) {
+				return false;
+			}
+			key.append('(');
+			if (!cond.subQuery.appendShape(key, binds)) {
+				return false;
+			}
+			key.append(')');
+			return true;
+		case IS_VALUE_LIST:
+			if (cond.valuesList == null || cond.valuesList.isEmpty()) {
+				key.append('0');
+				return true;
+			}
+			Var listVar = getInVar(cond.colAliases.get(0), cond.tableAliases.get(0));
+			if (listVar == null) {
+				return false;
+			}
+			key.append(cond.valuesList.size());
+			for (Object value : cond.valuesList) {
+				binds.add(SqlBuilder.parse(listVar, value));
+			}
+			return true;
+		case IS_SEPARATOR:
+			key.append(value1);
+			return true;
+		case IS_CONCAT_COND:
+			String value = value1.toString();
+			if (caseInsensitiveSearch) {
+				value = value.toUpperCase();
+			}
+			if (!value.startsWith("%")) {
+				value = "%" + value;
+			}
+			if (!value.endsWith("%")) {
+				value = value.concat("%");
+			}
+			binds.add(value);
+			return true;
+		case IS_BETWEEN_2_COLS:
+			return true;
+		default:
+			Var inVar = getInVar(cond.colAliases.get(0), cond.tableAliases.get(0));
+			if (inVar == null) {
+				return false;
+			}
+			SqlOp op = cond.op;
+			if (value1 == null) {
+				if (op == SqlOp.OP_EQUAL || op == SqlOp.OP_LIKE) {
+					op = SqlOp.OP_ISNULL;
+				} else if (op == SqlOp.OP_N_EQUAL || op == SqlOp.OP_N_LIKE) {
+					op = SqlOp.OP_N_ISNULL;
+				}
+			}
+			key.append('>').append(op);
+			if (op.nbOps > 0) {
+				appendValueShape(inVar, value1, key, binds);
+			}
+			if (op.nbOps > 1) {
+				appendValueShape(inVar, value2, key, binds);
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * Writes a having condition into a cache key.
+	 * 
+	 * @param cond
+	 *            The condition.
+	 * @param key
+	 *            The key being built.
+	 * @param binds
+	 *            The bind values.
+	 * @return <code>false</code> if the condition cannot be resolved.
+	 */
+	private boolean appendHavingShape(Cond cond, StringBuilder key, List<Object> binds) {
+		key.append(cond.type).append(' ').append(cond.op).append(cond.tableAliases).append(cond.colAliases);
+		if (cond.type == CondTypes.IS_SEPARATOR) {
+			key.append(cond.valuesList.get(0));
+			return true;
+		}
+		SqlOp op = cond.op;
+		Object value1 = cond.valuesList.get(0);
+		if (cond.colAliases.get(0) == null) {
+			return false;
+		}
+		if (value1 == null || op == SqlOp.OP_ISNULL || op == SqlOp.OP_N_ISNULL) {
+			if (op == SqlOp.OP_EQUAL || op == SqlOp.OP_LIKE || op == SqlOp.OP_ISNULL || op == SqlOp.OP_N_EQUAL || op == SqlOp.OP_N_LIKE
+					|| op == SqlOp.OP_N_ISNULL) {
+				key.append('N');
+				return true;
+			}
+		}
+		Var outVar = findOutVarByAlias(cond.colAliases.get(0), cond.tableAliases.get(0));
+		if (outVar == null) {
+			return false;
+		}
+		appendValueShape(outVar, value1, key, binds);
+		if (op.val.equals(SqlOp.OP_BETWEEN.val)) {
+			appendValueShape(outVar, cond.valuesList.get(1), key, binds);
+		}
+		return true;
+	}
+
+	/**
+	 * Writes a compared value into a cache key : the SQL function replacing it, or a bind value.
+	 * 
+	 * @param var
+	 *            The compared variable.
+	 * @param value
+	 *            The value.
+	 * @param key
+	 *            The key being built.
+	 * @param binds
+	 *            The bind values.
+	 */
+	private static void appendValueShape(Var var, Object value, StringBuilder key, List<Object> binds) {
+		String function = SqlBuilder.parseDefaultValue(var, value);
+		if (function != null) {
+			key.append(' ').append(function);
+		} else {
+			key.append(" ?");
+			binds.add(SqlBuilder.parse(var, value));
+		}
+	}
+
 	@Override
 	public DbQuery clone() {
 		try {
@@ -2975,6 +3199,92 @@ public class DbQuery implements Cloneable {
 		this.fetchSize = fetchSize;
 	}
 
+	/**
+	 * @return true if the rows are streamed from the database
+	 */
+	public boolean isStreamed() {
+		return streamed;
+	}
+
+	/**
+	 * @param streamed
+	 *            true to stream the rows from the database, by the fetch size or one at a time on MySQL. No other statement may run on
+	 *            the connection until the rows are read or the results closed.
+	 */
+	public void setStreamed(boolean streamed) {
+		this.streamed = streamed;
+	}
+
+	/**
+	 * @return the keyset of the page, null if the query is not paged by keyset
+	 */
+	public Keyset getKeyset() {
+		return keyset;
+	}
+
+	/**
+	 * @param keyset
+	 *            the keyset of the page
+	 */
+	public void setKeyset(Keyset keyset) {
+		this.keyset = keyset;
+	}
+
+	/**
+	 * Indicates if the total row count can be selected with the rows : the database has window functions and the rows are not made
+	 * distinct after the count.
+	 * 
+	 * @return true if {@link #setWindowCount(boolean)} can be used
+	 */
+	public boolean isWindowCountSupported() {
+		return !distinct && !forUpdate && !outVars.isEmpty() && DbConnection.getDbType() != Type.MySQL;
+	}
+
+	/**
+	 * @return true if the total row count is selected with the rows
+	 */
+	public boolean isWindowCount() {
+		return windowCount;
+	}
+
+	/**
+	 * @param windowCount
+	 *            true to select the total row count with the rows, in column {@link #WINDOW_COUNT}
+	 */
+	public void setWindowCount(boolean windowCount) {
+		this.windowCount = windowCount;
+	}
+
+	/**
+	 * @return true if one more row than the page is read
+	 */
+	public boolean isLookAhead() {
+		return lookAhead;
+	}
+
+	/**
+	 * @param lookAhead
+	 *            true to read one more row than the page, to know if there is a next page
+	 */
+	public void setLookAhead(boolean lookAhead) {
+		this.lookAhead = lookAhead;
+	}
+
+	/**
+	 * @return the max number of rows counted by a count query, 0 for no limit
+	 */
+	public int getCountLimit() {
+		return countLimit;
+	}
+
+	/**
+	 * @param countLimit
+	 *            the max number of rows counted by a count query, 0 for no limit
+	 */
+	public void setCountLimit(int countLimit) {
+		this.countLimit = countLimit;
+	}
+
 	/**
 	 * Check if any of the out vars is a grouping var
 	 * 
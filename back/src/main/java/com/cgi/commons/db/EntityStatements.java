@@ -0,0 +1,528 @@
+package com.cgi.commons.db;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.log4j.Logger;
+
+import com.cgi.commons.ref.context.RequestContext;
+import com.cgi.commons.ref.entity.Entity;
+import com.cgi.commons.ref.entity.EntityAccessors;
+import com.cgi.commons.ref.entity.EntityField;
+import com.cgi.commons.ref.entity.EntityField.SqlTypes;
+import com.cgi.commons.ref.entity.EntityModel;
+import com.cgi.commons.ref.entity.FileContainer;
+import com.cgi.commons.ref.entity.Key;
+import com.cgi.commons.utils.DbException;
+
+/**
+ * SQL statements of an entity, built once from its model and cached : plain parameterized INSERT, UPDATE and DELETE by primary key,
+ * executed with a PreparedStatement in a single round trip, without SELECT ... FOR UPDATE.<br/>
+ * Values are bound the same way {@link DbManager#putToResultSet(Entity, java.sql.ResultSet, boolean)} updates an updatable ResultSet.
+ */
+public final class EntityStatements {
+
+	/** Logger. */
+	private static final Logger LOGGER = Logger.getLogger(EntityStatements.class);
+
+	/** Number of rows sent to the database in a single executeBatch call. */
+	public static final int BATCH_SIZE = 500;
+
+	/** Cache by entity name. */
+	private static final Map<String, EntityStatements> CACHE = new ConcurrentHashMap<String, EntityStatements>();
+
+	/** Entity model. */
+	private final EntityModel model;
+	/** Persisted fields, in statement parameter order. */
+	private final List<String> fields;
+	/** Ordinals of the persisted fields in the model accessors. */
+	private final int[] ordinals;
+	/** Primary key fields, in WHERE clause order. */
+	private final List<String> keyFields;
+	/** INSERT statement. */
+	private final String insertSql;
+	/** WHERE clause on the primary key. */
+	private final String whereKey;
+	/** DELETE statement. */
+	private final String deleteSql;
+	/** UPDATE statements, by mask of the LOB fields left unchanged (0 : all fields are set). */
+	private final Map<Long, String> updateSql = new ConcurrentHashMap<Long, String>();
+
+	/**
+	 * Constructor.
+	 *
+	 * @param model Entity model.
+	 */
+	private EntityStatements(EntityModel model) {
+		this.model = model;
+		List<String> columns = new ArrayList<String>();
+		StringBuilder names = new StringBuilder();
+		StringBuilder values = new StringBuilder();
+		for (String fieldName : model.getFields()) {
+			EntityField field = model.getField(fieldName);
+			if (field.isTransient()) {
+				continue;
+			}
+			if (!columns.isEmpty()) {
+				names.append(", ");
+				values.append(", ");
+			}
+			columns.add(fieldName);
+			names.append(field.getSqlName());
+			values.append("?");
+		}
+		this.fields = Collections.unmodifiableList(columns);
+		this.ordinals = new int[columns.size()];
+		for (int i = 0; i < ordinals.length; i++) {
+			ordinals[i] = model.getAccessors().indexOf(columns.get(i));
+		}
+		this.insertSql = "INSERT INTO " + SqlBuilder.getTableName(model) + " (" + names + ") VALUES (" + values + ")";
+		this.keyFields = Collections.unmodifiableList(new ArrayList<String>(model.getKeyModel().getFields()));
+		StringBuilder where = new StringBuilder(" WHERE ");
+		for (int i = 0; i < keyFields.size(); i++) {
+			if (i > 0) {
+				where.append(" AND ");
+			}
+			where.append(model.getField(keyFields.get(i)).getSqlName()).append(" = ?");
+		}
+		this.whereKey = where.toString();
+		this.deleteSql = "DELETE FROM " + SqlBuilder.getTableName(model) + whereKey;
+	}
+
+	/**
+	 * Returns the statements of an entity.
+	 *
+	 * @param model Entity model.
+	 * @return Cached statements.
+	 */
+	public static EntityStatements get(EntityModel model) {
+		EntityStatements statements = CACHE.get(model.name());
+		if (statements == null) {
+			statements = new EntityStatements(model);
+			CACHE.put(model.name(), statements);
+		}
+		return statements;
+	}
+
+	/**
+	 * @return the INSERT statement
+	 */
+	public String getInsertSql() {
+		return insertSql;
+	}
+
+	/**
+	 * @return the DELETE statement
+	 */
+	public String getDeleteSql() {
+		return deleteSql;
+	}
+
+	/**
+	 * Returns the UPDATE statement.
+	 *
+	 * @param skippedLobs Mask of the LOB fields left unchanged, bit i for the field i of {@link #getFields()}.
+	 * @return the UPDATE statement
+	 */
+	public String getUpdateSql(long skippedLobs) {
+		Long mask = Long.valueOf(skippedLobs);
+		String sql = updateSql.get(mask);
+		if (sql == null) {
+			StringBuilder set = new StringBuilder();
+			for (int i = 0; i < fields.size(); i++) {
+				if ((skippedLobs & (1L << i)) != 0) {
+					continue;
+				}
+				if (set.length() > 0) {
+					set.append(", ");
+				}
+				set.append(model.getField(fields.get(i)).getSqlName()).append(" = ?");
+			}
+			sql = "UPDATE " + SqlBuilder.getTableName(model) + " SET " + set + whereKey;
+			updateSql.put(mask, sql);
+		}
+		return sql;
+	}
+
+	/**
+	 * Indicates whether the statements can be used for a row : the key must be full and the entity small enough for the LOB mask.
+	 *
+	 * @param key Key of the row.
+	 * @return <code>false</code> if the updatable ResultSet path must be used.
+	 */
+	public boolean supports(Key key) {
+		return key != null && key.isFull() && fields.size() < Long.SIZE;
+	}
+
+	/**
+	 * @return the persisted fields, in statement parameter order
+	 */
+	public List<String> getFields() {
+		return fields;
+	}
+
+	/**
+	 * Inserts entities with JDBC batch statements, by chunks of {@link #BATCH_SIZE} rows, on the connection of the context. Autoincrement
+	 * fields must already be filled. Commit is left to the caller.
+	 *
+	 * @param entities Entities of this model.
+	 * @param ctx Current request context.
+	 * @return Number of rows inserted.
+	 * @throws DbException If error.
+	 */
+	public int insertBatch(List<? extends Entity> entities, RequestContext ctx) throws DbException {
+		if (entities.isEmpty()) {
+			return 0;
+		}
+		int inserted = 0;
+		DbConnection connection = ctx.getDbConnection();
+		PreparedStatement ps = null;
+		try {
+			ps = connection.prepareStatement(insertSql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+			int pending = 0;
+			for (Entity entity : entities) {
+				bind(ps, entity);
+				ps.addBatch();
+				if (++pending == BATCH_SIZE) {
+					inserted += execute(ps, ctx);
+					pending = 0;
+				}
+			}
+			if (pending > 0) {
+				inserted += execute(ps, ctx);
+			}
+		} catch (SQLException e) {
+			LOGGER.error("Error inserting batch [" + insertSql + "]", e);
+			throw new DbException(e.getMessage(), e);
+		} finally {
+			release(connection, ps);
+		}
+		return inserted;
+	}
+
+	/**
+	 * Inserts an entity. Autoincrement fields must already be filled.
+	 *
+	 * @param entity Entity of this model.
+	 * @param ctx Current request context.
+	 * @throws SQLException If error.
+	 */
+	public void insert(Entity entity, RequestContext ctx) throws SQLException {
+		DbConnection connection = ctx.getDbConnection();
+		PreparedStatement ps = null;
+		long start = System.nanoTime();
+		long prepared = start;
+		int rows = -1;
+		try {
+			ps = connection.prepareStatement(insertSql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+			bind(ps, entity);
+			prepared = System.nanoTime();
+			rows = ps.executeUpdate();
+			ctx.incQueryNbRequests();
+		} catch (SQLException e) {
+			LOGGER.error("Error inserting row [" + insertSql + "]", e);
+			throw e;
+		} finally {
+			record(insertSql, ctx, start, prepared, rows);
+			release(connection, ps);
+		}
+	}
+
+	/**
+	 * Updates the row of an entity. A LOB whose content exists but was not loaded is left unchanged, as in the updatable ResultSet path.
+	 *
+	 * @param entity Entity of this model.
+	 * @param key Key of the row to update (the initial key if the primary key was changed).
+	 * @param ctx Current request context.
+	 * @return Number of rows updated.
+	 * @throws SQLException If error.
+	 */
+	public int update(Entity entity, Key key, RequestContext ctx) throws SQLException {
+		Object[] values = new Object[fields.size()];
+		long skippedLobs = 0;
+		EntityAccessors accessors = model.getAccessors();
+		for (int i = 0; i < fields.size(); i++) {
+			values[i] = accessors.get(entity, ordinals[i]);
+			if (values[i] instanceof FileContainer) {
+				FileContainer fc = (FileContainer) values[i];
+				if (!fc.isNull() && fc.getUuid() == null) {
+					skippedLobs |= 1L << i;
+				}
+			}
+		}
+		String sql = getUpdateSql(skippedLobs);
+		DbConnection connection = ctx.getDbConnection();
+		PreparedStatement ps = null;
+		long start = System.nanoTime();
+		long prepared = start;
+		int rows = -1;
+		try {
+			ps = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+			int index = 1;
+			for (int i = 0; i < fields.size(); i++) {
+				if ((skippedLobs & (1L << i)) == 0) {
+					setParameter(ps, index++, model.getField(fields.get(i)), values[i]);
+				}
+			}
+			bindKey(ps, index, key);
+			prepared = System.nanoTime();
+			rows = ps.executeUpdate();
+			ctx.incQueryNbRequests();
+			for (int i = 0; i < fields.size(); i++) {
+				if (values[i] instanceof FileContainer && (skippedLobs & (1L << i)) == 0) {
+					invalidateFile(key, fields.get(i), connection);
+				}
+			}
+			return rows;
+		} catch (SQLException e) {
+			LOGGER.error("Error updating row [" + sql + "]", e);
+			throw e;
+		} finally {
+			record(sql, ctx, start, prepared, rows);
+			release(connection, ps);
+		}
+	}
+
+	/**
+	 * Deletes a row.
+	 *
+	 * @param key Key of the row.
+	 * @param ctx Current request context.
+	 * @return Number of rows deleted.
+	 * @throws SQLException If error.
+	 */
+	public int delete(Key key, RequestContext ctx) throws SQLException {
+		DbConnection connection = ctx.getDbConnection();
+		PreparedStatement ps = null;
+		long start = System.nanoTime();
+		long prepared = start;
+		int rows = -1;
+		try {
+			ps = connection.prepareStatement(deleteSql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+			bindKey(ps, 1, key);
+			prepared = System.nanoTime();
+			rows = ps.executeUpdate();
+			ctx.incQueryNbRequests();
+			for (String fieldName : fields) {
+				SqlTypes type = model.getField(fieldName).getSqlType();
+				if (type == SqlTypes.BLOB || type == SqlTypes.CLOB) {
+					invalidateFile(key, fieldName, connection);
+				}
+			}
+			return rows;
+		} catch (SQLException e) {
+			LOGGER.error("Error deleting row [" + deleteSql + "]", e);
+			throw e;
+		} finally {
+			record(deleteSql, ctx, start, prepared, rows);
+			release(connection, ps);
+		}
+	}
+
+	/**
+	 * Binds the key values of the WHERE clause.
+	 *
+	 * @param ps Statement.
+	 * @param index Index of the first key parameter.
+	 * @param key Key of the row.
+	 * @throws SQLException If error.
+	 */
+	private void bindKey(PreparedStatement ps, int index, Key key) throws SQLException {
+		for (int i = 0; i < keyFields.size(); i++) {
+			String fieldName = keyFields.get(i);
+			setParameter(ps, index + i, model.getField(fieldName), key.getValue(fieldName));
+		}
+	}
+
+	/**
+	 * Executes the pending batch.
+	 *
+	 * @param ps Statement.
+	 * @param ctx Current request context.
+	 * @return Number of rows inserted.
+	 * @throws SQLException If error.
+	 */
+	private int execute(PreparedStatement ps, RequestContext ctx) throws SQLException {
+		long start = System.nanoTime();
+		int rows = -1;
+		try {
+			int[] counts = ps.executeBatch();
+			ctx.incQueryNbRequests();
+			rows = 0;
+			for (int count : counts) {
+				// SUCCESS_NO_INFO : the row was inserted but the driver does not tell
+				rows += count == PreparedStatement.SUCCESS_NO_INFO ? 1 : count;
+			}
+			return rows;
+		} finally {
+			record(insertSql, ctx, start, start, rows);
+		}
+	}
+
+	/**
+	 * Records an executed statement in {@link SqlStats}.
+	 *
+	 * @param sql Executed SQL.
+	 * @param ctx Current request context.
+	 * @param start Time the statement was prepared, in ns.
+	 * @param prepared Time the statement was executed, in ns.
+	 * @param rows Number of rows updated, -1 if the statement failed.
+	 */
+	private static void record(String sql, RequestContext ctx, long start, long prepared, int rows) {
+		SqlStats.getInstance().record(sql, null, ctx, prepared - start, System.nanoTime() - prepared, 0, Math.max(0, rows), rows < 0);
+	}
+
+	/**
+	 * Removes a file variable of a row from {@link BlobCache}, now and when the transaction is committed.
+	 *
+	 * @param key Key of the row.
+	 * @param fieldName File variable.
+	 * @param connection Connection of the transaction.
+	 */
+	private void invalidateFile(Key key, String fieldName, DbConnection connection) {
+		String cacheKey = BlobCache.key(model.name(), key.getEncodedValue(), fieldName);
+		BlobCache.getInstance().invalidate(cacheKey);
+		connection.fileSaved(cacheKey);
+	}
+
+	/**
+	 * Gives a statement back to its connection for reuse.
+	 *
+	 * @param connection Connection which prepared the statement.
+	 * @param ps Statement, may be <code>null</code>.
+	 */
+	private void release(DbConnection connection, PreparedStatement ps) {
+		if (ps == null) {
+			return;
+		}
+		try {
+			// A failed batch may still hold rows
+			ps.clearBatch();
+			connection.releaseStatement(ps);
+		} catch (SQLException e) {
+			LOGGER.warn("Error releasing statement", e);
+		}
+	}
+
+	/**
+	 * Binds the persisted fields of the entity.
+	 *
+	 * @param ps Statement.
+	 * @param entity Entity.
+	 * @throws SQLException If error.
+	 */
+	private void bind(PreparedStatement ps, Entity entity) throws SQLException {
+		EntityAccessors accessors = model.getAccessors();
+		for (int i = 0; i < fields.size(); i++) {
+			setParameter(ps, i + 1, model.getField(fields.get(i)), accessors.get(entity, ordinals[i]));
+		}
+	}
+
+	/**
+	 * Binds a value according to the SQL type of the field.
+	 *
+	 * @param ps Statement.
+	 * @param index Parameter index.
+	 * @param field Field metadata.
+	 * @param value Value.
+	 * @throws SQLException If error.
+	 */
+	static void setParameter(PreparedStatement ps, int index, EntityField field, Object value) throws SQLException {
+		SqlTypes type = field.getSqlType();
+		if (value == null) {
+			ps.setNull(index, getJdbcType(type));
+			return;
+		}
+		switch (type) {
+		case VARCHAR:
+		case VARCHAR2:
+			ps.setString(index, value.toString());
+			break;
+		case INTEGER:
+			if (value instanceof Integer) {
+				ps.setInt(index, (Integer) value);
+			} else {
+				ps.setLong(index, ((Number) value).longValue());
+			}
+			break;
+		case DECIMAL:
+			if (field.getSqlAccuracy() > 0) {
+				ps.setBigDecimal(index, (BigDecimal) value);
+			} else {
+				ps.setLong(index, ((Number) value).longValue());
+			}
+			break;
+		case BOOLEAN:
+			Boolean b = value instanceof String ? Boolean.valueOf((String) value) : (Boolean) value;
+			ps.setInt(index, b.booleanValue() ? 1 : 0);
+			break;
+		case DATE:
+			ps.setDate(index, new java.sql.Date(((Date) value).getTime()));
+			break;
+		case TIME:
+			ps.setTime(index, new java.sql.Time(((Date) value).getTime()));
+			break;
+		case TIMESTAMP:
+			ps.setTimestamp(index, new java.sql.Timestamp(((Date) value).getTime()));
+			break;
+		case BLOB:
+		case CLOB:
+			FileContainer fc = (FileContainer) value;
+			if (!fc.isNull() && fc.getUuid() != null) {
+				// A temporary file is available, the column is set with an empty bytearray
+				// It will be updated with the file content later (see FileDbManager).
+				ps.setBytes(index, new byte[0]);
+			} else if (!fc.isNull() && fc.getContent() != null) {
+				ps.setBytes(index, fc.getContent());
+			} else {
+				ps.setNull(index, getJdbcType(type));
+			}
+			break;
+		default:
+			ps.setObject(index, value);
+			break;
+		}
+	}
+
+	/**
+	 * JDBC type used to bind null values.
+	 *
+	 * @param type Field SQL type.
+	 * @return java.sql.Types constant.
+	 */
+	static int getJdbcType(SqlTypes type) {
+		switch (type) {
+		case VARCHAR:
+		case VARCHAR2:
+			return Types.VARCHAR;
+		case CHAR:
+			return Types.CHAR;
+		case INTEGER:
+		case BOOLEAN:
+			return Types.INTEGER;
+		case DECIMAL:
+			return Types.DECIMAL;
+		case DATE:
+			return Types.DATE;
+		case TIME:
+			return Types.TIME;
+		case TIMESTAMP:
+			return Types.TIMESTAMP;
+		case BLOB:
+			return Types.BLOB;
+		case CLOB:
+			return Types.CLOB;
+		default:
+			return Types.OTHER;
+		}
+	}
+}
@@ -1,9 +1,12 @@
 package com.cgi.commons.db;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.sql.Blob;
+import java.sql.Clob;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -13,6 +16,7 @@ import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 
+import org.apache.commons.io.IOUtils;
 import org.apache.log4j.Logger;
 
 import com.cgi.commons.ref.context.RequestContext;
@@ -113,6 +117,118 @@ public class FileDbManager {
 		return null;
 	}
 
+	/**
+	 * Reads the name of a file from the database, without reading its content.
+	 * 
+	 * @return The file name or {@code null} if the file could not be found.
+	 */
+	public String readName() {
+		try (DbManager manager = new DbManager(ctx, fileQuery())) {
+
+			if (manager.next()) {
+				ResultSet rs = manager.rs;
+				int columnIndex = manager.getColumnIndex(entity.name(), varName);
+				InputStream is;
+
+				if (model.getField(varName).getSqlType() == SqlTypes.CLOB) {
+					is = rs.getAsciiStream(columnIndex);
+
+				} else {
+					is = rs.getBinaryStream(columnIndex);
+				}
+
+				if (is == null || rs.wasNull()) {
+					return null;
+				}
+				try {
+					return new TmpFileManager(is).extractName();
+				} finally {
+					IOUtils.closeQuietly(is);
+				}
+			}
+
+		} catch (IOException | SQLException e) {
+			String msg = "Error while getting file name";
+			LOGGER.error(msg, e);
+			throw new DbException(msg, e);
+		}
+		return null;
+	}
+
+	/**
+	 * Opens a file from the database as a stream, without copying it to a temporary file.
+	 * 
+	 * @return The file content, to close once read; or {@code null} if the file could not be found.
+	 */
+	public LobContent openFile() {
+		DbManager manager = new DbManager(ctx, fileQuery());
+		InputStream is = null;
+
+		try {
+			if (manager.next()) {
+				ResultSet rs = manager.rs;
+				int columnIndex = manager.getColumnIndex(entity.name(), varName);
+				long length = -1;
+
+				if (model.getField(varName).getSqlType() == SqlTypes.CLOB) {
+					Clob clob = rs.getClob(columnIndex);
+					if (clob != null) {
+						length = clob.length();
+						is = clob.getAsciiStream();
+					}
+
+				} else {
+					try {
+						Blob blob = rs.getBlob(columnIndex);
+						if (blob != null) {
+							length = blob.length();
+							is = blob.getBinaryStream();
+						}
+					} catch (SQLException e) {
+						// The driver does not map this column type to a Blob (PostgreSQL bytea) : it holds the bytes in memory anyway
+						byte[] bytes = rs.getBytes(columnIndex);
+						if (bytes != null) {
+							length = bytes.length;
+							is = new ByteArrayInputStream(bytes);
+						}
+					}
+				}
+
+				if (is != null) {
+					TmpFileManager fileManager = new TmpFileManager(is);
+					String name = fileManager.extractName();
+					is = fileManager.getInputStream();
+					LobContent content = new LobContent(manager, is, name, (length < 0) ? -1 : length - fileManager.getFileLengthDelta());
+					is = null;
+					manager = null;
+					return content;
+				}
+			}
+			return null;
+
+		} catch (IOException | SQLException e) {
+			String msg = "Error while getting file";
+			LOGGER.error(msg, e);
+			throw new DbException(msg, e);
+		} finally {
+			IOUtils.closeQuietly(is);
+			if (manager != null) {
+				manager.close();
+			}
+		}
+	}
+
+	/**
+	 * @return A query on the file variable of the entity.
+	 */
+	private DbQuery fileQuery() {
+		String alias = "T01";
+		DbQuery query = new DbQuery(entity.name(), alias);
+		query.addColumn(varName, alias);
+		query.addCondKey(pk, alias);
+		return query;
+	}
+
 	/**
 	 * Saves a file into the database.
 	 */
@@ -160,6 +276,10 @@ public class FileDbManager {
 			}
 			ps.executeUpdate();
 
+			String cacheKey = BlobCache.key(entity.name(), pk.getEncodedValue(), varName);
+			BlobCache.getInstance().invalidate(cacheKey);
+			ctx.getDbConnection().fileSaved(cacheKey);
+
 		} catch (IOException | SQLException e) {
 			String msg = "Error while saving file";
 			LOGGER.error(msg, e);
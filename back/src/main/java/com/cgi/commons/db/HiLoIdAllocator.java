@@ -0,0 +1,93 @@
+package com.cgi.commons.db;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.cgi.commons.ref.context.RequestContext;
+import com.cgi.commons.ref.entity.EntityModel;
+
+/**
+ * Allocates ids from blocks reserved in memory, for databases or entities without sequence.<br/>
+ * A block of at least <code>blockSize</code> ids starts after the highest id found in the table (<code>SELECT MAX(...)</code>) and
+ * after the previous block : the table is read once per block instead of once per insert, and concurrent requests of this server never
+ * get the same id. Ids reserved but not inserted (rollback, restart) are lost.<br/>
+ * Rows inserted by other servers are only seen when a new block is reserved : with several servers writing in the same table, use a
+ * sequence.
+ */
+public class HiLoIdAllocator implements IdAllocator {
+
+	/** Default number of ids reserved at once. */
+	public static final int DEFAULT_BLOCK_SIZE = 100;
+
+	/** Number of ids reserved at once. */
+	private final int blockSize;
+
+	/** Current block of each table column. */
+	private final ConcurrentMap<String, Block> blocks = new ConcurrentHashMap<String, Block>();
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param blockSize Number of ids reserved at once
+	 */
+	public HiLoIdAllocator(int blockSize) {
+		this.blockSize = Math.max(1, blockSize);
+	}
+
+	@Override
+	public long[] allocate(EntityModel model, String fieldName, int count, RequestContext ctx) {
+		String key = model.name() + "." + fieldName;
+		Block block = blocks.get(key);
+		if (block == null) {
+			block = new Block();
+			Block existing = blocks.putIfAbsent(key, block);
+			if (existing != null) {
+				block = existing;
+			}
+		}
+		long[] ids = new long[count];
+		synchronized (block) {
+			for (int i = 0; i < count; i++) {
+				if (block.next >= block.end) {
+					// The new block is large enough for the remaining ids
+					long start = Math.max(block.end, selectMaxPlusOne(model, fieldName, ctx));
+					block.next = start;
+					block.end = start + Math.max(blockSize, count - i);
+				}
+				ids[i] = block.next++;
+			}
+		}
+		return ids;
+	}
+
+	/**
+	 * Reads the highest value of the field, plus one.
+	 * 
+	 * @param model Entity model
+	 * @param fieldName Autoincrement field
+	 * @param ctx Current request context
+	 * @return the first unused value
+	 */
+	private static long selectMaxPlusOne(EntityModel model, String fieldName, RequestContext ctx) {
+		String sql = "SELECT MAX(" + model.getField(fieldName).getSqlName() + ") + 1 FROM " + SqlBuilder.getTableName(model);
+		DbManager dbManager = new DbManager(ctx, sql);
+		long nextVal = 1;
+		if (dbManager.next()) {
+			if (dbManager.getBigDecimal(1) != null) {
+				nextVal = dbManager.getBigDecimal(1).longValue();
+			}
+		}
+		dbManager.close();
+		return nextVal;
+	}
+
+	/**
+	 * Ids reserved for a table column : [next, end[ are free.
+	 */
+	private static final class Block {
+		/** Next free id. */
+		private long next;
+		/** End of the block, excluded. */
+		private long end;
+	}
+}
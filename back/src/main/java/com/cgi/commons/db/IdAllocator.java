@@ -0,0 +1,21 @@
+package com.cgi.commons.db;
+
+import com.cgi.commons.ref.context.RequestContext;
+import com.cgi.commons.ref.entity.EntityModel;
+
+/**
+ * Allocates the values of autoincrement fields. See {@link IdAllocators} for the allocator used by each entity.
+ */
+public interface IdAllocator {
+
+	/**
+	 * Allocates new values for an autoincrement field.
+	 * 
+	 * @param model Entity model
+	 * @param fieldName Autoincrement field
+	 * @param count Number of values needed
+	 * @param ctx Current request context
+	 * @return <code>count</code> unused values, in increasing order
+	 */
+	long[] allocate(EntityModel model, String fieldName, int count, RequestContext ctx);
+}
@@ -0,0 +1,85 @@
+package com.cgi.commons.db;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.log4j.Logger;
+
+import com.cgi.commons.db.DbConnection.Type;
+import com.cgi.commons.ref.entity.EntityModel;
+import com.cgi.commons.utils.MessageUtils;
+
+/**
+ * Chooses the {@link IdAllocator} of each entity.<br/>
+ * By default, entities with a sequence name use a {@link SequenceIdAllocator} (except on MySQL, which has no sequence) and the others
+ * share a {@link HiLoIdAllocator} whose block size is read from the server property {@value #HILO_BLOCK_SIZE}. An application can
+ * register its own allocator for an entity with {@link #register(String, IdAllocator)}.
+ */
+public final class IdAllocators {
+
+	/** Logger. */
+	private static final Logger LOGGER = Logger.getLogger(IdAllocators.class);
+
+	/** Server property : number of ids reserved at once by the hi-lo allocator. */
+	public static final String HILO_BLOCK_SIZE = "id.hilo.blockSize";
+
+	/** Allocators registered by entity name. */
+	private static final Map<String, IdAllocator> ALLOCATORS = new ConcurrentHashMap<String, IdAllocator>();
+
+	/** Sequence allocator. */
+	private static final IdAllocator SEQUENCE = new SequenceIdAllocator();
+
+	/** Default hi-lo allocator. */
+	private static final IdAllocator HILO = new HiLoIdAllocator(getBlockSize());
+
+	/**
+	 * Private constructor.
+	 */
+	private IdAllocators() {
+	}
+
+	/**
+	 * Registers the allocator of an entity, replacing the default one.
+	 * 
+	 * @param entityName Entity name
+	 * @param allocator Allocator
+	 */
+	public static void register(String entityName, IdAllocator allocator) {
+		ALLOCATORS.put(entityName, allocator);
+	}
+
+	/**
+	 * Returns the allocator of an entity.
+	 * 
+	 * @param model Entity model
+	 * @return the registered allocator, or the default one
+	 */
+	public static IdAllocator get(EntityModel model) {
+		IdAllocator allocator = ALLOCATORS.get(model.name());
+		if (allocator != null) {
+			return allocator;
+		}
+		String sequenceName = model.getSequenceName();
+		if (sequenceName != null && !sequenceName.isEmpty() && DbConnection.getDbType() != Type.MySQL) {
+			return SEQUENCE;
+		}
+		return HILO;
+	}
+
+	/**
+	 * Reads the hi-lo block size.
+	 * 
+	 * @return the block size
+	 */
+	private static int getBlockSize() {
+		String value = MessageUtils.getServerProperty(HILO_BLOCK_SIZE);
+		if (value != null) {
+			try {
+				return Integer.parseInt(value.trim());
+			} catch (NumberFormatException e) {
+				LOGGER.warn("Invalid " + HILO_BLOCK_SIZE + " " + value);
+			}
+		}
+		return HiLoIdAllocator.DEFAULT_BLOCK_SIZE;
+	}
+}
@@ -0,0 +1,359 @@
+package com.cgi.commons.db;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.codec.binary.Base64;
+
+import com.cgi.commons.db.DbQuery.Var;
+import com.cgi.commons.ref.entity.Entity;
+import com.cgi.commons.utils.DbException;
+import com.cgi.commons.utils.TechnicalException;
+
+/**
+ * Keyset (seek) pagination of a list query.<br/>
+ * Rows are ordered by the sort of the query followed by the primary key of the main entity, and a page starts after the last row of the
+ * previous one : <code>(HEURE &gt; ? OR (HEURE = ? AND ID &gt; ?))</code> instead of reading and skipping the previous rows. The position
+ * is given back to the client as an opaque continuation token.<br/>
+ * When the last row of a page has a null key value, the token only holds the position and the next page is read by offset.
+ */
+public final class Keyset {
+
+	/** Version of the token format. */
+	private static final byte VERSION = 1;
+
+	/** Key variables, sort variables first. */
+	private final List<Var> vars;
+	/** Indicates for each key variable if it is sorted descending. */
+	private final boolean[] descending;
+	/** Hash of the query name and of the key, checked when a token is read. */
+	private final int fingerprint;
+	/** Position of the first row of the page in the whole list. */
+	private int position;
+	/** Indicates if the rows before the page are excluded by the key conditions (false when the page is read by offset). */
+	private boolean seeking = false;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param vars Key variables.
+	 * @param descending Sort direction of each key variable.
+	 * @param fingerprint Hash of the query name and of the key.
+	 * @param position Position of the first row of the page.
+	 */
+	private Keyset(List<Var> vars, boolean[] descending, int fingerprint, int position) {
+		this.vars = vars;
+		this.descending = descending;
+		this.fingerprint = fingerprint;
+		this.position = position;
+	}
+
+	/**
+	 * Returns the keyset of a query, built on its sort and on the primary key of its main entity. The key columns are added to the sort
+	 * of the query, in the direction of its last sort, so that rows with the same sort values always come in the same order.
+	 *
+	 * @param query The query, with its sort.
+	 * @return the keyset, or null if the query cannot be paged by keyset (distinct, grouping, key not selected, or sort on a text
+	 *         compared without case)
+	 */
+	public static Keyset of(DbQuery query) {
+		if (query.distinct || query.count || !query.groupByConds.isEmpty()) {
+			return null;
+		}
+		for (Var out : query.outVars) {
+			if (out.isGrouping) {
+				return null;
+			}
+		}
+		List<Var> vars = new ArrayList<Var>();
+		List<Boolean> directions = new ArrayList<Boolean>();
+		for (DbQuery.SortVar sort : query.sortVars) {
+			Var var = keyVar(query, sort.inVar);
+			if (var == null) {
+				return null;
+			}
+			if (!vars.contains(var)) {
+				vars.add(var);
+				directions.add(Boolean.valueOf(DbQuery.DESC.equalsIgnoreCase(sort.direction)));
+			}
+		}
+		Entity main = query.getMainEntity();
+		if (main == null) {
+			return null;
+		}
+		int sorted = vars.size();
+		Boolean lastDirection = directions.isEmpty() ? Boolean.FALSE : directions.get(directions.size() - 1);
+		for (String field : main.getModel().getKeyModel().getFields()) {
+			Var var = keyVar(query, query.findOutVar(field, query.getMainEntityAlias()));
+			if (var == null) {
+				return null;
+			}
+			if (!vars.contains(var)) {
+				vars.add(var);
+				directions.add(lastDirection);
+			}
+		}
+		boolean[] descending = new boolean[vars.size()];
+		StringBuilder key = new StringBuilder(query.getName());
+		for (int i = 0; i < descending.length; i++) {
+			descending[i] = directions.get(i).booleanValue();
+			key.append(',').append(vars.get(i).getColumnAlias()).append(descending[i] ? " DESC" : " ASC");
+		}
+		for (int i = sorted; i < vars.size(); i++) {
+			query.addSortBy(vars.get(i).name, vars.get(i).tableId, descending[i] ? DbQuery.DESC : DbQuery.ASC);
+		}
+		return new Keyset(vars, descending, key.toString().hashCode(), query.getMinRownum());
+	}
+
+	/**
+	 * Returns the selected variable of a key variable, if it can be compared in SQL.
+	 *
+	 * @param query The query.
+	 * @param var The variable.
+	 * @return the selected variable, or null
+	 */
+	private static Var keyVar(DbQuery query, Var var) {
+		if (var == null || var.tableId == null || var.tableId.isEmpty()) {
+			return null;
+		}
+		int index = query.outVars.indexOf(var);
+		if (index < 0) {
+			return null;
+		}
+		Var out = query.outVars.get(index);
+		switch (out.model.getSqlType()) {
+		case INTEGER:
+		case DECIMAL:
+		case DATE:
+		case TIME:
+		case TIMESTAMP:
+			return out;
+		case CHAR:
+		case VARCHAR:
+		case VARCHAR2:
+			return query.caseInsensitiveSearch ? null : out;
+		default:
+			return null;
+		}
+	}
+
+	/**
+	 * Restricts a query to the page following a continuation token. The query must be the one the token was built from, sorted the
+	 * same way.
+	 *
+	 * @param query The query.
+	 * @param token The continuation token.
+	 * @throws TechnicalException If the token is invalid or was not built for this query.
+	 */
+	public void seek(DbQuery query, String token) {
+		Object[] values;
+		try {
+			DataInputStream in = new DataInputStream(new ByteArrayInputStream(Base64.decodeBase64(token)));
+			if (in.readByte() != VERSION || in.readInt() != fingerprint) {
+				throw new TechnicalException("Continuation token does not match query " + query.getName());
+			}
+			position = in.readInt();
+			values = in.readBoolean() ? new Object[vars.size()] : null;
+			for (int i = 0; values != null && i < values.length; i++) {
+				values[i] = readValue(in);
+			}
+		} catch (IOException e) {
+			throw new TechnicalException("Invalid continuation token", e);
+		}
+		if (position < 0) {
+			throw new TechnicalException("Invalid continuation token");
+		}
+		if (values == null) {
+			query.setMinRownum(position);
+			return;
+		}
+		query.setMinRownum(0);
+		seeking = true;
+		if (!query.whereConds.isEmpty()) {
+			query.and();
+		}
+		query.startGroupCondition();
+		for (int i = 0; i < values.length; i++) {
+			if (i > 0) {
+				query.or();
+			}
+			query.startGroupCondition();
+			for (int j = 0; j < i; j++) {
+				query.addCondEq(vars.get(j).name, vars.get(j).tableId, values[j]);
+			}
+			if (descending[i]) {
+				query.addCondLT(vars.get(i).name, vars.get(i).tableId, values[i]);
+			} else {
+				query.addCondGT(vars.get(i).name, vars.get(i).tableId, values[i]);
+			}
+			query.endGroupCondition();
+		}
+		query.endGroupCondition();
+	}
+
+	/**
+	 * @return the position of the first row of the page in the whole list
+	 */
+	public int getPosition() {
+		return position;
+	}
+
+	/**
+	 * @return the number of rows before the page which are excluded from the query by the key conditions
+	 */
+	public int getSkippedRows() {
+		return seeking ? position : 0;
+	}
+
+	/**
+	 * Returns the token of the page following the current row of a result set.
+	 *
+	 * @param query The query of the result set.
+	 * @param rs The result set, on the last row of the page.
+	 * @param rows Number of rows of the page.
+	 * @return the continuation token
+	 */
+	public String next(DbQuery query, ResultSet rs, int rows) {
+		try {
+			Object[] values = new Object[vars.size()];
+			for (int i = 0; values != null && i < values.length; i++) {
+				Var var = vars.get(i);
+				values[i] = readColumn(rs, query.getIndex(var.tableId + "_" + var.model.getSqlName()), var);
+				if (values[i] == null) {
+					values = null;
+				}
+			}
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+			DataOutputStream out = new DataOutputStream(bytes);
+			out.writeByte(VERSION);
+			out.writeInt(fingerprint);
+			out.writeInt(position + rows);
+			out.writeBoolean(values != null);
+			for (int i = 0; values != null && i < values.length; i++) {
+				writeValue(out, values[i]);
+			}
+			out.flush();
+			return Base64.encodeBase64URLSafeString(bytes.toByteArray());
+		} catch (SQLException e) {
+			throw new DbException("Error reading keyset of query " + query.getName(), e);
+		} catch (IOException e) {
+			throw new TechnicalException(e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Checks the format of a continuation token, without its query.
+	 *
+	 * @param token The token.
+	 * @return true if the token may have been built by this class
+	 */
+	public static boolean isWellFormed(String token) {
+		if (token == null || token.isEmpty() || !Base64.isBase64(token)) {
+			return false;
+		}
+		byte[] bytes = Base64.decodeBase64(token);
+		return bytes.length >= 10 && bytes[0] == VERSION;
+	}
+
+	/**
+	 * Reads the value of a key column, with the Java type it is bound with.
+	 *
+	 * @param rs The result set.
+	 * @param index Index of the column.
+	 * @param var The key variable.
+	 * @return the value, or null
+	 * @throws SQLException If error.
+	 */
+	private static Object readColumn(ResultSet rs, int index, Var var) throws SQLException {
+		Object value;
+		switch (var.model.getSqlType()) {
+		case INTEGER:
+			value = Integer.valueOf(rs.getInt(index));
+			break;
+		case DECIMAL:
+			value = rs.getBigDecimal(index);
+			break;
+		case DATE:
+			value = rs.getDate(index);
+			break;
+		case TIME:
+			value = rs.getTime(index);
+			break;
+		case TIMESTAMP:
+			value = rs.getTimestamp(index);
+			break;
+		default:
+			value = rs.getString(index);
+		}
+		return rs.wasNull() ? null : value;
+	}
+
+	/**
+	 * Writes a key value into a token.
+	 *
+	 * @param out The token.
+	 * @param value The value.
+	 * @throws IOException If error.
+	 */
+	private static void writeValue(DataOutputStream out, Object value) throws IOException {
+		if (value instanceof Integer) {
+			out.writeByte('I');
+			out.writeInt(((Integer) value).intValue());
+		} else if (value instanceof BigDecimal) {
+			out.writeByte('N');
+			out.writeUTF(value.toString());
+		} else if (value instanceof Timestamp) {
+			out.writeByte('T');
+			out.writeLong(((Timestamp) value).getTime());
+			out.writeInt(((Timestamp) value).getNanos());
+		} else if (value instanceof Time) {
+			out.writeByte('H');
+			out.writeLong(((Time) value).getTime());
+		} else if (value instanceof java.sql.Date) {
+			out.writeByte('D');
+			out.writeLong(((java.sql.Date) value).getTime());
+		} else {
+			out.writeByte('S');
+			out.writeUTF(value.toString());
+		}
+	}
+
+	/**
+	 * Reads a key value from a token.
+	 *
+	 * @param in The token.
+	 * @return the value
+	 * @throws IOException If error.
+	 */
+	private static Object readValue(DataInputStream in) throws IOException {
+		byte type = in.readByte();
+		switch (type) {
+		case 'I':
+			return Integer.valueOf(in.readInt());
+		case 'N':
+			return new BigDecimal(in.readUTF());
+		case 'T':
+			Timestamp timestamp = new Timestamp(in.readLong());
+			timestamp.setNanos(in.readInt());
+			return timestamp;
+		case 'H':
+			return new Time(in.readLong());
+		case 'D':
+			return new java.sql.Date(in.readLong());
+		case 'S':
+			return in.readUTF();
+		default:
+			throw new IOException("Unknown value type " + type);
+		}
+	}
+}
@@ -0,0 +1,71 @@
+package com.cgi.commons.db;
+
+import java.io.Closeable;
+import java.io.InputStream;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Content of a {@code BLOB} or {@code CLOB} variable read from the database as a stream, after the file name stored at its beginning.
+ * The query stays open until the content is closed.
+ */
+public class LobContent implements Closeable {
+
+	/** Manager of the query reading the content. */
+	private final DbManager manager;
+	/** Stream of the content, after the file name. */
+	private final InputStream is;
+	/** File name. */
+	private final String name;
+	/** Length of the content in bytes, -1 if unknown. */
+	private final long length;
+
+	/**
+	 * Creates a new content.
+	 * 
+	 * @param manager
+	 *            Manager of the query reading the content, closed with the content.
+	 * @param inputStream
+	 *            Stream of the content, after the file name.
+	 * @param name
+	 *            File name.
+	 * @param length
+	 *            Length of the content in bytes, -1 if unknown.
+	 */
+	LobContent(DbManager manager, InputStream inputStream, String name, long length) {
+		this.manager = manager;
+		this.is = inputStream;
+		this.name = name;
+		this.length = length;
+	}
+
+	/**
+	 * @return The stream of the content, after the file name.
+	 */
+	public InputStream getInputStream() {
+		return is;
+	}
+
+	/**
+	 * @return The file name.
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return The length of the content in bytes, {@code -1} if the driver does not give it.
+	 */
+	public long getLength() {
+		return length;
+	}
+
+	/**
+	 * Closes the stream and the query.
+	 */
+	@Override
+	public void close() {
+		IOUtils.closeQuietly(is);
+		manager.close();
+	}
+}
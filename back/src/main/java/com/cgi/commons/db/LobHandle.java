@@ -0,0 +1,49 @@
+package com.cgi.commons.db;
+
+import com.cgi.commons.ref.context.RequestContext;
+import com.cgi.commons.ref.entity.Entity;
+
+/**
+ * Reference to a {@code BLOB} or {@code CLOB} variable of an entity read from the database, whose content has not been read.<br/>
+ * The file name stored at the beginning of the content is only read when it is asked for.
+ */
+public class LobHandle {
+
+	/** Context which read the entity. */
+	private final RequestContext ctx;
+	/** Entity with the variable. */
+	private final Entity entity;
+	/** Variable name. */
+	private final String varName;
+
+	/**
+	 * Creates a new handle.
+	 * 
+	 * @param ctx
+	 *            Context which read the entity.
+	 * @param entity
+	 *            Entity with the variable.
+	 * @param varName
+	 *            Variable name.
+	 */
+	public LobHandle(RequestContext ctx, Entity entity, String varName) {
+		this.ctx = ctx;
+		this.entity = entity;
+		this.varName = varName;
+	}
+
+	/**
+	 * Reads the file name. The context which read the entity is used if its connection is still open, otherwise a connection is opened
+	 * for this read only.
+	 * 
+	 * @return The file name, {@code null} if the row or the content no longer exists.
+	 */
+	public String readName() {
+		if (ctx.hasDbConnection()) {
+			return new FileDbManager(ctx, entity, varName).readName();
+		}
+		try (RequestContext context = new RequestContext(ctx.getUser())) {
+			return new FileDbManager(context, entity, varName).readName();
+		}
+	}
+}
@@ -0,0 +1,35 @@
+package com.cgi.commons.db;
+
+import java.sql.Connection;
+
+/**
+ * Physical connection of the {@link ConnectionPool}, with the statements it keeps between borrows.
+ */
+final class PooledConnection {
+
+	/** Physical connection. */
+	final Connection cnx;
+	/** Statements prepared on the connection. */
+	final StatementCache statements = new StatementCache();
+	/** Time the connection was opened, in ms. */
+	final long created;
+	/** Time the connection was last given back or validated, in ms. */
+	volatile long lastUsed;
+	/** Time the connection was borrowed, in ms. */
+	volatile long borrowed;
+	/** Stack of the borrower, only for sampled borrows. */
+	volatile Throwable borrowStack;
+	/** Indicates if the connection was reported as leaked during the current borrow. */
+	volatile boolean leakReported;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param cnx Physical connection.
+	 */
+	PooledConnection(Connection cnx) {
+		this.cnx = cnx;
+		this.created = System.currentTimeMillis();
+		this.lastUsed = created;
+	}
+}
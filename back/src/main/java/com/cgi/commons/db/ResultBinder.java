@@ -0,0 +1,263 @@
+package com.cgi.commons.db;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+
+import com.cgi.commons.db.DbQuery.Var;
+import com.cgi.commons.ref.entity.EntityAccessors;
+import com.cgi.commons.ref.entity.EntityField;
+import com.cgi.commons.ref.entity.EntityField.SqlTypes;
+import com.cgi.commons.ref.entity.EntityModel;
+
+/**
+ * Columns of the result of an executed query, resolved once : ordinal in the result set, SQL type and how the value is read. The
+ * mapping of each row then reads the columns by ordinal, without building column names nor looking them up.
+ */
+final class ResultBinder {
+
+	/** Logger. */
+	private static final Logger LOGGER = Logger.getLogger(ResultBinder.class);
+
+	/** Entity field read as a binary stream. */
+	static final int BLOB = 0;
+	/** Entity field read as an ascii stream. */
+	static final int CLOB = 1;
+	/** Entity field read with getString. */
+	static final int STRING = 2;
+	/** Entity field read with getDate. */
+	static final int DATE = 3;
+	/** Entity field read with getTimestamp. */
+	static final int TIMESTAMP = 4;
+	/** Entity field read with getTime. */
+	static final int TIME = 5;
+	/** Entity field read with getInt. */
+	static final int INTEGER = 6;
+	/** Entity field read with getBigDecimal, as a long. */
+	static final int LONG = 7;
+	/** Entity field read with getInt, 1 being true. */
+	static final int BOOLEAN = 8;
+	/** Date entity field of another SQL type : only null values are set. */
+	static final int NULL_ONLY = 9;
+	/** Entity field read with getObject. */
+	static final int OBJECT = 10;
+
+	/**
+	 * A selected column of the query.
+	 */
+	static final class Column {
+		/** Variable of the column. */
+		final Var var;
+		/** Name of the entity of the column. */
+		final String entityName;
+		/** Ordinal in the result set. */
+		final int index;
+		/** SQL type. */
+		final SqlTypes sqlType;
+		/** Indicates if the column has defined values. */
+		final boolean definedValues;
+		/** Indicates if the column is a primary key field of the main entity. */
+		final boolean primaryKey;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param var Variable of the column.
+		 * @param entityName Name of the entity of the column.
+		 * @param index Ordinal in the result set.
+		 * @param primaryKey Indicates if the column is a primary key field of the main entity.
+		 */
+		Column(Var var, String entityName, int index, boolean primaryKey) {
+			this.var = var;
+			this.entityName = entityName;
+			this.index = index;
+			this.sqlType = var.model.getSqlType();
+			this.definedValues = var.model.hasDefinedValues();
+			this.primaryKey = primaryKey;
+		}
+	}
+
+	/**
+	 * Fields of an entity read from the result set.
+	 */
+	static final class EntityColumns {
+		/** Accessor index of each field. */
+		final int[] fields;
+		/** How each field is read. */
+		final int[] kinds;
+		/** Ordinal of each field in the result set. */
+		final int[] indexes;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param size Number of fields.
+		 */
+		EntityColumns(int size) {
+			fields = new int[size];
+			kinds = new int[size];
+			indexes = new int[size];
+		}
+	}
+
+	/** Query, null for a native SQL statement. */
+	private final DbQuery query;
+	/** Result set of the query. */
+	private final ResultSet rs;
+	/** Selected columns read from the database, built on first use. */
+	private Column[] columns;
+	/** Fields read for each entity, by table alias and entity name. */
+	private final Map<String, EntityColumns> entities = new HashMap<String, EntityColumns>();
+
+	/**
+	 * Constructor.
+	 *
+	 * @param query The executed query, null for a native SQL statement.
+	 * @param rs Result set of the query.
+	 */
+	ResultBinder(DbQuery query, ResultSet rs) {
+		this.query = query;
+		this.rs = rs;
+	}
+
+	/**
+	 * Returns the selected columns read from the database, in the order of the out variables.
+	 *
+	 * @return the columns
+	 */
+	Column[] getColumns() {
+		if (columns == null) {
+			List<Column> list = new ArrayList<Column>();
+			String mainAlias = query.getMainEntityAlias();
+			List<String> keyFields = query.getMainEntity().getModel().getKeyModel().getFields();
+			for (Var var : query.getOutVars()) {
+				if (var.model.isFromDatabase()) {
+					int index = query.getIndex(var.tableId + "_" + var.model.getSqlName());
+					list.add(new Column(var, query.getEntity(var.tableId), index, mainAlias.equals(var.tableId) && keyFields.contains(var.name)));
+				}
+			}
+			columns = list.toArray(new Column[list.size()]);
+		}
+		return columns;
+	}
+
+	/**
+	 * Returns the fields of an entity read from the result set.
+	 *
+	 * @param model Model of the entity.
+	 * @param tableAlias Alias of the entity in the query.
+	 * @return the fields
+	 */
+	EntityColumns getEntityColumns(EntityModel model, String tableAlias) {
+		String key = tableAlias + "|" + model.name();
+		EntityColumns bound = entities.get(key);
+		if (bound == null) {
+			bound = bind(model, tableAlias);
+			entities.put(key, bound);
+		}
+		return bound;
+	}
+
+	/**
+	 * Resolves the fields of an entity.
+	 *
+	 * @param model Model of the entity.
+	 * @param tableAlias Alias of the entity in the query.
+	 * @return the fields
+	 */
+	private EntityColumns bind(EntityModel model, String tableAlias) {
+		EntityAccessors accessors = model.getAccessors();
+		EntityColumns bound = new EntityColumns(accessors.size());
+		int n = 0;
+		for (int i = 0; i < accessors.size(); i++) {
+			EntityField eField = model.getField(accessors.getName(i));
+			if (!eField.isFromDatabase()) {
+				continue;
+			}
+			String dbName = tableAlias + "_" + eField.getSqlName();
+			int index = indexOf(dbName);
+			if (index <= 0) {
+				LOGGER.warn("Column " + dbName + " is not in the results, field " + accessors.getName(i) + " of " + model.name()
+						+ " is not read");
+				continue;
+			}
+			bound.fields[n] = i;
+			bound.kinds[n] = kind(eField.getSqlType(), accessors.getType(i));
+			bound.indexes[n] = index;
+			n++;
+		}
+		return n == accessors.size() ? bound : trim(bound, n);
+	}
+
+	/**
+	 * Returns the ordinal of a column : from the query, or from the result set for a native SQL statement.
+	 *
+	 * @param dbName Name of the column.
+	 * @return the ordinal, 0 if the column is not in the results
+	 */
+	private int indexOf(String dbName) {
+		if (query != null) {
+			Integer ordinal = query.indexes.get(dbName);
+			return ordinal == null ? 0 : ordinal.intValue();
+		}
+		try {
+			return rs.findColumn(dbName);
+		} catch (SQLException e) {
+			return 0;
+		}
+	}
+
+	/**
+	 * Returns how a field is read.
+	 *
+	 * @param sqlType SQL type of the field.
+	 * @param fieldClass Java type of the field.
+	 * @return the kind of read
+	 */
+	private static int kind(SqlTypes sqlType, Class<?> fieldClass) {
+		if (sqlType == SqlTypes.BLOB) {
+			return BLOB;
+		} else if (sqlType == SqlTypes.CLOB) {
+			return CLOB;
+		} else if (String.class == fieldClass) {
+			return STRING;
+		} else if (Date.class == fieldClass) {
+			if (sqlType == SqlTypes.DATE) {
+				return DATE;
+			} else if (sqlType == SqlTypes.TIMESTAMP) {
+				return TIMESTAMP;
+			} else if (sqlType == SqlTypes.TIME) {
+				return TIME;
+			}
+			return NULL_ONLY;
+		} else if (Integer.class == fieldClass) {
+			return INTEGER;
+		} else if (Long.class == fieldClass) {
+			return LONG;
+		} else if (Boolean.class == fieldClass) {
+			return BOOLEAN;
+		}
+		return OBJECT;
+	}
+
+	/**
+	 * Keeps the first fields of a binding.
+	 *
+	 * @param bound The binding.
+	 * @param size Number of fields to keep.
+	 * @return the trimmed binding
+	 */
+	private static EntityColumns trim(EntityColumns bound, int size) {
+		EntityColumns trimmed = new EntityColumns(size);
+		System.arraycopy(bound.fields, 0, trimmed.fields, 0, size);
+		System.arraycopy(bound.kinds, 0, trimmed.kinds, 0, size);
+		System.arraycopy(bound.indexes, 0, trimmed.indexes, 0, size);
+		return trimmed;
+	}
+}
@@ -0,0 +1,19 @@
+package com.cgi.commons.db;
+
+import java.io.IOException;
+
+import com.cgi.commons.ref.data.Row;
+
+/**
+ * Receives the rows of a query one at a time, see {@link DbManager#forEachRow(RowHandler)}.
+ */
+public interface RowHandler {
+
+	/**
+	 * Handles a row. The row is not used anymore by the caller once this method returns.
+	 * 
+	 * @param row The row, with its {@link com.cgi.commons.ref.Constants#RESULT_ROWNUM}
+	 * @throws IOException If the row cannot be written.
+	 */
+	void handle(Row row) throws IOException;
+}
@@ -0,0 +1,42 @@
+package com.cgi.commons.db;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import org.apache.log4j.Logger;
+
+import com.cgi.commons.ref.context.RequestContext;
+import com.cgi.commons.ref.entity.EntityModel;
+import com.cgi.commons.utils.DbException;
+
+/**
+ * Allocates ids from the database sequence of the entity ({@link EntityModel#getSequenceName()}), with
+ * {@link SqlBuilder#getNextSequenceIdQuery(String)}. Safe whatever the number of servers inserting in the table.
+ */
+public class SequenceIdAllocator implements IdAllocator {
+
+	/** Logger. */
+	private static final Logger LOGGER = Logger.getLogger(SequenceIdAllocator.class);
+
+	@Override
+	public long[] allocate(EntityModel model, String fieldName, int count, RequestContext ctx) {
+		String sql = SqlBuilder.getNextSequenceIdQuery(model.getSequenceName());
+		long[] ids = new long[count];
+		try (PreparedStatement ps = ctx.getDbConnection().getCnx().prepareStatement(sql)) {
+			for (int i = 0; i < count; i++) {
+				try (ResultSet rs = ps.executeQuery()) {
+					if (!rs.next()) {
+						throw new DbException("No value returned by [" + sql + "]");
+					}
+					ids[i] = rs.getLong(1);
+				}
+				ctx.incQueryNbRequests();
+			}
+		} catch (SQLException e) {
+			LOGGER.error("Error reading sequence [" + sql + "]", e);
+			throw new DbException(e.getMessage(), e);
+		}
+		return ids;
+	}
+}
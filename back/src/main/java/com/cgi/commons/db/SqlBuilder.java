@@ -19,6 +19,7 @@ import com.cgi.commons.ref.entity.Entity;
 import com.cgi.commons.ref.entity.EntityField;
 import com.cgi.commons.ref.entity.EntityField.Memory;
 import com.cgi.commons.ref.entity.EntityField.SqlTypes;
+import com.cgi.commons.ref.entity.EntityModel;
 import com.cgi.commons.utils.ApplicationUtils;
 import com.cgi.commons.utils.MessageUtils;
 import com.cgi.commons.utils.TechnicalException;
@@ -118,7 +119,7 @@ public class SqlBuilder {
 	 */
 	public static String getNextSequenceIdQuery(Entity entity) {
 		String dbName = DomainUtils.createDbName(entity.getClass().getSimpleName());
-		return "select " + Constants.EXTENSION_SEQUENCE + dbName + ".nextVal from dual";
+		return getNextSequenceIdQuery(dbName);
 	}
 
 	/**
@@ -129,7 +130,42 @@ public class SqlBuilder {
 	 * @return SQL query
 	 */
 	public static String getNextSequenceIdQuery(String sequenceName) {
-		return "select " + Constants.EXTENSION_SEQUENCE + sequenceName + ".nextVal from dual";
+		String name = Constants.EXTENSION_SEQUENCE + sequenceName;
+		switch (DbConnection.getDbType()) {
+		case PostgreSQL:
+			return "select nextval('" + name + "')";
+		case DB2:
+			return "values next value for " + name;
+		case SQLSERVER:
+			return "select next value for " + name;
+		case MySQL:
+			throw new TechnicalException("Sequences are not supported by MySQL : " + name);
+		default:
+			return "select " + name + ".nextVal from dual";
+		}
+	}
+
+	/**
+	 * Returns the table name of an entity, prefixed by its schema (or the default schema) if any.
+	 * 
+	 * @param model
+	 *            Entity model
+	 * @return Table name to use in SQL queries
+	 */
+	public static String getTableName(EntityModel model) {
+		String schemaName = null;
+		String schemaId = model.getDbSchemaName();
+		if (!schemaId.isEmpty()) {
+			schemaName = MessageUtils.getServerProperty("schema." + schemaId);
+		}
+		if (schemaName == null || schemaName.isEmpty()) {
+			// try default schema if any
+			schemaName = MessageUtils.getServerProperty("schema.default");
+		}
+		if (schemaName != null && !schemaName.isEmpty()) {
+			return schemaName + "." + model.dbName();
+		}
+		return model.dbName();
 	}
 
 	/**
@@ -186,6 +222,11 @@ public class SqlBuilder {
 				selectClause.append(" as ");
 				selectClause.append(dbQuery.aliash(outVar));
 			}
+			if (dbQuery.windowCount && !dbQuery.count && selectClause.length() > 0) {
+				// Total number of rows, computed before paging
+				selectClause.append(", COUNT(*) OVER() as ").append(DbQuery.WINDOW_COUNT);
+				dbQuery.indexes.put(DbQuery.WINDOW_COUNT, Integer.valueOf(index++));
+			}
 			query = query.concat(selectClause.toString());
 			for (int i = 0; i < dbQuery.outConsts.size() && !dbQuery.count; i++) {
 				Const c = dbQuery.outConsts.get(i);
@@ -390,7 +431,7 @@ public class SqlBuilder {
 	 * @return The SQL Query.
 	 */
 	public static String toSql(DbQuery dbQuery) {
-		return ApplicationUtils.getApplicationLogic().getSqlBuilder(dbQuery).toSql();
+		return SqlCache.getInstance().toSql(dbQuery);
 	}
 
 	/**
@@ -425,6 +466,10 @@ public class SqlBuilder {
 
 		String query = "";
 
+		if (dbQuery.count && dbQuery.countLimit > 0) {
+			return toCappedCountSql();
+		}
+
 		// **** opening the outer query for counting rows or paging results
 		if (dbQuery.count) {
 			query = "SELECT COUNT(1) FROM (";
@@ -472,23 +517,24 @@ public class SqlBuilder {
 			}
 
 		} else if (dbQuery.maxRownum > 0) {
+			// Bound rather than inlined : every page of a query shares the same SQL and statement
 			if (DbConnection.getDbType() == Type.ORACLE) {
 				/* the mixing of ROWNUM and ROWNUM_ROWNUM is intentional : the ROWNUM<=X clause is optimized by Oracle for performance */
-				query = query.concat(") sub ) WHERE ROWNUM_ROWNUM > " + dbQuery.minRownum + " AND ROWNUM <= " + dbQuery.maxRownum);
+				query = query.concat(") sub ) WHERE ROWNUM_ROWNUM > ? AND ROWNUM <= ?");
 
 			} else if (DbConnection.getDbType() == Type.SQLSERVER) {
-				query = query.concat(") sub ) rows WHERE rows.ROWNUM > " + dbQuery.minRownum + " AND rows.ROWNUM <= " + dbQuery.maxRownum);
+				query = query.concat(") sub ) rows WHERE rows.ROWNUM > ? AND rows.ROWNUM <= ?");
 
 			} else if (DbConnection.getDbType() == Type.DB2) {
-				query = query.concat(") internal$2) internal$1 WHERE internal$1.internal$rownum > " + dbQuery.minRownum 
-						+ " AND internal$1.internal$rownum <= "+ (dbQuery.minRownum + dbQuery.maxRownum));
+				query = query.concat(") internal$2) internal$1 WHERE internal$1.internal$rownum > ? AND internal$1.internal$rownum <= ?");
 
 			} else if (DbConnection.getDbType() == Type.PostgreSQL) {
-				query = query.concat(" LIMIT " + dbQuery.maxRownum + " OFFSET " + dbQuery.minRownum);
+				query = query.concat(" LIMIT ? OFFSET ?");
 
 			} else {
-				query = query.concat(" LIMIT " + dbQuery.minRownum + ", " + dbQuery.maxRownum);
+				query = query.concat(" LIMIT ?, ?");
 			}
+			addPagingValues(dbQuery, dbQuery.bindValues);
 		}
 
 		if (LOGGER.isDebugEnabled()) {
@@ -506,6 +552,51 @@ public class SqlBuilder {
 		return query;
 	}
 
+	/**
+	 * Returns the SQL counting the rows of the query up to its count limit : the count is done on the first rows of the query, paged as a
+	 * list.
+	 * 
+	 * @return The SQL Query.
+	 */
+	private String toCappedCountSql() {
+		DbQuery capped = dbQuery.clone();
+		capped.count = false;
+		capped.countLimit = 0;
+		capped.windowCount = false;
+		capped.lookAhead = false;
+		capped.minRownum = 0;
+		capped.maxRownum = dbQuery.countLimit;
+		String query = "SELECT COUNT(1) FROM (" + toSql(parentQuery, capped) + ")";
+		if (DbConnection.getDbType() != Type.ORACLE) {
+			query = query.concat(" AS COUNT_SUBSELECT_ALIAS");
+		}
+		dbQuery.bindValues = capped.bindValues;
+		return query;
+	}
+
+	/**
+	 * Adds the paging bind values of a query, in the order of the placeholders written by {@link #toSql()}.
+	 * 
+	 * @param query
+	 *            The paged query.
+	 * @param binds
+	 *            The bind values.
+	 */
+	static void addPagingValues(DbQuery query, List<Object> binds) {
+		// One more row to know if there is a next page
+		int maxRownum = query.lookAhead ? query.maxRownum + 1 : query.maxRownum;
+		if (DbConnection.getDbType() == Type.DB2) {
+			binds.add(Integer.valueOf(query.minRownum));
+			binds.add(Integer.valueOf(query.minRownum + maxRownum));
+		} else if (DbConnection.getDbType() == Type.PostgreSQL) {
+			binds.add(Integer.valueOf(maxRownum));
+			binds.add(Integer.valueOf(query.minRownum));
+		} else {
+			binds.add(Integer.valueOf(query.minRownum));
+			binds.add(Integer.valueOf(maxRownum));
+		}
+	}
+
 	/**
 	 * Ajout d'une condition 'inclus dans' le rsultat d'une autre query.
 	 * 
@@ -0,0 +1,266 @@
+package com.cgi.commons.db;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+
+import com.cgi.commons.utils.ApplicationUtils;
+import com.cgi.commons.utils.MessageUtils;
+
+/**
+ * Generated SQL of the queries, cached by query shape.<br/>
+ * The shape of a {@link DbQuery} is its structure without the bound values (see {@link DbQuery#appendShape(StringBuilder, List)}) :
+ * clones of the same query with other filter values or another page share the SQL and the column indexes, and only their bind values
+ * are collected. The first time a shape is built, the bind values collected from the shape are compared with the ones of the builder ;
+ * a shape which does not match is never cached. A shape which misses a part of the query changing the SQL would give the SQL of
+ * another query : one hit in {@value #VERIFY_RATE} (and every hit with debug logs) builds the SQL again and compares it with the cached
+ * one.<br/>
+ * The least recently used shapes are evicted beyond {@value #SIZE} shapes. Queries built by a custom {@link SqlBuilder} are not cached.
+ */
+public final class SqlCache {
+
+	/** Logger. */
+	private static final Logger LOGGER = Logger.getLogger(SqlCache.class);
+
+	/** Server property : max number of cached shapes, 0 to disable the cache. */
+	public static final String SIZE = "db.sqlCache.size";
+
+	/** Server property : one hit in this number builds the SQL again to check the cached one, 0 to never check. */
+	public static final String VERIFY_RATE = "db.sqlCache.verifyRate";
+
+	/** Default max number of cached shapes. */
+	private static final int DEFAULT_SIZE = 1000;
+	/** Default check rate. */
+	private static final int DEFAULT_VERIFY_RATE = 1000;
+
+	/** Marks a shape which cannot be cached. */
+	private static final Shape UNCACHEABLE = new Shape(null, null);
+
+	/** Shared instance. */
+	private static final SqlCache INSTANCE = new SqlCache(readInt(SIZE, DEFAULT_SIZE), readInt(VERIFY_RATE, DEFAULT_VERIFY_RATE));
+
+	/** Cached SQL by shape, in access order, guarded by itself. */
+	private final LinkedHashMap<String, Shape> entries;
+	/** Max number of cached shapes. */
+	private final int maxSize;
+	/** One hit in this number is checked, 0 for none. */
+	private final int verifyRate;
+
+	/** Queries whose SQL was found in cache. */
+	private final AtomicLong hits = new AtomicLong();
+	/** Queries whose SQL was built and cached. */
+	private final AtomicLong misses = new AtomicLong();
+	/** Queries built without cache. */
+	private final AtomicLong bypassed = new AtomicLong();
+	/** Shapes evicted to make room. */
+	private final AtomicLong evicted = new AtomicLong();
+	/** Cached shapes found to give the SQL of another query. */
+	private final AtomicLong mismatches = new AtomicLong();
+
+	/**
+	 * Cached SQL of a shape.
+	 */
+	private static final class Shape {
+		/** Generated SQL. */
+		private final String sql;
+		/** Column indexes of the result set. */
+		private final Map<String, Integer> indexes;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param sql Generated SQL.
+		 * @param indexes Column indexes of the result set.
+		 */
+		private Shape(String sql, Map<String, Integer> indexes) {
+			this.sql = sql;
+			this.indexes = indexes;
+		}
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param maxSize Max number of cached shapes, 0 to disable the cache.
+	 * @param verifyRate One hit in this number is checked, 0 for none.
+	 */
+	SqlCache(final int maxSize, int verifyRate) {
+		this.maxSize = maxSize;
+		this.verifyRate = verifyRate;
+		this.entries = new LinkedHashMap<String, Shape>(16, 0.75f, true) {
+			/** Serial id. */
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Shape> eldest) {
+				if (size() <= maxSize) {
+					return false;
+				}
+				evicted.incrementAndGet();
+				return true;
+			}
+		};
+	}
+
+	/**
+	 * Returns the shared instance.
+	 *
+	 * @return the shared cache
+	 */
+	public static SqlCache getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Returns the SQL of a query. Fills its bind values and column indexes, as {@link SqlBuilder#toSql()} does.
+	 *
+	 * @param query The query.
+	 * @return The SQL query.
+	 */
+	public String toSql(DbQuery query) {
+		SqlBuilder builder = ApplicationUtils.getApplicationLogic().getSqlBuilder(query);
+		if (maxSize <= 0 || builder.getClass() != SqlBuilder.class) {
+			bypassed.incrementAndGet();
+			return builder.toSql();
+		}
+		StringBuilder shape = new StringBuilder(256).append(DbConnection.getDbType()).append(':');
+		List<Object> binds = new ArrayList<Object>();
+		if (!query.appendShape(shape, binds)) {
+			bypassed.incrementAndGet();
+			return builder.toSql();
+		}
+		String key = shape.toString();
+		Shape entry;
+		synchronized (entries) {
+			entry = entries.get(key);
+		}
+		if (entry == UNCACHEABLE) {
+			bypassed.incrementAndGet();
+			return builder.toSql();
+		}
+		if (entry != null) {
+			long hit = hits.incrementAndGet();
+			if (LOGGER.isDebugEnabled() || (verifyRate > 0 && hit % verifyRate == 0)) {
+				String sql = builder.toSql();
+				if (!sql.equals(entry.sql) || !binds.equals(query.bindValues)) {
+					mismatches.incrementAndGet();
+					LOGGER.warn("Query " + query.name + " is not cached any more : its shape gives the SQL of another query\n" + sql
+							+ "\ninstead of\n" + entry.sql);
+					synchronized (entries) {
+						entries.put(key, UNCACHEABLE);
+					}
+				}
+				return sql;
+			}
+			query.indexes.clear();
+			query.indexes.putAll(entry.indexes);
+			query.bindValues = binds;
+			if (LOGGER.isDebugEnabled()) {
+				LOGGER.debug("SQL Query (cached) :\n" + entry.sql);
+				LOGGER.debug("SQL Params : " + binds);
+			}
+			return entry.sql;
+		}
+		misses.incrementAndGet();
+		String sql = builder.toSql();
+		Shape built;
+		if (binds.equals(query.bindValues)) {
+			built = new Shape(sql, Collections.unmodifiableMap(new HashMap<String, Integer>(query.indexes)));
+		} else {
+			LOGGER.warn("Query " + query.name + " is not cached : its shape does not give the bind values of its SQL");
+			built = UNCACHEABLE;
+		}
+		synchronized (entries) {
+			if (!entries.containsKey(key)) {
+				entries.put(key, built);
+			}
+		}
+		return sql;
+	}
+
+	/**
+	 * Empties the cache, for example after a change of the schema properties.
+	 */
+	public void clear() {
+		synchronized (entries) {
+			entries.clear();
+		}
+	}
+
+	/**
+	 * @return the number of cached shapes
+	 */
+	public int size() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+
+	/**
+	 * @return the number of queries whose SQL was found in cache
+	 */
+	public long getHitCount() {
+		return hits.get();
+	}
+
+	/**
+	 * @return the number of queries whose SQL was built and cached
+	 */
+	public long getMissCount() {
+		return misses.get();
+	}
+
+	/**
+	 * @return the number of queries built without cache
+	 */
+	public long getBypassCount() {
+		return bypassed.get();
+	}
+
+	/**
+	 * @return the number of shapes evicted to make room
+	 */
+	public long getEvictionCount() {
+		return evicted.get();
+	}
+
+	/**
+	 * @return the number of cached shapes found to give the SQL of another query
+	 */
+	public long getMismatchCount() {
+		return mismatches.get();
+	}
+
+	/**
+	 * @return the share of queries whose SQL was found in cache, between 0 and 1
+	 */
+	public double getHitRatio() {
+		long total = hits.get() + misses.get() + bypassed.get();
+		return total == 0 ? 0d : (double) hits.get() / total;
+	}
+
+	/**
+	 * Reads an integer server property.
+	 *
+	 * @param key Property key.
+	 * @param defaultValue Value used if the property is missing or invalid.
+	 * @return the property value
+	 */
+	private static int readInt(String key, int defaultValue) {
+		String value = MessageUtils.getServerProperty(key);
+		if (value != null) {
+			try {
+				return Integer.parseInt(value.trim());
+			} catch (NumberFormatException e) {
+				LOGGER.warn("Invalid " + key + " " + value + ", " + defaultValue + " is used");
+			}
+		}
+		return defaultValue;
+	}
+}
@@ -0,0 +1,428 @@
+package com.cgi.commons.db;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+
+import com.cgi.commons.ref.context.RequestContext;
+import com.cgi.commons.utils.DurationHistogram;
+import com.cgi.commons.utils.MessageUtils;
+
+/**
+ * Statistics of the executed SQL statements, by shape : the statement with its literals replaced by {@code ?} and its lists of
+ * placeholders folded, so statements which differ only by their values or the length of an {@code IN} list add to the same shape.<br/>
+ * Each statement is also added to the timings of its request ({@link RequestContext#getSqlTimings()}). A statement slower than
+ * {@value #SLOW_THRESHOLD} ms is logged by the logger {@value #SLOW_LOGGER}, with the types of its bind values but not the values.
+ */
+public final class SqlStats {
+
+	/** Logger. */
+	private static final Logger LOGGER = Logger.getLogger(SqlStats.class);
+
+	/** Name of the logger of the slow statements, to send them to their own appender. */
+	public static final String SLOW_LOGGER = "com.cgi.commons.db.SlowQuery";
+
+	/** Server property : time in ms above which a statement is logged, 0 to log none. */
+	public static final String SLOW_THRESHOLD = "db.slowQuery.threshold";
+	/** Server property : max number of shapes, further statements add to a shared shape. */
+	public static final String MAX_SHAPES = "db.sqlStats.maxShapes";
+
+	/** Default time above which a statement is logged. */
+	private static final int DEFAULT_SLOW_THRESHOLD = 1000;
+	/** Default max number of shapes. */
+	private static final int DEFAULT_MAX_SHAPES = 500;
+	/** Max length of the text of a shape. */
+	private static final int MAX_TEXT = 2000;
+
+	/** Lists of placeholders. */
+	private static final Pattern PLACEHOLDER_LIST = Pattern.compile("\\(\\s*\\?(\\s*,\\s*\\?)+\\s*\\)");
+
+	/** Logger of the slow statements. */
+	private static final Logger SLOW = Logger.getLogger(SLOW_LOGGER);
+
+	/** Shared instance. */
+	private static final SqlStats INSTANCE = new SqlStats();
+
+	/** Time above which a statement is logged, in ns. */
+	private final long slowThreshold = TimeUnit.MILLISECONDS.toNanos(readInt(SLOW_THRESHOLD, DEFAULT_SLOW_THRESHOLD));
+	/** Max number of shapes. */
+	private final int maxShapes = Math.max(1, readInt(MAX_SHAPES, DEFAULT_MAX_SHAPES));
+
+	/** Shapes by fingerprint. */
+	private final ConcurrentHashMap<String, Shape> shapes = new ConcurrentHashMap<String, Shape>();
+	/** Shapes by executed SQL, to normalize each statement once. */
+	private final ConcurrentHashMap<String, Shape> bySql = new ConcurrentHashMap<String, Shape>();
+	/** Shape of the statements beyond the max number of shapes. */
+	private final Shape others = new Shape("others", "(other statements)");
+
+	/** Duration of all the statements, in microseconds. */
+	private final DurationHistogram durations = new DurationHistogram();
+	/** Failed statements. */
+	private final AtomicLong errors = new AtomicLong();
+	/** Fetched or updated rows. */
+	private final AtomicLong rows = new AtomicLong();
+	/** Slow statements. */
+	private final AtomicLong slow = new AtomicLong();
+
+	/**
+	 * Statistics of a shape of statements.
+	 */
+	public static final class Shape {
+		/** Fingerprint : hash of the text. */
+		private final String fingerprint;
+		/** Text of the statement, without its values. */
+		private final String text;
+		/** Duration of the statements, in microseconds. */
+		private final DurationHistogram durations = new DurationHistogram();
+		/** Failed statements. */
+		private final AtomicLong errors = new AtomicLong();
+		/** Fetched or updated rows. */
+		private final AtomicLong rows = new AtomicLong();
+		/** Time spent preparing and binding, in ns. */
+		private final AtomicLong prepareNanos = new AtomicLong();
+		/** Time spent executing, in ns. */
+		private final AtomicLong executeNanos = new AtomicLong();
+		/** Time spent fetching, in ns. */
+		private final AtomicLong fetchNanos = new AtomicLong();
+
+		/**
+		 * Constructor.
+		 *
+		 * @param fingerprint Fingerprint.
+		 * @param text Text of the statement.
+		 */
+		private Shape(String fingerprint, String text) {
+			this.fingerprint = fingerprint;
+			this.text = text;
+		}
+
+		/**
+		 * @return the fingerprint : hash of the text
+		 */
+		public String getFingerprint() {
+			return fingerprint;
+		}
+
+		/**
+		 * @return the text of the statement, without its values
+		 */
+		public String getText() {
+			return text;
+		}
+
+		/**
+		 * @return the duration of the statements, in microseconds
+		 */
+		public DurationHistogram getDurations() {
+			return durations;
+		}
+
+		/**
+		 * @return the number of failed statements
+		 */
+		public long getErrors() {
+			return errors.get();
+		}
+
+		/**
+		 * @return the number of fetched or updated rows
+		 */
+		public long getRows() {
+			return rows.get();
+		}
+
+		/**
+		 * @return the time spent preparing and binding, in ns
+		 */
+		public long getPrepareNanos() {
+			return prepareNanos.get();
+		}
+
+		/**
+		 * @return the time spent executing, in ns
+		 */
+		public long getExecuteNanos() {
+			return executeNanos.get();
+		}
+
+		/**
+		 * @return the time spent fetching, in ns
+		 */
+		public long getFetchNanos() {
+			return fetchNanos.get();
+		}
+
+		/**
+		 * @return the time spent in the database, in ns
+		 */
+		public long getTotalNanos() {
+			return prepareNanos.get() + executeNanos.get() + fetchNanos.get();
+		}
+	}
+
+	/**
+	 * Private constructor.
+	 */
+	private SqlStats() {
+	}
+
+	/**
+	 * Returns the shared instance.
+	 *
+	 * @return the statistics
+	 */
+	public static SqlStats getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Records an executed statement.
+	 *
+	 * @param sql Executed SQL.
+	 * @param binds Bind values, only their types are logged. May be null.
+	 * @param ctx Context of the request, may be null.
+	 * @param prepare Time spent preparing and binding the statement, in ns.
+	 * @param execute Time spent executing the statement, in ns.
+	 * @param fetch Time spent fetching the rows, in ns.
+	 * @param fetchedRows Fetched or updated rows.
+	 * @param failed Indicates if the statement failed.
+	 */
+	public void record(String sql, Object[] binds, RequestContext ctx, long prepare, long execute, long fetch, long fetchedRows,
+			boolean failed) {
+		long total = prepare + execute + fetch;
+		Shape shape = getShape(sql);
+		shape.durations.record(total / 1000);
+		shape.rows.addAndGet(fetchedRows);
+		shape.prepareNanos.addAndGet(prepare);
+		shape.executeNanos.addAndGet(execute);
+		shape.fetchNanos.addAndGet(fetch);
+		durations.record(total / 1000);
+		rows.addAndGet(fetchedRows);
+		if (failed) {
+			shape.errors.incrementAndGet();
+			errors.incrementAndGet();
+		}
+		if (ctx != null) {
+			ctx.getSqlTimings().add(prepare, execute, fetch, fetchedRows, failed);
+		}
+		if (slowThreshold > 0 && total >= slowThreshold) {
+			slow.incrementAndGet();
+			if (SLOW.isEnabledFor(Level.WARN)) {
+				SLOW.warn("Slow statement " + millis(total) + " ms (prepare " + millis(prepare) + " ms, execute " + millis(execute)
+						+ " ms, fetch " + millis(fetch) + " ms, " + fetchedRows + " rows" + (failed ? ", failed" : "") + ") [" + shape.fingerprint
+						+ "] " + sql + (binds != null ? " binds " + redact(binds) : ""));
+			}
+		}
+	}
+
+	/**
+	 * Returns the shapes, the most time consuming first.
+	 *
+	 * @param max Max number of shapes.
+	 * @return the shapes
+	 */
+	public List<Shape> getTopShapes(int max) {
+		List<Shape> list = new ArrayList<Shape>(shapes.values());
+		if (others.durations.getCount() > 0) {
+			list.add(others);
+		}
+		Collections.sort(list, new Comparator<Shape>() {
+			@Override
+			public int compare(Shape s1, Shape s2) {
+				return Long.compare(s2.getTotalNanos(), s1.getTotalNanos());
+			}
+		});
+		return list.size() > max ? list.subList(0, max) : list;
+	}
+
+	/**
+	 * @return the duration of all the statements, in microseconds
+	 */
+	public DurationHistogram getDurations() {
+		return durations;
+	}
+
+	/**
+	 * @return the number of failed statements
+	 */
+	public long getErrors() {
+		return errors.get();
+	}
+
+	/**
+	 * @return the number of fetched or updated rows
+	 */
+	public long getRows() {
+		return rows.get();
+	}
+
+	/**
+	 * @return the number of statements slower than {@value #SLOW_THRESHOLD}
+	 */
+	public long getSlowCount() {
+		return slow.get();
+	}
+
+	/**
+	 * @return the number of shapes
+	 */
+	public int getShapeCount() {
+		return shapes.size();
+	}
+
+	/**
+	 * Returns the shape of a statement.
+	 *
+	 * @param sql Executed SQL.
+	 * @return the shape
+	 */
+	private Shape getShape(String sql) {
+		Shape shape = bySql.get(sql);
+		if (shape != null) {
+			return shape;
+		}
+		String text = normalize(sql);
+		String fingerprint = DigestUtils.md5Hex(text).substring(0, 16);
+		shape = shapes.get(fingerprint);
+		if (shape == null) {
+			if (shapes.size() >= maxShapes) {
+				shape = others;
+			} else {
+				Shape created = new Shape(fingerprint, text.length() > MAX_TEXT ? text.substring(0, MAX_TEXT) + "..." : text);
+				shape = shapes.putIfAbsent(fingerprint, created);
+				if (shape == null) {
+					shape = created;
+				}
+			}
+		}
+		// Statements with literals may all differ : their normalization is not kept beyond a bound
+		if (bySql.size() < maxShapes * 4) {
+			bySql.put(sql, shape);
+		}
+		return shape;
+	}
+
+	/**
+	 * Replaces the literals of a statement by {@code ?}, folds the lists of placeholders and the white spaces.
+	 *
+	 * @param sql The statement.
+	 * @return the shape of the statement
+	 */
+	static String normalize(String sql) {
+		StringBuilder sb = new StringBuilder(sql.length());
+		int i = 0;
+		int length = sql.length();
+		while (i < length) {
+			char c = sql.charAt(i);
+			if (c == '\'') {
+				// String literal, quotes are escaped by doubling them
+				i++;
+				while (i < length) {
+					if (sql.charAt(i) == '\'') {
+						if (i + 1 < length && sql.charAt(i + 1) == '\'') {
+							i += 2;
+							continue;
+						}
+						break;
+					}
+					i++;
+				}
+				sb.append('?');
+				i++;
+			} else if (Character.isDigit(c) && !isIdentifierEnd(sb)) {
+				// Number literal
+				while (i < length && (Character.isDigit(sql.charAt(i)) || sql.charAt(i) == '.')) {
+					i++;
+				}
+				sb.append('?');
+			} else if (Character.isWhitespace(c)) {
+				while (i < length && Character.isWhitespace(sql.charAt(i))) {
+					i++;
+				}
+				if (sb.length() > 0) {
+					sb.append(' ');
+				}
+			} else {
+				sb.append(c);
+				i++;
+			}
+		}
+		return PLACEHOLDER_LIST.matcher(sb.toString().trim()).replaceAll("(?+)");
+	}
+
+	/**
+	 * Indicates if a text ends with part of an identifier, a digit then belongs to the identifier.
+	 *
+	 * @param sb The text.
+	 * @return true if the last character is a letter, a digit, {@code _}, {@code $} or {@code "}
+	 */
+	private static boolean isIdentifierEnd(StringBuilder sb) {
+		if (sb.length() == 0) {
+			return false;
+		}
+		char last = sb.charAt(sb.length() - 1);
+		return Character.isLetterOrDigit(last) || last == '_' || last == '$' || last == '"';
+	}
+
+	/**
+	 * Describes bind values without their values : types, and lengths of the texts.
+	 *
+	 * @param binds Bind values.
+	 * @return the description
+	 */
+	private static String redact(Object[] binds) {
+		StringBuilder sb = new StringBuilder("[");
+		for (int i = 0; i < binds.length; i++) {
+			if (i > 0) {
+				sb.append(", ");
+			}
+			Object bind = binds[i];
+			if (bind == null) {
+				sb.append("null");
+			} else if (bind instanceof String) {
+				sb.append("String(").append(((String) bind).length()).append(')');
+			} else {
+				sb.append(bind.getClass().getSimpleName());
+			}
+		}
+		return sb.append(']').toString();
+	}
+
+	/**
+	 * Converts a duration.
+	 *
+	 * @param nanos Duration in ns.
+	 * @return the duration in ms
+	 */
+	private static long millis(long nanos) {
+		return TimeUnit.NANOSECONDS.toMillis(nanos);
+	}
+
+	/**
+	 * Reads an integer property.
+	 *
+	 * @param property Name of the property.
+	 * @param defaultValue Default value.
+	 * @return the server property, or its default value
+	 */
+	private static int readInt(String property, int defaultValue) {
+		String value = MessageUtils.getServerProperty(property);
+		if (value != null) {
+			try {
+				return Integer.parseInt(value.trim());
+			} catch (NumberFormatException e) {
+				LOGGER.warn("Invalid " + property + " " + value + ", " + defaultValue + " is used");
+			}
+		}
+		return defaultValue;
+	}
+}
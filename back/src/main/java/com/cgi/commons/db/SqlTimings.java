@@ -0,0 +1,99 @@
+package com.cgi.commons.db;
+
+import java.io.Serializable;
+
+/**
+ * Time spent in the database by one request : statements executed, rows fetched and time spent preparing, executing and fetching.<br/>
+ * Kept as an attribute of the HTTP request (see {@link com.cgi.commons.ref.context.RequestContext#getSqlTimings()}), so the contexts
+ * opened by a request add to the same timings.
+ */
+public class SqlTimings implements Serializable {
+
+	/** Serial id. */
+	private static final long serialVersionUID = -3790426140187226525L;
+
+	/** Name of the attribute of the HTTP request. */
+	public static final String ATTRIBUTE = SqlTimings.class.getName();
+
+	/** Executed statements. */
+	private int count;
+	/** Failed statements. */
+	private int errors;
+	/** Fetched or updated rows. */
+	private long rows;
+	/** Time spent preparing and binding the statements, in ns. */
+	private long prepareNanos;
+	/** Time spent executing the statements, in ns. */
+	private long executeNanos;
+	/** Time spent fetching the rows, in ns. */
+	private long fetchNanos;
+
+	/**
+	 * Adds an executed statement.
+	 *
+	 * @param prepare Time spent preparing and binding the statement, in ns.
+	 * @param execute Time spent executing the statement, in ns.
+	 * @param fetch Time spent fetching the rows, in ns.
+	 * @param fetchedRows Fetched or updated rows.
+	 * @param failed Indicates if the statement failed.
+	 */
+	public synchronized void add(long prepare, long execute, long fetch, long fetchedRows, boolean failed) {
+		count++;
+		if (failed) {
+			errors++;
+		}
+		rows += fetchedRows;
+		prepareNanos += prepare;
+		executeNanos += execute;
+		fetchNanos += fetch;
+	}
+
+	/**
+	 * @return the number of executed statements
+	 */
+	public synchronized int getCount() {
+		return count;
+	}
+
+	/**
+	 * @return the number of failed statements
+	 */
+	public synchronized int getErrors() {
+		return errors;
+	}
+
+	/**
+	 * @return the number of fetched or updated rows
+	 */
+	public synchronized long getRows() {
+		return rows;
+	}
+
+	/**
+	 * @return the time spent preparing and binding the statements, in ns
+	 */
+	public synchronized long getPrepareNanos() {
+		return prepareNanos;
+	}
+
+	/**
+	 * @return the time spent executing the statements, in ns
+	 */
+	public synchronized long getExecuteNanos() {
+		return executeNanos;
+	}
+
+	/**
+	 * @return the time spent fetching the rows, in ns
+	 */
+	public synchronized long getFetchNanos() {
+		return fetchNanos;
+	}
+
+	/**
+	 * @return the time spent in the database, in ns
+	 */
+	public synchronized long getTotalNanos() {
+		return prepareNanos + executeNanos + fetchNanos;
+	}
+}
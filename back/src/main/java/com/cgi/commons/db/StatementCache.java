@@ -0,0 +1,166 @@
+package com.cgi.commons.db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+
+import com.cgi.commons.utils.MessageUtils;
+
+/**
+ * Prepared statements of a connection, kept for reuse once released.<br/>
+ * A statement is taken out of the cache while it is in use : two open {@link DbManager}s on the same SQL get two statements. The least
+ * recently used statements are closed when more than {@value #SIZE} are idle.
+ */
+public final class StatementCache {
+
+	/** Logger. */
+	private static final Logger LOGGER = Logger.getLogger(StatementCache.class);
+
+	/** Server property : max number of idle statements per connection, 0 to disable the cache. */
+	public static final String SIZE = "db.statementCache.size";
+
+	/** Default max number of idle statements per connection. */
+	private static final int DEFAULT_SIZE = 50;
+
+	/** Max number of idle statements per connection. */
+	private static final int MAX_SIZE = readSize();
+
+	/** Statements prepared, all connections. */
+	private static final AtomicLong PREPARED = new AtomicLong();
+	/** Statements reused, all connections. */
+	private static final AtomicLong REUSED = new AtomicLong();
+
+	/** Idle statements by key, least recently used first. */
+	private final LinkedHashMap<String, PreparedStatement> idle = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true);
+	/** Keys of the statements in use. */
+	private final Map<PreparedStatement, String> borrowed = new IdentityHashMap<PreparedStatement, String>();
+
+	/**
+	 * Returns an idle statement for this SQL, or prepares a new one.
+	 *
+	 * @param cnx Connection of this cache.
+	 * @param sql SQL statement.
+	 * @param resultSetType Result set type.
+	 * @param resultSetConcurrency Result set concurrency.
+	 * @return the statement, to give back with {@link #release(PreparedStatement)}
+	 * @throws SQLException If error.
+	 */
+	synchronized PreparedStatement prepare(Connection cnx, String sql, int resultSetType, int resultSetConcurrency) throws SQLException {
+		if (MAX_SIZE <= 0) {
+			PREPARED.incrementAndGet();
+			return cnx.prepareStatement(sql, resultSetType, resultSetConcurrency);
+		}
+		String key = resultSetType + ":" + resultSetConcurrency + ":" + sql;
+		PreparedStatement ps = idle.remove(key);
+		if (ps != null) {
+			REUSED.incrementAndGet();
+		} else {
+			ps = cnx.prepareStatement(sql, resultSetType, resultSetConcurrency);
+			PREPARED.incrementAndGet();
+		}
+		borrowed.put(ps, key);
+		return ps;
+	}
+
+	/**
+	 * Gives back a statement. It is closed if it was not prepared by this cache or if an idle one already exists for its SQL.
+	 *
+	 * @param ps The statement.
+	 * @throws SQLException If error.
+	 */
+	synchronized void release(PreparedStatement ps) throws SQLException {
+		String key = borrowed.remove(ps);
+		if (key == null || idle.containsKey(key)) {
+			ps.close();
+			return;
+		}
+		idle.put(key, ps);
+		if (idle.size() > MAX_SIZE) {
+			Iterator<PreparedStatement> eldest = idle.values().iterator();
+			PreparedStatement evicted = eldest.next();
+			eldest.remove();
+			closeQuietly(evicted);
+		}
+	}
+
+	/**
+	 * Closes the idle statements. Statements in use are closed with their connection.
+	 */
+	synchronized void close() {
+		for (PreparedStatement ps : idle.values()) {
+			closeQuietly(ps);
+		}
+		idle.clear();
+		borrowed.clear();
+	}
+
+	/**
+	 * Closes the statements still in use, which were not given back. The idle statements stay open : the connection goes back to the
+	 * {@link ConnectionPool} with them.
+	 */
+	synchronized void closeBorrowed() {
+		for (PreparedStatement ps : borrowed.keySet()) {
+			closeQuietly(ps);
+		}
+		borrowed.clear();
+	}
+
+	/**
+	 * @return the number of statements prepared, all connections
+	 */
+	public static long getPreparedCount() {
+		return PREPARED.get();
+	}
+
+	/**
+	 * @return the number of statements reused, all connections
+	 */
+	public static long getReusedCount() {
+		return REUSED.get();
+	}
+
+	/**
+	 * @return the share of statements reused, between 0 and 1
+	 */
+	public static double getHitRatio() {
+		long total = PREPARED.get() + REUSED.get();
+		return total == 0 ? 0d : (double) REUSED.get() / total;
+	}
+
+	/**
+	 * Closes a statement, logging errors.
+	 *
+	 * @param ps The statement.
+	 */
+	private static void closeQuietly(PreparedStatement ps) {
+		try {
+			ps.close();
+		} catch (SQLException e) {
+			LOGGER.warn("Error closing cached statement", e);
+		}
+	}
+
+	/**
+	 * Reads the max number of idle statements.
+	 *
+	 * @return the server property {@value #SIZE}, or its default value
+	 */
+	private static int readSize() {
+		String value = MessageUtils.getServerProperty(SIZE);
+		if (value != null) {
+			try {
+				return Integer.parseInt(value.trim());
+			} catch (NumberFormatException e) {
+				LOGGER.warn("Invalid " + SIZE + " " + value + ", " + DEFAULT_SIZE + " is used");
+			}
+		}
+		return DEFAULT_SIZE;
+	}
+}
@@ -0,0 +1,446 @@
+package com.cgi.commons.db;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+
+import com.cgi.business.application.User;
+import com.cgi.commons.ref.context.RequestContext;
+import com.cgi.commons.ref.entity.Action;
+import com.cgi.commons.ref.entity.Entity;
+
+/**
+ * Write-behind queue : entities are accepted into a bounded in-memory queue and inserted later by a background flusher, with
+ * {@link DB#insertBatch(List, Action, RequestContext)}. A flush is triggered when <code>batchSize</code> entities are waiting or when the
+ * oldest waiting entity is <code>flushInterval</code> ms old.<br/>
+ * <br/>
+ * Accepted entities are not persisted yet : they are lost if the server stops abruptly, and business errors at flush time can only be
+ * logged. The flusher reuses the same database connection between flushes.
+ *
+ * @param <E> Entity class.
+ */
+public class WriteBehindQueue<E extends Entity> {
+
+	/** Logger. */
+	private static final Logger LOGGER = Logger.getLogger(WriteBehindQueue.class);
+
+	/** Behavior when the queue is full. */
+	public enum OverflowPolicy {
+		/** The caller waits for free space, up to <code>blockTimeout</code> ms, then the entity is rejected. */
+		BLOCK,
+		/** The oldest waiting entity is dropped to make room. */
+		DROP_OLDEST,
+		/** The entity is rejected at once. */
+		REJECT
+	}
+
+	/** Entity waiting in the queue. */
+	private static final class Pending<E> {
+		/** Entity. */
+		private final E entity;
+		/** Time it was accepted, in ms. */
+		private final long acceptedAt;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param entity Entity.
+		 */
+		private Pending(E entity) {
+			this.entity = entity;
+			this.acceptedAt = System.currentTimeMillis();
+		}
+	}
+
+	/** Started queues, for monitoring. */
+	private static final Set<WriteBehindQueue<?>> STARTED = Collections.newSetFromMap(new ConcurrentHashMap<WriteBehindQueue<?>, Boolean>());
+
+	/** Queue name, used for logs and the flusher thread. */
+	private final String name;
+	/** Action used for the inserts. */
+	private final Action action;
+	/** Waiting entities. */
+	private final BlockingQueue<Pending<E>> queue;
+	/** Max number of entities inserted in one flush. */
+	private final int batchSize;
+	/** Max time an entity waits before being flushed, in ms. */
+	private final long flushInterval;
+	/** Behavior when the queue is full. */
+	private final OverflowPolicy overflowPolicy;
+	/** Max wait for the BLOCK policy, in ms. */
+	private final long blockTimeout;
+
+	/** Entities accepted. */
+	private final AtomicLong accepted = new AtomicLong();
+	/** Entities rejected because the queue was full. */
+	private final AtomicLong rejected = new AtomicLong();
+	/** Entities dropped by the DROP_OLDEST policy. */
+	private final AtomicLong dropped = new AtomicLong();
+	/** Entities inserted. */
+	private final AtomicLong flushed = new AtomicLong();
+	/** Entities lost because their flush failed. */
+	private final AtomicLong failed = new AtomicLong();
+	/** Number of flushes. */
+	private final AtomicLong flushCount = new AtomicLong();
+	/** Cumulated flush duration, in ms. */
+	private final AtomicLong flushTime = new AtomicLong();
+	/** Duration of the last flush, in ms. */
+	private volatile long lastFlushDuration;
+	/** Lag of the last flush : time between acceptance of its oldest entity and commit, in ms. */
+	private volatile long lastLag;
+	/** Highest lag observed, in ms. */
+	private volatile long maxLag;
+
+	/** Flusher thread. */
+	private Thread flusher;
+	/** False once stop is requested. */
+	private volatile boolean running;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param name Queue name.
+	 * @param action Action used for the inserts.
+	 * @param capacity Max number of waiting entities.
+	 * @param batchSize Max number of entities inserted in one flush.
+	 * @param flushInterval Max time an entity waits before being flushed, in ms.
+	 * @param overflowPolicy Behavior when the queue is full.
+	 * @param blockTimeout Max wait for the BLOCK policy, in ms.
+	 */
+	public WriteBehindQueue(String name, Action action, int capacity, int batchSize, long flushInterval, OverflowPolicy overflowPolicy,
+			long blockTimeout) {
+		this.name = name;
+		this.action = action;
+		this.queue = new ArrayBlockingQueue<Pending<E>>(capacity);
+		this.batchSize = batchSize;
+		this.flushInterval = flushInterval;
+		this.overflowPolicy = overflowPolicy;
+		this.blockTimeout = blockTimeout;
+	}
+
+	/**
+	 * Starts the flusher thread.
+	 */
+	public synchronized void start() {
+		if (flusher != null) {
+			return;
+		}
+		running = true;
+		flusher = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				flushLoop();
+			}
+		}, "write-behind-" + name);
+		flusher.setDaemon(true);
+		flusher.start();
+		STARTED.add(this);
+	}
+
+	/**
+	 * Stops accepting entities, flushes the waiting ones and stops the flusher thread.
+	 *
+	 * @param timeout Max wait for the last flush, in ms.
+	 */
+	public synchronized void stop(long timeout) {
+		running = false;
+		STARTED.remove(this);
+		if (flusher == null) {
+			return;
+		}
+		try {
+			flusher.join(timeout);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		if (flusher.isAlive()) {
+			LOGGER.warn("Write-behind queue " + name + " stopped with " + queue.size() + " entities not flushed");
+			flusher.interrupt();
+		}
+		flusher = null;
+	}
+
+	/**
+	 * Accepts an entity according to the overflow policy.
+	 *
+	 * @param entity Entity to insert.
+	 * @return <code>false</code> if the entity is rejected.
+	 */
+	public boolean offer(E entity) {
+		return offer(entity, System.currentTimeMillis() + blockTimeout);
+	}
+
+	/**
+	 * Accepts an entity according to the overflow policy.
+	 *
+	 * @param entity Entity to insert.
+	 * @param deadline Time after which a blocked offer gives up, in ms.
+	 * @return <code>false</code> if the entity is rejected.
+	 */
+	private boolean offer(E entity, long deadline) {
+		if (!running) {
+			rejected.incrementAndGet();
+			return false;
+		}
+		Pending<E> pending = new Pending<E>(entity);
+		boolean ok;
+		switch (overflowPolicy) {
+		case BLOCK:
+			try {
+				ok = queue.offer(pending, Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				ok = false;
+			}
+			break;
+		case DROP_OLDEST:
+			ok = queue.offer(pending);
+			while (!ok) {
+				if (queue.poll() != null) {
+					dropped.incrementAndGet();
+				}
+				ok = queue.offer(pending);
+			}
+			break;
+		default:
+			ok = queue.offer(pending);
+			break;
+		}
+		if (ok) {
+			accepted.incrementAndGet();
+		} else {
+			rejected.incrementAndGet();
+		}
+		return ok;
+	}
+
+	/**
+	 * Accepts entities according to the overflow policy. With {@link OverflowPolicy#BLOCK}, the whole call waits at most the block
+	 * timeout : once it is over, the remaining entities are only accepted if there is room left.
+	 *
+	 * @param entities Entities to insert.
+	 * @return Number of entities accepted.
+	 */
+	public int offerAll(List<E> entities) {
+		long deadline = System.currentTimeMillis() + blockTimeout;
+		int count = 0;
+		for (E entity : entities) {
+			if (offer(entity, deadline)) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Flusher thread body.
+	 */
+	private void flushLoop() {
+		List<Pending<E>> batch = new ArrayList<Pending<E>>(batchSize);
+		RequestContext ctx = null;
+		try {
+			while (running || !queue.isEmpty()) {
+				Pending<E> first = queue.poll(flushInterval, TimeUnit.MILLISECONDS);
+				if (first == null) {
+					continue;
+				}
+				batch.add(first);
+				queue.drainTo(batch, batchSize - 1);
+				long deadline = first.acceptedAt + flushInterval;
+				while (running && batch.size() < batchSize) {
+					long wait = deadline - System.currentTimeMillis();
+					Pending<E> next = wait > 0 ? queue.poll(wait, TimeUnit.MILLISECONDS) : null;
+					if (next == null) {
+						break;
+					}
+					batch.add(next);
+					queue.drainTo(batch, batchSize - batch.size());
+				}
+				if (ctx == null) {
+					ctx = new RequestContext(new User("admin"));
+				}
+				if (!flush(batch, ctx)) {
+					// The connection may be broken, a new one is opened for the next flush
+					closeQuietly(ctx);
+					ctx = null;
+				}
+				batch.clear();
+			}
+		} catch (InterruptedException e) {
+			LOGGER.warn("Write-behind queue " + name + " interrupted with " + (batch.size() + queue.size()) + " entities not flushed");
+		} finally {
+			closeQuietly(ctx);
+		}
+	}
+
+	/**
+	 * Inserts and commits a batch.
+	 *
+	 * @param batch Entities to insert.
+	 * @param ctx Flusher context.
+	 * @return <code>false</code> if the flush failed.
+	 */
+	private boolean flush(List<Pending<E>> batch, RequestContext ctx) {
+		long start = System.currentTimeMillis();
+		List<E> entities = new ArrayList<E>(batch.size());
+		for (Pending<E> pending : batch) {
+			entities.add(pending.entity);
+		}
+		try {
+			DB.insertBatch(entities, action, ctx);
+			ctx.getDbConnection().commit();
+		} catch (RuntimeException e) {
+			failed.addAndGet(batch.size());
+			LOGGER.error("Write-behind queue " + name + " : cannot insert " + batch.size() + " entities " + ctx.getMessages(), e);
+			try {
+				ctx.getDbConnection().rollback();
+			} catch (RuntimeException r) {
+				LOGGER.error("Write-behind queue " + name + " : rollback failed", r);
+			}
+			return false;
+		} finally {
+			ctx.getMessages().clear();
+		}
+		long end = System.currentTimeMillis();
+		flushed.addAndGet(batch.size());
+		flushCount.incrementAndGet();
+		lastFlushDuration = end - start;
+		flushTime.addAndGet(lastFlushDuration);
+		lastLag = end - batch.get(0).acceptedAt;
+		if (lastLag > maxLag) {
+			maxLag = lastLag;
+		}
+		return true;
+	}
+
+	/**
+	 * Closes the flusher context, ignoring errors.
+	 *
+	 * @param ctx Context to close.
+	 */
+	private void closeQuietly(RequestContext ctx) {
+		if (ctx == null) {
+			return;
+		}
+		try {
+			ctx.close();
+		} catch (RuntimeException e) {
+			LOGGER.warn("Write-behind queue " + name + " : cannot close connection", e);
+		}
+	}
+
+	/**
+	 * @return the started queues, not yet stopped
+	 */
+	public static Collection<WriteBehindQueue<?>> getStartedQueues() {
+		return Collections.unmodifiableSet(STARTED);
+	}
+
+	/**
+	 * @return the queue name
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return <code>true</code> if the flusher is running
+	 */
+	public boolean isRunning() {
+		return running;
+	}
+
+	/**
+	 * @return the number of entities waiting to be flushed
+	 */
+	public int getQueueSize() {
+		return queue.size();
+	}
+
+	/**
+	 * @return the max number of waiting entities
+	 */
+	public int getCapacity() {
+		return queue.size() + queue.remainingCapacity();
+	}
+
+	/**
+	 * @return the number of entities accepted
+	 */
+	public long getAcceptedCount() {
+		return accepted.get();
+	}
+
+	/**
+	 * @return the number of entities rejected because the queue was full or stopped
+	 */
+	public long getRejectedCount() {
+		return rejected.get();
+	}
+
+	/**
+	 * @return the number of entities dropped by the DROP_OLDEST policy
+	 */
+	public long getDroppedCount() {
+		return dropped.get();
+	}
+
+	/**
+	 * @return the number of entities inserted
+	 */
+	public long getFlushedCount() {
+		return flushed.get();
+	}
+
+	/**
+	 * @return the number of entities lost because their flush failed
+	 */
+	public long getFailedCount() {
+		return failed.get();
+	}
+
+	/**
+	 * @return the number of successful flushes
+	 */
+	public long getFlushCount() {
+		return flushCount.get();
+	}
+
+	/**
+	 * @return the average flush duration, in ms
+	 */
+	public long getAverageFlushDuration() {
+		long count = flushCount.get();
+		return count == 0 ? 0 : flushTime.get() / count;
+	}
+
+	/**
+	 * @return the duration of the last flush, in ms
+	 */
+	public long getLastFlushDuration() {
+		return lastFlushDuration;
+	}
+
+	/**
+	 * @return the time between acceptance and commit of the oldest entity of the last flush, in ms
+	 */
+	public long getLastLag() {
+		return lastLag;
+	}
+
+	/**
+	 * @return the highest lag observed, in ms
+	 */
+	public long getMaxLag() {
+		return maxLag;
+	}
+}
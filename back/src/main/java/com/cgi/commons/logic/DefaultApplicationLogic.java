@@ -11,10 +11,12 @@ import java.util.Locale;
 import com.cgi.business.application.User;
 import com.cgi.commons.db.ConnectionLogger;
 import com.cgi.commons.db.ConnectionObject;
+import com.cgi.commons.db.ConnectionPool;
 import com.cgi.commons.db.DbQuery;
 import com.cgi.commons.db.SqlBuilder;
 import com.cgi.commons.ref.context.ApplicationContext;
 import com.cgi.commons.ref.context.RequestContext;
+import com.cgi.commons.utils.Thumbnails;
 
 /**
  * Default implementation for the application logic methods.
@@ -113,6 +115,8 @@ public class DefaultApplicationLogic {
 		for (ConnectionObject c : connections) {
 			c.close();
 		}
+		ConnectionPool.shutdown();
+		Thumbnails.shutdown();
 	}
 
 	/**
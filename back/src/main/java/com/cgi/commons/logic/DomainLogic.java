@@ -85,17 +85,7 @@ public abstract class DomainLogic<E extends Entity> {
 	 */
 	public final void internalDbOnSave(E bean, Action action, RequestContext ctx) {
 		try {
-			for (String fieldName : bean.getModel().getFields()) {
-				EntityField field = bean.getModel().getField(fieldName);
-				if (field.getDefaultValue() != null && bean.invokeGetter(fieldName) == null) {
-					Object defaultValue = field.getDefaultValue();
-					if (defaultValue instanceof String && SpecialValue.from(defaultValue) != null) {
-						// replace special value
-						defaultValue = EntityManager.getSpecialValue(field.getSqlType(), field.getSqlAccuracy(), SpecialValue.from(defaultValue));
-					}
-					bean.invokeSetter(fieldName, defaultValue);
-				}
-			}
+			setDefaultValues(bean);
 			dbOnSave(bean, action, ctx);
 		} catch (FunctionalException fEx) {
 			ctx.getMessages().addAll(fEx.getMessages()); 
@@ -103,6 +93,58 @@ public abstract class DomainLogic<E extends Entity> {
 		}
 	}
 
+	/**
+	 * Called before persistance of a list of entities (batch insert).
+	 * 
+	 * @param beans Entity instances to be persisted.
+	 * @param action Current action.
+	 * @param ctx Current request context.
+	 */
+	public final void internalDbOnSaveBatch(List<E> beans, Action action, RequestContext ctx) {
+		try {
+			for (E bean : beans) {
+				setDefaultValues(bean);
+			}
+			dbOnSaveBatch(beans, action, ctx);
+		} catch (FunctionalException fEx) {
+			ctx.getMessages().addAll(fEx.getMessages()); 
+			throw fEx; 
+		}
+	}
+
+	/**
+	 * Sets default values of empty fields.
+	 * 
+	 * @param bean Entity instance to be persisted.
+	 */
+	private void setDefaultValues(E bean) {
+		for (String fieldName : bean.getModel().getFields()) {
+			EntityField field = bean.getModel().getField(fieldName);
+			if (field.getDefaultValue() != null && bean.invokeGetter(fieldName) == null) {
+				Object defaultValue = field.getDefaultValue();
+				if (defaultValue instanceof String && SpecialValue.from(defaultValue) != null) {
+					// replace special value
+					defaultValue = EntityManager.getSpecialValue(field.getSqlType(), field.getSqlAccuracy(), SpecialValue.from(defaultValue));
+				}
+				bean.invokeSetter(fieldName, defaultValue);
+			}
+		}
+	}
+
+	/**
+	 * Called once before persistance of a list of entities (batch insert). Default behavior calls
+	 * {@link #dbOnSave(Entity, Action, RequestContext)} for each entity, override it to share work across the list.
+	 * 
+	 * @param beans Entity instances to be persisted.
+	 * @param action Current action.
+	 * @param ctx Current request context.
+	 */
+	public void dbOnSaveBatch(List<E> beans, Action action, RequestContext ctx) {
+		for (E bean : beans) {
+			dbOnSave(bean, action, ctx);
+		}
+	}
+
 	/**
 	 * Called before entity persistance.
 	 * 
@@ -20,6 +20,7 @@ import org.apache.log4j.Logger;
 
 import com.cgi.business.application.User;
 import com.cgi.commons.db.DbConnection;
+import com.cgi.commons.db.SqlTimings;
 import com.cgi.commons.ref.Constants;
 import com.cgi.commons.ref.controller.BusinessController;
 import com.cgi.commons.ref.data.Message;
@@ -67,6 +68,9 @@ public class RequestContext implements Serializable, Closeable {
 	/** Count queries executed with this context */
 	private int queryNbRequests = 0;
 
+	/** Time spent in the database, when there is no HTTP request. */
+	private transient SqlTimings sqlTimings;
+
 	/**
 	 * Creates a new Request Context linked to a Session Context.
 	 */
@@ -393,6 +397,26 @@ public class RequestContext implements Serializable, Closeable {
 		queryNbRequests++;
 	}
 
+	/**
+	 * Returns the time spent in the database. The timings are shared by the contexts of the same HTTP request.
+	 * 
+	 * @return The timings of the HTTP request, or of this context if there is none.
+	 */
+	public SqlTimings getSqlTimings() {
+		if (httpServletRequest != null) {
+			SqlTimings timings = (SqlTimings) httpServletRequest.getAttribute(SqlTimings.ATTRIBUTE);
+			if (timings == null) {
+				timings = new SqlTimings();
+				httpServletRequest.setAttribute(SqlTimings.ATTRIBUTE, timings);
+			}
+			return timings;
+		}
+		if (sqlTimings == null) {
+			sqlTimings = new SqlTimings();
+		}
+		return sqlTimings;
+	}
+
 	public HttpServletRequest getHttpServletRequest() {
 		return httpServletRequest;
 	}
@@ -0,0 +1,143 @@
+package com.cgi.commons.ref.context;
+
+import javax.servlet.ServletRequest;
+
+/**
+ * Time spent by one HTTP request in each layer : authentication, business logic and serialization of the response. The time spent in
+ * the database is kept apart, in {@link com.cgi.commons.db.SqlTimings}.<br/>
+ * Kept as an attribute of the HTTP request, created by the security filter or by the endpoint metrics filter, then filled by the layers
+ * the request goes through.
+ */
+public class RequestTimings {
+
+	/** Name of the attribute of the HTTP request. */
+	public static final String ATTRIBUTE = RequestTimings.class.getName();
+
+	/** Time the request started, in ns. */
+	private final long start;
+	/** Time spent authenticating, in ns. */
+	private long authNanos;
+	/** Time spent in business logic, time spent in the database excluded, in ns. */
+	private long businessNanos;
+	/** Time spent writing the response, time spent in the database excluded, in ns. */
+	private long serializationNanos;
+	/** Code of the first processed action, null if none. */
+	private String action;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param start Time the request started, in ns.
+	 */
+	public RequestTimings(long start) {
+		this.start = start;
+	}
+
+	/**
+	 * Returns the timings of an HTTP request, created if needed.
+	 *
+	 * @param request HTTP request.
+	 * @return the timings
+	 */
+	public static RequestTimings start(ServletRequest request) {
+		RequestTimings timings = get(request);
+		if (timings == null) {
+			timings = new RequestTimings(System.nanoTime());
+			request.setAttribute(ATTRIBUTE, timings);
+		}
+		return timings;
+	}
+
+	/**
+	 * Returns the timings of an HTTP request.
+	 *
+	 * @param request HTTP request, may be null.
+	 * @return the timings, null if the request is not timed
+	 */
+	public static RequestTimings get(ServletRequest request) {
+		return request == null ? null : (RequestTimings) request.getAttribute(ATTRIBUTE);
+	}
+
+	/**
+	 * Returns the timings of the HTTP request of a context.
+	 *
+	 * @param ctx Context.
+	 * @return the timings, null if the context has no HTTP request or the request is not timed
+	 */
+	public static RequestTimings get(RequestContext ctx) {
+		return ctx == null ? null : get(ctx.getHttpServletRequest());
+	}
+
+	/**
+	 * @return the time the request started, in ns
+	 */
+	public long getStart() {
+		return start;
+	}
+
+	/**
+	 * Adds time spent authenticating.
+	 *
+	 * @param nanos Time in ns.
+	 */
+	public synchronized void addAuth(long nanos) {
+		authNanos += nanos;
+	}
+
+	/**
+	 * Adds time spent in business logic.
+	 *
+	 * @param nanos Time in ns, time spent in the database excluded.
+	 */
+	public synchronized void addBusiness(long nanos) {
+		businessNanos += Math.max(0, nanos);
+	}
+
+	/**
+	 * Adds time spent writing the response.
+	 *
+	 * @param nanos Time in ns, time spent in the database excluded.
+	 */
+	public synchronized void addSerialization(long nanos) {
+		serializationNanos += Math.max(0, nanos);
+	}
+
+	/**
+	 * Sets the code of the processed action, only the first one is kept.
+	 *
+	 * @param code Action code.
+	 */
+	public synchronized void setAction(String code) {
+		if (action == null) {
+			action = code;
+		}
+	}
+
+	/**
+	 * @return the time spent authenticating, in ns
+	 */
+	public synchronized long getAuthNanos() {
+		return authNanos;
+	}
+
+	/**
+	 * @return the time spent in business logic, time spent in the database excluded, in ns
+	 */
+	public synchronized long getBusinessNanos() {
+		return businessNanos;
+	}
+
+	/**
+	 * @return the time spent writing the response, time spent in the database excluded, in ns
+	 */
+	public synchronized long getSerializationNanos() {
+		return serializationNanos;
+	}
+
+	/**
+	 * @return the code of the first processed action, null if none
+	 */
+	public synchronized String getAction() {
+		return action;
+	}
+}
@@ -1,6 +1,7 @@
 package com.cgi.commons.ref.controller;
 
 import java.io.File;
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -20,18 +21,23 @@ import com.cgi.commons.db.DB;
 import com.cgi.commons.db.DbManager;
 import com.cgi.commons.db.DbQuery;
 import com.cgi.commons.db.DbQuery.Var;
+import com.cgi.commons.db.Keyset;
+import com.cgi.commons.db.RowHandler;
 import com.cgi.commons.logic.DomainLogic;
 import com.cgi.commons.ref.Constants;
 import com.cgi.commons.ref.context.RequestContext;
+import com.cgi.commons.ref.context.RequestTimings;
 import com.cgi.commons.ref.data.BackRefData;
 import com.cgi.commons.ref.data.ColumnData;
 import com.cgi.commons.ref.data.ComboData;
+import com.cgi.commons.ref.data.CountMode;
 import com.cgi.commons.ref.data.LinkData;
 import com.cgi.commons.ref.data.ListCategoryData;
 import com.cgi.commons.ref.data.ListCriteria;
 import com.cgi.commons.ref.data.ListData;
 import com.cgi.commons.ref.data.Message;
 import com.cgi.commons.ref.data.Message.Severity;
+import com.cgi.commons.ref.data.Row;
 import com.cgi.commons.ref.entity.Action;
 import com.cgi.commons.ref.entity.Action.Input;
 import com.cgi.commons.ref.entity.Action.Persistence;
@@ -85,6 +91,32 @@ public class BusinessController implements Serializable {
 	 */
 	public Response process(Request request) {
 		RequestContext context = request.getContext();
+		RequestTimings timings = RequestTimings.get(context);
+		if (timings == null) {
+			return processRequest(request);
+		}
+		// Time spent in the database is counted apart
+		long dbStart = context.getSqlTimings().getTotalNanos();
+		long start = System.nanoTime();
+		try {
+			if (request.getAction() != null) {
+				timings.setAction(request.getAction().getCode());
+			}
+			return processRequest(request);
+		} finally {
+			timings.addBusiness(System.nanoTime() - start - (context.getSqlTimings().getTotalNanos() - dbStart));
+		}
+	}
+
+	/**
+	 * Processes a request, see {@link #process(Request)}.
+	 * 
+	 * @param request
+	 *            The request to process.
+	 * @return The Response to display if any, null otherwise.
+	 */
+	private Response processRequest(Request request) {
+		RequestContext context = request.getContext();
 
 		// Initialization of response to send to this request
 		Response response = new Response(request);
@@ -122,7 +154,7 @@ public class BusinessController implements Serializable {
 					request.getQueryName(), request.getLinkName(), request.isBackRef());
 			remRequest.setLinkedEntity(request.getLinkedEntity());
 			remRequest.setContext(context);
-			return process(remRequest);
+			return processRequest(remRequest);
 		} else {
 			// Nothing more to do.
 			return null;
@@ -861,7 +893,8 @@ public class BusinessController implements Serializable {
 				} else {
 					// No override, use standard process
 					domainLogic.internalDbQueryPrepare(query, criteria, context);
-					data = getListData(query, true, columnsMetadata, context);
+					DbQuery countQuery = addKeysetIntoQuery(criteria, query);
+					data = getListData(query, countQuery, criteria.countMode, columnsMetadata, context);
 				}
 			} catch (FunctionalException e) {
 				data = getEmptyListData(query, columnsMetadata, context); // Prevent from having a null ListData
@@ -879,26 +912,107 @@ public class BusinessController implements Serializable {
 		return data;
 	}
 
+	/**
+	 * Streams the rows of a list to a handler, one at a time : the rows are not kept in memory. The query is prepared as by
+	 * {@link #getListData(String, String, ListCriteria, RequestContext)}, without count nor continuation token, and fetched by
+	 * <code>fetchSize</code> rows.
+	 * 
+	 * @param <E>
+	 *            The Entity class
+	 * @param entityName
+	 *            Entity name
+	 * @param queryName
+	 *            Query Name
+	 * @param criteria
+	 *            List criteria's value, maxRow 0 for all the rows
+	 * @param fetchSize
+	 *            Number of rows fetched from the database at once
+	 * @param handler
+	 *            Receives the rows
+	 * @param context
+	 *            Current request context
+	 * @return The number of rows.
+	 * @throws IOException
+	 *             If the handler fails.
+	 */
+	public <E extends Entity> int streamListData(String entityName, String queryName, ListCriteria<E> criteria, int fetchSize,
+			RowHandler handler, RequestContext context) throws IOException {
+		DomainLogic<E> domainLogic = (DomainLogic<E>) DomainUtils.getLogic(entityName, context);
+		ListData data;
+		if (EntityManager.getEntityModel(entityName).isExternal()) {
+			data = domainLogic.internalExtQueryLoad(context, entityName, queryName);
+		} else {
+			DbQuery query = DB.getQuery(context, entityName, queryName);
+			query.setMinRownum(criteria.minRow);
+			query.setMaxRownum(criteria.maxRow);
+			query.setFetchSize(fetchSize);
+			// Nothing else is read while the rows are written
+			query.setStreamed(true);
+			addOrderIntoQuery(criteria, query);
+
+			// Query override : its rows are already in memory
+			data = domainLogic.internalDbLoad(query, criteria, getColumnsMetadata(query, context), context);
+			if (data == null) {
+				domainLogic.internalDbQueryPrepare(query, criteria, context);
+				return new DbManager(context, query).forEachRow(handler);
+			}
+		}
+		for (Row row : data.getRows()) {
+			handler.handle(row);
+		}
+		return data.getRows().size();
+	}
+
 	/**
 	 * Prepares data for a list.
 	 * 
 	 * @param query The query to execute.
-	 * @param count True if we want to have a count on the query.
+	 * @param countQuery The query to count the rows on, null for no count.
+	 * @param countMode How the rows are counted, null for the default mode.
 	 * @param columnsMetadata Columns data (title, visibility).
 	 * @param context The current context.
 	 * @return The datas returned by the query.
 	 */
-	private ListData getListData(DbQuery query, boolean count, Map<String, ColumnData> columnsMetadata, RequestContext context) {
+	private ListData getListData(DbQuery query, DbQuery countQuery, CountMode countMode, Map<String, ColumnData> columnsMetadata,
+			RequestContext context) {
 		ListData data = null;
 		DbManager dbManager = null;
 
 		// Get data from base
 		try {
+			CountMode mode = countMode != null ? countMode : CountMode.getDefault();
+			if (mode == CountMode.HAS_MORE && query.getMaxRownum() <= 0) {
+				// Not paged : all the rows are read
+				mode = CountMode.WINDOW;
+			}
+			if (countQuery == null) {
+				mode = null;
+			} else if (mode == CountMode.WINDOW && !query.isWindowCountSupported()) {
+				mode = CountMode.EXACT;
+			}
+			query.setWindowCount(mode == CountMode.WINDOW);
+			query.setLookAhead(mode == CountMode.HAS_MORE);
 			dbManager = new DbManager(context, query);
 			data = dbManager.getListData();
-			if (count) {
-				data.setTotalRowCount(dbManager.count());
+
+			int first = query.getKeyset() != null ? query.getKeyset().getPosition() : query.getMinRownum();
+			int next = first + data.getRows().size();
+			if (mode == CountMode.WINDOW && data.getRows().isEmpty() && first > 0) {
+				// No row to read the count from : the page is past the end
+				mode = CountMode.EXACT;
+			}
+			if (mode == CountMode.EXACT) {
+				data.setTotalRowCount(DbManager.count(context, countQuery));
+			} else if (mode == CountMode.CAPPED) {
+				// Count at least one row past the page, to know if there is a next one
+				data.setTotalRowCount(DbManager.count(context, countQuery, Math.max(CountMode.getCap(), next + 1)));
+			} else if (mode == CountMode.HAS_MORE) {
+				data.setTotalRowCount(-1);
 			}
+			if (mode != null && mode != CountMode.HAS_MORE) {
+				data.setHasMore(next < data.getTotalRowCount());
+			}
+			data.setCountMode(mode);
 
 			// Put list metadata
 			if (columnsMetadata == null) {
@@ -1024,7 +1138,7 @@ public class BusinessController implements Serializable {
 				}
 			} else {
 				sourceDomainLogic.internalDbQueryPrepare(query, criteria, context);
-				data = getListData(query, true, columnsMetadata, context);
+				data = getListData(query, query, criteria.countMode, columnsMetadata, context);
 			}
 		} catch (FunctionalException e) {
 			data = getEmptyListData(query, columnsMetadata, context); // Prevent from having a null ListData
@@ -1057,6 +1171,33 @@ public class BusinessController implements Serializable {
 		}
 	}
 
+	/**
+	 * Pages the query by keyset when its sort allows it : the page starts after the continuation token of the criteria, if any, and the
+	 * token of the next page is returned with the data.
+	 * 
+	 * @param criteria
+	 *            Search criterias
+	 * @param query
+	 *            Target query, with its sort and its filters
+	 * @return The query to count the rows on, without the keyset restriction
+	 */
+	private DbQuery addKeysetIntoQuery(ListCriteria criteria, DbQuery query) {
+		Keyset keyset = Keyset.of(query);
+		if (keyset == null) {
+			if (criteria.continuationToken != null) {
+				throw new TechnicalException("Query " + query.getName() + " cannot be paged with a continuation token");
+			}
+			return query;
+		}
+		DbQuery countQuery = query;
+		if (criteria.continuationToken != null) {
+			countQuery = query.clone();
+			keyset.seek(query, criteria.continuationToken);
+		}
+		query.setKeyset(keyset);
+		return countQuery;
+	}
+
 	/**
 	 * Prepare data for a list of back ref elements.
 	 * 
@@ -1095,7 +1236,7 @@ public class BusinessController implements Serializable {
 			} else {
 				domainLogic.internalDbQueryPrepare(query, criteria, context);
 			}
-			data = getListData(query, false, columnsMetadata, context);
+			data = getListData(query, null, null, columnsMetadata, context);
 		} catch (FunctionalException e) {
 			data = getEmptyListData(query, columnsMetadata, context); // Prevent from having a null ListData
 		} catch (TechnicalException e) {
@@ -0,0 +1,105 @@
+package com.cgi.commons.ref.data;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Rows of a result stored as arrays of values sharing one {@link RowSchema}, instead of one map per row.<br/>
+ * Reading a row through the {@link List} interface builds its {@link Row} once and keeps it in the list in place of its values : changes
+ * made to the returned row are kept, as in a list of maps. Rows added as maps are kept as is. {@link #getValues(int)} reads the values
+ * without building the map.
+ */
+public class CompactRowList extends AbstractList<Row> implements Serializable {
+
+	/** Serial id. */
+	private static final long serialVersionUID = -2460383584452016957L;
+
+	/** Keys of the rows. */
+	private final RowSchema schema;
+	/** Rows : <code>Object[]</code> values, or {@link Row} when added as a map. */
+	private final List<Object> rows = new ArrayList<Object>();
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param schema Keys of the rows.
+	 */
+	public CompactRowList(RowSchema schema) {
+		this.schema = schema;
+	}
+
+	/**
+	 * @return the keys of the rows
+	 */
+	public RowSchema getSchema() {
+		return schema;
+	}
+
+	/**
+	 * Adds a row.
+	 * 
+	 * @param values The values of the row, by ordinal of the schema.
+	 */
+	public void addValues(Object[] values) {
+		rows.add(values);
+		modCount++;
+	}
+
+	/**
+	 * Returns the values of a row, without building its map.
+	 * 
+	 * @param index Index of the row.
+	 * @return the values by ordinal of the schema, null if the row was added as a map
+	 */
+	public Object[] getValues(int index) {
+		Object row = rows.get(index);
+		return row instanceof Object[] ? (Object[]) row : null;
+	}
+
+	@Override
+	public Row get(int index) {
+		Object row = rows.get(index);
+		if (row instanceof Object[]) {
+			// The map replaces the values, so that changes made to it are kept
+			Row built = schema.toRow((Object[]) row);
+			rows.set(index, built);
+			return built;
+		}
+		return (Row) row;
+	}
+
+	@Override
+	public Row set(int index, Row row) {
+		return toRow(rows.set(index, row));
+	}
+
+	@Override
+	public void add(int index, Row row) {
+		rows.add(index, row);
+		modCount++;
+	}
+
+	@Override
+	public Row remove(int index) {
+		Row previous = toRow(rows.remove(index));
+		modCount++;
+		return previous;
+	}
+
+	@Override
+	public int size() {
+		return rows.size();
+	}
+
+	/**
+	 * Returns a row removed from the list.
+	 * 
+	 * @param row The values of the row, or its map.
+	 * @return the row
+	 */
+	private Row toRow(Object row) {
+		return row instanceof Object[] ? schema.toRow((Object[]) row) : (Row) row;
+	}
+}
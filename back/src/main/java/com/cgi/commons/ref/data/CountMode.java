@@ -0,0 +1,75 @@
+package com.cgi.commons.ref.data;
+
+import org.apache.log4j.Logger;
+
+import com.cgi.commons.utils.MessageUtils;
+
+/**
+ * How the total row count of a list is computed.
+ */
+public enum CountMode {
+	/** Exact count, with a second query. */
+	EXACT,
+	/** Exact count, selected with the rows of the page (<code>COUNT(*) OVER()</code>). Falls back to {@link #EXACT} if not supported. */
+	WINDOW,
+	/** Count limited to the server property {@value #CAP} rows past the page, with a second query. */
+	CAPPED,
+	/** No count : one more row is read to know if there is a next page. */
+	HAS_MORE;
+
+	/** Logger. */
+	private static final Logger LOGGER = Logger.getLogger(CountMode.class);
+
+	/** Server property : default count mode of the lists. */
+	public static final String DEFAULT = "list.countMode";
+	/** Server property : max number of rows counted by {@link #CAPPED}. */
+	public static final String CAP = "list.countCap";
+
+	/** Default max number of rows counted by {@link #CAPPED}. */
+	private static final int DEFAULT_CAP = 10000;
+
+	/**
+	 * Returns the default count mode of the lists.
+	 *
+	 * @return the server property {@value #DEFAULT}, or {@link #WINDOW}
+	 */
+	public static CountMode getDefault() {
+		CountMode mode = parse(MessageUtils.getServerProperty(DEFAULT));
+		return mode != null ? mode : WINDOW;
+	}
+
+	/**
+	 * Reads a count mode, case insensitive.
+	 *
+	 * @param value The mode name.
+	 * @return the mode, null if the value is empty or unknown
+	 */
+	public static CountMode parse(String value) {
+		if (value == null || value.trim().isEmpty()) {
+			return null;
+		}
+		try {
+			return valueOf(value.trim().toUpperCase());
+		} catch (IllegalArgumentException e) {
+			LOGGER.warn("Unknown count mode " + value);
+			return null;
+		}
+	}
+
+	/**
+	 * Returns the max number of rows counted by {@link #CAPPED}.
+	 *
+	 * @return the server property {@value #CAP}, or its default value
+	 */
+	public static int getCap() {
+		String value = MessageUtils.getServerProperty(CAP);
+		if (value != null) {
+			try {
+				return Integer.parseInt(value.trim());
+			} catch (NumberFormatException e) {
+				LOGGER.warn("Invalid " + CAP + " " + value + ", " + DEFAULT_CAP + " is used");
+			}
+		}
+		return DEFAULT_CAP;
+	}
+}
@@ -25,6 +25,11 @@ public class ListCriteria <E extends Entity> implements Serializable {
 	/** Number maximum of row wanted. */
 	public int maxRow = Constants.MAX_ROW;
 	
+	/** Continuation token of the previous page (NULL for the first page or to page by minRow). */
+	public String continuationToken;
+	/** How the total row count is computed. */
+	public CountMode countMode = CountMode.getDefault();
+
 	/** Search criteria (NULL if not globalSearch). */
 	public String searchCriteria;
 	/** Search Entity (NULL if globalSearch). */
@@ -78,6 +83,8 @@ public class ListCriteria <E extends Entity> implements Serializable {
 		this.orderByDirection = criteria.orderByDirection;
 		this.minRow = criteria.minRow;
 		this.maxRow = criteria.maxRow;
+		this.continuationToken = criteria.continuationToken;
+		this.countMode = criteria.countMode;
 		this.searchCriteria = criteria.searchCriteria;
 		this.searchEntity = criteria.searchEntity;
 	}
@@ -25,6 +25,12 @@ public class ListData implements Serializable {
 	protected List<Row> rows;
 	/** The total row count. */
 	protected int totalRowCount;
+	/** Continuation token of the next page, null if there is no next page. */
+	protected String continuationToken;
+	/** Indicates if there are rows after this page. */
+	protected boolean hasMore;
+	/** How the total row count was computed, null if not counted. */
+	protected CountMode countMode;
 	/** The column datas. */
 	protected Map<String, ColumnData> columns;
 	/** Indicates if data is protected. */
@@ -56,13 +62,40 @@ public class ListData implements Serializable {
 	}
 
 	/**
-	 * Return all the rows.
+	 * Add a row stored as values, see {@link #setSchema(RowSchema)}.
+	 * 
+	 * @param values The values of the row, by ordinal of the schema.
+	 */
+	public void addValues(Object[] values) {
+		((CompactRowList) rows).addValues(values);
+	}
+
+	/**
+	 * Return all the rows.<br/>
+	 * With a schema, each row read builds a new {@link Row} : use {@link List#set(int, Object)} to change a row.
 	 * @return The rows.
 	 */
 	public List<Row> getRows() {
 		return rows;
 	}
 
+	/**
+	 * Stores the rows as arrays of values sharing the keys of the schema, instead of one map per row. Must be called before adding rows.
+	 * 
+	 * @param schema The keys of the rows.
+	 */
+	public void setSchema(RowSchema schema) {
+		rows = new CompactRowList(schema);
+	}
+
+	/**
+	 * Return the keys of the rows when they are stored as values.
+	 * @return The schema, null if the rows are stored as maps.
+	 */
+	public RowSchema getSchema() {
+		return rows instanceof CompactRowList ? ((CompactRowList) rows).getSchema() : null;
+	}
+
 	/**
 	 * Return the key fields.
 	 * @return the keyFields
@@ -119,6 +152,54 @@ public class ListData implements Serializable {
 		this.totalRowCount = totalRowCount;
 	}
 
+	/**
+	 * Getter for the continuationToken.
+	 * @return the continuation token of the next page, null if there is no next page.
+	 */
+	public String getContinuationToken() {
+		return continuationToken;
+	}
+
+	/**
+	 * Setter for the continuationToken.
+	 * @param continuationToken the continuation token of the next page.
+	 */
+	public void setContinuationToken(String continuationToken) {
+		this.continuationToken = continuationToken;
+	}
+
+	/**
+	 * Getter for the hasMore.
+	 * @return true if there are rows after this page.
+	 */
+	public boolean isHasMore() {
+		return hasMore;
+	}
+
+	/**
+	 * Setter for the hasMore.
+	 * @param hasMore true if there are rows after this page.
+	 */
+	public void setHasMore(boolean hasMore) {
+		this.hasMore = hasMore;
+	}
+
+	/**
+	 * Getter for the countMode.
+	 * @return how the total row count was computed, null if not counted.
+	 */
+	public CountMode getCountMode() {
+		return countMode;
+	}
+
+	/**
+	 * Setter for the countMode.
+	 * @param countMode how the total row count was computed.
+	 */
+	public void setCountMode(CountMode countMode) {
+		this.countMode = countMode;
+	}
+
 	/**
 	 * Getter for the Protected.
 	 * @return the Protected.
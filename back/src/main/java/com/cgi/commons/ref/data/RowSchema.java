@@ -0,0 +1,104 @@
+package com.cgi.commons.ref.data;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keys of the rows of a result, shared by all its rows : a row is then stored as an <code>Object[]</code> of values by ordinal instead
+ * of a {@link Row} map.
+ */
+public class RowSchema implements Serializable {
+
+	/** Serial id. */
+	private static final long serialVersionUID = 6034525071633985468L;
+
+	/** Keys, by ordinal. */
+	private final String[] keys;
+	/** Ordinals, by key. */
+	private final Map<String, Integer> ordinals;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param keys Keys of the rows, by ordinal.
+	 */
+	public RowSchema(String... keys) {
+		this.keys = keys.clone();
+		this.ordinals = new HashMap<String, Integer>(keys.length * 2);
+		for (int i = 0; i < keys.length; i++) {
+			ordinals.put(keys[i], Integer.valueOf(i));
+		}
+	}
+
+	/**
+	 * @return the number of values of a row
+	 */
+	public int size() {
+		return keys.length;
+	}
+
+	/**
+	 * Returns the key of an ordinal.
+	 * 
+	 * @param ordinal The ordinal.
+	 * @return the key
+	 */
+	public String getKey(int ordinal) {
+		return keys[ordinal];
+	}
+
+	/**
+	 * Returns the ordinal of a key.
+	 * 
+	 * @param key The key.
+	 * @return the ordinal, -1 if the rows have no such key
+	 */
+	public int indexOf(String key) {
+		Integer ordinal = ordinals.get(key);
+		return ordinal != null ? ordinal.intValue() : -1;
+	}
+
+	/**
+	 * Returns a new empty row.
+	 * 
+	 * @return the values of the row, all null
+	 */
+	public Object[] newValues() {
+		return new Object[keys.length];
+	}
+
+	/**
+	 * Builds the map of a row.
+	 * 
+	 * @param values The values of the row.
+	 * @return a new row, with the primary key if the schema has {@link com.cgi.commons.ref.Constants#RESULT_PK}
+	 */
+	public Row toRow(Object[] values) {
+		Row row = new Row();
+		for (int i = 0; i < keys.length; i++) {
+			row.put(keys[i], values[i]);
+		}
+		return row;
+	}
+
+	/**
+	 * Reads the values of a row map. Keys of the map that are not in the schema are ignored.
+	 * 
+	 * @param row The row.
+	 * @return the values of the row
+	 */
+	public Object[] toValues(Row row) {
+		Object[] values = new Object[keys.length];
+		for (int i = 0; i < keys.length; i++) {
+			values[i] = row.get(keys[i]);
+		}
+		return values;
+	}
+
+	@Override
+	public String toString() {
+		return "RowSchema " + Arrays.toString(keys);
+	}
+}
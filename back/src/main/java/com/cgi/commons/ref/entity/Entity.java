@@ -13,6 +13,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.log4j.Logger;
 
@@ -66,8 +67,8 @@ public abstract class Entity implements Cloneable {
 	 */
 	public abstract String description();
 
-	/** Cache for all reflexive access on getters / setters to avoid lookups. */
-	private static Map<String, Map<String, Method>> reflectCache = new HashMap<String, Map<String, Method>>();
+	/** Cache for reflexive access on getters / setters which are not model fields (see {@link EntityModel#getAccessors()}). */
+	private static Map<String, Map<String, Method>> reflectCache = new ConcurrentHashMap<String, Map<String, Method>>();
 
 	/** Default constructor. */
 	public Entity() {
@@ -79,9 +80,7 @@ public abstract class Entity implements Cloneable {
 	 * @param e Entity to duplicates.
 	 */
 	public Entity(Entity e) {
-		for (String f : getModel().getFields()) {
-			invokeSetter(f, e.invokeGetter(f));
-		}
+		copyFields(e);
 	}
 
 	/**
@@ -263,16 +262,21 @@ public abstract class Entity implements Cloneable {
 	 * @param value Value.
 	 */
 	public void invokeSetter(String fieldName, Object value) {
+		EntityAccessors accessors = getModel().getAccessors();
+		int ordinal = accessors.indexOf(fieldName);
+		if (ordinal >= 0) {
+			accessors.set(this, ordinal, value);
+			return;
+		}
 		try {
 			String methodName = "set" + fieldName.substring(0, 1).toUpperCase() + fieldName.substring(1);
-			if (reflectCache.get(name()) == null) {
-				reflectCache.put(name(), new HashMap<String, Method>());
+			Map<String, Method> methods = getReflectCache();
+			Method method = methods.get(methodName);
+			if (method == null) {
+				method = this.getClass().getMethod(methodName, this.getClass().getDeclaredField(fieldName).getType());
+				methods.put(methodName, method);
 			}
-			if (reflectCache.get(name()).get(methodName) == null) {
-				reflectCache.get(name()).put(methodName,
-						this.getClass().getMethod(methodName, this.getClass().getDeclaredField(fieldName).getType()));
-			}
-			reflectCache.get(name()).get(methodName).invoke(this, value);
+			method.invoke(this, value);
 		} catch (SecurityException e) {
 			throw new TechnicalException("Unable to set value " + value + " in field " + fieldName, e);
 		} catch (NoSuchMethodException e) {
@@ -295,15 +299,20 @@ public abstract class Entity implements Cloneable {
 	 * @return The Value.
 	 */
 	public Object invokeGetter(String fieldName) {
+		EntityAccessors accessors = getModel().getAccessors();
+		int ordinal = accessors.indexOf(fieldName);
+		if (ordinal >= 0) {
+			return accessors.get(this, ordinal);
+		}
 		try {
 			String methodName = "get" + fieldName.substring(0, 1).toUpperCase() + fieldName.substring(1);
-			if (reflectCache.get(name()) == null) {
-				reflectCache.put(name(), new HashMap<String, Method>());
-			}
-			if (reflectCache.get(name()).get(methodName) == null) {
-				reflectCache.get(name()).put(methodName, this.getClass().getMethod(methodName));
+			Map<String, Method> methods = getReflectCache();
+			Method method = methods.get(methodName);
+			if (method == null) {
+				method = this.getClass().getMethod(methodName);
+				methods.put(methodName, method);
 			}
-			return reflectCache.get(name()).get(methodName).invoke(this);
+			return method.invoke(this);
 		} catch (SecurityException e) {
 			throw new TechnicalException("Unable to get value from field " + fieldName, e);
 		} catch (IllegalArgumentException e) {
@@ -317,6 +326,33 @@ public abstract class Entity implements Cloneable {
 		}
 	}
 
+	/**
+	 * Returns the reflexive cache of this entity class.
+	 * 
+	 * @return methods by name
+	 */
+	private Map<String, Method> getReflectCache() {
+		Map<String, Method> methods = reflectCache.get(name());
+		if (methods == null) {
+			methods = new ConcurrentHashMap<String, Method>();
+			reflectCache.put(name(), methods);
+		}
+		return methods;
+	}
+
+	/**
+	 * Copies all model fields of an entity of the same class.
+	 * 
+	 * @param e
+	 *            Bean to copy values from
+	 */
+	private void copyFields(Entity e) {
+		EntityAccessors accessors = getModel().getAccessors();
+		for (int i = 0; i < accessors.size(); i++) {
+			accessors.set(this, i, accessors.get(e, i));
+		}
+	}
+
 	/**
 	 * Returns the links of the Entity.
 	 * @return the links of the Entity.
@@ -377,9 +413,7 @@ public abstract class Entity implements Cloneable {
 	 *            Bean to load values from
 	 */
 	public void syncFromBean(Entity e) {
-		for (String f : getModel().getFields()) {
-			invokeSetter(f, e.invokeGetter(f));
-		}
+		copyFields(e);
 	}
 
 	/**
@@ -389,16 +423,18 @@ public abstract class Entity implements Cloneable {
 	 *         not {@code null}, {@code false} otherwise
 	 */
 	public boolean hasChangedSinceBackup() {
+		EntityAccessors accessors = getModel().getAccessors();
 		if (internalBackup == null) {
-			for (String field : getModel().getFields()) {
-				if (invokeGetter(field) != null) {
+			for (int i = 0; i < accessors.size(); i++) {
+				if (accessors.get(this, i) != null) {
 					return true;
 				}
 			}
+			return false;
 		}
-		for (String fieldName : getModel().getFields()) {
-			Object thisField = invokeGetter(fieldName);
-			Object backupField = internalBackup.invokeGetter(fieldName);
+		for (int i = 0; i < accessors.size(); i++) {
+			Object thisField = accessors.get(this, i);
+			Object backupField = accessors.get(internalBackup, i);
 			if (thisField == null && backupField != null || thisField != null && !thisField.equals(backupField)) {
 				return true;
 			}
@@ -458,15 +494,17 @@ public abstract class Entity implements Cloneable {
 
 		Map<String, Diff> result = new HashMap<String, Diff>();
 
-		for (String fieldName : getModel().getFields()) {
-
-			EntityField fieldMetadata = getModel().getField(fieldName);
+		EntityModel model = getModel();
+		EntityAccessors accessors = model.getAccessors();
+		for (int i = 0; i < accessors.size(); i++) {
+			String fieldName = accessors.getName(i);
+			EntityField fieldMetadata = model.getField(fieldName);
 			if (fieldMetadata.isTransient()) {
 				continue; // We don't care about transient data
 			}
 
-			Object thisValue = this.invokeGetter(fieldName);
-			Object thatValue = that.invokeGetter(fieldName);
+			Object thisValue = accessors.get(this, i);
+			Object thatValue = accessors.get(that, i);
 			if (thisValue == null && thatValue != null || thisValue != null && !thisValue.equals(thatValue)) {
 				String label = MessageUtils.getInstance(ctx).getGenLabel(this.getModel().name() + "." + fieldName);
 				if (SqlTypes.BLOB == fieldMetadata.getSqlType() || SqlTypes.CLOB == fieldMetadata.getSqlType()) {
@@ -486,14 +524,15 @@ public abstract class Entity implements Cloneable {
 	 */
 	public String serialize() {
 		StringBuilder serialized = new StringBuilder();
-		for (Field field : getAllFields()) {
-			Object obj = invokeGetter(field.getName());
+		EntityAccessors accessors = getModel().getAccessors();
+		for (int i = 0; i < accessors.size(); i++) {
+			Object obj = accessors.get(this, i);
 			String res = serializeObject(obj);
 			if (res != null && !res.isEmpty()) {
 				if (serialized.length() > 0) {
 					serialized.append(",");
 				}
-				serialized.append(field.getName()).append("='").append(res.replace("'", "\\'")).append("'");
+				serialized.append(accessors.getName(i)).append("='").append(res.replace("'", "\\'")).append("'");
 			}
 		}
 		for (String key : links.keySet()) {
@@ -0,0 +1,130 @@
+package com.cgi.commons.ref.entity;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.cgi.commons.utils.TechnicalException;
+
+/**
+ * Getters and setters of an entity, resolved once when its model is loaded and indexed by field ordinal (the order of
+ * {@link EntityModel#getFields()}).<br/>
+ * Calls go through {@link MethodHandle}s adapted to <code>(Entity)Object</code> and <code>(Entity, Object)void</code> : no method name
+ * building, no lookup and no argument array per call.
+ */
+public final class EntityAccessors {
+
+	/** Getter type, once adapted. */
+	private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Entity.class);
+	/** Setter type, once adapted. */
+	private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Entity.class, Object.class);
+
+	/** Field names by ordinal. */
+	private final String[] names;
+	/** Field classes by ordinal. */
+	private final Class<?>[] types;
+	/** Getters by ordinal. */
+	private final MethodHandle[] getters;
+	/** Setters by ordinal. */
+	private final MethodHandle[] setters;
+	/** Ordinals by field name. */
+	private final Map<String, Integer> ordinals;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param entityClass Entity class.
+	 * @param fieldNames Fields of the model, in ordinal order.
+	 */
+	EntityAccessors(Class<?> entityClass, Collection<String> fieldNames) {
+		int size = fieldNames.size();
+		names = new String[size];
+		types = new Class<?>[size];
+		getters = new MethodHandle[size];
+		setters = new MethodHandle[size];
+		ordinals = new HashMap<String, Integer>(size * 2);
+		MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+		int i = 0;
+		for (String fieldName : fieldNames) {
+			String suffix = fieldName.substring(0, 1).toUpperCase() + fieldName.substring(1);
+			try {
+				Class<?> type = entityClass.getDeclaredField(fieldName).getType();
+				names[i] = fieldName;
+				types[i] = type;
+				getters[i] = lookup.findVirtual(entityClass, "get" + suffix, MethodType.methodType(type)).asType(GETTER_TYPE);
+				setters[i] = lookup.findVirtual(entityClass, "set" + suffix, MethodType.methodType(void.class, type)).asType(SETTER_TYPE);
+			} catch (NoSuchFieldException | NoSuchMethodException | IllegalAccessException e) {
+				throw new TechnicalException("No public getter/setter for field " + fieldName + " in " + entityClass.getName(), e);
+			}
+			ordinals.put(fieldName, Integer.valueOf(i));
+			i++;
+		}
+	}
+
+	/**
+	 * @return the number of fields
+	 */
+	public int size() {
+		return names.length;
+	}
+
+	/**
+	 * Returns the ordinal of a field.
+	 *
+	 * @param fieldName Field name.
+	 * @return the ordinal, -1 if the field is not in the model
+	 */
+	public int indexOf(String fieldName) {
+		Integer ordinal = ordinals.get(fieldName);
+		return ordinal == null ? -1 : ordinal.intValue();
+	}
+
+	/**
+	 * @param ordinal Field ordinal.
+	 * @return the field name
+	 */
+	public String getName(int ordinal) {
+		return names[ordinal];
+	}
+
+	/**
+	 * @param ordinal Field ordinal.
+	 * @return the field class
+	 */
+	public Class<?> getType(int ordinal) {
+		return types[ordinal];
+	}
+
+	/**
+	 * Reads a field.
+	 *
+	 * @param entity Entity of this model.
+	 * @param ordinal Field ordinal.
+	 * @return the value
+	 */
+	public Object get(Entity entity, int ordinal) {
+		try {
+			return getters[ordinal].invokeExact(entity);
+		} catch (Throwable t) {
+			throw new TechnicalException("Unable to get value from field " + names[ordinal], t);
+		}
+	}
+
+	/**
+	 * Writes a field.
+	 *
+	 * @param entity Entity of this model.
+	 * @param ordinal Field ordinal.
+	 * @param value Value, of the field class.
+	 */
+	public void set(Entity entity, int ordinal, Object value) {
+		try {
+			setters[ordinal].invokeExact(entity, value);
+		} catch (Throwable t) {
+			throw new TechnicalException("Unable to set value " + value + " in field " + names[ordinal], t);
+		}
+	}
+}
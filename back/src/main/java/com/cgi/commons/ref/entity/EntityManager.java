@@ -167,6 +167,7 @@ public class EntityManager {
 					}
 				}
 
+				entityModel.setAccessors(new EntityAccessors(entityClass, entityModel.getFields()));
 				models.put(entityName, entityModel);
 			}
 		}
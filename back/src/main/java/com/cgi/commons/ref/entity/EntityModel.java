@@ -63,6 +63,8 @@ public class EntityModel {
 	private Set<String> lookupFields = new LinkedHashSet<String>(2);
 	/** Entity actions definitions */
 	private Map<String, Action> actions = new LinkedHashMap<String, Action>(6);
+	/** Getters and setters indexed by field ordinal */
+	private EntityAccessors accessors;
 
 	EntityModel(String entityName, EntityDef entityDef) {
 		this.entityName = entityName;
@@ -193,6 +195,25 @@ public class EntityModel {
 		return fields.keySet();
 	}
 
+	/**
+	 * Get the getters and setters of the fields, indexed in the order of {@link #getFields()}.
+	 * 
+	 * @return the accessors
+	 */
+	public EntityAccessors getAccessors() {
+		return accessors;
+	}
+
+	/**
+	 * Set the accessors, once all fields are added (used only for internal init).
+	 * 
+	 * @param accessors
+	 *            The accessors.
+	 */
+	void setAccessors(EntityAccessors accessors) {
+		this.accessors = accessors;
+	}
+
 	/**
 	 * Check if a field is of type AutoIncrement.
 	 * 
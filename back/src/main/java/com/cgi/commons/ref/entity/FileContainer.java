@@ -11,6 +11,7 @@ import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.log4j.Logger;
 
+import com.cgi.commons.db.LobHandle;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 
 /**
@@ -36,11 +37,15 @@ public class FileContainer implements Serializable {
 	/** Is the content null ? (not link to content size to avoid loading content if not needed) */
 	private boolean isNull = false;
 
+	/** Content in the database, whose name is read on first use. */
+	private transient LobHandle lob;
+
 	/**
 	 * Returns the name of the file.
 	 * @return the name of the file.
 	 */
 	public String getName() {
+		readName();
 		return (name != null) ? name : "untitled";
 	}
 
@@ -49,6 +54,7 @@ public class FileContainer implements Serializable {
 	 * @return the real name of the file.
 	 */
 	public String realName() {
+		readName();
 		return name;
 	}
 
@@ -58,6 +64,30 @@ public class FileContainer implements Serializable {
 	 */
 	public void setName(String name) {
 		this.name = name;
+		this.lob = null;
+	}
+
+	/**
+	 * Links the container to its content in the database : the name is read from it on first use.
+	 * 
+	 * @param lob
+	 *            Content in the database.
+	 */
+	public void setLob(LobHandle lob) {
+		this.lob = lob;
+	}
+
+	/**
+	 * Reads the name from the content in the database, if it has not been read yet.
+	 */
+	private void readName() {
+		if (lob != null) {
+			LobHandle handle = lob;
+			lob = null;
+			if (!isNull) {
+				name = handle.readName();
+			}
+		}
 	}
 
 	/**
@@ -123,7 +153,7 @@ public class FileContainer implements Serializable {
 	 * @return Content type of the file or {@code application/octet-stream} if the file name is {@code null}.
 	 */
 	public String contentType() {
-
+		readName();
 		if (null != name) {
 			MimetypesFileTypeMap mimeTypes = new MimetypesFileTypeMap();
 			return mimeTypes.getContentType(name);
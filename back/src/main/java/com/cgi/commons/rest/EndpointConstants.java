@@ -6,4 +6,8 @@ package com.cgi.commons.rest;
 public interface EndpointConstants {
 	/** Value separator for the Key serialisazation */
 	String FIELD_SEPARATOR = ":::";
+	/** Media type of newline delimited JSON (one JSON object per line). */
+	String APPLICATION_NDJSON = "application/x-ndjson";
+	/** Number of entities inserted at once by batch endpoints reading a stream. */
+	int STREAM_BATCH_SIZE = 1000;
 }
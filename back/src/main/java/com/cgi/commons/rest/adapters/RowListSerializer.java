@@ -0,0 +1,44 @@
+package com.cgi.commons.rest.adapters;
+
+import java.io.IOException;
+import java.util.List;
+
+import com.cgi.commons.ref.data.CompactRowList;
+import com.cgi.commons.ref.data.Row;
+import com.cgi.commons.ref.data.RowSchema;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+
+/**
+ * JSON serializer of a list of rows. Rows stored as values ({@link CompactRowList}) are written from their values and the shared keys,
+ * without building a map per row : the JSON is the same as for {@link Row} maps.
+ */
+public class RowListSerializer extends JsonSerializer<List<Row>> {
+
+	@Override
+	public void serialize(List<Row> rows, JsonGenerator gen, SerializerProvider provider) throws IOException {
+		gen.writeStartArray();
+		if (rows instanceof CompactRowList) {
+			CompactRowList list = (CompactRowList) rows;
+			RowSchema schema = list.getSchema();
+			for (int i = 0; i < list.size(); i++) {
+				Object[] values = list.getValues(i);
+				if (values == null) {
+					provider.defaultSerializeValue(list.get(i), gen);
+					continue;
+				}
+				gen.writeStartObject();
+				for (int k = 0; k < values.length; k++) {
+					provider.defaultSerializeField(schema.getKey(k), values[k], gen);
+				}
+				gen.writeEndObject();
+			}
+		} else {
+			for (Row row : rows) {
+				provider.defaultSerializeValue(row, gen);
+			}
+		}
+		gen.writeEndArray();
+	}
+}
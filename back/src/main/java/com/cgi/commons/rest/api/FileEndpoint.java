@@ -1,11 +1,14 @@
 package com.cgi.commons.rest.api;
 
+import java.io.DataInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.util.Date;
 import java.util.UUID;
+import java.util.concurrent.RejectedExecutionException;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.ws.rs.Consumes;
@@ -15,20 +18,27 @@ import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.CacheControl;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.ResponseBuilder;
 import javax.ws.rs.core.Response.Status;
 
 import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.lang3.text.WordUtils;
+import org.apache.log4j.Logger;
 import org.glassfish.jersey.media.multipart.FormDataContentDisposition;
 import org.glassfish.jersey.media.multipart.FormDataParam;
 
+import com.cgi.commons.db.BlobCache;
 import com.cgi.commons.db.DB;
 import com.cgi.commons.db.FileDbManager;
+import com.cgi.commons.db.LobContent;
 import com.cgi.commons.ref.context.RequestContext;
 import com.cgi.commons.ref.entity.Entity;
 import com.cgi.commons.ref.entity.EntityField;
@@ -37,12 +47,16 @@ import com.cgi.commons.ref.entity.EntityModel;
 import com.cgi.commons.ref.entity.FileContainer;
 import com.cgi.commons.ref.entity.Key;
 import com.cgi.commons.rest.auth.WsUserMgr;
+import com.cgi.commons.utils.Thumbnails;
 import com.cgi.commons.utils.TmpFileManager;
 import com.cgi.commons.utils.reflect.DomainUtils;
 
 @Path("/file")
 public class FileEndpoint {
 
+    /** Logger. */
+    private static final Logger LOGGER = Logger.getLogger(FileEndpoint.class);
+
     private static final String FILE = "file";
     public static final String CUSTOM_DL = "IS_CUSTOM_DOWNLOAD";
 
@@ -182,6 +196,11 @@ public class FileEndpoint {
      * @param attachment
      *            Indicates whether the HTTP header {@code Content-Disposition: attachment; filename=} should be
      *            written. It is {@code true} by default.
+     * @param size
+     *            Size in pixels of the square the image is reduced to fit in, {@code 0} for the original image. Only the sizes of
+     *            {@link Thumbnails#SIZES} are allowed.
+     * @param request
+     *            HTTP request, to evaluate the conditional headers ({@code If-None-Match}, {@code If-Modified-Since}).
      * @return A response with the file content.
      * @throws IOException
      *             If an error occurs while reading file.
@@ -192,13 +211,24 @@ public class FileEndpoint {
             @PathParam("entityName") String entityName,
             @PathParam("pk") String pk,
             @PathParam("varName") String varName,
-            @QueryParam("attachment") @DefaultValue("true") boolean attachment) throws IOException {
+            @QueryParam("attachment") @DefaultValue("true") boolean attachment,
+            @QueryParam("size") @DefaultValue("0") int size,
+            @Context Request request) throws IOException {
 
-        // Ce serait pas mal de passer directement de la bdd  la rponse HTTP sans le fichier tmp ?
         // Quid de l'utilisateur ?
+		entityName = convertToCamel(entityName);
+		varName = convertToCamel(varName);
+
+		if (size != 0 && !Thumbnails.isAllowed(size)) {
+			return Response.status(Status.BAD_REQUEST).build();
+		}
+		if (EntityManager.getEntityModel(entityName).getField(varName).isFromDatabase()) {
+			if (size > 0) {
+				return sendThumbnail(entityName, pk, varName, attachment, size, request);
+			}
+			return sendFile(entityName, pk, varName, attachment, request);
+		}
 		try (RequestContext context = new RequestContext(null)) {
-			entityName = convertToCamel(entityName);
-			varName = convertToCamel(varName);
 			FileContainer container = getFileContainer(entityName, pk, varName, false, context);
 
 			if (container == null || container.getUuid() == null) {
@@ -223,6 +253,184 @@ public class FileEndpoint {
 		}
     }
 
+    /**
+     * Sends a file stored into the database. Small files are kept in {@link BlobCache} and sent with an entity tag, so the
+     * browser can ask again with {@code If-None-Match} and get a {@code 304 Not Modified}. Larger files are sent directly from
+     * the database to the response.
+     * 
+     * @param entityName
+     *            Entity name.
+     * @param pk
+     *            Entity primary key.
+     * @param varName
+     *            Variable name.
+     * @param attachment
+     *            Indicates whether the HTTP header {@code Content-Disposition: attachment; filename=} should be written.
+     * @param request
+     *            HTTP request.
+     * @return A response with the file content, and its length if the driver gives it.
+     * @throws IOException
+     *             If an error occurs while reading the file.
+     */
+    private Response sendFile(String entityName, String pk, String varName, boolean attachment, Request request)
+            throws IOException {
+        Key key = new Key(entityName, pk);
+        String cacheKey = BlobCache.key(entityName, key.getEncodedValue(), varName);
+        BlobCache cache = BlobCache.getInstance();
+        BlobCache.Entry cached = cache.get(cacheKey);
+
+        if (cached != null) {
+            return cachedFile(cached, attachment, request);
+        }
+        long stamp = cache.stamp();
+        RequestContext context = new RequestContext(null);
+        boolean streamed = false;
+
+        try {
+            Entity entity = DomainUtils.newDomain(entityName);
+            entity.setPrimaryKey(key);
+            LobContent content = new FileDbManager(context, entity, varName).openFile();
+
+            if (content == null) {
+                return notFound();
+            }
+            if (cache.accepts(content.getLength())) {
+                byte[] bytes = new byte[(int) content.getLength()];
+                try {
+                    new DataInputStream(content.getInputStream()).readFully(bytes);
+                } finally {
+                    content.close();
+                }
+                return cachedFile(cache.put(cacheKey, bytes, content.getName(), stamp), attachment, request);
+            }
+            FileContainer container = new FileContainer();
+            container.setName(content.getName());
+            ResponseBuilder rb = Response
+                    .ok(new LobFile(content, context))
+                    .header(HttpHeaders.CONTENT_TYPE, container.contentType());
+
+            if (content.getLength() >= 0) {
+                rb.header(HttpHeaders.CONTENT_LENGTH, content.getLength());
+            }
+            if (attachment) {
+                rb.header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + container.getName() + "\"");
+            }
+            streamed = true;
+            return rb.build();
+
+        } finally {
+            if (!streamed) {
+                // The context is closed once the file is sent otherwise
+                context.close();
+            }
+        }
+    }
+
+    /**
+     * Sends a reduced copy of an image stored into the database. The copy is made once and kept in {@link BlobCache} with the
+     * image, until the image is saved again. A file which is not an image is sent as is.
+     * 
+     * @param entityName
+     *            Entity name.
+     * @param pk
+     *            Entity primary key.
+     * @param varName
+     *            Variable name.
+     * @param attachment
+     *            Indicates whether the HTTP header {@code Content-Disposition: attachment; filename=} should be written.
+     * @param size
+     *            Size in pixels of the square the image is reduced to fit in.
+     * @param request
+     *            HTTP request.
+     * @return A response with the reduced image, or {@code 503 Service Unavailable} if the thumbnail threads are busy.
+     * @throws IOException
+     *             If an error occurs while reading the file.
+     */
+    private Response sendThumbnail(String entityName, String pk, String varName, boolean attachment, int size, Request request)
+            throws IOException {
+        String cacheKey = BlobCache.key(entityName, new Key(entityName, pk).getEncodedValue(), varName);
+        String thumbnailKey = BlobCache.variantKey(cacheKey, String.valueOf(size));
+        BlobCache cache = BlobCache.getInstance();
+        BlobCache.Entry cached = cache.get(thumbnailKey);
+
+        if (cached != null) {
+            return cachedFile(cached, attachment, request);
+        }
+        long stamp = cache.stamp();
+        Thumbnails.Thumbnail thumbnail;
+        String name;
+
+        try {
+            BlobCache.Entry source = cache.get(cacheKey);
+            if (source != null) {
+                name = source.getName();
+                thumbnail = Thumbnails.create(source.getContent(), size);
+
+            } else {
+                try (RequestContext context = new RequestContext(null)) {
+                    Entity entity = DomainUtils.newDomain(entityName);
+                    entity.setPrimaryKey(new Key(entityName, pk));
+                    LobContent content = new FileDbManager(context, entity, varName).openFile();
+
+                    if (content == null) {
+                        return notFound();
+                    }
+                    try {
+                        name = content.getName();
+                        // The image is read here : the connection is not used by the thumbnail thread
+                        thumbnail = Thumbnails.create(content.getInputStream(), size);
+                    } finally {
+                        content.close();
+                    }
+                }
+            }
+        } catch (RejectedExecutionException e) {
+            LOGGER.warn("Thumbnail of " + cacheKey + " not made : " + e.getMessage());
+            return Response.status(Status.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, 1).build();
+        }
+
+        if (thumbnail == null) {
+            // Not an image
+            return sendFile(entityName, pk, varName, attachment, request);
+        }
+        String thumbnailName = FilenameUtils.getBaseName(name) + "-" + size + "." + thumbnail.getFormat();
+        return cachedFile(cache.put(thumbnailKey, thumbnail.getContent(), thumbnailName, stamp), attachment, request);
+    }
+
+    /**
+     * Sends a cached file, or {@code 304 Not Modified} if the browser already has it.
+     * 
+     * @param cached
+     *            Cached file.
+     * @param attachment
+     *            Indicates whether the HTTP header {@code Content-Disposition: attachment; filename=} should be written.
+     * @param request
+     *            HTTP request.
+     * @return A response with the file content, or without content if it was not modified.
+     */
+    private Response cachedFile(BlobCache.Entry cached, boolean attachment, Request request) {
+        EntityTag tag = new EntityTag(cached.getTag());
+        Date lastModified = new Date(cached.getLastModified());
+        CacheControl cacheControl = new CacheControl();
+        // The browser keeps the file but checks it is still the same before using it
+        cacheControl.setNoCache(true);
+        ResponseBuilder rb = request.evaluatePreconditions(lastModified, tag);
+
+        if (rb == null) {
+            FileContainer container = new FileContainer();
+            container.setName(cached.getName());
+            rb = Response
+                    .ok(cached.getContent())
+                    .header(HttpHeaders.CONTENT_LENGTH, cached.getContent().length)
+                    .header(HttpHeaders.CONTENT_TYPE, container.contentType());
+
+            if (attachment) {
+                rb.header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + container.getName() + "\"");
+            }
+        }
+        return rb.tag(tag).lastModified(lastModified).cacheControl(cacheControl).build();
+    }
+
     private String convertToCamel(String name) {
     	String upName = WordUtils.capitalizeFully(name, new char[]{'-'}).replaceAll("-", "");
     	return Character.toLowerCase(upName.charAt(0)) + upName.substring(1);
@@ -0,0 +1,47 @@
+package com.cgi.commons.rest.api;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.StreamingOutput;
+
+import org.apache.commons.io.IOUtils;
+
+import com.cgi.commons.db.LobContent;
+import com.cgi.commons.ref.context.RequestContext;
+
+/**
+ * File read from the database to send into an output stream, without temporary file.
+ */
+public class LobFile implements StreamingOutput {
+
+    /** Content of the file. */
+    private LobContent content;
+    /** Context of the query reading the content. */
+    private RequestContext context;
+
+    /**
+     * Creates a new file to send into an output stream.
+     * 
+     * @param content
+     *            Content of the file, closed once sent.
+     * @param context
+     *            Context of the query reading the content, closed once the file is sent.
+     */
+    public LobFile(LobContent content, RequestContext context) {
+        this.content = content;
+        this.context = context;
+    }
+
+    @Override
+    public void write(OutputStream output) throws IOException, WebApplicationException {
+        try {
+            IOUtils.copyLarge(content.getInputStream(), output);
+        } finally {
+            content.close();
+            context.close();
+        }
+    }
+
+}
@@ -0,0 +1,12 @@
+package com.cgi.commons.rest.api.error;
+
+import static javax.ws.rs.core.Response.Status.SERVICE_UNAVAILABLE;
+
+/**
+ * A runtime application error indicating the server cannot handle the request for now (HTTP {@code 503} status code).
+ */
+public class ServiceUnavailableException extends RestException {
+    public ServiceUnavailableException(long code, String message) {
+        super(SERVICE_UNAVAILABLE, code, message);
+    }
+}
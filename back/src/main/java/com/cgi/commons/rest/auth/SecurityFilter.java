@@ -13,21 +13,34 @@ import javax.servlet.http.HttpServletResponseWrapper;
 import org.apache.log4j.Logger;
 import org.pac4j.core.exception.TechnicalException;
 
+import com.cgi.commons.ref.context.RequestTimings;
+
 /**
  * Security filter.
  * Avoid security for options method.
+ * The time spent authenticating is added to the {@link RequestTimings} of the request.
  */
 public class SecurityFilter extends org.pac4j.j2e.filter.RequiresAuthenticationFilter {
 
 	private static final Logger LOGGER = Logger.getLogger(SecurityFilter.class);
 
 	@Override
-	public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) throws IOException, ServletException {
+	public void doFilter(ServletRequest request, ServletResponse response, final FilterChain chain) throws IOException, ServletException {
 		HttpServletResponse httpResponse = new JsonErrorResponse((HttpServletResponse) response);
 
 		if (!"options".equalsIgnoreCase(((HttpServletRequest) request).getMethod())) {
+			final RequestTimings timings = RequestTimings.start(request);
+			final long start = System.nanoTime();
+			// The chain goes on once the user is authenticated
+			FilterChain timedChain = new FilterChain() {
+				@Override
+				public void doFilter(ServletRequest req, ServletResponse res) throws IOException, ServletException {
+					timings.addAuth(System.nanoTime() - start);
+					chain.doFilter(req, res);
+				}
+			};
 			try {
-				super.doFilter(request, httpResponse, chain);
+				super.doFilter(request, httpResponse, timedChain);
 			} catch (TechnicalException e) {
 				LOGGER.warn(e);
 				httpResponse.sendError(HttpServletResponse.SC_UNAUTHORIZED);
@@ -0,0 +1,82 @@
+package com.cgi.commons.rest.domain;
+
+import javax.xml.bind.annotation.XmlRootElement;
+
+/**
+ * Result of a batch ingestion. Rows are either inserted in the request transaction or queued for a write-behind insert.
+ */
+@XmlRootElement
+public class BatchResult {
+
+	/** Number of rows inserted. */
+	private int insertedCount;
+
+	/** Number of rows queued, inserted later. */
+	private int queuedCount;
+
+	/** Number of rows rejected because the write-behind queue is full. */
+	private int rejectedCount;
+
+	/**
+	 * Default constructor.
+	 */
+	public BatchResult() {
+		// Default constructor
+	}
+
+	/**
+	 * Constructor.
+	 * @param insertedCount the Number of rows inserted.
+	 */
+	public BatchResult(int insertedCount) {
+		this.insertedCount = insertedCount;
+	}
+
+	/**
+	 * Returns the Number of rows inserted.
+	 * @return the Number of rows inserted.
+	 */
+	public int getInsertedCount() {
+		return insertedCount;
+	}
+
+	/**
+	 * Set the Number of rows inserted.
+	 * @param insertedCount the Number of rows inserted.
+	 */
+	public void setInsertedCount(int insertedCount) {
+		this.insertedCount = insertedCount;
+	}
+
+	/**
+	 * Returns the Number of rows queued, inserted later.
+	 * @return the Number of rows queued, inserted later.
+	 */
+	public int getQueuedCount() {
+		return queuedCount;
+	}
+
+	/**
+	 * Set the Number of rows queued, inserted later.
+	 * @param queuedCount the Number of rows queued, inserted later.
+	 */
+	public void setQueuedCount(int queuedCount) {
+		this.queuedCount = queuedCount;
+	}
+
+	/**
+	 * Returns the Number of rows rejected because the write-behind queue is full.
+	 * @return the Number of rows rejected because the write-behind queue is full.
+	 */
+	public int getRejectedCount() {
+		return rejectedCount;
+	}
+
+	/**
+	 * Set the Number of rows rejected because the write-behind queue is full.
+	 * @param rejectedCount the Number of rows rejected because the write-behind queue is full.
+	 */
+	public void setRejectedCount(int rejectedCount) {
+		this.rejectedCount = rejectedCount;
+	}
+}
@@ -0,0 +1,126 @@
+package com.cgi.commons.rest.domain;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import javax.ws.rs.core.StreamingOutput;
+
+import org.apache.log4j.Logger;
+
+import com.cgi.commons.db.RowHandler;
+import com.cgi.commons.ref.context.RequestContext;
+import com.cgi.commons.ref.controller.BusinessController;
+import com.cgi.commons.ref.data.ListCriteria;
+import com.cgi.commons.ref.data.Row;
+import com.cgi.commons.ref.entity.Entity;
+import com.cgi.commons.utils.MessageUtils;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+/**
+ * Rows of a list written to the response while they are read from the database, so memory does not grow with the number of rows.<br/>
+ * JSON : <code>{"results":[{...},...],"resultSetCount":n}</code>, the count being written last. NDJSON : one row per line.<br/>
+ * The request context is closed once the rows are written.
+ */
+public class ListStreamingOutput implements StreamingOutput {
+
+	/** Logger. */
+	private static final Logger LOGGER = Logger.getLogger(ListStreamingOutput.class);
+
+	/** Server property : number of rows fetched from the database at once. */
+	public static final String FETCH_SIZE = "list.stream.fetchSize";
+
+	/** Default number of rows fetched from the database at once. */
+	private static final int DEFAULT_FETCH_SIZE = 500;
+
+	/** Number of rows fetched from the database at once. */
+	private static final int FETCH_SIZE_VALUE = readFetchSize();
+
+	/** Entity name. */
+	private final String entityName;
+	/** Query name. */
+	private final String queryName;
+	/** List criteria. */
+	private final ListCriteria<Entity> criteria;
+	/** True for NDJSON, false for JSON. */
+	private final boolean ndjson;
+	/** Mapper of the rows. */
+	private final ObjectMapper mapper;
+	/** Request context, closed after writing. */
+	private final RequestContext context;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param entityName Entity name.
+	 * @param queryName Query name.
+	 * @param criteria List criteria, maxRow 0 for all the rows.
+	 * @param ndjson True for NDJSON, false for JSON.
+	 * @param mapper Mapper of the rows.
+	 * @param context Request context, closed after writing.
+	 */
+	public ListStreamingOutput(String entityName, String queryName, ListCriteria<Entity> criteria, boolean ndjson, ObjectMapper mapper,
+			RequestContext context) {
+		this.entityName = entityName;
+		this.queryName = queryName;
+		this.criteria = criteria;
+		this.ndjson = ndjson;
+		this.mapper = mapper;
+		this.context = context;
+	}
+
+	@Override
+	public void write(OutputStream output) throws IOException {
+		final ObjectWriter writer = mapper.writer().without(SerializationFeature.INDENT_OUTPUT)
+				.without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+		try (JsonGenerator generator = mapper.getFactory().createGenerator(output, JsonEncoding.UTF8)) {
+			generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+			generator.setRootValueSeparator(null);
+			if (!ndjson) {
+				generator.writeStartObject();
+				generator.writeArrayFieldStart("results");
+			}
+			final JsonGenerator rowGenerator = generator;
+			int count = new BusinessController().streamListData(entityName, queryName, criteria, FETCH_SIZE_VALUE, new RowHandler() {
+				@Override
+				public void handle(Row row) throws IOException {
+					writer.writeValue(rowGenerator, row);
+					if (ndjson) {
+						rowGenerator.writeRaw('\n');
+					}
+				}
+			}, context);
+			if (!ndjson) {
+				generator.writeEndArray();
+				generator.writeNumberField("resultSetCount", count);
+				generator.writeEndObject();
+			}
+		} catch (IOException | RuntimeException e) {
+			// The response is already started : the client gets a truncated body
+			LOGGER.error("Cannot stream query " + queryName, e);
+			throw e;
+		} finally {
+			context.close();
+		}
+	}
+
+	/**
+	 * Reads the number of rows fetched at once.
+	 *
+	 * @return the server property {@value #FETCH_SIZE}, or its default value
+	 */
+	private static int readFetchSize() {
+		String value = MessageUtils.getServerProperty(FETCH_SIZE);
+		if (value != null) {
+			try {
+				return Integer.parseInt(value.trim());
+			} catch (NumberFormatException e) {
+				LOGGER.warn("Invalid " + FETCH_SIZE + " " + value + ", " + DEFAULT_FETCH_SIZE + " is used");
+			}
+		}
+		return DEFAULT_FETCH_SIZE;
+	}
+}
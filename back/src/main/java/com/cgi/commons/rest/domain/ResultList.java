@@ -5,7 +5,10 @@ import java.util.List;
 import javax.xml.bind.annotation.XmlRootElement;
 import javax.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
 
+import com.cgi.commons.ref.data.CountMode;
 import com.cgi.commons.ref.data.Row;
+import com.cgi.commons.rest.adapters.RowListSerializer;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 
 /**
  * List of rows.
@@ -17,6 +20,12 @@ public class ResultList {
 	private int resultSetCount;
 	/** List of rows. */
 	private List<Row> results;
+	/** Token of the next page. */
+	private String continuationToken;
+	/** Indicates if there are rows after this page. */
+	private boolean hasMore;
+	/** How the number of rows was computed. */
+	private CountMode countMode;
 
 	/**
 	 * Returns the Number of rows.
@@ -39,6 +48,7 @@ public class ResultList {
 	 * @return the List of results.
 	 */
 	@XmlJavaTypeAdapter(value = com.cgi.commons.rest.adapters.RowAdapter.class, type = Row.class)
+	@JsonSerialize(using = RowListSerializer.class)
 	public List<Row> getResults() {
 		return results;
 	}
@@ -50,4 +60,52 @@ public class ResultList {
 	public void setResults(List<Row> results) {
 		this.results = results;
 	}
+
+	/**
+	 * Returns the token to give back to read the next page.
+	 * @return the token, null if there is no next page.
+	 */
+	public String getContinuationToken() {
+		return continuationToken;
+	}
+
+	/**
+	 * Set the token of the next page.
+	 * @param continuationToken the token of the next page.
+	 */
+	public void setContinuationToken(String continuationToken) {
+		this.continuationToken = continuationToken;
+	}
+
+	/**
+	 * Indicates if there are rows after this page.
+	 * @return true if there is a next page.
+	 */
+	public boolean isHasMore() {
+		return hasMore;
+	}
+
+	/**
+	 * Set if there are rows after this page.
+	 * @param hasMore true if there is a next page.
+	 */
+	public void setHasMore(boolean hasMore) {
+		this.hasMore = hasMore;
+	}
+
+	/**
+	 * Returns how the number of rows was computed : exact, capped, or unknown (-1) with {@link CountMode#HAS_MORE}.
+	 * @return the count mode.
+	 */
+	public CountMode getCountMode() {
+		return countMode;
+	}
+
+	/**
+	 * Set how the number of rows was computed.
+	 * @param countMode the count mode.
+	 */
+	public void setCountMode(CountMode countMode) {
+		this.countMode = countMode;
+	}
 }
@@ -0,0 +1,100 @@
+package com.cgi.commons.rest.provider;
+
+import java.io.IOException;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.container.ResourceInfo;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.ext.WriterInterceptor;
+import javax.ws.rs.ext.WriterInterceptorContext;
+
+import com.cgi.commons.db.SqlTimings;
+import com.cgi.commons.ref.context.RequestTimings;
+
+/**
+ * Records the latency and the status of each request in {@link EndpointStats}, by resource method and action code. Registered in the
+ * Jersey configuration of {@code web.xml}.<br/>
+ * The latency runs from the security filter (or from the matching of the resource method if the request is not authenticated) to the
+ * end of the writing of the response. It is split with the {@link RequestTimings} filled by the security filter and the business
+ * controller, and with the {@link SqlTimings} of the request. A response with an entity is recorded once it is written.
+ */
+public class EndpointMetricsFilter implements ContainerRequestFilter, ContainerResponseFilter, WriterInterceptor {
+
+	/** Name of the request property holding the endpoint name, set when the response is recorded once written. */
+	private static final String ENDPOINT = EndpointMetricsFilter.class.getName() + ".endpoint";
+	/** Name of the request property holding the response status. */
+	private static final String STATUS = EndpointMetricsFilter.class.getName() + ".status";
+
+	/** Matched resource method. */
+	@Context
+	private ResourceInfo resourceInfo;
+
+	/** Current HTTP request. */
+	@Context
+	private HttpServletRequest httpRequest;
+
+	@Override
+	public void filter(ContainerRequestContext requestContext) throws IOException {
+		RequestTimings.start(httpRequest);
+	}
+
+	@Override
+	public void filter(ContainerRequestContext requestContext, ContainerResponseContext responseContext) throws IOException {
+		if (resourceInfo == null || resourceInfo.getResourceMethod() == null || RequestTimings.get(httpRequest) == null) {
+			// Not matched to a resource method
+			return;
+		}
+		String name = resourceInfo.getResourceClass().getSimpleName() + "." + resourceInfo.getResourceMethod().getName();
+		if (responseContext.hasEntity()) {
+			requestContext.setProperty(ENDPOINT, name);
+			requestContext.setProperty(STATUS, Integer.valueOf(responseContext.getStatus()));
+		} else {
+			record(name, responseContext.getStatus());
+		}
+	}
+
+	@Override
+	public void aroundWriteTo(WriterInterceptorContext context) throws IOException, WebApplicationException {
+		Object name = context.getProperty(ENDPOINT);
+		RequestTimings timings = RequestTimings.get(httpRequest);
+		if (name == null || timings == null) {
+			context.proceed();
+			return;
+		}
+		// A streamed list reads the database while it is written
+		long dbStart = dbNanos();
+		long start = System.nanoTime();
+		try {
+			context.proceed();
+		} finally {
+			timings.addSerialization(System.nanoTime() - start - (dbNanos() - dbStart));
+			record((String) name, ((Integer) context.getProperty(STATUS)).intValue());
+		}
+	}
+
+	/**
+	 * Records the request.
+	 *
+	 * @param name Name of the endpoint.
+	 * @param status HTTP status of the response.
+	 */
+	private void record(String name, int status) {
+		RequestTimings timings = RequestTimings.get(httpRequest);
+		long total = (System.nanoTime() - timings.getStart()) / 1000;
+		EndpointStats.getInstance().get(name, timings.getAction()).record(total, status, timings.getAuthNanos() / 1000,
+				timings.getBusinessNanos() / 1000, dbNanos() / 1000, timings.getSerializationNanos() / 1000);
+	}
+
+	/**
+	 * @return the time spent in the database by the request, in ns
+	 */
+	private long dbNanos() {
+		SqlTimings sql = (SqlTimings) httpRequest.getAttribute(SqlTimings.ATTRIBUTE);
+		return sql == null ? 0 : sql.getTotalNanos();
+	}
+}
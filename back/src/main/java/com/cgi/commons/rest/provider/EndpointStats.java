@@ -0,0 +1,190 @@
+package com.cgi.commons.rest.provider;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.cgi.commons.utils.DurationHistogram;
+import com.cgi.commons.utils.RateMeter;
+
+/**
+ * Requests served by each resource method of the REST API and action code : latency, rate and errors. The latency is split by layer :
+ * authentication, business logic, database, serialization of the response, and the rest of the endpoint code. Filled by
+ * {@link EndpointMetricsFilter}.<br/>
+ * Recording is lock-free : the histograms are arrays of atomic counters, the endpoints are created once in a concurrent map.
+ */
+public final class EndpointStats {
+
+	/** Shared instance. */
+	private static final EndpointStats INSTANCE = new EndpointStats();
+
+	/** Layers of the latency, in the order of {@link Endpoint#getPhases()}. */
+	public static final String[] PHASES = { "auth", "business", "db", "serialization", "other" };
+
+	/** Statistics by endpoint name and action code. */
+	private final ConcurrentHashMap<String, Endpoint> endpoints = new ConcurrentHashMap<String, Endpoint>();
+
+	/**
+	 * Statistics of a resource method and action.
+	 */
+	public static final class Endpoint {
+		/** Name : resource class and method. */
+		private final String name;
+		/** Code of the processed action, empty if none. */
+		private final String action;
+		/** Latency of the requests, in microseconds. */
+		private final DurationHistogram latency = new DurationHistogram();
+		/** Latency by layer, in microseconds, in the order of {@link EndpointStats#PHASES}. */
+		private final DurationHistogram[] phases = new DurationHistogram[PHASES.length];
+		/** Requests over the last minute. */
+		private final RateMeter rate = new RateMeter();
+		/** Requests answered with a 4xx status. */
+		private final AtomicLong clientErrors = new AtomicLong();
+		/** Requests answered with a 5xx status. */
+		private final AtomicLong serverErrors = new AtomicLong();
+
+		/**
+		 * Constructor.
+		 *
+		 * @param name Name of the endpoint.
+		 * @param action Code of the processed action, empty if none.
+		 */
+		private Endpoint(String name, String action) {
+			this.name = name;
+			this.action = action;
+			for (int i = 0; i < phases.length; i++) {
+				phases[i] = new DurationHistogram();
+			}
+		}
+
+		/**
+		 * Records a request.
+		 *
+		 * @param micros Latency in microseconds.
+		 * @param status HTTP status of the response.
+		 * @param auth Time spent authenticating, in microseconds.
+		 * @param business Time spent in business logic, in microseconds.
+		 * @param db Time spent in the database, in microseconds.
+		 * @param serialization Time spent writing the response, in microseconds.
+		 */
+		void record(long micros, int status, long auth, long business, long db, long serialization) {
+			latency.record(micros);
+			phases[0].record(auth);
+			phases[1].record(business);
+			phases[2].record(db);
+			phases[3].record(serialization);
+			phases[4].record(micros - auth - business - db - serialization);
+			rate.mark();
+			if (status >= 500) {
+				serverErrors.incrementAndGet();
+			} else if (status >= 400) {
+				clientErrors.incrementAndGet();
+			}
+		}
+
+		/**
+		 * @return the name : resource class and method
+		 */
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * @return the code of the processed action, empty if none
+		 */
+		public String getAction() {
+			return action;
+		}
+
+		/**
+		 * @return the latency by layer, in microseconds, in the order of {@link EndpointStats#PHASES}
+		 */
+		public DurationHistogram[] getPhases() {
+			return phases.clone();
+		}
+
+		/**
+		 * @return the latency of the requests, in microseconds
+		 */
+		public DurationHistogram getLatency() {
+			return latency;
+		}
+
+		/**
+		 * @return the requests per second over the last minute
+		 */
+		public double getRate() {
+			return rate.getRate();
+		}
+
+		/**
+		 * @return the number of requests answered with a 4xx status
+		 */
+		public long getClientErrors() {
+			return clientErrors.get();
+		}
+
+		/**
+		 * @return the number of requests answered with a 5xx status
+		 */
+		public long getServerErrors() {
+			return serverErrors.get();
+		}
+	}
+
+	/**
+	 * Private constructor.
+	 */
+	private EndpointStats() {
+	}
+
+	/**
+	 * Returns the shared instance.
+	 *
+	 * @return the statistics
+	 */
+	public static EndpointStats getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Returns the statistics of an endpoint, created on first use.
+	 *
+	 * @param name Name of the endpoint.
+	 * @param action Code of the processed action, null if none.
+	 * @return the statistics
+	 */
+	Endpoint get(String name, String action) {
+		String code = action == null ? "" : action;
+		String key = name + '|' + code;
+		Endpoint endpoint = endpoints.get(key);
+		if (endpoint == null) {
+			Endpoint created = new Endpoint(name, code);
+			endpoint = endpoints.putIfAbsent(key, created);
+			if (endpoint == null) {
+				endpoint = created;
+			}
+		}
+		return endpoint;
+	}
+
+	/**
+	 * Returns the statistics of the endpoints which served requests, sorted by name and action.
+	 *
+	 * @return the statistics
+	 */
+	public List<Endpoint> getEndpoints() {
+		List<Endpoint> list = new ArrayList<Endpoint>(endpoints.values());
+		Collections.sort(list, new Comparator<Endpoint>() {
+			@Override
+			public int compare(Endpoint e1, Endpoint e2) {
+				int c = e1.name.compareTo(e2.name);
+				return c != 0 ? c : e1.action.compareTo(e2.action);
+			}
+		});
+		return list;
+	}
+}
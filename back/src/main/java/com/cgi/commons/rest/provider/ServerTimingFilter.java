@@ -0,0 +1,60 @@
+package com.cgi.commons.rest.provider;
+
+import java.io.IOException;
+import java.util.Locale;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.ext.Provider;
+
+import com.cgi.commons.db.SqlTimings;
+import com.cgi.commons.utils.MessageUtils;
+
+/**
+ * Adds the time the request spent in the database to the response, in a {@code Server-Timing} header shown by the browser developer
+ * tools : statements, rows and time spent preparing, executing and fetching.<br/>
+ * Disabled by default, see the server property {@value #ENABLED}. Rows of a streamed list are fetched after the headers are sent and are
+ * not counted.
+ */
+@Provider
+public class ServerTimingFilter implements ContainerResponseFilter {
+
+	/** Server property : true to add the header. */
+	public static final String ENABLED = "http.serverTiming";
+
+	/** Indicates if the header is added. */
+	private static final boolean ENABLED_VALUE = "true".equalsIgnoreCase(MessageUtils.getServerProperty(ENABLED));
+
+	/** Current HTTP request. */
+	@Context
+	private HttpServletRequest httpRequest;
+
+	@Override
+	public void filter(ContainerRequestContext requestContext, ContainerResponseContext responseContext) throws IOException {
+		if (!ENABLED_VALUE || httpRequest == null) {
+			return;
+		}
+		SqlTimings timings = (SqlTimings) httpRequest.getAttribute(SqlTimings.ATTRIBUTE);
+		if (timings == null) {
+			return;
+		}
+		String header = "db;dur=" + millis(timings.getTotalNanos()) + ";desc=\"" + timings.getCount() + " statements, " + timings.getRows()
+				+ " rows\", db-prepare;dur=" + millis(timings.getPrepareNanos()) + ", db-execute;dur=" + millis(timings.getExecuteNanos())
+				+ ", db-fetch;dur=" + millis(timings.getFetchNanos());
+		responseContext.getHeaders().add("Server-Timing", header);
+		responseContext.getHeaders().add("Timing-Allow-Origin", "*");
+	}
+
+	/**
+	 * Formats a duration.
+	 *
+	 * @param nanos Duration in ns.
+	 * @return the duration in ms, with 3 decimals
+	 */
+	private static String millis(long nanos) {
+		return String.format(Locale.ROOT, "%.3f", nanos / 1000000d);
+	}
+}
@@ -0,0 +1,114 @@
+package com.cgi.commons.ui.utils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.cgi.commons.db.ConnectionLogger;
+import com.cgi.commons.db.ConnectionObject;
+import com.cgi.commons.db.ConnectionPool;
+import com.cgi.commons.utils.MessageUtils;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * ConnectionMonitorServlet which gives the opened database connections in JSON : opener thread, age and stack when it was captured,
+ * with the histogram of the time the connections stay open and the state of the built-in pool.<br/>
+ * Outside of the REST API, this servlet is not behind the security filter : it answers 404 unless the server property {@value #ENABLED}
+ * is true.
+ */
+public class ConnectionMonitorServlet extends HttpServlet {
+	/** sUid */
+	private static final long serialVersionUID = 3105284765294120748L;
+
+	/** Server property : true to answer the requests. */
+	public static final String ENABLED = "monitor.connections.enabled";
+
+	/** Indicates if the requests are answered. */
+	private static final boolean ENABLED_VALUE = "true".equalsIgnoreCase(MessageUtils.getServerProperty(ENABLED));
+
+	/** JSON writer. */
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+
+	/**
+	 * @see HttpServlet#doGet(HttpServletRequest request, HttpServletResponse response)
+	 */
+	protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+		if (!ENABLED_VALUE) {
+			response.sendError(HttpServletResponse.SC_NOT_FOUND);
+			return;
+		}
+		response.setContentType("application/json");
+		response.setCharacterEncoding("UTF-8");
+		response.setHeader("Cache-Control", "no-cache");
+		MAPPER.writeValue(response.getOutputStream(), getStatus());
+	}
+
+	/**
+	 * Builds the state of the connections.
+	 *
+	 * @return the state, by name
+	 */
+	private Map<String, Object> getStatus() {
+		ConnectionLogger logger = ConnectionLogger.getInstance();
+		long now = System.currentTimeMillis();
+
+		List<Map<String, Object>> connections = new ArrayList<Map<String, Object>>();
+		for (ConnectionObject c : logger.getListConnections()) {
+			Map<String, Object> connection = new LinkedHashMap<String, Object>();
+			connection.put("id", c.getId());
+			connection.put("class", c.getConnectionClass().getName());
+			connection.put("thread", c.getThreadName());
+			connection.put("age", now - c.getOpened());
+			if (c.getStackTrace() != null) {
+				List<String> stack = new ArrayList<String>();
+				for (StackTraceElement element : c.getStackTrace()) {
+					stack.add(element.toString());
+				}
+				connection.put("stack", stack);
+			}
+			connections.add(connection);
+		}
+
+		Map<String, Object> status = new LinkedHashMap<String, Object>();
+		status.put("opened", logger.getOpenedCount());
+		status.put("registered", logger.getRegisteredCount());
+		status.put("closed", logger.getClosedCount());
+		status.put("stackSampling", logger.getStackSampling());
+		status.put("openDuration", logger.getOpenDurations().summary());
+		status.put("pool", getPoolStatus());
+		status.put("connections", connections);
+		return status;
+	}
+
+	/**
+	 * Builds the state of the built-in pool.
+	 *
+	 * @return the state, by name, null if the pool is disabled
+	 */
+	private Map<String, Object> getPoolStatus() {
+		ConnectionPool pool = ConnectionPool.getInstance();
+		if (pool == null) {
+			return null;
+		}
+		Map<String, Object> status = new LinkedHashMap<String, Object>();
+		status.put("active", pool.getActiveCount());
+		status.put("idle", pool.getIdleCount());
+		status.put("total", pool.getTotalCount());
+		status.put("maxSize", pool.getMaxSize());
+		status.put("waiting", pool.getWaitingCount());
+		status.put("borrows", pool.getBorrowCount());
+		status.put("waits", pool.getWaitCount());
+		status.put("totalWait", pool.getTotalWaitMillis());
+		status.put("maxWait", pool.getMaxWaitMillis());
+		status.put("timeouts", pool.getTimeoutCount());
+		status.put("leaks", pool.getLeakCount());
+		return status;
+	}
+}
@@ -0,0 +1,232 @@
+package com.cgi.commons.ui.utils;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.cgi.commons.utils.DurationHistogram;
+
+/**
+ * Metrics collected for one scrape, written in the Prometheus text format or as JSON maps.<br/>
+ * A metric is a family of samples with the same name, told apart by their labels. Histograms are written as summaries : count, sum and
+ * the usual quantiles.
+ */
+final class MetricSamples {
+
+	/** Quantiles of the summaries. */
+	private static final double[] QUANTILES = { 0.5, 0.9, 0.99, 0.999 };
+	/** JSON names of the quantiles. */
+	private static final String[] QUANTILE_NAMES = { "p50", "p90", "p99", "p999" };
+
+	/** Metric families by name, in insertion order. */
+	private final Map<String, Family> families = new LinkedHashMap<String, Family>();
+
+	/**
+	 * Samples of a metric.
+	 */
+	private static final class Family {
+		/** Description. */
+		private final String help;
+		/** Prometheus type : gauge, counter or summary. */
+		private final String type;
+		/** Samples. */
+		private final List<Sample> samples = new ArrayList<Sample>();
+
+		/**
+		 * Constructor.
+		 *
+		 * @param help Description.
+		 * @param type Prometheus type.
+		 */
+		private Family(String help, String type) {
+			this.help = help;
+			this.type = type;
+		}
+	}
+
+	/**
+	 * Sample of a metric : a value, or a histogram for a summary.
+	 */
+	private static final class Sample {
+		/** Label names and values, alternated. */
+		private final String[] labels;
+		/** Value. */
+		private final double value;
+		/** Histogram, null for a value. */
+		private final DurationHistogram histogram;
+		/** Factor converting the values of the histogram to seconds. */
+		private final double scale;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param labels Label names and values, alternated.
+		 * @param value Value.
+		 * @param histogram Histogram, null for a value.
+		 * @param scale Factor converting the values of the histogram to seconds.
+		 */
+		private Sample(String[] labels, double value, DurationHistogram histogram, double scale) {
+			this.labels = labels;
+			this.value = value;
+			this.histogram = histogram;
+			this.scale = scale;
+		}
+	}
+
+	/**
+	 * Adds a value which goes up and down.
+	 *
+	 * @param name Metric name.
+	 * @param help Description.
+	 * @param value Value.
+	 * @param labels Label names and values, alternated.
+	 */
+	void gauge(String name, String help, double value, String... labels) {
+		family(name, help, "gauge").samples.add(new Sample(labels, value, null, 0));
+	}
+
+	/**
+	 * Adds a value which only goes up.
+	 *
+	 * @param name Metric name, ending with {@code _total}.
+	 * @param help Description.
+	 * @param value Value.
+	 * @param labels Label names and values, alternated.
+	 */
+	void counter(String name, String help, double value, String... labels) {
+		family(name, help, "counter").samples.add(new Sample(labels, value, null, 0));
+	}
+
+	/**
+	 * Adds a histogram of durations.
+	 *
+	 * @param name Metric name, ending with {@code _seconds}.
+	 * @param help Description.
+	 * @param histogram Histogram.
+	 * @param scale Factor converting the values of the histogram to seconds.
+	 * @param labels Label names and values, alternated.
+	 */
+	void summary(String name, String help, DurationHistogram histogram, double scale, String... labels) {
+		family(name, help, "summary").samples.add(new Sample(labels, 0, histogram, scale));
+	}
+
+	/**
+	 * Writes the metrics in the Prometheus text format.
+	 *
+	 * @param out Writer.
+	 */
+	void writePrometheus(PrintWriter out) {
+		for (Map.Entry<String, Family> entry : families.entrySet()) {
+			String name = entry.getKey();
+			Family family = entry.getValue();
+			out.print("# HELP " + name + " " + family.help.replace("\\", "\\\\").replace("\n", "\\n") + "\n");
+			out.print("# TYPE " + name + " " + family.type + "\n");
+			for (Sample sample : family.samples) {
+				if (sample.histogram == null) {
+					line(out, name, sample.labels, null, sample.value);
+					continue;
+				}
+				DurationHistogram h = sample.histogram;
+				for (double quantile : QUANTILES) {
+					line(out, name, sample.labels, String.valueOf(quantile), h.getPercentile(quantile * 100) * sample.scale);
+				}
+				line(out, name + "_sum", sample.labels, null, h.getSum() * sample.scale);
+				line(out, name + "_count", sample.labels, null, h.getCount());
+			}
+		}
+	}
+
+	/**
+	 * Returns the metrics as JSON maps : a metric without labels gives its value, other metrics give the list of their samples, with their
+	 * labels. Summaries give their count, sum, max and quantiles, in seconds.
+	 *
+	 * @return the metrics, by name
+	 */
+	Map<String, Object> toJson() {
+		Map<String, Object> json = new LinkedHashMap<String, Object>();
+		for (Map.Entry<String, Family> entry : families.entrySet()) {
+			List<Object> values = new ArrayList<Object>();
+			for (Sample sample : entry.getValue().samples) {
+				if (sample.histogram == null && sample.labels.length == 0) {
+					values.add(sample.value);
+					continue;
+				}
+				Map<String, Object> map = new LinkedHashMap<String, Object>();
+				for (int i = 0; i + 1 < sample.labels.length; i += 2) {
+					map.put(sample.labels[i], sample.labels[i + 1]);
+				}
+				if (sample.histogram == null) {
+					map.put("value", sample.value);
+				} else {
+					DurationHistogram h = sample.histogram;
+					map.put("count", h.getCount());
+					map.put("sum", h.getSum() * sample.scale);
+					map.put("max", h.getMax() * sample.scale);
+					for (int i = 0; i < QUANTILES.length; i++) {
+						map.put(QUANTILE_NAMES[i], h.getPercentile(QUANTILES[i] * 100) * sample.scale);
+					}
+				}
+				values.add(map);
+			}
+			json.put(entry.getKey(), values.size() == 1 && !(values.get(0) instanceof Map) ? values.get(0) : values);
+		}
+		return json;
+	}
+
+	/**
+	 * Returns a metric family, created on first use.
+	 *
+	 * @param name Metric name.
+	 * @param help Description.
+	 * @param type Prometheus type.
+	 * @return the family
+	 */
+	private Family family(String name, String help, String type) {
+		Family family = families.get(name);
+		if (family == null) {
+			family = new Family(help, type);
+			families.put(name, family);
+		}
+		return family;
+	}
+
+	/**
+	 * Writes a sample line.
+	 *
+	 * @param out Writer.
+	 * @param name Sample name.
+	 * @param labels Label names and values, alternated.
+	 * @param quantile Quantile label, null for none.
+	 * @param value Value.
+	 */
+	private static void line(PrintWriter out, String name, String[] labels, String quantile, double value) {
+		StringBuilder sb = new StringBuilder(name);
+		if (labels.length > 0 || quantile != null) {
+			sb.append('{');
+			for (int i = 0; i + 1 < labels.length; i += 2) {
+				if (i > 0) {
+					sb.append(',');
+				}
+				sb.append(labels[i]).append("=\"").append(escape(labels[i + 1])).append('"');
+			}
+			if (quantile != null) {
+				sb.append(labels.length > 0 ? "," : "").append("quantile=\"").append(quantile).append('"');
+			}
+			sb.append('}');
+		}
+		sb.append(' ').append(Double.isNaN(value) ? "NaN" : String.valueOf(value)).append('\n');
+		out.print(sb);
+	}
+
+	/**
+	 * Escapes a label value.
+	 *
+	 * @param value Label value.
+	 * @return the escaped value
+	 */
+	private static String escape(String value) {
+		return value == null ? "" : value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+	}
+}
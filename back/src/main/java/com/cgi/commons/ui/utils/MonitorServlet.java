@@ -1,6 +1,16 @@
 package com.cgi.commons.ui.utils;
 
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.MemoryUsage;
+import java.lang.management.ThreadMXBean;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
@@ -10,15 +20,29 @@ import javax.servlet.http.HttpServletResponse;
 import org.apache.log4j.Logger;
 
 import com.cgi.business.application.User;
-import com.cgi.commons.db.DbManager;
-import com.cgi.commons.db.DbQuery;
+import com.cgi.commons.db.BlobCache;
+import com.cgi.commons.db.ConnectionLogger;
+import com.cgi.commons.db.ConnectionPool;
+import com.cgi.commons.db.SqlCache;
+import com.cgi.commons.db.SqlStats;
+import com.cgi.commons.db.StatementCache;
+import com.cgi.commons.db.WriteBehindQueue;
 import com.cgi.commons.ref.context.RequestContext;
 import com.cgi.commons.ref.entity.EntityManager;
-import com.cgi.commons.ref.entity.EntityModel;
+import com.cgi.commons.rest.provider.EndpointStats;
+import com.cgi.commons.rest.provider.EndpointStats.Endpoint;
 import com.cgi.commons.utils.ApplicationUtils;
+import com.cgi.commons.utils.DurationHistogram;
+import com.cgi.commons.utils.MessageUtils;
+import com.cgi.commons.utils.Thumbnails;
+import com.fasterxml.jackson.databind.ObjectMapper;
 
 /**
- * MonitorServlet which allow acces to application status
+ * MonitorServlet which allow acces to application status.<br/>
+ * Without parameter, answers "OK" or "[ERROR] ...". The status is checked at most once every {@value #HEALTH_TTL} ms, so probes do not
+ * open a connection each time. One request checks it, the others answer the previous status meanwhile : they do not wait for a
+ * connection when the pool is exhausted. With {@code format=prometheus} (the default on {@code /monitor/metrics}) or {@code format=json}, answers
+ * the metrics : JVM memory, GC and threads, database connections and statements, REST endpoints, queues and caches.
  */
 public class MonitorServlet extends HttpServlet {
 	/** sUid */
@@ -26,6 +50,34 @@ public class MonitorServlet extends HttpServlet {
 	/** Logger. */
 	private static final Logger LOGGER = Logger.getLogger(MonitorServlet.class);
 
+	/** Server property : time in ms the status is kept before being checked again. */
+	public static final String HEALTH_TTL = "monitor.health.ttl";
+
+	/** Status of a healthy application. */
+	private static final String OK = "OK";
+	/** Path answering the Prometheus format by default. */
+	private static final String METRICS_PATH = "/monitor/metrics";
+	/** Microseconds to seconds. */
+	private static final double MICROS = 1e-6;
+	/** Milliseconds to seconds. */
+	private static final double MILLIS = 1e-3;
+
+	/** JSON writer. */
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+
+	/** Time the status is kept, in ms. */
+	private static final long HEALTH_TTL_VALUE = readHealthTtl();
+
+	/** Status of an application not checked yet. */
+	private static final String NOT_CHECKED = "[ERROR] Status not checked yet";
+
+	/** Last status. */
+	private static volatile String health;
+	/** Time the last status was checked, in ms. */
+	private static volatile long healthCheckedAt;
+	/** Indicates if a request is checking the status. */
+	private static final AtomicBoolean CHECKING = new AtomicBoolean();
+
 	/**
 	 * @see HttpServlet#HttpServlet()
 	 */
@@ -38,55 +90,84 @@ public class MonitorServlet extends HttpServlet {
 	 * @see HttpServlet#doGet(HttpServletRequest request, HttpServletResponse response)
 	 */
 	protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
-		response.getOutputStream().print(getServerStatus());
+		String format = request.getParameter("format");
+		if (format == null && METRICS_PATH.equals(request.getServletPath())) {
+			format = "prometheus";
+		}
+		if (format == null) {
+			response.getOutputStream().print(getHealth());
+		} else if ("prometheus".equals(format)) {
+			response.setContentType("text/plain; version=0.0.4");
+			response.setCharacterEncoding("UTF-8");
+			PrintWriter out = new PrintWriter(new OutputStreamWriter(response.getOutputStream(), "UTF-8"));
+			getMetrics().writePrometheus(out);
+			out.flush();
+		} else if ("json".equals(format)) {
+			response.setContentType("application/json");
+			response.setCharacterEncoding("UTF-8");
+			Map<String, Object> json = new LinkedHashMap<String, Object>();
+			json.put("status", getHealth());
+			json.putAll(getMetrics().toJson());
+			MAPPER.writeValue(response.getOutputStream(), json);
+		} else {
+			response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Unknown format " + format);
+		}
 	}
 
 	/**
 	 * @see HttpServlet#doPost(HttpServletRequest request, HttpServletResponse response)
 	 */
 	protected void doPost(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
-		response.getOutputStream().print(getServerStatus());
+		doGet(request, response);
+	}
+
+	/**
+	 * Returns the status, checked again if it is older than {@value #HEALTH_TTL} ms. While a request checks it, the others get the
+	 * previous status.
+	 *
+	 * @return "OK" or "[ERROR] ..."
+	 */
+	static String getHealth() {
+		String current = health;
+		if (current != null && System.currentTimeMillis() - healthCheckedAt < HEALTH_TTL_VALUE) {
+			return current;
+		}
+		if (!CHECKING.compareAndSet(false, true)) {
+			return current != null ? current : NOT_CHECKED;
+		}
+		try {
+			current = getServerStatus();
+			healthCheckedAt = System.currentTimeMillis();
+			health = current;
+			return current;
+		} finally {
+			CHECKING.set(false);
+		}
 	}
 
-	private String getServerStatus() {
+	/**
+	 * Checks the status : the database answers and the entities are loaded.
+	 *
+	 * @return "OK" or "[ERROR] ..."
+	 */
+	private static String getServerStatus() {
+		// Check entities
+		if (EntityManager.domains.isEmpty()) {
+			return "[ERROR] EntityManager not loaded";
+		}
+
 		RequestContext context = null;
 		try {
 			// Init core objects
 			context = new RequestContext(new User("monitorServlet"));
 
-			// Check DB status
+			// Check DB status, validating the connection is enough : the entities were loaded from the database
 			if (!context.getDbConnection().check()) {
 				return "[ERROR] DB not available";
 			}
-
-			// Check entities
-			if (EntityManager.domains.isEmpty()) {
-				return "[ERROR] EntityManager not loaded";
-			}
-
-			// Select from first entity
-			String entityName = EntityManager.domains.iterator().next();
-			EntityModel entityModel = EntityManager.getEntityModel(entityName);
-			DbManager dbm = null;
-			try {
-				// Prepare query
-				DbQuery query = new DbQuery(entityModel.name(), "T1");
-				query.setMaxRownum(1);
-
-				dbm = new DbManager(context, query);
-				// Request executed
-				if (dbm.next()) {
-					// Has result
-				}
-
-			} catch (Exception e) {
-				LOGGER.error("Request failed", e);
-				return "[ERROR] DB request failed";
-			} finally {
-				if (dbm != null) {
-					dbm.close();
-				}
-			}
+		} catch (RuntimeException e) {
+			LOGGER.error("DB check failed", e);
+			return "[ERROR] DB not available";
 		} finally {
 			if (context != null) {
 				context.close();
@@ -94,7 +175,153 @@ public class MonitorServlet extends HttpServlet {
 		}
 
 		// All OK
-		return "OK";
+		return OK;
+	}
+
+	/**
+	 * Collects the metrics.
+	 *
+	 * @return the metrics
+	 */
+	private MetricSamples getMetrics() {
+		MetricSamples m = new MetricSamples();
+		m.gauge("monitor_health_up", "1 if the last status check was OK", OK.equals(getHealth()) ? 1 : 0);
+		addJvm(m);
+		addDatabase(m);
+		addEndpoints(m);
+		addQueues(m);
+		addCaches(m);
+		return m;
 	}
 
+	/**
+	 * Adds the JVM metrics : memory, GC, threads.
+	 *
+	 * @param m Metrics.
+	 */
+	private void addJvm(MetricSamples m) {
+		m.gauge("jvm_uptime_seconds", "Time since the JVM started", ManagementFactory.getRuntimeMXBean().getUptime() * MILLIS);
+		MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+		MemoryUsage heap = memory.getHeapMemoryUsage();
+		MemoryUsage nonHeap = memory.getNonHeapMemoryUsage();
+		m.gauge("jvm_memory_used_bytes", "Used memory", heap.getUsed(), "area", "heap");
+		m.gauge("jvm_memory_used_bytes", "Used memory", nonHeap.getUsed(), "area", "nonheap");
+		m.gauge("jvm_memory_committed_bytes", "Memory committed by the system", heap.getCommitted(), "area", "heap");
+		m.gauge("jvm_memory_committed_bytes", "Memory committed by the system", nonHeap.getCommitted(), "area", "nonheap");
+		m.gauge("jvm_memory_max_bytes", "Max memory, -1 if undefined", heap.getMax(), "area", "heap");
+		m.gauge("jvm_memory_max_bytes", "Max memory, -1 if undefined", nonHeap.getMax(), "area", "nonheap");
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+			m.counter("jvm_gc_collections_total", "Garbage collections", gc.getCollectionCount(), "gc", gc.getName());
+			m.counter("jvm_gc_collection_seconds_total", "Time spent in garbage collections", gc.getCollectionTime() * MILLIS, "gc",
+					gc.getName());
+		}
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		m.gauge("jvm_threads_live", "Live threads", threads.getThreadCount());
+		m.gauge("jvm_threads_daemon", "Live daemon threads", threads.getDaemonThreadCount());
+		m.gauge("jvm_threads_peak", "Highest number of live threads", threads.getPeakThreadCount());
+	}
+
+	/**
+	 * Adds the database metrics : connections, built-in pool, statements.
+	 *
+	 * @param m Metrics.
+	 */
+	private void addDatabase(MetricSamples m) {
+		ConnectionLogger logger = ConnectionLogger.getInstance();
+		m.gauge("db_connections_open", "Opened database connections", logger.getOpenedCount());
+		m.summary("db_connection_open_seconds", "Time the connections stayed open", logger.getOpenDurations(), MILLIS);
+
+		ConnectionPool pool = ConnectionPool.getInstance();
+		if (pool != null) {
+			m.gauge("db_pool_connections", "Connections of the pool", pool.getActiveCount(), "state", "active");
+			m.gauge("db_pool_connections", "Connections of the pool", pool.getIdleCount(), "state", "idle");
+			m.gauge("db_pool_max_connections", "Max connections of the pool", pool.getMaxSize());
+			m.gauge("db_pool_waiting", "Threads waiting for a connection", pool.getWaitingCount());
+			m.counter("db_pool_borrows_total", "Connections borrowed", pool.getBorrowCount());
+			m.counter("db_pool_wait_seconds_total", "Time spent waiting for a connection", pool.getTotalWaitMillis() * MILLIS);
+			m.counter("db_pool_timeouts_total", "Borrows which waited too long", pool.getTimeoutCount());
+			m.counter("db_pool_leaks_total", "Connections borrowed too long", pool.getLeakCount());
+		}
+
+		SqlStats stats = SqlStats.getInstance();
+		m.summary("db_statement_seconds", "Duration of the SQL statements", stats.getDurations(), MICROS);
+		m.counter("db_statement_errors_total", "Failed SQL statements", stats.getErrors());
+		m.counter("db_statement_slow_total", "SQL statements slower than " + SqlStats.SLOW_THRESHOLD, stats.getSlowCount());
+		m.counter("db_rows_total", "Rows fetched or updated", stats.getRows());
+	}
+
+	/**
+	 * Adds the REST endpoint metrics by resource method and action : rate, latency by layer, errors.
+	 *
+	 * @param m Metrics.
+	 */
+	private void addEndpoints(MetricSamples m) {
+		for (Endpoint endpoint : EndpointStats.getInstance().getEndpoints()) {
+			String name = endpoint.getName();
+			String action = endpoint.getAction();
+			m.gauge("http_request_rate", "Requests per second over the last minute", endpoint.getRate(), "endpoint", name, "action", action);
+			m.summary("http_request_seconds", "Latency of the requests", endpoint.getLatency(), MICROS, "endpoint", name, "action", action);
+			DurationHistogram[] phases = endpoint.getPhases();
+			for (int i = 0; i < phases.length; i++) {
+				m.summary("http_request_phase_seconds", "Latency of the requests by layer", phases[i], MICROS, "endpoint", name, "action",
+						action, "phase", EndpointStats.PHASES[i]);
+			}
+			m.counter("http_request_errors_total", "Requests answered with an error", endpoint.getClientErrors(), "endpoint", name,
+					"action", action, "status", "4xx");
+			m.counter("http_request_errors_total", "Requests answered with an error", endpoint.getServerErrors(), "endpoint", name,
+					"action", action, "status", "5xx");
+		}
+	}
+
+	/**
+	 * Adds the queue metrics : thumbnails and write-behind queues.
+	 *
+	 * @param m Metrics.
+	 */
+	private void addQueues(MetricSamples m) {
+		m.gauge("queue_depth", "Waiting tasks", Thumbnails.getQueueSize(), "queue", "thumbnail");
+		for (WriteBehindQueue<?> queue : WriteBehindQueue.getStartedQueues()) {
+			String name = "write-behind-" + queue.getName();
+			m.gauge("queue_depth", "Waiting tasks", queue.getQueueSize(), "queue", name);
+			m.gauge("queue_capacity", "Max waiting tasks", queue.getCapacity(), "queue", name);
+			m.counter("queue_rejected_total", "Tasks rejected or dropped because the queue was full", queue.getRejectedCount()
+					+ queue.getDroppedCount(), "queue", name);
+			m.gauge("queue_lag_seconds", "Wait of the oldest task of the last flush", queue.getLastLag() * MILLIS, "queue", name);
+		}
+	}
+
+	/**
+	 * Adds the cache metrics : hit ratios and sizes.
+	 *
+	 * @param m Metrics.
+	 */
+	private void addCaches(MetricSamples m) {
+		SqlCache sql = SqlCache.getInstance();
+		BlobCache files = BlobCache.getInstance();
+		m.gauge("cache_hit_ratio", "Share of reads found in cache", sql.getHitRatio(), "cache", "sql");
+		m.gauge("cache_hit_ratio", "Share of reads found in cache", StatementCache.getHitRatio(), "cache", "statement");
+		m.gauge("cache_hit_ratio", "Share of reads found in cache", files.getHitRatio(), "cache", "file");
+		m.gauge("cache_entries", "Cached entries", sql.size(), "cache", "sql");
+		m.gauge("cache_entries", "Cached entries", files.count(), "cache", "file");
+		m.gauge("cache_size_bytes", "Size of the cached contents", files.size(), "cache", "file");
+		m.counter("cache_evictions_total", "Entries evicted to make room", sql.getEvictionCount(), "cache", "sql");
+		m.counter("sql_cache_mismatches_total", "Cached SQL found to differ from the built SQL", sql.getMismatchCount());
+	}
+
+	/**
+	 * Reads the time the status is kept.
+	 *
+	 * @return the server property {@value #HEALTH_TTL}, or its default value
+	 */
+	private static long readHealthTtl() {
+		String value = MessageUtils.getServerProperty(HEALTH_TTL);
+		if (value != null) {
+			try {
+				return Long.parseLong(value.trim());
+			} catch (NumberFormatException e) {
+				LOGGER.warn("Invalid " + HEALTH_TTL + " " + value + ", 10000 is used");
+			}
+		}
+		return 10000;
+	}
 }
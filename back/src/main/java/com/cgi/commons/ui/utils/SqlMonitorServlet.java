@@ -0,0 +1,107 @@
+package com.cgi.commons.ui.utils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.cgi.commons.db.SqlStats;
+import com.cgi.commons.db.SqlStats.Shape;
+import com.cgi.commons.utils.MessageUtils;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * SqlMonitorServlet which gives the statistics of the executed SQL statements in JSON : totals, then the shapes of statements which took
+ * the most time (parameter {@code top}, 20 by default). Durations are in microseconds.<br/>
+ * Outside of the REST API, this servlet is not behind the security filter : it answers 404 unless the server property {@value #ENABLED}
+ * is true.
+ */
+public class SqlMonitorServlet extends HttpServlet {
+	/** sUid */
+	private static final long serialVersionUID = -2619503380178394125L;
+
+	/** Server property : true to answer the requests. */
+	public static final String ENABLED = "monitor.sql.enabled";
+
+	/** Indicates if the requests are answered. */
+	private static final boolean ENABLED_VALUE = "true".equalsIgnoreCase(MessageUtils.getServerProperty(ENABLED));
+
+	/** Default number of shapes. */
+	private static final int DEFAULT_TOP = 20;
+
+	/** JSON writer. */
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+
+	/**
+	 * @see HttpServlet#doGet(HttpServletRequest request, HttpServletResponse response)
+	 */
+	protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+		if (!ENABLED_VALUE) {
+			response.sendError(HttpServletResponse.SC_NOT_FOUND);
+			return;
+		}
+		int top = DEFAULT_TOP;
+		String param = request.getParameter("top");
+		if (param != null) {
+			try {
+				top = Math.max(0, Integer.parseInt(param));
+			} catch (NumberFormatException e) {
+				response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid top " + param);
+				return;
+			}
+		}
+		response.setContentType("application/json");
+		response.setCharacterEncoding("UTF-8");
+		response.setHeader("Cache-Control", "no-cache");
+		MAPPER.writeValue(response.getOutputStream(), getStatus(top));
+	}
+
+	/**
+	 * Builds the statistics.
+	 *
+	 * @param top Number of shapes.
+	 * @return the statistics, by name
+	 */
+	private Map<String, Object> getStatus(int top) {
+		SqlStats stats = SqlStats.getInstance();
+		List<Map<String, Object>> shapes = new ArrayList<Map<String, Object>>();
+		for (Shape shape : stats.getTopShapes(top)) {
+			Map<String, Object> s = new LinkedHashMap<String, Object>();
+			s.put("fingerprint", shape.getFingerprint());
+			s.put("sql", shape.getText());
+			s.put("errors", shape.getErrors());
+			s.put("rows", shape.getRows());
+			s.put("prepare", micros(shape.getPrepareNanos()));
+			s.put("execute", micros(shape.getExecuteNanos()));
+			s.put("fetch", micros(shape.getFetchNanos()));
+			s.put("duration", shape.getDurations().summary());
+			shapes.add(s);
+		}
+
+		Map<String, Object> status = new LinkedHashMap<String, Object>();
+		status.put("errors", stats.getErrors());
+		status.put("rows", stats.getRows());
+		status.put("slow", stats.getSlowCount());
+		status.put("shapeCount", stats.getShapeCount());
+		status.put("duration", stats.getDurations().summary());
+		status.put("shapes", shapes);
+		return status;
+	}
+
+	/**
+	 * Converts a duration.
+	 *
+	 * @param nanos Duration in ns.
+	 * @return the duration in microseconds
+	 */
+	private static long micros(long nanos) {
+		return TimeUnit.NANOSECONDS.toMicros(nanos);
+	}
+}
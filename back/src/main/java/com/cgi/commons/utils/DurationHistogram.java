@@ -0,0 +1,158 @@
+package com.cgi.commons.utils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of durations, recorded from any thread.<br/>
+ * Values below 8 have their own bucket ; above, each power of two is split into 8 buckets, so a percentile is given with a relative
+ * error under 12.5 % (as an HDR histogram with one significant digit), for any value of a {@code long}, in a fixed array of counters.
+ * The unit of the values is chosen by the caller.
+ */
+public final class DurationHistogram {
+
+	/** Number of bits of the sub-buckets of a power of two. */
+	private static final int SUB_BITS = 3;
+	/** Number of sub-buckets of a power of two. */
+	private static final int SUB_COUNT = 1 << SUB_BITS;
+
+	/** Counts by bucket. */
+	private final AtomicLongArray counts = new AtomicLongArray(64 * SUB_COUNT);
+	/** Number of recorded values. */
+	private final AtomicLong count = new AtomicLong();
+	/** Sum of the recorded values. */
+	private final AtomicLong sum = new AtomicLong();
+	/** Max recorded value. */
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * Records a duration.
+	 *
+	 * @param value The duration, negative values are recorded as 0.
+	 */
+	public void record(long value) {
+		long v = Math.max(0, value);
+		counts.incrementAndGet(bucket(v));
+		count.incrementAndGet();
+		sum.addAndGet(v);
+		long current = max.get();
+		while (v > current && !max.compareAndSet(current, v)) {
+			current = max.get();
+		}
+	}
+
+	/**
+	 * @return the number of recorded durations
+	 */
+	public long getCount() {
+		return count.get();
+	}
+
+	/**
+	 * @return the sum of the recorded durations
+	 */
+	public long getSum() {
+		return sum.get();
+	}
+
+	/**
+	 * @return the longest recorded duration
+	 */
+	public long getMax() {
+		return max.get();
+	}
+
+	/**
+	 * @return the mean of the recorded durations, 0 if none
+	 */
+	public double getMean() {
+		long n = count.get();
+		return n == 0 ? 0d : (double) sum.get() / n;
+	}
+
+	/**
+	 * Returns a percentile of the recorded durations.
+	 *
+	 * @param percentile The percentile, between 0 and 100.
+	 * @return the upper bound of the bucket of the percentile, 0 if nothing was recorded
+	 */
+	public long getPercentile(double percentile) {
+		long n = count.get();
+		if (n == 0) {
+			return 0;
+		}
+		long rank = Math.max(1, (long) Math.ceil(n * Math.min(100d, percentile) / 100d));
+		long seen = 0;
+		for (int i = 0; i < counts.length(); i++) {
+			seen += counts.get(i);
+			if (seen >= rank) {
+				return Math.min(upperBound(i), max.get());
+			}
+		}
+		return max.get();
+	}
+
+	/**
+	 * Returns the counts of the buckets which are not empty, by upper bound. Values recorded meanwhile may be missing.
+	 *
+	 * @return the counts, in bucket order
+	 */
+	public Map<Long, Long> getBuckets() {
+		Map<Long, Long> buckets = new LinkedHashMap<Long, Long>();
+		for (int i = 0; i < counts.length(); i++) {
+			long c = counts.get(i);
+			if (c > 0) {
+				buckets.put(Long.valueOf(upperBound(i)), Long.valueOf(c));
+			}
+		}
+		return buckets;
+	}
+
+	/**
+	 * Returns a summary : count, mean, max and the usual percentiles.
+	 *
+	 * @return the summary, by name
+	 */
+	public Map<String, Object> summary() {
+		Map<String, Object> summary = new LinkedHashMap<String, Object>();
+		summary.put("count", Long.valueOf(getCount()));
+		summary.put("mean", Double.valueOf(getMean()));
+		summary.put("max", Long.valueOf(getMax()));
+		summary.put("p50", Long.valueOf(getPercentile(50)));
+		summary.put("p90", Long.valueOf(getPercentile(90)));
+		summary.put("p99", Long.valueOf(getPercentile(99)));
+		summary.put("p999", Long.valueOf(getPercentile(99.9)));
+		return summary;
+	}
+
+	/**
+	 * Returns the bucket of a value.
+	 *
+	 * @param value The value, positive.
+	 * @return the index of the bucket
+	 */
+	static int bucket(long value) {
+		if (value < SUB_COUNT) {
+			return (int) value;
+		}
+		int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+		return (shift + 1) * SUB_COUNT + (int) ((value >>> shift) & (SUB_COUNT - 1));
+	}
+
+	/**
+	 * Returns the highest value of a bucket.
+	 *
+	 * @param index The index of the bucket.
+	 * @return the highest value
+	 */
+	static long upperBound(int index) {
+		if (index < SUB_COUNT) {
+			return index;
+		}
+		int shift = index / SUB_COUNT - 1;
+		long lower = (long) (SUB_COUNT + index % SUB_COUNT) << shift;
+		return lower + (1L << shift) - 1;
+	}
+}
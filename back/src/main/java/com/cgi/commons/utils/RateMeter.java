@@ -0,0 +1,49 @@
+package com.cgi.commons.utils;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free count of events over the last minute, by slots of one second.<br/>
+ * A slot is reused once its second is more than a minute old ; an event recorded by another thread while the slot is reset may be lost,
+ * so the rate is approximate.
+ */
+public final class RateMeter {
+
+	/** Number of slots, one per second. */
+	private static final int SLOTS = 60;
+
+	/** Events by slot. */
+	private final AtomicLongArray counts = new AtomicLongArray(SLOTS);
+	/** Second of each slot. */
+	private final AtomicLongArray seconds = new AtomicLongArray(SLOTS);
+
+	/**
+	 * Records an event.
+	 */
+	public void mark() {
+		long second = System.currentTimeMillis() / 1000;
+		int slot = (int) (second % SLOTS);
+		long current = seconds.get(slot);
+		if (current != second && seconds.compareAndSet(slot, current, second)) {
+			counts.set(slot, 0);
+		}
+		counts.incrementAndGet(slot);
+	}
+
+	/**
+	 * Returns the rate over the last minute, the current second excluded.
+	 *
+	 * @return events per second
+	 */
+	public double getRate() {
+		long second = System.currentTimeMillis() / 1000;
+		long total = 0;
+		for (int i = 0; i < SLOTS; i++) {
+			long s = seconds.get(i);
+			if (s < second && s >= second - SLOTS) {
+				total += counts.get(i);
+			}
+		}
+		return (double) total / SLOTS;
+	}
+}
@@ -0,0 +1,389 @@
+package com.cgi.commons.utils;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Reduced copies of images, made with {@code javax.imageio}.<br/>
+ * Decoding an image takes memory in proportion to its resolution : the copies are made by a pool of a few threads with a bounded queue,
+ * so a page showing many images cannot use all the memory or all the processors of the server. The caller waits for its copy.<br/>
+ * The source is read by the caller before it is given to the pool : a copy which is not made in time no longer uses the stream of the
+ * caller. Sources larger than the server property {@value #MAX_SOURCE_SIZE}, or with more pixels than {@value #MAX_PIXELS}, are not
+ * reduced.
+ */
+public final class Thumbnails {
+
+	/** Logger. */
+	private static final Logger LOGGER = Logger.getLogger(Thumbnails.class);
+
+	/** Server property : allowed sizes, in pixels, separated by commas. */
+	public static final String SIZES = "file.thumbnail.sizes";
+	/** Server property : number of threads making the copies. */
+	public static final String THREADS = "file.thumbnail.threads";
+	/** Server property : number of copies waiting for a thread, further ones are rejected. */
+	public static final String QUEUE = "file.thumbnail.queue";
+	/** Server property : max wait for a copy, in ms. */
+	public static final String TIMEOUT = "file.thumbnail.timeout";
+	/** Server property : max size of a source image, in bytes. */
+	public static final String MAX_SOURCE_SIZE = "file.thumbnail.maxSourceSize";
+	/** Server property : max number of pixels of a source image. */
+	public static final String MAX_PIXELS = "file.thumbnail.maxPixels";
+
+	/** Default allowed sizes. */
+	private static final String DEFAULT_SIZES = "64,128,256,512";
+	/** Default number of copies waiting for a thread. */
+	private static final int DEFAULT_QUEUE = 16;
+	/** Default max wait for a copy. */
+	private static final int DEFAULT_TIMEOUT = 10000;
+	/** Default max size of a source image : 16 MB. */
+	private static final int DEFAULT_MAX_SOURCE_SIZE = 16 * 1024 * 1024;
+	/** Default max number of pixels of a source image : 4096 x 4096, 64 MB once decoded. */
+	private static final int DEFAULT_MAX_PIXELS = 4096 * 4096;
+
+	/** Allowed sizes, sorted. */
+	private static final int[] ALLOWED_SIZES = readSizes();
+	/** Max wait for a copy, in ms. */
+	private static final long TIMEOUT_VALUE = readInt(TIMEOUT, DEFAULT_TIMEOUT);
+	/** Max size of a source image, in bytes. */
+	private static final int MAX_SOURCE_SIZE_VALUE = readInt(MAX_SOURCE_SIZE, DEFAULT_MAX_SOURCE_SIZE);
+	/** Max number of pixels of a source image. */
+	private static final long MAX_PIXELS_VALUE = readInt(MAX_PIXELS, DEFAULT_MAX_PIXELS);
+
+	/** Pool making the copies, created on first use. */
+	private static ThreadPoolExecutor pool;
+
+	/**
+	 * Reduced copy of an image.
+	 */
+	public static final class Thumbnail {
+		/** Encoded image. */
+		private final byte[] content;
+		/** Image format, also used as file extension. */
+		private final String format;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param content Encoded image.
+		 * @param format Image format.
+		 */
+		private Thumbnail(byte[] content, String format) {
+			this.content = content;
+			this.format = format;
+		}
+
+		/**
+		 * @return the encoded image
+		 */
+		public byte[] getContent() {
+			return content;
+		}
+
+		/**
+		 * @return the image format ({@code jpg} or {@code png}), also used as file extension
+		 */
+		public String getFormat() {
+			return format;
+		}
+	}
+
+	/**
+	 * Private constructor.
+	 */
+	private Thumbnails() {
+	}
+
+	/**
+	 * Indicates if a size is allowed. Only a few sizes are allowed, so the cached copies of an image stay few.
+	 *
+	 * @param size Size in pixels.
+	 * @return true if the size is one of the server property {@value #SIZES}
+	 */
+	public static boolean isAllowed(int size) {
+		return Arrays.binarySearch(ALLOWED_SIZES, size) >= 0;
+	}
+
+	/**
+	 * Makes a reduced copy of an image, which fits in a square of the given size. An image smaller than the square keeps its size. Images
+	 * with transparency are encoded in PNG, the other ones in JPEG.
+	 *
+	 * @param is Stream of the source image, read by the caller : it is not used once this method returns.
+	 * @param size Size of the square, in pixels.
+	 * @return the copy, or null if the source is not an image known by {@code javax.imageio} or is too large
+	 * @throws RejectedExecutionException If the pool is busy : the queue is full, or the copy is not made in time.
+	 * @throws TechnicalException If the source cannot be read.
+	 */
+	public static Thumbnail create(InputStream is, int size) {
+		byte[] source;
+		try {
+			source = read(is);
+		} catch (IOException e) {
+			throw new TechnicalException("Error while reading image", e);
+		}
+		return source == null ? null : create(source, size);
+	}
+
+	/**
+	 * Makes a reduced copy of an image, as {@link #create(InputStream, int)}.
+	 *
+	 * @param source The source image.
+	 * @param size Size of the square, in pixels.
+	 * @return the copy, or null if the source is not an image known by {@code javax.imageio} or is too large
+	 * @throws RejectedExecutionException If the pool is busy : the queue is full, or the copy is not made in time.
+	 * @throws TechnicalException If the source cannot be read.
+	 */
+	public static Thumbnail create(final byte[] source, final int size) {
+		if (source.length > MAX_SOURCE_SIZE_VALUE) {
+			LOGGER.info("Image of " + source.length + " bytes not reduced, " + MAX_SOURCE_SIZE + " is " + MAX_SOURCE_SIZE_VALUE);
+			return null;
+		}
+		Future<Thumbnail> future = getPool().submit(new Callable<Thumbnail>() {
+			@Override
+			public Thumbnail call() throws IOException {
+				return resize(source, size);
+			}
+		});
+		try {
+			return future.get(TIMEOUT_VALUE, TimeUnit.MILLISECONDS);
+		} catch (TimeoutException e) {
+			future.cancel(true);
+			throw new RejectedExecutionException("Thumbnail not made in " + TIMEOUT_VALUE + " ms", e);
+		} catch (InterruptedException e) {
+			future.cancel(true);
+			Thread.currentThread().interrupt();
+			throw new TechnicalException("Thumbnail interrupted", e);
+		} catch (ExecutionException e) {
+			throw new TechnicalException("Error while making thumbnail", e.getCause());
+		}
+	}
+
+	/**
+	 * Stops the pool, waiting copies are abandoned.
+	 */
+	public static synchronized void shutdown() {
+		if (pool != null) {
+			pool.shutdownNow();
+			pool = null;
+		}
+	}
+
+	/**
+	 * Reads a source image, up to the size of the server property {@value #MAX_SOURCE_SIZE}.
+	 *
+	 * @param is Stream of the source image.
+	 * @return the source, or null if it is too large
+	 * @throws IOException If the source cannot be read.
+	 */
+	private static byte[] read(InputStream is) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		int n;
+		while ((n = is.read(buffer)) != -1) {
+			if (out.size() + n > MAX_SOURCE_SIZE_VALUE) {
+				LOGGER.info("Image of more than " + MAX_SOURCE_SIZE_VALUE + " bytes not reduced, see " + MAX_SOURCE_SIZE);
+				return null;
+			}
+			out.write(buffer, 0, n);
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * Reads and reduces an image.
+	 *
+	 * @param bytes The source image.
+	 * @param size Size of the square, in pixels.
+	 * @return the copy, or null if the source is not an image or has too many pixels
+	 * @throws IOException If the source cannot be read.
+	 */
+	static Thumbnail resize(byte[] bytes, int size) throws IOException {
+		BufferedImage source = decode(bytes);
+		if (source == null) {
+			return null;
+		}
+		boolean alpha = source.getColorModel().hasAlpha();
+		int width = source.getWidth();
+		int height = source.getHeight();
+		double scale = Math.min(1d, (double) size / Math.max(width, height));
+		int targetWidth = Math.max(1, (int) Math.round(width * scale));
+		int targetHeight = Math.max(1, (int) Math.round(height * scale));
+
+		// Halving the size step by step keeps the details a single bilinear scaling would skip
+		BufferedImage image = source;
+		do {
+			width = Math.max(targetWidth, width / 2);
+			height = Math.max(targetHeight, height / 2);
+			image = draw(image, width, height, alpha);
+		} while (width > targetWidth || height > targetHeight);
+
+		String format = alpha ? "png" : "jpg";
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		if (!ImageIO.write(image, alpha ? "png" : "jpeg", out)) {
+			throw new IOException("No writer for " + format);
+		}
+		return new Thumbnail(out.toByteArray(), format);
+	}
+
+	/**
+	 * Decodes an image, once its dimensions are checked.
+	 *
+	 * @param bytes The source image.
+	 * @return the image, or null if the source is not an image or has more pixels than the server property {@value #MAX_PIXELS}
+	 * @throws IOException If the source cannot be read.
+	 */
+	private static BufferedImage decode(byte[] bytes) throws IOException {
+		ImageInputStream iis = ImageIO.createImageInputStream(new ByteArrayInputStream(bytes));
+		if (iis == null) {
+			return null;
+		}
+		try {
+			Iterator<ImageReader> readers = ImageIO.getImageReaders(iis);
+			if (!readers.hasNext()) {
+				return null;
+			}
+			ImageReader reader = readers.next();
+			try {
+				reader.setInput(iis, true, true);
+				long pixels = (long) reader.getWidth(0) * reader.getHeight(0);
+				if (pixels > MAX_PIXELS_VALUE) {
+					LOGGER.info("Image of " + reader.getWidth(0) + "x" + reader.getHeight(0) + " not reduced, see " + MAX_PIXELS);
+					return null;
+				}
+				return reader.read(0);
+			} finally {
+				reader.dispose();
+			}
+		} finally {
+			iis.close();
+		}
+	}
+
+	/**
+	 * Draws an image at another size.
+	 *
+	 * @param image Image.
+	 * @param width New width.
+	 * @param height New height.
+	 * @param alpha Indicates if the image has transparency.
+	 * @return the new image
+	 */
+	private static BufferedImage draw(BufferedImage image, int width, int height, boolean alpha) {
+		BufferedImage target = new BufferedImage(width, height, alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+		Graphics2D g = target.createGraphics();
+		try {
+			g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+			g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+			g.drawImage(image, 0, 0, width, height, null);
+		} finally {
+			g.dispose();
+		}
+		return target;
+	}
+
+	/**
+	 * Returns the pool, created on first use.
+	 *
+	 * @return the pool
+	 */
+	private static synchronized ThreadPoolExecutor getPool() {
+		if (pool == null) {
+			int threads = readInt(THREADS, Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+			int queue = readInt(QUEUE, DEFAULT_QUEUE);
+			final AtomicInteger count = new AtomicInteger();
+			pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(Math.max(1, queue)),
+					new ThreadFactory() {
+						@Override
+						public Thread newThread(Runnable r) {
+							Thread thread = new Thread(r, "thumbnail-" + count.incrementAndGet());
+							thread.setDaemon(true);
+							return thread;
+						}
+					});
+			pool.allowCoreThreadTimeOut(true);
+			LOGGER.info("Thumbnail pool started with " + threads + " threads");
+		}
+		return pool;
+	}
+
+	/**
+	 * @return the number of copies waiting for a thread
+	 */
+	public static synchronized int getQueueSize() {
+		return pool == null ? 0 : pool.getQueue().size();
+	}
+
+	/**
+	 * Reads the allowed sizes.
+	 *
+	 * @return the server property {@value #SIZES}, or its default value, sorted
+	 */
+	private static int[] readSizes() {
+		String value = MessageUtils.getServerProperty(SIZES);
+		if (value != null) {
+			try {
+				return parseSizes(value);
+			} catch (NumberFormatException e) {
+				LOGGER.warn("Invalid " + SIZES + " " + value + ", " + DEFAULT_SIZES + " is used");
+			}
+		}
+		return parseSizes(DEFAULT_SIZES);
+	}
+
+	/**
+	 * Parses sizes separated by commas.
+	 *
+	 * @param value The sizes.
+	 * @return the sizes, sorted
+	 */
+	private static int[] parseSizes(String value) {
+		String[] parts = value.split(",");
+		int[] sizes = new int[parts.length];
+		for (int i = 0; i < parts.length; i++) {
+			sizes[i] = Integer.parseInt(parts[i].trim());
+		}
+		Arrays.sort(sizes);
+		return sizes;
+	}
+
+	/**
+	 * Reads an integer property.
+	 *
+	 * @param property Name of the property.
+	 * @param defaultValue Default value.
+	 * @return the server property, or its default value
+	 */
+	private static int readInt(String property, int defaultValue) {
+		String value = MessageUtils.getServerProperty(property);
+		if (value != null) {
+			try {
+				return Integer.parseInt(value.trim());
+			} catch (NumberFormatException e) {
+				LOGGER.warn("Invalid " + property + " " + value + ", " + defaultValue + " is used");
+			}
+		}
+		return defaultValue;
+	}
+}
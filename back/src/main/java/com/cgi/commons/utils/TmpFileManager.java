@@ -168,6 +168,13 @@ public class TmpFileManager {
         return delta;
     }
 
+    /**
+     * @return The input stream, positioned after the file name if {@link TmpFileManager#extractName()} was called.
+     */
+    public InputStream getInputStream() {
+        return is;
+    }
+
     /**
      * @param uuid
      *            file's identifier.
@@ -4,6 +4,7 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.text.DateFormat;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -20,6 +21,7 @@ import com.cgi.commons.db.DbQuery.Var;
 import com.cgi.commons.logic.DomainLogic;
 import com.cgi.commons.ref.context.RequestContext;
 import com.cgi.commons.ref.data.ColumnData;
+import com.cgi.commons.ref.data.RowSchema;
 import com.cgi.commons.ref.entity.Entity;
 import com.cgi.commons.utils.ApplicationUtils;
 import com.cgi.commons.utils.MessageUtils;
@@ -104,12 +106,13 @@ public abstract class ExcelWriter {
 			Row row;
 			int i = 1;
 			mgr = new DbManager(context, query);
+			int[] ordinals = getVisibleOrdinals(columnsData, mgr.getRowSchema());
 			while (mgr.next())
 			{
-				com.cgi.commons.ref.data.Row r = mgr.getNextRow(domainLogic, defaultDateFormatter, defaultTimeFormatter, defaultTimestampFormatter);
+				Object[] values = mgr.getNextValues(domainLogic, defaultDateFormatter, defaultTimeFormatter, defaultTimestampFormatter);
 				row = sheet.createRow(i++);
 
-				populateRow(columnsData, row, r);
+				populateRow(ordinals, row, values);
 			}
 			
 			resizeColumns(sheet);
@@ -164,24 +167,36 @@ public abstract class ExcelWriter {
 	}
 	
 	/**
-	 * Store current data row into the sheet row
+	 * Ordinals of the visible columns in the data rows, resolved once for all the rows.
 	 * 
 	 * @param columnsData columns data
-	 * @param sheetRow current workbook row
-	 * @param dataRow current data row
+	 * @param schema keys of the data rows
+	 * @return for each visible column, the ordinal of its value (-1 if the rows have no value for it)
 	 */
-	private void populateRow(Map<String, ColumnData> columnsData, Row sheetRow, com.cgi.commons.ref.data.Row dataRow) {
-		Cell cell;
+	private int[] getVisibleOrdinals(Map<String, ColumnData> columnsData, RowSchema schema) {
+		int[] ordinals = new int[query.getOutVars().size()];
 		int j = 0;
 		for (Var var : query.getOutVars()) {
-			ColumnData columnData = columnsData.get(var.tableId + "_" + var.name);
-
-			if (!columnData.isVisible()) {
-				continue;
+			if (columnsData.get(var.tableId + "_" + var.name).isVisible()) {
+				ordinals[j++] = schema.indexOf(var.tableId + "_" + var.name);
 			}
-			cell = sheetRow.createCell(j++);
+		}
+		return Arrays.copyOf(ordinals, j);
+	}
+
+	/**
+	 * Store current data row into the sheet row
+	 * 
+	 * @param ordinals ordinals of the visible columns
+	 * @param sheetRow current workbook row
+	 * @param values current data row values
+	 */
+	private void populateRow(int[] ordinals, Row sheetRow, Object[] values) {
+		Cell cell;
+		for (int j = 0; j < ordinals.length; j++) {
+			cell = sheetRow.createCell(j);
 			
-			Object value = dataRow.get(var.tableId + "_" + var.name);
+			Object value = ordinals[j] >= 0 ? values[ordinals[j]] : null;
 
 			if (value instanceof String) {
 				cell.setCellValue((String) value);
@@ -1,9 +1,11 @@
 package com.cgi.models.endpoint;
 
 import com.cgi.business.application.SecurityManager;
+import com.cgi.commons.db.Keyset;
 import com.cgi.commons.ref.context.RequestContext;
 import com.cgi.commons.ref.controller.BusinessController;
 import com.cgi.commons.ref.controller.Request;
+import com.cgi.commons.ref.data.CountMode;
 import com.cgi.commons.ref.data.LinkData;
 import com.cgi.commons.ref.data.ListCriteria;
 import com.cgi.commons.ref.data.ListData;
@@ -13,10 +15,12 @@ import com.cgi.commons.ref.entity.EntityManager;
 import com.cgi.commons.ref.entity.EntityModel;
 import com.cgi.commons.ref.entity.Key;
 import com.cgi.commons.ref.entity.LinkModel;
+import com.cgi.commons.rest.EndpointConstants;
 import com.cgi.commons.rest.api.error.BadRequestException;
 import com.cgi.commons.rest.api.error.ForbiddenRequestException;
 import com.cgi.commons.rest.api.error.NotFoundException;
 import com.cgi.commons.rest.auth.WsUserMgr;
+import com.cgi.commons.rest.domain.ListStreamingOutput;
 import com.cgi.commons.rest.domain.ManyProcessParameters;
 import com.cgi.commons.rest.domain.RestEntity;
 import com.cgi.commons.rest.domain.RestResponse;
@@ -26,9 +30,12 @@ import com.cgi.commons.utils.FunctionalException;
 import com.cgi.commons.utils.MessageUtils;
 import com.cgi.commons.utils.TechnicalException;
 import com.cgi.commons.utils.reflect.DomainUtils;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.apache.log4j.Logger;
 
 import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
@@ -158,8 +165,51 @@ public class AbstractEndpoint {
 			String linkName,
 			HttpServletRequest httpRequest,
 			RequestContext context
+	) {
+		return getResultList(entityName, queryName, orderByName, orderDirection, startIndex, length, action, searchCriteria, linkKey,
+				linkEntity, linkName, null, null, httpRequest, context);
+	}
+
+	/**
+	 * Get list form query, paged by continuation token.
+	 * @param entityName principal entity name of query
+	 * @param queryName query name to launch
+	 * @param orderByName name of column for order
+	 * @param orderDirection ASC or DESC
+	 * @param startIndex number of row to start list, ignored with a continuation token
+	 * @param length length of list
+	 * @param action
+	 * @param searchCriteria string to search into all of column
+	 * @param linkKey primary key of linked entity
+	 * @param linkEntity name of linked entity
+	 * @param linkName name of link
+	 * @param continuationToken token returned with the previous page, null for the first page
+	 * @param countMode how to count the rows (exact, window, capped or has_more), null for the default mode
+	 * @param httpRequest httpRequest
+	 * @param context The current context
+	 * @return a list of principal entity, with the token of the next page.
+	 */
+	protected ResultList getResultList(
+			String entityName,
+			String queryName,
+			String orderByName,
+			String orderDirection,
+			int startIndex,
+			int length,
+			String action,
+			String searchCriteria,
+			String linkKey,
+			String linkEntity,
+			String linkName,
+			String continuationToken,
+			String countMode,
+			HttpServletRequest httpRequest,
+			RequestContext context
 	) {
 		checkIsListRendered(context, queryName);
+		if (null != continuationToken && !Keyset.isWellFormed(continuationToken)) {
+			throw new BadRequestException(10001L, format("Invalid continuation token %s", continuationToken));
+		}
 		ListCriteria<Entity> criteria = new ListCriteria<>(searchCriteria);
 		if (null != orderByName && null != orderDirection) {
 			criteria.orderByField = orderByName;
@@ -167,6 +217,13 @@ public class AbstractEndpoint {
 		}
 		criteria.minRow = startIndex;
 		criteria.maxRow = length;
+		criteria.continuationToken = continuationToken;
+		if (null != countMode) {
+			criteria.countMode = CountMode.parse(countMode);
+			if (null == criteria.countMode) {
+				throw new BadRequestException(10001L, format("Invalid count mode %s", countMode));
+			}
+		}
 		final BusinessController businessController = new BusinessController();
 		final EntityModel entityQueryModel = EntityManager.getEntityModel(entityName);
 		final ListData data;
@@ -214,9 +271,61 @@ public class AbstractEndpoint {
 		ResultList ret = new ResultList();
 		ret.setResults(data.getRows());
 		ret.setResultSetCount(data.getTotalRowCount());
+		ret.setContinuationToken(data.getContinuationToken());
+		ret.setHasMore(data.isHasMore());
+		ret.setCountMode(data.getCountMode());
 		return ret;
 	}
 
+	/**
+	 * Get list form query, streamed : rows are written to the response as they are read from the database.
+	 * @param entityName principal entity name of query
+	 * @param queryName query name to launch
+	 * @param orderByName name of column for order
+	 * @param orderDirection ASC or DESC
+	 * @param startIndex number of row to start list
+	 * @param length length of list, 0 for all the rows
+	 * @param searchCriteria string to search into all of column
+	 * @param format json or ndjson
+	 * @param mapper mapper of the rows
+	 * @param httpRequest httpRequest
+	 * @return the streamed response, which closes its request context.
+	 */
+	protected Response getStreamingList(
+			String entityName,
+			String queryName,
+			String orderByName,
+			String orderDirection,
+			int startIndex,
+			int length,
+			String searchCriteria,
+			String format,
+			ObjectMapper mapper,
+			HttpServletRequest httpRequest
+	) {
+		boolean ndjson = "ndjson".equalsIgnoreCase(format);
+		if (!ndjson && null != format && !"json".equalsIgnoreCase(format)) {
+			throw new BadRequestException(10001L, format("Invalid format %s", format));
+		}
+		RequestContext context = WsUserMgr.getInstance().getRequestContext(httpRequest);
+		try {
+			checkIsListRendered(context, queryName);
+			ListCriteria<Entity> criteria = new ListCriteria<>(searchCriteria);
+			if (null != orderByName && null != orderDirection) {
+				criteria.orderByField = orderByName;
+				criteria.orderByDirection = orderDirection;
+			}
+			criteria.minRow = startIndex;
+			criteria.maxRow = length;
+			ListStreamingOutput output = new ListStreamingOutput(EntityManager.getEntityModel(entityName).name(), queryName, criteria, ndjson,
+					mapper, context);
+			return Response.ok(output, ndjson ? EndpointConstants.APPLICATION_NDJSON : MediaType.APPLICATION_JSON).build();
+		} catch (RuntimeException ex) {
+			context.close();
+			throw ex;
+		}
+	}
+
 	/**
 	 * Get entity to display into link.
 	 *
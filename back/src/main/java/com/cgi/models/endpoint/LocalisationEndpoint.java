@@ -2,6 +2,8 @@ package com.cgi.models.endpoint;
 
 import static java.lang.String.format;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -17,10 +19,14 @@ import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
 import javax.ws.rs.core.UriInfo;
+import javax.ws.rs.ext.Providers;
 
 import org.apache.log4j.Logger;
 
+import com.cgi.business.position.LocalisationWriteBehind;
 import com.cgi.commons.db.DB;
 import com.cgi.commons.ref.context.RequestContext;
 import com.cgi.commons.ref.controller.BusinessController;
@@ -34,8 +40,11 @@ import com.cgi.commons.ref.entity.EntityManager;
 import com.cgi.commons.ref.entity.Key;
 import com.cgi.commons.ref.entity.LinkModel;
 import com.cgi.commons.rest.EndpointConstants;
+import com.cgi.commons.rest.api.error.BadRequestException;
 import com.cgi.commons.rest.api.error.NotFoundException;
+import com.cgi.commons.rest.api.error.ServiceUnavailableException;
 import com.cgi.commons.rest.auth.WsUserMgr;
+import com.cgi.commons.rest.domain.BatchResult;
 import com.cgi.commons.rest.domain.RestResponse;
 import com.cgi.commons.rest.domain.RestUtils;
 import com.cgi.commons.rest.domain.ResultList;
@@ -47,6 +56,9 @@ import com.cgi.models.rest.LocalisationRest.LocalisationRestKey;
 import com.cgi.commons.rest.domain.ManyProcessParameters;
 import com.cgi.models.rest.BaliseRest;
 import com.cgi.models.beans.Balise;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.RuntimeJsonMappingException;
 
 
 /**
@@ -160,6 +172,125 @@ public class LocalisationEndpoint extends AbstractEndpoint implements Localisati
 		}
 	}
 
+	/**
+	 * Bulk endpoint for action "Create" : a JSON array of fixes, inserted in one transaction or queued when the write-behind queue is
+	 * enabled.
+	 *
+	 * @return Number of rows inserted or queued.
+	 */
+	@POST
+	@Path("/action/create-batch")
+	public RestResponse createBatch(
+		List<LocalisationRest> rEntities,
+		@Context HttpServletRequest httpRequest) {
+	
+		Action action = EntityManager.getEntityModel(ENTITY_NAME).getAction(Actions.ACTION_CREATE);
+	
+		try (RequestContext context = WsUserMgr.getInstance().getRequestContext(httpRequest)) {
+			checkIsActionRendered(context, action);
+			if (rEntities == null) {
+				throw new BadRequestException(10001L, format("Need body to execute action %s", action.getCode()));
+			}
+			List<Localisation> entities = new ArrayList<>(rEntities.size());
+			for (LocalisationRest rEntity : rEntities) {
+				Localisation entity = new Localisation();
+				RestUtils.setEntity(rEntity, entity);
+				entities.add(entity);
+			}
+			BatchResult result = new BatchResult();
+			if (saveBatch(entities, action, context, result)) {
+				context.getDbConnection().commit();
+			}
+			checkNotRejected(result);
+			return new RestResponse(result, context);
+		} catch (Exception ex) {
+			logger.error("Cannot create entities", ex);
+			throw ex;
+		}
+	}
+
+	/**
+	 * Bulk endpoint for action "Create" : NDJSON stream of fixes (one JSON object per line). The stream is read and inserted by chunks of
+	 * {@value EndpointConstants#STREAM_BATCH_SIZE} fixes, in one transaction or queued when the write-behind queue is enabled.
+	 *
+	 * @return Number of rows inserted or queued.
+	 */
+	@POST
+	@Path("/action/create-batch")
+	@Consumes(APPLICATION_NDJSON)
+	public RestResponse createBatchStream(
+		InputStream body,
+		@Context Providers providers,
+		@Context HttpServletRequest httpRequest) {
+	
+		Action action = EntityManager.getEntityModel(ENTITY_NAME).getAction(Actions.ACTION_CREATE);
+		ObjectMapper mapper = providers.getContextResolver(ObjectMapper.class, MediaType.APPLICATION_JSON_TYPE).getContext(LocalisationRest.class);
+	
+		try (RequestContext context = WsUserMgr.getInstance().getRequestContext(httpRequest)) {
+			checkIsActionRendered(context, action);
+			BatchResult result = new BatchResult();
+			boolean inserted = false;
+			List<Localisation> entities = new ArrayList<>(STREAM_BATCH_SIZE);
+			try (MappingIterator<LocalisationRest> it = mapper.readerFor(LocalisationRest.class).readValues(body)) {
+				while (it.hasNext()) {
+					Localisation entity = new Localisation();
+					RestUtils.setEntity(it.next(), entity);
+					entities.add(entity);
+					if (entities.size() == STREAM_BATCH_SIZE) {
+						inserted |= saveBatch(entities, action, context, result);
+						entities.clear();
+					}
+				}
+			} catch (IOException | RuntimeJsonMappingException e) {
+				throw new BadRequestException(10001L, format("Invalid NDJSON body : %s", e.getMessage()));
+			}
+			inserted |= saveBatch(entities, action, context, result);
+			if (inserted) {
+				context.getDbConnection().commit();
+			}
+			checkNotRejected(result);
+			return new RestResponse(result, context);
+		} catch (Exception ex) {
+			logger.error("Cannot create entities", ex);
+			throw ex;
+		}
+	}
+
+	/**
+	 * Inserts fixes in the current transaction, or queues them when the write-behind queue is enabled.
+	 *
+	 * @param entities Fixes.
+	 * @param action Action "Create".
+	 * @param context Current request context.
+	 * @param result Counters to update.
+	 * @return <code>true</code> if the fixes were inserted in the current transaction, which must then be committed.
+	 */
+	private boolean saveBatch(List<Localisation> entities, Action action, RequestContext context, BatchResult result) {
+		if (entities.isEmpty()) {
+			return false;
+		}
+		if (LocalisationWriteBehind.isEnabled()) {
+			int queued = LocalisationWriteBehind.offerAll(entities);
+			result.setQueuedCount(result.getQueuedCount() + queued);
+			result.setRejectedCount(result.getRejectedCount() + entities.size() - queued);
+			return false;
+		}
+		result.setInsertedCount(result.getInsertedCount() + DB.insertBatch(entities, action, context));
+		return true;
+	}
+
+	/**
+	 * Fails with HTTP 503 when the write-behind queue accepted none of the fixes, so the client retries later. Partial acceptance is
+	 * reported in the result.
+	 *
+	 * @param result Batch counters.
+	 */
+	private void checkNotRejected(BatchResult result) {
+		if (result.getRejectedCount() > 0 && result.getQueuedCount() == 0) {
+			throw new ServiceUnavailableException(10001L, format("Write-behind queue full, %d fixes rejected", result.getRejectedCount()));
+		}
+	}
+
 	/**
 	 * Endpoint for action "Modifier"
 	 *
@@ -471,6 +602,8 @@ public class LocalisationEndpoint extends AbstractEndpoint implements Localisati
 		@QueryParam("link-key") String linkKey,
 		@QueryParam("link-entity") String linkEntity,
 		@QueryParam("link-name") String linkName,
+		@QueryParam("continuation") String continuation,
+		@QueryParam("count") String countMode,
 		@Context HttpServletRequest httpRequest) {
 
 		try (RequestContext context = WsUserMgr.getInstance().getRequestContext(httpRequest)) {
@@ -486,6 +619,8 @@ public class LocalisationEndpoint extends AbstractEndpoint implements Localisati
 				linkKey,
 				linkEntity,
 				linkName,
+				continuation,
+				countMode,
 				httpRequest,
 				context
 			);
@@ -497,6 +632,44 @@ public class LocalisationEndpoint extends AbstractEndpoint implements Localisati
 		}
 	}
 
+	/**
+	 * Streaming endpoint for query "LOCALISATIONS" : the rows are written as they are read, for exports and long histories.<br/>
+	 *
+	 * @return List Localisation of result, as JSON or NDJSON (format=ndjson).
+	 */
+	@GET
+	@Path("/query/localisations/stream")
+	@Produces({ MediaType.APPLICATION_JSON, APPLICATION_NDJSON })
+	public Response localisationsStream(
+		@QueryParam("order-by") String orderByName,
+		@QueryParam("order-direction") String orderDirection,
+		@QueryParam("start-index") @DefaultValue("0") int startIndex,
+		@QueryParam("length") @DefaultValue("0") int length,
+		@QueryParam("search") String searchCriteria,
+		@QueryParam("format") String format,
+		@Context Providers providers,
+		@Context HttpServletRequest httpRequest) {
+
+		ObjectMapper mapper = providers.getContextResolver(ObjectMapper.class, MediaType.APPLICATION_JSON_TYPE).getContext(ResultList.class);
+		try {
+			return getStreamingList(
+				ENTITY_NAME,
+				Query.LOCALISATIONS,
+				orderByName,
+				orderDirection,
+				startIndex,
+				length,
+				searchCriteria,
+				format,
+				mapper,
+				httpRequest
+			);
+		} catch (Exception ex) {
+			logger.error("Cannot request entity", ex);
+			throw ex;
+		}
+	}
+
 	/**
 	 * Endpoint for retriving an Localisation from its children
 	 *
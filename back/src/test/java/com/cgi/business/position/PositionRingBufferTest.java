@@ -0,0 +1,91 @@
+package com.cgi.business.position;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+/**
+ * Tests of {@link PositionRingBuffer} with concurrent publishers, as the HTTP requests saving fixes.
+ */
+public class PositionRingBufferTest {
+
+	/** Number of publishing threads. */
+	private static final int THREADS = 8;
+	/** Fixes published by each thread. */
+	private static final int FIXES = 20000;
+
+	@Test
+	public void concurrentPublishersGetDistinctSequencesAndNoTornFix() throws Exception {
+		final PositionRingBuffer.Ring ring = new PositionRingBuffer(16).ring(1L);
+		final Set<Long> sequences = Collections.newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
+		final AtomicBoolean torn = new AtomicBoolean();
+		final AtomicBoolean done = new AtomicBoolean();
+		final CountDownLatch start = new CountDownLatch(1);
+
+		Thread reader = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				while (!done.get()) {
+					Position p = ring.latest();
+					if (p != null && !consistent(p)) {
+						torn.set(true);
+					}
+				}
+			}
+		});
+		Thread[] publishers = new Thread[THREADS];
+		for (int t = 0; t < THREADS; t++) {
+			final int base = t * FIXES;
+			publishers[t] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+					} catch (InterruptedException e) {
+						return;
+					}
+					for (int i = 0; i < FIXES; i++) {
+						int v = base + i;
+						sequences.add(Long.valueOf(ring.publish(v, -v, v)));
+					}
+				}
+			});
+			publishers[t].start();
+		}
+		reader.start();
+		start.countDown();
+		for (Thread publisher : publishers) {
+			publisher.join();
+		}
+		done.set(true);
+		reader.join();
+
+		assertFalse(torn.get());
+		assertEquals(THREADS * FIXES, ring.published());
+		assertEquals(THREADS * FIXES, sequences.size());
+		List<Position> snapshot = ring.snapshot();
+		assertEquals(16, snapshot.size());
+		for (int i = 0; i < snapshot.size(); i++) {
+			Position p = snapshot.get(i);
+			assertTrue(consistent(p));
+			assertEquals(THREADS * FIXES - 16 + i, p.getSequence());
+		}
+	}
+
+	/**
+	 * @param p A fix published by the test.
+	 * @return true if its fields come from the same publish
+	 */
+	private static boolean consistent(Position p) {
+		return p.getX() == -p.getY() && p.getX() == p.getTimestamp();
+	}
+}
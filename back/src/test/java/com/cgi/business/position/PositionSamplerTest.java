@@ -0,0 +1,121 @@
+package com.cgi.business.position;
+
+import static org.easymock.EasyMock.anyInt;
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.isA;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.easymock.IAnswer;
+import org.junit.Test;
+
+import com.cgi.business.application.User;
+import com.cgi.commons.db.DB;
+import com.cgi.commons.db.DbConnection;
+import com.cgi.commons.ref.context.RequestContext;
+import com.cgi.commons.ref.entity.Action;
+import com.cgi.models.beans.Localisation;
+import com.cgi.models.constants.LocalisationConstants;
+
+/**
+ * Tests of {@link PositionSampler}.
+ */
+public class PositionSamplerTest {
+
+	/** Action "Create". */
+	private final Action create = Localisation.getEntityModel().getAction(LocalisationConstants.Actions.ACTION_CREATE);
+
+	@Test
+	public void createBatchInsertsOneRowPerFix() throws Exception {
+		final AtomicInteger rows = new AtomicInteger();
+		RequestContext ctx = new RequestContext(new User("admin"));
+		ctx.setDbConnection(new DbConnection(countingConnection(rows)));
+		List<Localisation> fixes = Arrays.asList(fix(101L, 1L, 10, 10), fix(102L, 1L, 20, 20), fix(103L, 2L, 30, 30));
+
+		// Same call as the create-batch endpoint
+		DB.insertBatch(new ArrayList<Localisation>(fixes), create, ctx);
+		assertNotNull(PositionRingBuffer.getInstance().latest(1L));
+
+		PositionSampler sampler = PositionSampler.createDefault();
+		long now = System.currentTimeMillis();
+		sampler.sample(now);
+		sampler.sample(now + 24 * 3600 * 1000L);
+
+		assertEquals(fixes.size(), rows.get());
+		assertEquals(0, sampler.getReadCount());
+		assertEquals(0, sampler.getMoveCount() + sampler.getHeartbeatCount());
+		assertEquals(0, sampler.getInsertedCount() + sampler.getFailedCount());
+	}
+
+	@Test
+	public void fixesOfTheFeedAreRecordedOnMove() {
+		PositionRingBuffer feed = new PositionRingBuffer(16);
+		PositionSampler sampler = new PositionSampler(feed, create, 200, 1, 0, 0, 500, 60000);
+		feed.publish(1L, 10, 10, 1000L);
+		feed.publish(1L, 10, 10, 1100L);
+		feed.publish(1L, 20, 20, 1200L);
+
+		sampler.sample(1300L);
+
+		assertEquals(3, sampler.getReadCount());
+		assertEquals(2, sampler.getMoveCount());
+		assertEquals(1, sampler.getSkippedCount());
+	}
+
+	/**
+	 * @param id Identifier.
+	 * @param baliseId Beacon.
+	 * @param x Coordinate x.
+	 * @param y Coordinate y.
+	 * @return a fix as sent by the gateway
+	 */
+	private static Localisation fix(Long id, Long baliseId, int x, int y) {
+		Localisation fix = new Localisation();
+		fix.setId(id);
+		fix.setBaliseId(baliseId);
+		fix.setCoordX(Integer.valueOf(x));
+		fix.setCoordY(Integer.valueOf(y));
+		return fix;
+	}
+
+	/**
+	 * @param rows Counter of the rows sent in batches.
+	 * @return a connection whose statements count the rows of their batches
+	 * @throws Exception If error.
+	 */
+	private static Connection countingConnection(final AtomicInteger rows) throws Exception {
+		final AtomicInteger pending = new AtomicInteger();
+		PreparedStatement ps = createNiceMock(PreparedStatement.class);
+		ps.addBatch();
+		expectLastCall().andAnswer(new IAnswer<Object>() {
+			@Override
+			public Object answer() {
+				pending.incrementAndGet();
+				return null;
+			}
+		}).anyTimes();
+		expect(ps.executeBatch()).andAnswer(new IAnswer<int[]>() {
+			@Override
+			public int[] answer() {
+				int[] counts = new int[pending.getAndSet(0)];
+				Arrays.fill(counts, 1);
+				rows.addAndGet(counts.length);
+				return counts;
+			}
+		}).anyTimes();
+		Connection cnx = createNiceMock(Connection.class);
+		expect(cnx.prepareStatement(isA(String.class), anyInt(), anyInt())).andReturn(ps).anyTimes();
+		replay(ps, cnx);
+		return cnx;
+	}
+}
@@ -0,0 +1,129 @@
+package com.cgi.commons.db;
+
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.eq;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.isA;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.Date;
+
+import org.junit.After;
+import org.junit.Test;
+import org.powermock.reflect.Whitebox;
+
+import com.cgi.business.application.User;
+import com.cgi.commons.db.DbConnection.Type;
+import com.cgi.commons.ref.context.RequestContext;
+import com.cgi.models.beans.Localisation;
+
+/**
+ * Tests of {@link DB#persist(com.cgi.commons.ref.entity.Entity, RequestContext)}.
+ */
+public class DBTest {
+
+	/**
+	 * Forgets the database type.
+	 */
+	@After
+	public void tearDown() {
+		Whitebox.setInternalState(DbConnection.class, "dbType", (Type) null);
+	}
+
+	@Test
+	public void savepointIsReleasedAfterInsert() throws Exception {
+		Whitebox.setInternalState(DbConnection.class, "dbType", Type.PostgreSQL);
+		PreparedStatement ps = createNiceMock(PreparedStatement.class);
+		expect(ps.executeUpdate()).andReturn(0).andReturn(1);
+		replay(ps);
+		Savepoint savepoint = createNiceMock(Savepoint.class);
+		Connection cnx = mockConnection(ps);
+		expect(cnx.setSavepoint()).andReturn(savepoint);
+		cnx.releaseSavepoint(savepoint);
+		expectLastCall();
+		replay(cnx);
+
+		assertTrue(DB.persist(localisation(42L), context(cnx)));
+
+		verify(cnx);
+	}
+
+	@Test
+	public void duplicateKeyRollsBackToSavepoint() throws Exception {
+		Whitebox.setInternalState(DbConnection.class, "dbType", Type.PostgreSQL);
+		PreparedStatement ps = createNiceMock(PreparedStatement.class);
+		// Inserted by a concurrent request between the update and the insert
+		expect(ps.executeUpdate()).andReturn(0).andThrow(new SQLException("duplicate key", "23505")).andReturn(1);
+		replay(ps);
+		Savepoint savepoint = createNiceMock(Savepoint.class);
+		Connection cnx = mockConnection(ps);
+		expect(cnx.setSavepoint()).andReturn(savepoint);
+		cnx.rollback(savepoint);
+		expectLastCall();
+		replay(cnx);
+
+		assertFalse(DB.persist(localisation(42L), context(cnx)));
+
+		verify(cnx);
+	}
+
+	@Test
+	public void noSavepointOnMySQL() throws Exception {
+		Whitebox.setInternalState(DbConnection.class, "dbType", Type.MySQL);
+		PreparedStatement ps = createNiceMock(PreparedStatement.class);
+		expect(ps.executeUpdate()).andReturn(0).andReturn(1);
+		replay(ps);
+		Connection cnx = mockConnection(ps);
+		replay(cnx);
+
+		assertTrue(DB.persist(localisation(42L), context(cnx)));
+
+		// A strict mock would fail on setSavepoint
+		verify(cnx);
+	}
+
+	/**
+	 * @param id Identifier.
+	 * @return a localisation with the given identifier
+	 */
+	private static Localisation localisation(Long id) {
+		Localisation localisation = new Localisation();
+		localisation.setId(id);
+		localisation.setBaliseId(7L);
+		localisation.setCoordX(10);
+		localisation.setCoordY(20);
+		localisation.setHeure(new Date());
+		localisation.setStatut(Boolean.TRUE);
+		return localisation;
+	}
+
+	/**
+	 * @param cnx Connection.
+	 * @return a context on the given connection
+	 */
+	private static RequestContext context(Connection cnx) {
+		RequestContext ctx = new RequestContext(new User("admin"));
+		ctx.setDbConnection(new DbConnection(cnx));
+		return ctx;
+	}
+
+	/**
+	 * @param ps Statement of all the queries.
+	 * @return a connection outside autocommit, to be replayed
+	 */
+	private static Connection mockConnection(PreparedStatement ps) throws SQLException {
+		Connection cnx = createNiceMock(Connection.class);
+		expect(cnx.getAutoCommit()).andReturn(false).anyTimes();
+		expect(cnx.prepareStatement(isA(String.class), eq(java.sql.ResultSet.TYPE_FORWARD_ONLY), eq(java.sql.ResultSet.CONCUR_READ_ONLY)))
+				.andReturn(ps).anyTimes();
+		return cnx;
+	}
+}
@@ -0,0 +1,131 @@
+package com.cgi.commons.db;
+
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.eq;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.isA;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertNull;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+
+import org.junit.After;
+import org.junit.Test;
+import org.powermock.reflect.Whitebox;
+
+import com.cgi.business.application.User;
+import com.cgi.commons.db.DbConnection.Type;
+import com.cgi.commons.ref.context.RequestContext;
+import com.cgi.commons.ref.entity.Key;
+
+/**
+ * Tests of {@link DbManager}.
+ */
+public class DbManagerTest {
+
+	/**
+	 * Forgets the database type.
+	 */
+	@After
+	public void tearDown() {
+		Whitebox.setInternalState(DbConnection.class, "dbType", (Type) null);
+	}
+
+	@Test
+	public void streamedQueryIsReadRowByRowOnMySQL() throws Exception {
+		assertFetchSize(Type.MySQL, streamedQuery(500), Integer.MIN_VALUE);
+	}
+
+	@Test
+	public void fetchSizeIsGivenToOtherDrivers() throws Exception {
+		assertFetchSize(Type.PostgreSQL, streamedQuery(500), 500);
+	}
+
+	@Test
+	public void queryWithoutFetchSizeIsReadAtOnce() throws Exception {
+		assertFetchSize(Type.MySQL, streamedQuery(0), 0);
+	}
+
+	@Test
+	public void listQueryIsNotStreamed() throws Exception {
+		DbQuery query = new DbQuery("localisation", "T01");
+		query.setName("localisations");
+		query.setFetchSize(500);
+		assertFetchSize(Type.MySQL, query, 500);
+	}
+
+	@Test
+	public void entityReadIsNotStreamed() throws Exception {
+		PreparedStatement ps = mockStatement(Type.MySQL, 1);
+		RequestContext ctx = new RequestContext(new User("admin"));
+		ctx.setDbConnection(new DbConnection(mockConnection(ps)));
+
+		// Reads with a fetch size of 1, the entity logic may run queries while the row is read
+		assertNull(DB.get("localisation", new Key("localisation", "42"), ctx));
+
+		verify(ps);
+	}
+
+	/**
+	 * @param fetchSize Fetch size.
+	 * @return a streamed query
+	 */
+	private static DbQuery streamedQuery(int fetchSize) {
+		DbQuery query = new DbQuery("localisation", "T01");
+		query.setName("localisations");
+		query.setFetchSize(fetchSize);
+		query.setStreamed(true);
+		return query;
+	}
+
+	/**
+	 * Executes a query and checks the fetch size of its statement.
+	 *
+	 * @param type Database type.
+	 * @param query The query.
+	 * @param statementSize Expected fetch size of the statement.
+	 * @throws Exception If error.
+	 */
+	private static void assertFetchSize(Type type, DbQuery query, int statementSize) throws Exception {
+		PreparedStatement ps = mockStatement(type, statementSize);
+		RequestContext ctx = new RequestContext(new User("admin"));
+		ctx.setDbConnection(new DbConnection(mockConnection(ps)));
+		new DbManager(ctx, query).close();
+
+		verify(ps);
+	}
+
+	/**
+	 * @param type Database type.
+	 * @param statementSize Expected fetch size of the statement.
+	 * @return a statement without rows
+	 * @throws Exception If error.
+	 */
+	private static PreparedStatement mockStatement(Type type, int statementSize) throws Exception {
+		Whitebox.setInternalState(DbConnection.class, "dbType", type);
+		ResultSet rs = createNiceMock(ResultSet.class);
+		PreparedStatement ps = createNiceMock(PreparedStatement.class);
+		ps.setFetchSize(statementSize);
+		expectLastCall().once();
+		expect(ps.getResultSet()).andReturn(rs).anyTimes();
+		replay(rs, ps);
+		return ps;
+	}
+
+	/**
+	 * @param ps Statement of the read-only queries.
+	 * @return a connection
+	 * @throws Exception If error.
+	 */
+	private static Connection mockConnection(PreparedStatement ps) throws Exception {
+		Connection cnx = createNiceMock(Connection.class);
+		expect(cnx.prepareStatement(isA(String.class), eq(ResultSet.TYPE_FORWARD_ONLY), eq(ResultSet.CONCUR_READ_ONLY))).andReturn(ps)
+				.anyTimes();
+		replay(cnx);
+		return cnx;
+	}
+}
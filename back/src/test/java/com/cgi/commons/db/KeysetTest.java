@@ -0,0 +1,159 @@
+package com.cgi.commons.db;
+
+import static org.easymock.EasyMock.anyInt;
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.powermock.reflect.Whitebox;
+
+import com.cgi.commons.db.DbConnection.Type;
+import com.cgi.commons.utils.TechnicalException;
+
+/**
+ * Tests of {@link Keyset}.
+ */
+public class KeysetTest {
+
+	/** Time shared by the rows of a batch. */
+	private static final Timestamp HEURE = new Timestamp(1476800000123L);
+
+	/**
+	 * Sets the database type.
+	 */
+	@Before
+	public void setUp() {
+		Whitebox.setInternalState(DbConnection.class, "dbType", Type.MySQL);
+	}
+
+	/**
+	 * Forgets the database type.
+	 */
+	@After
+	public void tearDown() {
+		Whitebox.setInternalState(DbConnection.class, "dbType", (Type) null);
+	}
+
+	@Test
+	public void keyIsAddedToTheSortInItsDirection() {
+		DbQuery query = query();
+		query.addSortBy("heure", "T01");
+		Keyset.of(query);
+		assertTrue(new SqlBuilder(query).toSql().contains("ORDER BY T01_HEURE ASC, T01_ID ASC LIMIT"));
+
+		query = query();
+		query.addSortByDesc("heure", "T01");
+		Keyset.of(query);
+		assertTrue(new SqlBuilder(query).toSql().contains("ORDER BY T01_HEURE DESC, T01_ID DESC LIMIT"));
+
+		query = query();
+		Keyset.of(query);
+		assertTrue(new SqlBuilder(query).toSql().contains("ORDER BY T01_ID ASC LIMIT"));
+	}
+
+	@Test
+	public void tokenGivesThePageAfterTheLastRowOfTies() throws Exception {
+		DbQuery first = sortedQuery();
+		Keyset keyset = Keyset.of(first);
+		new SqlBuilder(first).toSql();
+		// Last row of the page : rows inserted in one batch share the same time, the key orders them
+		String token = keyset.next(first, lastRow(HEURE, new BigDecimal(42)), 10);
+		assertTrue(Keyset.isWellFormed(token));
+
+		DbQuery next = sortedQuery();
+		Keyset nextKeyset = Keyset.of(next);
+		nextKeyset.seek(next, token);
+		String sql = new SqlBuilder(next).toSql();
+
+		assertEquals(10, nextKeyset.getPosition());
+		assertEquals(10, nextKeyset.getSkippedRows());
+		assertTrue(sql, sql.contains("((T01.HEURE) > (?)) OR ((T01.HEURE) = (?) AND (T01.ID) > (?))"));
+		assertTrue(sql, sql.endsWith("ORDER BY T01_HEURE ASC, T01_ID ASC LIMIT ?, ?"));
+		assertEquals(Arrays.<Object> asList(HEURE, HEURE, new BigDecimal(42), Integer.valueOf(0), Integer.valueOf(10)),
+				next.getBindValues());
+		Timestamp bound = (Timestamp) next.getBindValues().get(0);
+		assertEquals(HEURE.getNanos(), bound.getNanos());
+	}
+
+	@Test
+	public void tokenWithANullKeyValueReadsTheNextPageByOffset() throws Exception {
+		DbQuery first = sortedQuery();
+		Keyset keyset = Keyset.of(first);
+		new SqlBuilder(first).toSql();
+		String token = keyset.next(first, lastRow(null, new BigDecimal(42)), 10);
+
+		DbQuery next = sortedQuery();
+		Keyset nextKeyset = Keyset.of(next);
+		nextKeyset.seek(next, token);
+
+		assertEquals(10, next.getMinRownum());
+		assertEquals(0, nextKeyset.getSkippedRows());
+		assertTrue(next.whereConds.isEmpty());
+	}
+
+	@Test(expected = TechnicalException.class)
+	public void tokenOfAnotherSortIsRejected() throws Exception {
+		DbQuery first = sortedQuery();
+		Keyset keyset = Keyset.of(first);
+		new SqlBuilder(first).toSql();
+		String token = keyset.next(first, lastRow(HEURE, new BigDecimal(42)), 10);
+
+		DbQuery other = query();
+		other.addSortByDesc("heure", "T01");
+		Keyset.of(other).seek(other, token);
+	}
+
+	@Test
+	public void distinctQueryIsNotPagedByKeyset() {
+		DbQuery query = sortedQuery();
+		query.setDistinct(true);
+		assertNull(Keyset.of(query));
+		assertFalse(Keyset.isWellFormed("not a token"));
+	}
+
+	/**
+	 * @return a page of 10 fixes
+	 */
+	private static DbQuery query() {
+		DbQuery query = new DbQuery("localisation", "T01");
+		query.setName("localisations");
+		query.setMaxRownum(10);
+		return query;
+	}
+
+	/**
+	 * @return a page of 10 fixes sorted by time
+	 */
+	private static DbQuery sortedQuery() {
+		DbQuery query = query();
+		query.addSortBy("heure", "T01");
+		return query;
+	}
+
+	/**
+	 * @param heure Time of the row.
+	 * @param id Identifier of the row.
+	 * @return a result set on the last row of a page
+	 * @throws Exception If error.
+	 */
+	private static ResultSet lastRow(Timestamp heure, BigDecimal id) throws Exception {
+		ResultSet rs = createNiceMock(ResultSet.class);
+		expect(rs.getTimestamp(anyInt())).andReturn(heure).anyTimes();
+		expect(rs.getBigDecimal(anyInt())).andReturn(id).anyTimes();
+		expect(Boolean.valueOf(rs.wasNull())).andReturn(Boolean.valueOf(heure == null)).once().andReturn(Boolean.FALSE).anyTimes();
+		replay(rs);
+		return rs;
+	}
+}
@@ -0,0 +1,269 @@
+package com.cgi.commons.db;
+
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.eq;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.isA;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.powermock.reflect.Whitebox;
+
+import com.cgi.business.application.User;
+import com.cgi.commons.db.DbConnection.Type;
+import com.cgi.commons.ref.context.RequestContext;
+import com.cgi.commons.ref.entity.EntityModel;
+import com.cgi.models.beans.Localisation;
+
+/**
+ * Tests of {@link ResultBinder}.
+ */
+public class ResultBinderTest {
+
+	/** Model of the entity read. */
+	private final EntityModel model = Localisation.getEntityModel();
+
+	/**
+	 * Sets the database type.
+	 */
+	@Before
+	public void setUp() {
+		Whitebox.setInternalState(DbConnection.class, "dbType", Type.MySQL);
+	}
+
+	/**
+	 * Forgets the database type.
+	 */
+	@After
+	public void tearDown() {
+		Whitebox.setInternalState(DbConnection.class, "dbType", (Type) null);
+	}
+
+	@Test
+	public void columnsOfAQueryAreReadByTheirOrdinal() {
+		DbQuery query = new DbQuery("localisation", "T01");
+		new SqlBuilder(query).toSql();
+		ResultBinder binder = new ResultBinder(query, null);
+
+		ResultBinder.Column[] columns = binder.getColumns();
+		assertEquals(query.getOutVars().size(), columns.length);
+		for (ResultBinder.Column column : columns) {
+			assertEquals(query.getIndex("T01_" + column.var.model.getSqlName()), column.index);
+			assertEquals("id".equals(column.var.name), column.primaryKey);
+		}
+		assertSame(columns, binder.getColumns());
+
+		ResultBinder.EntityColumns fields = binder.getEntityColumns(model, "T01");
+		for (int c = 0; c < fields.fields.length; c++) {
+			String sqlName = model.getField(model.getAccessors().getName(fields.fields[c])).getSqlName();
+			assertEquals(query.getIndex("T01_" + sqlName), fields.indexes[c]);
+		}
+		assertEquals(kinds(binder), kinds(fields));
+	}
+
+	@Test
+	public void columnsOfANativeStatementAreResolvedOnce() {
+		Map<String, Object> row = new HashMap<String, Object>();
+		FakeResult result = new FakeResult(row, "T01_HEURE", "T01_ID");
+		ResultBinder binder = new ResultBinder(null, result.proxy());
+
+		ResultBinder.EntityColumns fields = binder.getEntityColumns(model, "T01");
+		int lookups = result.lookups;
+		assertSame(fields, binder.getEntityColumns(model, "T01"));
+		assertEquals(lookups, result.lookups);
+
+		// The missing columns are skipped
+		assertEquals(2, fields.fields.length);
+		Map<String, Integer> kinds = kinds(fields);
+		assertEquals(Integer.valueOf(ResultBinder.LONG), kinds.get("id"));
+		assertEquals(Integer.valueOf(ResultBinder.TIMESTAMP), kinds.get("heure"));
+		assertArrayEquals(new int[] { 2, 1 }, new int[] { fields.indexes[indexOf(fields, "id")], fields.indexes[indexOf(fields, "heure")] });
+	}
+
+	@Test
+	public void nullValuesAreReadAsNull() throws Exception {
+		Map<String, Object> row = new HashMap<String, Object>();
+		row.put("T01_ID", new BigDecimal(42));
+		row.put("T01_COORD_X", null);
+		row.put("T01_COORD_Y", Integer.valueOf(7));
+		row.put("T01_HEURE", null);
+		row.put("T01_STATUT", Integer.valueOf(0));
+		row.put("T01_BALISE_ID", null);
+		Localisation fix = read(row);
+
+		assertEquals(Long.valueOf(42), fix.getId());
+		assertNull(fix.getCoordX());
+		assertEquals(Integer.valueOf(7), fix.getCoordY());
+		assertNull(fix.getHeure());
+		assertEquals(Boolean.FALSE, fix.getStatut());
+		assertNull(fix.getBaliseId());
+	}
+
+	@Test
+	public void valuesAreReadByType() throws Exception {
+		Timestamp heure = new Timestamp(1476800000123L);
+		Map<String, Object> row = new HashMap<String, Object>();
+		row.put("T01_ID", new BigDecimal(42));
+		row.put("T01_COORD_X", Integer.valueOf(0));
+		row.put("T01_COORD_Y", null);
+		row.put("T01_HEURE", heure);
+		row.put("T01_STATUT", null);
+		row.put("T01_BALISE_ID", new BigDecimal(3));
+		Localisation fix = read(row);
+
+		assertEquals(Integer.valueOf(0), fix.getCoordX());
+		assertNull(fix.getCoordY());
+		assertEquals(heure.getTime(), fix.getHeure().getTime());
+		assertFalse(fix.getHeure() instanceof Timestamp);
+		assertNull(fix.getStatut());
+		assertEquals(Long.valueOf(3), fix.getBaliseId());
+	}
+
+	/**
+	 * Reads a fix through a query executed on a fake result set.
+	 *
+	 * @param row Values of the row, by column alias.
+	 * @return the fix
+	 * @throws Exception If error.
+	 */
+	private static Localisation read(Map<String, Object> row) throws Exception {
+		DbQuery query = new DbQuery("localisation", "T01");
+		query.setName("localisations");
+		new SqlBuilder(query).toSql();
+		Map<Integer, Object> byIndex = new HashMap<Integer, Object>();
+		for (Map.Entry<String, Object> value : row.entrySet()) {
+			byIndex.put(Integer.valueOf(query.getIndex(value.getKey())), value.getValue());
+		}
+		ResultSet rs = new FakeResult(byIndex).proxy();
+		PreparedStatement ps = createNiceMock(PreparedStatement.class);
+		expect(ps.getResultSet()).andReturn(rs).anyTimes();
+		Connection cnx = createNiceMock(Connection.class);
+		expect(cnx.prepareStatement(isA(String.class), eq(ResultSet.TYPE_FORWARD_ONLY), eq(ResultSet.CONCUR_READ_ONLY))).andReturn(ps)
+				.anyTimes();
+		replay(ps, cnx);
+
+		RequestContext ctx = new RequestContext(new User("admin"));
+		ctx.setDbConnection(new DbConnection(cnx));
+		DbManager dbm = new DbManager(ctx, query);
+		try {
+			assertTrue(dbm.next());
+			return dbm.getEntity("T01", new Localisation(), ctx);
+		} finally {
+			dbm.close();
+		}
+	}
+
+	/**
+	 * @param binder Binder of a query.
+	 * @return how each field of a fix is read, by field name
+	 */
+	private Map<String, Integer> kinds(ResultBinder binder) {
+		return kinds(binder.getEntityColumns(model, "T01"));
+	}
+
+	/**
+	 * @param fields Fields of an entity.
+	 * @return how each field is read, by field name
+	 */
+	private Map<String, Integer> kinds(ResultBinder.EntityColumns fields) {
+		Map<String, Integer> kinds = new HashMap<String, Integer>();
+		for (int c = 0; c < fields.fields.length; c++) {
+			kinds.put(model.getAccessors().getName(fields.fields[c]), Integer.valueOf(fields.kinds[c]));
+		}
+		return kinds;
+	}
+
+	/**
+	 * @param fields Fields of an entity.
+	 * @param name Field name.
+	 * @return the position of the field in the binding
+	 */
+	private int indexOf(ResultBinder.EntityColumns fields, String name) {
+		for (int c = 0; c < fields.fields.length; c++) {
+			if (name.equals(model.getAccessors().getName(fields.fields[c]))) {
+				return c;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Result set of one row, which remembers if the last read value was null.
+	 */
+	private static final class FakeResult implements InvocationHandler {
+		/** Values, by ordinal. */
+		private final Map<Integer, Object> values;
+		/** Column labels, by ordinal from 1. */
+		private final String[] labels;
+		/** Number of column lookups. */
+		private int lookups;
+		/** Indicates if the last read value was null. */
+		private boolean wasNull;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param values Values, by ordinal.
+		 * @param labels Column labels, by ordinal from 1.
+		 */
+		@SuppressWarnings("unchecked")
+		FakeResult(Map<?, Object> values, String... labels) {
+			this.values = (Map<Integer, Object>) values;
+			this.labels = labels;
+		}
+
+		/**
+		 * @return the result set
+		 */
+		ResultSet proxy() {
+			return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[] { ResultSet.class }, this);
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			String name = method.getName();
+			if ("next".equals(name)) {
+				return Boolean.TRUE;
+			} else if ("wasNull".equals(name)) {
+				return Boolean.valueOf(wasNull);
+			} else if ("findColumn".equals(name)) {
+				lookups++;
+				for (int i = 0; i < labels.length; i++) {
+					if (labels[i].equals(args[0])) {
+						return Integer.valueOf(i + 1);
+					}
+				}
+				throw new SQLException("Column " + args[0] + " not found");
+			} else if (name.startsWith("get") && args != null && args[0] instanceof Integer) {
+				Object value = values.get(args[0]);
+				wasNull = value == null;
+				if ("getInt".equals(name)) {
+					return Integer.valueOf(value == null ? 0 : ((Number) value).intValue());
+				}
+				return value;
+			}
+			Class<?> type = method.getReturnType();
+			return type == boolean.class ? Boolean.FALSE : type == int.class ? Integer.valueOf(0) : null;
+		}
+	}
+}
@@ -0,0 +1,142 @@
+package com.cgi.commons.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Test;
+import org.powermock.reflect.Whitebox;
+
+import com.cgi.commons.db.DbConnection.Type;
+
+/**
+ * Tests of {@link SqlCache}.
+ */
+public class SqlCacheTest {
+
+	/** Field of the beacon. */
+	private static final String LOCALISATION_BALISE_ID = "baliseId";
+
+	/**
+	 * Forgets the database type set by a test.
+	 */
+	@After
+	public void tearDown() {
+		Whitebox.setInternalState(DbConnection.class, "dbType", (Type) null);
+	}
+
+	@Test
+	public void sameShapeSharesTheSqlAndBindsItsOwnValuesInEveryDialect() {
+		for (Type type : Type.values()) {
+			Whitebox.setInternalState(DbConnection.class, "dbType", type);
+			SqlCache cache = new SqlCache(10, 0);
+
+			String first = cache.toSql(page(1, 0));
+			DbQuery query = page(2, 20);
+			String second = cache.toSql(query);
+
+			DbQuery expected = page(2, 20);
+			assertEquals(type.name(), new SqlBuilder(expected).toSql(), second);
+			assertEquals(type.name(), first, second);
+			assertEquals(type.name(), expected.getBindValues(), query.getBindValues());
+			assertEquals(type.name(), expected.indexes, query.indexes);
+			assertEquals(type.name(), 1, cache.getHitCount());
+		}
+	}
+
+	@Test
+	public void pagingBindsFollowTheDialect() {
+		Whitebox.setInternalState(DbConnection.class, "dbType", Type.PostgreSQL);
+		DbQuery query = page(2, 20);
+		new SqlCache(10, 0).toSql(query);
+		// LIMIT ? OFFSET ?
+		assertEquals(Integer.valueOf(10), query.getBindValues().get(query.getBindValues().size() - 2));
+		assertEquals(Integer.valueOf(20), query.getBindValues().get(query.getBindValues().size() - 1));
+
+		Whitebox.setInternalState(DbConnection.class, "dbType", Type.DB2);
+		query = page(2, 20);
+		new SqlCache(10, 0).toSql(query);
+		// ROW_NUMBER() between the first and the last row
+		assertEquals(Integer.valueOf(20), query.getBindValues().get(query.getBindValues().size() - 2));
+		assertEquals(Integer.valueOf(30), query.getBindValues().get(query.getBindValues().size() - 1));
+	}
+
+	@Test
+	public void shapeKeyTellsQueriesApart() {
+		Whitebox.setInternalState(DbConnection.class, "dbType", Type.MySQL);
+		SqlCache cache = new SqlCache(10, 0);
+		DbQuery greater = page(1, 0);
+		greater.addCondGT(LOCALISATION_BALISE_ID, "T01", Long.valueOf(3));
+		DbQuery sorted = page(1, 0);
+		sorted.addSortByDesc("heure", "T01");
+
+		String plain = cache.toSql(page(1, 0));
+		cache.toSql(greater);
+		cache.toSql(sorted);
+		cache.toSql(all());
+
+		assertEquals(0, cache.getHitCount());
+		assertEquals(4, cache.size());
+		assertFalse(plain.equals(cache.toSql(all())));
+		assertEquals(1, cache.getHitCount());
+	}
+
+	@Test
+	public void leastRecentlyUsedShapeIsEvicted() {
+		Whitebox.setInternalState(DbConnection.class, "dbType", Type.MySQL);
+		SqlCache cache = new SqlCache(2, 0);
+		DbQuery sorted = all();
+		sorted.addSortBy("heure", "T01");
+
+		cache.toSql(page(1, 0));
+		cache.toSql(all());
+		cache.toSql(page(2, 10));
+		cache.toSql(sorted);
+
+		assertEquals(2, cache.size());
+		assertEquals(1, cache.getEvictionCount());
+		// The page shape was used last before the sorted one : it is still cached
+		cache.toSql(page(3, 30));
+		assertEquals(2, cache.getHitCount());
+		cache.toSql(all());
+		assertEquals(2, cache.getHitCount());
+		assertEquals(2, cache.getEvictionCount());
+	}
+
+	@Test
+	public void checkedHitGivingAnotherSqlIsNotCachedAnyMore() {
+		Whitebox.setInternalState(DbConnection.class, "dbType", Type.MySQL);
+		SqlCache cache = new SqlCache(10, 1);
+		String sql = cache.toSql(page(1, 0));
+		// As if the shape missed a part of another query
+		Map<String, Object> entries = Whitebox.getInternalState(cache, "entries");
+		Whitebox.setInternalState(entries.values().iterator().next(), "sql", "SELECT 1");
+
+		assertEquals(sql, cache.toSql(page(2, 10)));
+		assertEquals(1, cache.getMismatchCount());
+		assertEquals(sql, cache.toSql(page(3, 20)));
+		assertEquals(1, cache.getBypassCount());
+	}
+
+	/**
+	 * @param baliseId Beacon.
+	 * @param first First row.
+	 * @return a page of 10 fixes of a beacon
+	 */
+	private static DbQuery page(long baliseId, int first) {
+		DbQuery query = new DbQuery("localisation", "T01");
+		query.addCondEq(LOCALISATION_BALISE_ID, "T01", Long.valueOf(baliseId));
+		query.setMinRownum(first);
+		query.setMaxRownum(10);
+		return query;
+	}
+
+	/**
+	 * @return all the fixes
+	 */
+	private static DbQuery all() {
+		return new DbQuery("localisation", "T01");
+	}
+}
@@ -0,0 +1,73 @@
+package com.cgi.commons.ref.data;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+/**
+ * Tests of {@link CompactRowList}.
+ */
+public class CompactRowListTest {
+
+	/** Keys of the rows. */
+	private final RowSchema schema = new RowSchema("id", "label");
+
+	@Test
+	public void valuesAreReadWithoutBuildingTheRow() {
+		CompactRowList rows = list();
+		assertArrayEquals(new Object[] { 1, "one" }, rows.getValues(0));
+		assertEquals(2, rows.size());
+	}
+
+	@Test
+	public void changesOfARowAreKept() {
+		CompactRowList rows = list();
+		rows.get(0).put("label", "changed");
+		rows.get(0).put("checked", Boolean.TRUE);
+
+		assertEquals("changed", rows.get(0).get("label"));
+		assertEquals(Boolean.TRUE, rows.get(0).get("checked"));
+		assertSame(rows.get(0), rows.get(0));
+		assertNull(rows.getValues(0));
+		assertArrayEquals(new Object[] { 2, "two" }, rows.getValues(1));
+	}
+
+	@Test
+	public void changesMadeWhileIteratingAreKept() {
+		CompactRowList rows = list();
+		for (Row row : rows) {
+			row.put("label", "changed");
+		}
+		for (Row row : rows) {
+			assertEquals("changed", row.get("label"));
+		}
+	}
+
+	@Test
+	public void replacedAndRemovedRowsAreReturned() {
+		CompactRowList rows = list();
+		Row row = new Row();
+		row.put("id", 3);
+
+		Row previous = rows.set(0, row);
+		assertEquals(1, previous.get("id"));
+		assertSame(row, rows.get(0));
+
+		Row removed = rows.remove(1);
+		assertEquals("two", removed.get("label"));
+		assertEquals(1, rows.size());
+	}
+
+	/**
+	 * @return two rows stored as values
+	 */
+	private CompactRowList list() {
+		CompactRowList rows = new CompactRowList(schema);
+		rows.addValues(new Object[] { 1, "one" });
+		rows.addValues(new Object[] { 2, "two" });
+		return rows;
+	}
+}
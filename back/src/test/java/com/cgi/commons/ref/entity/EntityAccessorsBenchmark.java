@@ -0,0 +1,145 @@
+package com.cgi.commons.ref.entity;
+
+import java.lang.reflect.Method;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.cgi.models.beans.Localisation;
+
+/**
+ * Per-row cost of copying an entity field by field : every field is read from one Localisation and written into another, as the row
+ * mapping and the copy constructor do.<br/>
+ * {@link #reflection()} is the former lookup of {@link Entity#invokeGetter(String)} : method name built per call, cache of
+ * {@link Method}s by entity and name, {@link Method#invoke(Object, Object...)}. {@link #accessors()} goes through the
+ * {@link EntityAccessors} of the model.<br/>
+ * Run after {@code mvn test-compile} with the test classpath :
+ * {@code java -cp target/test-classes:target/classes:<dependencies> org.openjdk.jmh.Main EntityAccessorsBenchmark}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EntityAccessorsBenchmark {
+
+	/** Reflection cache, as it was kept by Entity : methods by entity name and method name. */
+	private final Map<String, Map<String, Method>> reflectCache = new HashMap<String, Map<String, Method>>();
+
+	/** Fields of the model. */
+	private String[] fields;
+	/** Accessors of the model. */
+	private EntityAccessors accessors;
+	/** Entity read. */
+	private Localisation source;
+	/** Entity written. */
+	private Localisation target;
+
+	/**
+	 * Loads the model and fills the source entity.
+	 */
+	@Setup
+	public void setUp() {
+		EntityModel model = EntityManager.getEntityModel("localisation");
+		fields = model.getFields().toArray(new String[0]);
+		accessors = model.getAccessors();
+		source = new Localisation();
+		source.setId(Long.valueOf(1));
+		source.setCoordX(Integer.valueOf(120));
+		source.setCoordY(Integer.valueOf(340));
+		source.setHeure(new Date());
+		source.setStatut(Boolean.TRUE);
+		source.setBaliseId(Long.valueOf(7));
+		target = new Localisation();
+	}
+
+	/**
+	 * Copies the fields through reflection.
+	 *
+	 * @return the written entity
+	 * @throws Exception If error.
+	 */
+	@Benchmark
+	public Localisation reflection() throws Exception {
+		for (String fieldName : fields) {
+			String suffix = fieldName.substring(0, 1).toUpperCase() + fieldName.substring(1);
+			Object value = method(source, "get" + suffix, null).invoke(source);
+			method(target, "set" + suffix, fieldName).invoke(target, value);
+		}
+		return target;
+	}
+
+	/**
+	 * Copies the fields through the accessors of the model.
+	 *
+	 * @return the written entity
+	 */
+	@Benchmark
+	public Localisation accessors() {
+		for (int i = 0; i < accessors.size(); i++) {
+			accessors.set(target, i, accessors.get(source, i));
+		}
+		return target;
+	}
+
+	/**
+	 * Reads the fields through reflection, without writing them.
+	 *
+	 * @param blackhole Consumer of the values.
+	 * @throws Exception If error.
+	 */
+	@Benchmark
+	public void reflectionRead(Blackhole blackhole) throws Exception {
+		for (String fieldName : fields) {
+			String methodName = "get" + fieldName.substring(0, 1).toUpperCase() + fieldName.substring(1);
+			blackhole.consume(method(source, methodName, null).invoke(source));
+		}
+	}
+
+	/**
+	 * Reads the fields through the accessors of the model, without writing them.
+	 *
+	 * @param blackhole Consumer of the values.
+	 */
+	@Benchmark
+	public void accessorsRead(Blackhole blackhole) {
+		for (int i = 0; i < accessors.size(); i++) {
+			blackhole.consume(accessors.get(source, i));
+		}
+	}
+
+	/**
+	 * Returns a method from the reflection cache, looked up on first use.
+	 *
+	 * @param entity Entity.
+	 * @param methodName Method name.
+	 * @param setterField Field set by the method, null for a getter.
+	 * @return the method
+	 * @throws Exception If error.
+	 */
+	private Method method(Entity entity, String methodName, String setterField) throws Exception {
+		if (reflectCache.get(entity.name()) == null) {
+			reflectCache.put(entity.name(), new HashMap<String, Method>());
+		}
+		if (reflectCache.get(entity.name()).get(methodName) == null) {
+			Method method = setterField == null ? entity.getClass().getMethod(methodName)
+					: entity.getClass().getMethod(methodName, entity.getClass().getDeclaredField(setterField).getType());
+			reflectCache.get(entity.name()).put(methodName, method);
+		}
+		return reflectCache.get(entity.name()).get(methodName);
+	}
+}
@@ -0,0 +1,66 @@
+package com.cgi.commons.ref.entity;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.cgi.commons.utils.TechnicalException;
+import com.cgi.models.beans.Localisation;
+
+/**
+ * Tests of {@link EntityAccessors}.
+ */
+public class EntityAccessorsTest {
+
+	/** Accessors of the Localisation model. */
+	private final EntityAccessors accessors = EntityManager.getEntityModel("localisation").getAccessors();
+
+	@Test
+	public void ordinalsFollowTheFieldsOfTheModel() {
+		List<String> fields = new ArrayList<String>(EntityManager.getEntityModel("localisation").getFields());
+		assertEquals(fields.size(), accessors.size());
+		for (int i = 0; i < fields.size(); i++) {
+			assertEquals(i, accessors.indexOf(fields.get(i)));
+			assertEquals(fields.get(i), accessors.getName(i));
+		}
+		assertEquals(-1, accessors.indexOf("unknown"));
+		assertEquals(Long.class, accessors.getType(accessors.indexOf("id")));
+		assertEquals(Date.class, accessors.getType(accessors.indexOf("heure")));
+	}
+
+	@Test
+	public void getAndSetGoThroughTheBean() {
+		Localisation localisation = new Localisation();
+		int coordX = accessors.indexOf("coordX");
+		accessors.set(localisation, coordX, Integer.valueOf(12));
+		assertEquals(Integer.valueOf(12), localisation.getCoordX());
+		assertEquals(Integer.valueOf(12), accessors.get(localisation, coordX));
+
+		accessors.set(localisation, coordX, null);
+		assertNull(localisation.getCoordX());
+	}
+
+	@Test
+	public void invokeGetterAndSetterUseTheAccessors() {
+		Localisation localisation = new Localisation();
+		localisation.invokeSetter("baliseId", Long.valueOf(5));
+		assertEquals(Long.valueOf(5), localisation.getBaliseId());
+		assertEquals(Long.valueOf(5), localisation.invokeGetter("baliseId"));
+	}
+
+	@Test(expected = TechnicalException.class)
+	public void setWithAnotherTypeFails() {
+		accessors.set(new Localisation(), accessors.indexOf("coordX"), "12");
+	}
+
+	@Test(expected = TechnicalException.class)
+	public void fieldWithoutAccessorsFails() {
+		new EntityAccessors(Localisation.class, Arrays.asList("unknown"));
+	}
+}
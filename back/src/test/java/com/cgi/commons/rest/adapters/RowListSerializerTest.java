@@ -0,0 +1,74 @@
+package com.cgi.commons.rest.adapters;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.cgi.commons.ref.data.CompactRowList;
+import com.cgi.commons.ref.data.Row;
+import com.cgi.commons.ref.data.RowSchema;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+/**
+ * Tests of {@link RowListSerializer}.
+ */
+public class RowListSerializerTest {
+
+	/** Mapper. */
+	private final ObjectMapper mapper = new ObjectMapper();
+
+	/**
+	 * Bean holding a list of rows, as {@link com.cgi.commons.rest.domain.ResultList}.
+	 */
+	public static class Holder {
+		/** Rows. */
+		private final List<Row> results;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param results Rows.
+		 */
+		Holder(List<Row> results) {
+			this.results = results;
+		}
+
+		/**
+		 * @return the rows
+		 */
+		@JsonSerialize(using = RowListSerializer.class)
+		public List<Row> getResults() {
+			return results;
+		}
+	}
+
+	@Test
+	public void compactRowsAreWrittenAsMaps() throws Exception {
+		RowSchema schema = new RowSchema("id", "label", "heure");
+		CompactRowList compact = new CompactRowList(schema);
+		List<Row> maps = new ArrayList<Row>();
+		Object[][] values = { { 1, "one", 1476800000000L }, { 2, "quote \" and \\", null } };
+		for (Object[] row : values) {
+			compact.addValues(row);
+			maps.add(schema.toRow(row));
+		}
+
+		assertEquals(mapper.readTree(mapper.writeValueAsString(new Holder(maps))),
+				mapper.readTree(mapper.writeValueAsString(new Holder(compact))));
+	}
+
+	@Test
+	public void changedRowsAreWrittenWithTheirChanges() throws Exception {
+		CompactRowList compact = new CompactRowList(new RowSchema("id", "label"));
+		compact.addValues(new Object[] { 1, "one" });
+		compact.addValues(new Object[] { 2, "two" });
+		compact.get(1).put("label", "changed");
+
+		assertEquals("[{\"id\":1,\"label\":\"one\"},{\"id\":2,\"label\":\"changed\"}]",
+				mapper.readTree(mapper.writeValueAsString(new Holder(compact))).get("results").toString());
+	}
+}
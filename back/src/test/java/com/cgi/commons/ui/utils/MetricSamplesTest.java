@@ -0,0 +1,88 @@
+package com.cgi.commons.ui.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.cgi.commons.utils.DurationHistogram;
+
+/**
+ * Tests of {@link MetricSamples}.
+ */
+public class MetricSamplesTest {
+
+	@Test
+	public void labelValuesAndHelpAreEscaped() {
+		MetricSamples m = new MetricSamples();
+		m.gauge("queue_size", "Entities waiting\nto be written", 3, "queue", "a\"b\\c\nd");
+
+		assertEquals("# HELP queue_size Entities waiting\\nto be written\n# TYPE queue_size gauge\n"
+				+ "queue_size{queue=\"a\\\"b\\\\c\\nd\"} 3.0\n", prometheus(m));
+	}
+
+	@Test
+	public void samplesOfAMetricAreWrittenUnderOneHeader() {
+		MetricSamples m = new MetricSamples();
+		m.counter("requests_total", "Requests", 1, "endpoint", "a", "action", "");
+		m.counter("requests_total", "Requests", 2, "endpoint", "b", "action", "create");
+		m.gauge("up", "Up", Double.NaN);
+
+		assertEquals("# HELP requests_total Requests\n# TYPE requests_total counter\n"
+				+ "requests_total{endpoint=\"a\",action=\"\"} 1.0\n"
+				+ "requests_total{endpoint=\"b\",action=\"create\"} 2.0\n"
+				+ "# HELP up Up\n# TYPE up gauge\nup NaN\n", prometheus(m));
+	}
+
+	@Test
+	public void summaryGivesQuantilesSumAndCountInSeconds() {
+		DurationHistogram h = new DurationHistogram();
+		h.record(1000);
+		h.record(3000);
+		MetricSamples m = new MetricSamples();
+		m.summary("latency_seconds", "Latency", h, 1e-3, "endpoint", "a");
+
+		String text = prometheus(m);
+		assertTrue(text, text.contains("# TYPE latency_seconds summary\n"));
+		assertTrue(text, text.contains("latency_seconds{endpoint=\"a\",quantile=\"0.5\"} " + 1023 * 1e-3 + "\n"));
+		assertTrue(text, text.contains("latency_seconds{endpoint=\"a\",quantile=\"0.999\"} 3.0\n"));
+		assertTrue(text, text.contains("latency_seconds_sum{endpoint=\"a\"} 4.0\n"));
+		assertTrue(text, text.contains("latency_seconds_count{endpoint=\"a\"} 2.0\n"));
+	}
+
+	@Test
+	public void jsonGivesValuesAndLabelledSamples() {
+		DurationHistogram h = new DurationHistogram();
+		h.record(2000);
+		MetricSamples m = new MetricSamples();
+		m.gauge("up", "Up", 1);
+		m.gauge("size", "Size", 5, "cache", "sql");
+		m.summary("latency_seconds", "Latency", h, 1e-3);
+
+		Map<String, Object> json = m.toJson();
+		assertEquals(1d, json.get("up"));
+		Map<?, ?> size = (Map<?, ?>) ((List<?>) json.get("size")).get(0);
+		assertEquals("sql", size.get("cache"));
+		assertEquals(5d, size.get("value"));
+		Map<?, ?> latency = (Map<?, ?>) ((List<?>) json.get("latency_seconds")).get(0);
+		assertEquals(1L, latency.get("count"));
+		assertEquals(2d, latency.get("max"));
+	}
+
+	/**
+	 * @param m Metrics.
+	 * @return the metrics in the Prometheus text format
+	 */
+	private static String prometheus(MetricSamples m) {
+		StringWriter out = new StringWriter();
+		PrintWriter writer = new PrintWriter(out);
+		m.writePrometheus(writer);
+		writer.flush();
+		return out.toString();
+	}
+}
@@ -0,0 +1,62 @@
+package com.cgi.commons.ui.utils;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.After;
+import org.junit.Test;
+import org.powermock.reflect.Whitebox;
+
+/**
+ * Tests of the status of {@link MonitorServlet}.
+ */
+public class MonitorServletTest {
+
+	/**
+	 * Forgets the status.
+	 */
+	@After
+	public void tearDown() {
+		checking().set(false);
+		Whitebox.setInternalState(MonitorServlet.class, "health", (String) null);
+		Whitebox.setInternalState(MonitorServlet.class, "healthCheckedAt", 0L);
+	}
+
+	@Test
+	public void previousStatusIsAnsweredWhileAnotherRequestChecksIt() {
+		Whitebox.setInternalState(MonitorServlet.class, "health", "OK");
+		Whitebox.setInternalState(MonitorServlet.class, "healthCheckedAt", 0L);
+		checking().set(true);
+
+		assertEquals("OK", MonitorServlet.getHealth());
+	}
+
+	@Test
+	public void statusIsNotAwaitedBeforeTheFirstCheck() {
+		checking().set(true);
+
+		assertEquals("[ERROR] Status not checked yet", MonitorServlet.getHealth());
+	}
+
+	@Test
+	public void failedCheckLetsTheNextRequestCheckAgain() {
+		Whitebox.setInternalState(MonitorServlet.class, "health", "OK");
+		Whitebox.setInternalState(MonitorServlet.class, "healthCheckedAt", 0L);
+		try {
+			// No datasource in the tests
+			MonitorServlet.getHealth();
+		} catch (Error e) {
+			assertEquals("OK", Whitebox.getInternalState(MonitorServlet.class, "health"));
+		}
+
+		assertEquals(false, checking().get());
+	}
+
+	/**
+	 * @return the flag of the request checking the status
+	 */
+	private static AtomicBoolean checking() {
+		return Whitebox.getInternalState(MonitorServlet.class, "CHECKING");
+	}
+}
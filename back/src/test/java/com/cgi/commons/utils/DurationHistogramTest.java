@@ -0,0 +1,82 @@
+package com.cgi.commons.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Tests of {@link DurationHistogram}.
+ */
+public class DurationHistogramTest {
+
+	@Test
+	public void smallValuesHaveTheirOwnBucket() {
+		for (int v = 0; v < 8; v++) {
+			assertEquals(v, DurationHistogram.bucket(v));
+			assertEquals(v, DurationHistogram.upperBound(v));
+		}
+	}
+
+	@Test
+	public void bucketHoldsItsValuesWithinOneEighth() {
+		int previous = 0;
+		for (long v = 0; v < 200000; v++) {
+			check(v);
+			int bucket = DurationHistogram.bucket(v);
+			assertTrue("bucket of " + v, bucket >= previous);
+			previous = bucket;
+		}
+		for (long v = 1L << 20; v > 0 && v < Long.MAX_VALUE / 3; v = v * 3 + 1) {
+			check(v);
+		}
+		check(Long.MAX_VALUE);
+		assertEquals(Long.MAX_VALUE, DurationHistogram.upperBound(DurationHistogram.bucket(Long.MAX_VALUE)));
+	}
+
+	@Test
+	public void percentilesAreUpperBoundsOfTheirBucket() {
+		DurationHistogram h = new DurationHistogram();
+		assertEquals(0, h.getPercentile(50));
+		for (int v = 1; v <= 1000; v++) {
+			h.record(v);
+		}
+
+		assertEquals(1000, h.getCount());
+		assertEquals(500500, h.getSum());
+		assertEquals(1000, h.getMax());
+		assertEquals(500.5, h.getMean(), 1e-9);
+		assertEquals(1, h.getPercentile(0));
+		assertEquals(511, h.getPercentile(50));
+		assertEquals(959, h.getPercentile(90));
+		assertEquals(1000, h.getPercentile(99));
+		assertEquals(1000, h.getPercentile(100));
+	}
+
+	@Test
+	public void negativeValuesAreRecordedAsZero() {
+		DurationHistogram h = new DurationHistogram();
+		h.record(-5);
+		h.record(3);
+
+		assertEquals(0, h.getSum() - 3);
+		assertEquals(0, h.getPercentile(50));
+		Map<Long, Long> buckets = h.getBuckets();
+		assertEquals(2, buckets.size());
+		assertEquals(Long.valueOf(1), buckets.get(Long.valueOf(0)));
+		assertEquals(Long.valueOf(1), buckets.get(Long.valueOf(3)));
+	}
+
+	/**
+	 * Checks that a value is in its bucket and that the bucket is narrow.
+	 *
+	 * @param v The value.
+	 */
+	private static void check(long v) {
+		long upper = DurationHistogram.upperBound(DurationHistogram.bucket(v));
+		assertTrue("upper bound of " + v, upper >= v);
+		assertTrue("width of the bucket of " + v, upper - v <= v / 8);
+	}
+}
@@ -0,0 +1,63 @@
+package com.cgi.commons.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Test;
+
+/**
+ * Tests of {@link Thumbnails}.
+ */
+public class ThumbnailsTest {
+
+	@Test
+	public void imageIsReducedToFitTheSquare() throws Exception {
+		Thumbnails.Thumbnail thumbnail = Thumbnails.create(new ByteArrayInputStream(png(300, 150)), 64);
+
+		assertNotNull(thumbnail);
+		assertEquals("png", thumbnail.getFormat());
+		BufferedImage image = ImageIO.read(new ByteArrayInputStream(thumbnail.getContent()));
+		assertEquals(64, image.getWidth());
+		assertEquals(32, image.getHeight());
+	}
+
+	@Test
+	public void sourceWhichIsNotAnImageIsNotReduced() throws Exception {
+		assertNull(Thumbnails.create(new ByteArrayInputStream("not an image".getBytes("UTF-8")), 64));
+	}
+
+	@Test
+	public void imageWithTooManyPixelsIsNotDecoded() throws Exception {
+		// Header of a 100000 x 100000 image : 40 GB once decoded
+		byte[] bytes = png(2, 2);
+		ByteBuffer header = ByteBuffer.wrap(bytes);
+		header.putInt(16, 100000);
+		header.putInt(20, 100000);
+		CRC32 crc = new CRC32();
+		crc.update(bytes, 12, 17);
+		header.putInt(29, (int) crc.getValue());
+
+		assertNull(Thumbnails.resize(bytes, 64));
+	}
+
+	/**
+	 * @param width Width.
+	 * @param height Height.
+	 * @return a PNG image with transparency
+	 * @throws Exception If error.
+	 */
+	private static byte[] png(int width, int height) throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB), "png", out);
+		return out.toByteArray();
+	}
+}
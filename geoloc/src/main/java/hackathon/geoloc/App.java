@@ -8,13 +8,34 @@ import java.io.OutputStream;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.TooManyListenersException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class App {
 
+	/** Affiche chaque position reçue en mode passerelle. Pour le débogage : les workers se partagent alors la console. */
+	public static final String PRINT_FIXES_PROPERTY = "geoloc.printFixes";
+
+	/** Un lot incomplet part vers le back au plus tard après ce délai en ms. */
+	private static final long FLUSH_PERIOD = 200;
+
+	/** Latences distinguées jusqu'à 60 s. */
+	private static final int MAX_LATENCY = 60000;
+
 	public static void main(String[] args) {
-		// TODO Auto-generated method stub
+		if (args.length > 0 && "gateway".equals(args[0])) {
+			gateway();
+			return;
+		}
+		if (args.length > 0 && "replay".equals(args[0])) {
+			replay();
+			return;
+		}
 
 		TwoWaySerialComm o = new TwoWaySerialComm();
+		o.closeOnShutdown();
 		try {
 			listPorts(); // trouver le nom des devices connectées 
 			o.connect("COM3"); // se connecter au device 
@@ -26,6 +47,113 @@ public class App {
 		}
 	}
 	
+	/**
+	 * Mode passerelle : ouvre tous les ports série, affiche les compteurs toutes les 10 secondes.
+	 * Les positions sont envoyées au back par un {@link LocalisationClient} si geoloc.backUrl est
+	 * donnée, sinon elles ne sont que comptées.
+	 * Réglages : geoloc.queueCapacity, geoloc.workers, geoloc.printFixes, ceux de {@link TwoWaySerialComm}
+	 * et ceux du back de {@link LoadGenerator} (backUrl, token, batchSize).
+	 */
+	static void gateway() {
+		final AtomicLong handled = new AtomicLong();
+		final LocalisationClient client;
+		try {
+			client = createClient();
+		} catch (IOException e) {
+			e.printStackTrace();
+			return;
+		}
+		final BeaconGateway gateway = new BeaconGateway(Integer.getInteger("geoloc.queueCapacity", 10000).intValue(),
+				Integer.getInteger("geoloc.workers", Runtime.getRuntime().availableProcessors()).intValue(),
+				fixHandler(handled, client, Boolean.getBoolean(PRINT_FIXES_PROPERTY)));
+		final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor();
+		if (client != null) {
+			flusher.scheduleWithFixedDelay(new Runnable() {
+				public void run() {
+					flushQuietly(client);
+				}
+			}, FLUSH_PERIOD, FLUSH_PERIOD, TimeUnit.MILLISECONDS);
+		}
+		gateway.start();
+		int attached = gateway.attachAll(1L, Long.getLong(TwoWaySerialComm.POLL_PERIOD_PROPERTY, 100L).longValue(),
+				Long.getLong(TwoWaySerialComm.HEARTBEAT_TIMEOUT_PROPERTY, 5000L).longValue(),
+				Integer.getInteger(TwoWaySerialComm.MAX_IN_FLIGHT_PROPERTY, 4).intValue());
+		System.out.println(attached + " port(s) connected");
+		Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+			public void run() {
+				gateway.close();
+				flusher.shutdown();
+				if (client != null) {
+					flushQuietly(client);
+				}
+			}
+		}));
+		while (true) {
+			try {
+				Thread.sleep(10000);
+			} catch (InterruptedException e) {
+				return;
+			}
+			for (BeaconGateway.PortStats stats : gateway.getStats().values()) {
+				System.out.println(stats);
+			}
+			System.out.println("queue=" + gateway.getQueueSize() + " handled=" + handled.get()
+					+ (client != null ? " failed=" + client.getFailed() : ""));
+		}
+	}
+
+	/**
+	 * Traitement des positions par les workers de la passerelle : compte chaque position, l'affiche
+	 * si demandé et la transmet au client du back s'il y en a un.
+	 * @param handled compteur des positions traitées
+	 * @param client client du back, null pour ne rien envoyer
+	 * @param print true pour afficher chaque position
+	 */
+	static BeaconGateway.FixHandler fixHandler(final AtomicLong handled, final LocalisationClient client, final boolean print) {
+		return new BeaconGateway.FixHandler() {
+			public void handle(Position position) throws Exception {
+				handled.incrementAndGet();
+				if (print) {
+					System.out.println(position.getBeaconId() + " " + position);
+				}
+				if (client != null) {
+					client.handle(position);
+				}
+			}
+		};
+	}
+
+	/** Client du back configuré par les propriétés de {@link LoadGenerator}, null sans geoloc.backUrl. */
+	private static LocalisationClient createClient() throws IOException {
+		String backUrl = System.getProperty(LoadGenerator.BACK_URL_PROPERTY);
+		if (backUrl == null) {
+			return null;
+		}
+		return new LocalisationClient(backUrl, System.getProperty(LoadGenerator.TOKEN_PROPERTY),
+				Integer.getInteger(LoadGenerator.BATCH_SIZE_PROPERTY, 100).intValue(), new LatencyRecorder(MAX_LATENCY));
+	}
+
+	private static void flushQuietly(LocalisationClient client) {
+		try {
+			client.flush();
+		} catch (IOException e) {
+			System.out.println("Error: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Mode banc de charge : rejoue des balises simulées vers le back et affiche débit et latences.
+	 * Réglages : voir {@link LoadGenerator}.
+	 */
+	static void replay() {
+		try {
+			LoadGenerator.Report report = LoadGenerator.fromSystemProperties().run();
+			System.out.println(report);
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+	}
+
 	 static void listPorts()
 	    {
 	        java.util.Enumeration<CommPortIdentifier> portEnum = CommPortIdentifier.getPortIdentifiers();
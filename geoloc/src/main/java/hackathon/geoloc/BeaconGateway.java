@@ -0,0 +1,252 @@
+package hackathon.geoloc;
+
+import gnu.io.CommPortIdentifier;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Passerelle multi-balises : une session par port série, toutes les positions reçues sont
+ * multiplexées dans une file bornée unique, vidée par un pool fixe de workers.
+ * <p>
+ * Les threads RXTX ne sont jamais bloqués : si la file est pleine, la position est comptée
+ * comme perdue pour son port (elle reste disponible dans le {@link PositionRingBuffer}).
+ * Le nombre de threads ne dépend pas du nombre de ports.
+ */
+public class BeaconGateway {
+
+    /** Traitement d'une position par un worker. */
+    public interface FixHandler {
+        void handle(Position position) throws Exception;
+    }
+
+    /** Compteurs d'un port. */
+    public static final class PortStats implements BeaconSession.FixListener {
+
+        private final String portName;
+
+        private final long beaconId;
+
+        private final BlockingQueue<Position> queue;
+
+        private final long startedAt = System.currentTimeMillis();
+
+        private final AtomicLong received = new AtomicLong();
+
+        private final AtomicLong dropped = new AtomicLong();
+
+        private final AtomicLong handled = new AtomicLong();
+
+        private final AtomicLong errors = new AtomicLong();
+
+        private BeaconSession session;
+
+        PortStats(String portName, long beaconId, BlockingQueue<Position> queue) {
+            this.portName = portName;
+            this.beaconId = beaconId;
+            this.queue = queue;
+        }
+
+        public void onFix(Position position) {
+            received.incrementAndGet();
+            if (!queue.offer(position)) {
+                dropped.incrementAndGet();
+            }
+        }
+
+        public String getPortName() {
+            return portName;
+        }
+
+        public long getBeaconId() {
+            return beaconId;
+        }
+
+        /** Positions décodées sur le port. */
+        public long getReceived() {
+            return received.get();
+        }
+
+        /** Positions perdues, file pleine. */
+        public long getDropped() {
+            return dropped.get();
+        }
+
+        /** Positions traitées sans erreur par les workers. */
+        public long getHandled() {
+            return handled.get();
+        }
+
+        /** Erreurs du traitement et trames invalides. */
+        public long getErrors() {
+            return errors.get() + (session == null ? 0 : session.getDecoder().getErrors());
+        }
+
+        /** Positions reçues par seconde depuis l'ouverture du port. */
+        public double getThroughput() {
+            long elapsed = Math.max(1, System.currentTimeMillis() - startedAt);
+            return received.get() * 1000d / elapsed;
+        }
+
+        @Override
+        public String toString() {
+            return portName + " [beacon " + beaconId + "] received=" + getReceived() + " handled=" + getHandled()
+                    + " dropped=" + getDropped() + " errors=" + getErrors() + " rate=" + String.format("%.1f/s", getThroughput());
+        }
+    }
+
+    private final BlockingQueue<Position> queue;
+
+    private final int workers;
+
+    private final FixHandler handler;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+
+    private final Map<Long, PortStats> stats = new ConcurrentHashMap<Long, PortStats>();
+
+    private final List<BeaconSession> sessions = Collections.synchronizedList(new ArrayList<BeaconSession>());
+
+    private ExecutorService pool;
+
+    private volatile boolean closed;
+
+    public BeaconGateway(int queueCapacity, int workers, FixHandler handler) {
+        this.queue = new ArrayBlockingQueue<Position>(queueCapacity);
+        this.workers = workers;
+        this.handler = handler;
+    }
+
+    /** Noms des ports série présents sur la machine. */
+    public static List<String> discoverPorts() {
+        List<String> ports = new ArrayList<String>();
+        Enumeration<?> portEnum = CommPortIdentifier.getPortIdentifiers();
+        while (portEnum.hasMoreElements()) {
+            CommPortIdentifier portIdentifier = (CommPortIdentifier) portEnum.nextElement();
+            if (portIdentifier.getPortType() == CommPortIdentifier.PORT_SERIAL) {
+                ports.add(portIdentifier.getName());
+            }
+        }
+        return ports;
+    }
+
+    /** Démarre les workers. */
+    public synchronized void start() {
+        if (pool != null) {
+            return;
+        }
+        pool = Executors.newFixedThreadPool(workers);
+        for (int i = 0; i < workers; i++) {
+            pool.execute(new Runnable() {
+                public void run() {
+                    work();
+                }
+            });
+        }
+    }
+
+    /**
+     * Ouvre tous les ports série découverts, la balise i reçoit l'identifiant firstBeaconId + i.
+     * Un port qui ne s'ouvre pas est signalé et ignoré.
+     * @return le nombre de ports ouverts
+     */
+    public int attachAll(long firstBeaconId, long pollPeriod, long heartbeatTimeout, int maxInFlight) {
+        int attached = 0;
+        long beaconId = firstBeaconId;
+        for (String portName : discoverPorts()) {
+            try {
+                attach(new SerialTransport(portName), beaconId++, pollPeriod, heartbeatTimeout, maxInFlight);
+                attached++;
+            } catch (IOException e) {
+                System.out.println("Error: " + e.getMessage());
+            }
+        }
+        return attached;
+    }
+
+    /** Ouvre une session sur le transport, ses positions alimentent la file commune. */
+    public BeaconSession attach(BeaconTransport transport, long beaconId, long pollPeriod, long heartbeatTimeout, int maxInFlight)
+            throws IOException {
+        BeaconSession session = new BeaconSession(transport, PositionRingBuffer.shared().ring(beaconId), pollPeriod, heartbeatTimeout,
+                maxInFlight);
+        PortStats portStats = new PortStats(transport.getName(), beaconId, queue);
+        portStats.session = session;
+        session.setListener(portStats);
+        stats.put(Long.valueOf(beaconId), portStats);
+        session.start(scheduler);
+        sessions.add(session);
+        return session;
+    }
+
+    private void work() {
+        while (!closed || !queue.isEmpty()) {
+            Position position;
+            try {
+                position = queue.poll(100, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (position == null) {
+                continue;
+            }
+            PortStats portStats = stats.get(Long.valueOf(position.getBeaconId()));
+            try {
+                handler.handle(position);
+                portStats.handled.incrementAndGet();
+            } catch (Exception e) {
+                portStats.errors.incrementAndGet();
+            }
+        }
+    }
+
+    /** Compteurs par port, dans l'ordre d'ouverture. */
+    public Map<String, PortStats> getStats() {
+        Map<String, PortStats> result = new LinkedHashMap<String, PortStats>();
+        synchronized (sessions) {
+            for (BeaconSession session : sessions) {
+                PortStats portStats = stats.get(Long.valueOf(session.getRing().getBeaconId()));
+                result.put(portStats.getPortName(), portStats);
+            }
+        }
+        return result;
+    }
+
+    /** Positions en attente de traitement. */
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    /** Ferme les ports, laisse les workers vider la file puis les arrête. */
+    public void close() {
+        synchronized (sessions) {
+            for (BeaconSession session : sessions) {
+                session.close();
+            }
+        }
+        scheduler.shutdown();
+        closed = true;
+        synchronized (this) {
+            if (pool != null) {
+                pool.shutdown();
+                try {
+                    pool.awaitTermination(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package hackathon.geoloc;
+
+import java.io.IOException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Session avec une balise : décode ce que le transport reçoit et publie les positions dans le
+ * {@link PositionRingBuffer}, interroge la balise à intervalle régulier.
+ * <p>
+ * L'interrogation passe par un {@link ScheduledExecutorService} partagé entre toutes les sessions :
+ * aucun thread n'est créé par balise.
+ * <ul>
+ * <li>poll : un CR est envoyé toutes les pollPeriod ms ;</li>
+ * <li>contre-pression : si maxInFlight interrogations sont restées sans réponse, les suivantes
+ * sont sautées jusqu'à réception d'une trame ;</li>
+ * <li>heartbeat : sans aucune donnée pendant heartbeatTimeout ms, la séquence de réveil est renvoyée.</li>
+ * </ul>
+ */
+public class BeaconSession implements BeaconTransport.DataHandler, FrameDecoder.Listener {
+
+    /** Reçoit chaque position publiée par la session, dans le thread du transport. */
+    public interface FixListener {
+        void onFix(Position position);
+    }
+
+    /** Demande de position. */
+    static final byte[] POLL = { '\r' };
+
+    /** Séquence de réveil envoyée à l'ouverture et après un silence. */
+    static final byte[] WAKE_UP = { '\r', '\n', '\r', '\n' };
+
+    private final BeaconTransport transport;
+
+    private final PositionRingBuffer.Ring ring;
+
+    private final FrameDecoder decoder = new FrameDecoder(this);
+
+    private final long pollPeriod;
+
+    private final long heartbeatTimeout;
+
+    private final int maxInFlight;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final AtomicLong polls = new AtomicLong();
+
+    private final AtomicLong skippedPolls = new AtomicLong();
+
+    private final AtomicLong heartbeats = new AtomicLong();
+
+    private final AtomicLong bytes = new AtomicLong();
+
+    private volatile long lastData;
+
+    private volatile boolean closed;
+
+    private volatile FixListener listener;
+
+    private ScheduledFuture<?> future;
+
+    /**
+     * @param pollPeriod période d'interrogation en ms, 0 si la balise émet d'elle-même
+     * @param heartbeatTimeout silence en ms avant renvoi de la séquence de réveil, 0 pour désactiver
+     * @param maxInFlight nombre d'interrogations sans réponse tolérées avant de suspendre l'envoi
+     */
+    public BeaconSession(BeaconTransport transport, PositionRingBuffer.Ring ring, long pollPeriod, long heartbeatTimeout, int maxInFlight) {
+        this.transport = transport;
+        this.ring = ring;
+        this.pollPeriod = pollPeriod;
+        this.heartbeatTimeout = heartbeatTimeout;
+        this.maxInFlight = Math.max(1, maxInFlight);
+    }
+
+    /** Démarre la réception et, si pollPeriod > 0, l'interrogation périodique sur le scheduler. */
+    public synchronized void start(ScheduledExecutorService scheduler) throws IOException {
+        lastData = System.currentTimeMillis();
+        transport.start(this);
+        transport.write(WAKE_UP);
+        long period = pollPeriod > 0 ? pollPeriod : heartbeatTimeout;
+        if (period > 0) {
+            future = scheduler.scheduleWithFixedDelay(new Runnable() {
+                public void run() {
+                    tick();
+                }
+            }, period, period, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /** Une échéance du scheduler : heartbeat, poll ou rien si la balise ne suit pas. */
+    void tick() {
+        if (closed) {
+            return;
+        }
+        try {
+            if (heartbeatTimeout > 0 && System.currentTimeMillis() - lastData > heartbeatTimeout) {
+                heartbeats.incrementAndGet();
+                inFlight.set(0);
+                lastData = System.currentTimeMillis();
+                transport.write(WAKE_UP);
+            } else if (pollPeriod > 0) {
+                if (inFlight.get() >= maxInFlight) {
+                    skippedPolls.incrementAndGet();
+                } else {
+                    inFlight.incrementAndGet();
+                    polls.incrementAndGet();
+                    transport.write(POLL);
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    public void onData(byte[] buffer, int offset, int len) {
+        lastData = System.currentTimeMillis();
+        bytes.addAndGet(len);
+        decoder.decode(buffer, offset, len);
+    }
+
+    public void onFrame(int x, int y) {
+        inFlight.set(0);
+        long timestamp = System.currentTimeMillis();
+        long seq = ring.publish(x, y, timestamp);
+        FixListener l = listener;
+        if (l != null) {
+            l.onFix(new Position(ring.getBeaconId(), seq, x, y, timestamp));
+        }
+    }
+
+    /** Listener appelé pour chaque position, en plus de la publication dans le buffer. Ne doit pas bloquer. */
+    public void setListener(FixListener listener) {
+        this.listener = listener;
+    }
+
+    /** Arrête l'interrogation et libère le transport. Le scheduler, partagé, n'est pas arrêté. */
+    public synchronized void close() {
+        closed = true;
+        if (future != null) {
+            future.cancel(false);
+            future = null;
+        }
+        transport.close();
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    public BeaconTransport getTransport() {
+        return transport;
+    }
+
+    public PositionRingBuffer.Ring getRing() {
+        return ring;
+    }
+
+    public FrameDecoder getDecoder() {
+        return decoder;
+    }
+
+    public long getPolls() {
+        return polls.get();
+    }
+
+    /** Interrogations sautées parce que la balise ne répondait pas assez vite. */
+    public long getSkippedPolls() {
+        return skippedPolls.get();
+    }
+
+    public long getHeartbeats() {
+        return heartbeats.get();
+    }
+
+    public long getBytes() {
+        return bytes.get();
+    }
+}
@@ -0,0 +1,29 @@
+package hackathon.geoloc;
+
+import java.io.IOException;
+
+/**
+ * Liaison avec une balise : port série, rejeu d'une capture, etc.
+ * <p>
+ * Le transport pousse les octets reçus vers un {@link DataHandler}, toujours depuis le même
+ * thread, et ne crée pas de thread dédié par balise.
+ */
+public interface BeaconTransport {
+
+    /** Reçoit les octets lus sur le transport. Le buffer est réutilisé après l'appel. */
+    interface DataHandler {
+        void onData(byte[] buffer, int offset, int len);
+    }
+
+    /** Nom du transport (nom du port, de la capture...). */
+    String getName();
+
+    /** Commence à transmettre les octets reçus au handler. */
+    void start(DataHandler handler) throws IOException;
+
+    /** Envoie des octets à la balise. */
+    void write(byte[] data) throws IOException;
+
+    /** Libère le transport. Peut être appelé plusieurs fois. */
+    void close();
+}
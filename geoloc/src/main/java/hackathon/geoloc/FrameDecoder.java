@@ -0,0 +1,169 @@
+package hackathon.geoloc;
+
+/**
+ * Décodeur incrémental des trames "x:NNN y:NNN" émises par la balise.
+ * <p>
+ * Travaille directement sur le buffer de lecture du port série, octet par octet : une trame coupée
+ * entre deux lectures est reconstituée à la lecture suivante. Aucune allocation par trame, l'état
+ * courant tient dans quelques champs primitifs. Une instance par flux, non thread-safe.
+ * <p>
+ * Une trame se termine par CR, LF ou par le 'x' de la trame suivante. Tout octet inattendu fait
+ * abandonner la trame en cours (compté dans {@link #getErrors()}).
+ */
+public final class FrameDecoder {
+
+    /** Reçoit les positions décodées. */
+    public interface Listener {
+        void onFrame(int x, int y);
+    }
+
+    /** Au-delà, la valeur ne tient plus dans un int : trame rejetée. */
+    private static final int MAX_DIGITS = 9;
+
+    private static final int IDLE = 0;
+    private static final int X_COLON = 1;
+    private static final int X_VALUE = 2;
+    private static final int Y_START = 3;
+    private static final int Y_COLON = 4;
+    private static final int Y_VALUE = 5;
+    private static final int FRAME_END = 6;
+
+    private final Listener listener;
+
+    private int state = IDLE;
+
+    private int value;
+
+    private int digits;
+
+    private boolean negative;
+
+    private int x;
+
+    private long frames;
+
+    private long errors;
+
+    public FrameDecoder(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Décode len octets de buffer à partir de offset.
+     * @return le nombre de trames complètes décodées
+     */
+    public int decode(byte[] buffer, int offset, int len) {
+        int decoded = 0;
+        int end = offset + len;
+        for (int i = offset; i < end; i++) {
+            if (accept(buffer[i])) {
+                decoded++;
+            }
+        }
+        return decoded;
+    }
+
+    /** Traite un octet, retourne true s'il termine une trame. */
+    private boolean accept(byte b) {
+        switch (state) {
+            case IDLE:
+                if (b == 'x') {
+                    state = X_COLON;
+                }
+                return false;
+            case X_COLON:
+                return expect(b, ':', X_VALUE);
+            case X_VALUE:
+                if (number(b)) {
+                    return false;
+                }
+                if (b == ' ' && digits > 0) {
+                    x = negative ? -value : value;
+                    state = Y_START;
+                    return false;
+                }
+                return error(b);
+            case Y_START:
+                if (b == ' ') {
+                    return false;
+                }
+                return expect(b, 'y', Y_COLON);
+            case Y_COLON:
+                return expect(b, ':', Y_VALUE);
+            case Y_VALUE:
+                if (number(b)) {
+                    return false;
+                }
+                if (digits > 0 && (b == '\r' || b == '\n' || b == ' ' || b == 'x')) {
+                    emit();
+                    state = b == 'x' ? X_COLON : b == ' ' ? FRAME_END : IDLE;
+                    return true;
+                }
+                return error(b);
+            case FRAME_END:
+                if (b == 'x') {
+                    state = X_COLON;
+                } else if (b == '\r' || b == '\n') {
+                    state = IDLE;
+                }
+                return false;
+            default:
+                state = IDLE;
+                return false;
+        }
+    }
+
+    private boolean expect(byte b, char expected, int next) {
+        if (b != expected) {
+            return error(b);
+        }
+        state = next;
+        value = 0;
+        digits = 0;
+        negative = false;
+        return false;
+    }
+
+    /** Accumule un chiffre ou le signe, retourne false si l'octet n'en est pas un. */
+    private boolean number(byte b) {
+        if (b >= '0' && b <= '9') {
+            if (++digits > MAX_DIGITS) {
+                return false;
+            }
+            value = value * 10 + (b - '0');
+            return true;
+        }
+        if (b == '-' && digits == 0 && !negative) {
+            negative = true;
+            return true;
+        }
+        return false;
+    }
+
+    private void emit() {
+        frames++;
+        listener.onFrame(x, negative ? -value : value);
+    }
+
+    private boolean error(byte b) {
+        errors++;
+        // le 'x' fautif peut être le début de la trame suivante
+        state = b == 'x' ? X_COLON : IDLE;
+        return false;
+    }
+
+    /** Abandonne la trame en cours (ex : après une reconnexion). */
+    public void reset() {
+        state = IDLE;
+    }
+
+    /** Nombre de trames décodées. */
+    public long getFrames() {
+        return frames;
+    }
+
+    /** Nombre de trames abandonnées sur un octet inattendu. */
+    public long getErrors() {
+        return errors;
+    }
+}
@@ -0,0 +1,86 @@
+package hackathon.geoloc;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogramme de latences en ms, alimenté sans verrou par plusieurs threads.
+ * <p>
+ * Une case par milliseconde jusqu'à maxLatency, les valeurs au-delà tombent dans la dernière
+ * case : les percentiles sont exacts à la ms près tant qu'ils restent sous maxLatency.
+ */
+public final class LatencyRecorder {
+
+    private final AtomicLongArray counts;
+
+    private final AtomicLong count = new AtomicLong();
+
+    private final AtomicLong sum = new AtomicLong();
+
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * @param maxLatency plus grande latence distinguée, en ms
+     */
+    public LatencyRecorder(int maxLatency) {
+        if (maxLatency < 1) {
+            throw new IllegalArgumentException("maxLatency must be positive: " + maxLatency);
+        }
+        this.counts = new AtomicLongArray(maxLatency + 1);
+    }
+
+    /** Enregistre une latence en ms, une valeur négative (horloge recalée) compte pour 0. */
+    public void record(long latency) {
+        long value = Math.max(0, latency);
+        counts.incrementAndGet((int) Math.min(value, counts.length() - 1));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+        long current;
+        while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+            // un autre thread a remonté le max entre-temps, on recommence
+        }
+    }
+
+    /** Nombre de latences enregistrées. */
+    public long getCount() {
+        return count.get();
+    }
+
+    /** Latence moyenne en ms. */
+    public double getMean() {
+        long n = count.get();
+        return n == 0 ? 0 : (double) sum.get() / n;
+    }
+
+    /** Plus grande latence enregistrée en ms. */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Latence sous laquelle se trouvent percentile % des mesures.
+     * @param percentile entre 0 et 100
+     * @return la latence en ms, 0 si aucune mesure
+     */
+    public long getPercentile(double percentile) {
+        long n = count.get();
+        if (n == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(n * percentile / 100d));
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return i == counts.length() - 1 ? max.get() : i;
+            }
+        }
+        return max.get();
+    }
+
+    @Override
+    public String toString() {
+        return "count=" + getCount() + " mean=" + String.format("%.1f", getMean()) + "ms p50=" + getPercentile(50) + "ms p99="
+                + getPercentile(99) + "ms max=" + getMax() + "ms";
+    }
+}
@@ -0,0 +1,237 @@
+package hackathon.geoloc;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Banc de charge de la chaîne balise → back, sans matériel.
+ * <p>
+ * beacons balises sont simulées par des {@link ReplayTransport} (capture enregistrée ou flux
+ * synthétique), interrogées rate fois par seconde par les {@link BeaconSession} d'une
+ * {@link BeaconGateway}, comme les ports série. Les positions décodées sont envoyées par lots au
+ * back par un {@link LocalisationClient}, ou simplement comptées si aucune URL n'est donnée.
+ * <p>
+ * Le rapport donne le débit de bout en bout (positions acquittées par seconde) et les
+ * percentiles de latence, du décodage de la trame à la réponse du back.
+ */
+public class LoadGenerator {
+
+    /** Nombre de balises simulées. */
+    public static final String BEACONS_PROPERTY = "geoloc.beacons";
+
+    /** Positions par seconde et par balise, 1000 au plus (une trame par interrogation). */
+    public static final String RATE_PROPERTY = "geoloc.rate";
+
+    /** Durée du tir en secondes. */
+    public static final String DURATION_PROPERTY = "geoloc.duration";
+
+    /** Fichier de capture à rejouer, flux synthétique si absent. */
+    public static final String CAPTURE_PROPERTY = "geoloc.capture";
+
+    /** Taille des lectures simulées en octets, pour couper les trames comme le port série. */
+    public static final String CHUNK_SIZE_PROPERTY = "geoloc.chunkSize";
+
+    /** URL de l'application, ex : http://localhost:8080/nuvia. Sans URL, les positions ne sont que comptées. */
+    public static final String BACK_URL_PROPERTY = "geoloc.backUrl";
+
+    /** Jeton JWT pour le back. */
+    public static final String TOKEN_PROPERTY = "geoloc.token";
+
+    /** Positions par requête create-batch. */
+    public static final String BATCH_SIZE_PROPERTY = "geoloc.batchSize";
+
+    /** Un lot incomplet part au plus tard après ce délai en ms. */
+    private static final long FLUSH_PERIOD = 200;
+
+    /** Latences distinguées jusqu'à 60 s. */
+    private static final int MAX_LATENCY = 60000;
+
+    /** Premier identifiant de balise simulée. */
+    private static final long FIRST_BEACON_ID = 1000;
+
+    private final int beacons;
+
+    private final int rate;
+
+    private final long duration;
+
+    private final byte[] capture;
+
+    private final int chunkSize;
+
+    private final BeaconGateway.FixHandler sink;
+
+    private final LocalisationClient client;
+
+    private final int queueCapacity;
+
+    private final int workers;
+
+    private final LatencyRecorder latencies = new LatencyRecorder(MAX_LATENCY);
+
+    /**
+     * @param capture capture à rejouer en boucle, null pour un flux synthétique
+     * @param backUrl URL de l'application, null pour ne pas envoyer les positions
+     * @param duration durée du tir en ms
+     */
+    public LoadGenerator(int beacons, int rate, long duration, byte[] capture, int chunkSize, String backUrl, String token, int batchSize,
+            int queueCapacity, int workers) throws IOException {
+        if (rate < 1 || rate > 1000) {
+            throw new IllegalArgumentException("rate must be between 1 and 1000: " + rate);
+        }
+        this.beacons = beacons;
+        this.rate = rate;
+        this.duration = duration;
+        this.capture = capture;
+        this.chunkSize = chunkSize;
+        this.queueCapacity = queueCapacity;
+        this.workers = workers;
+        if (backUrl == null) {
+            this.client = null;
+            this.sink = new BeaconGateway.FixHandler() {
+                public void handle(Position position) {
+                    latencies.record(System.currentTimeMillis() - position.getTimestamp());
+                }
+            };
+        } else {
+            this.client = new LocalisationClient(backUrl, token, batchSize, latencies);
+            this.sink = client;
+        }
+    }
+
+    /** Configuration par propriétés système. */
+    public static LoadGenerator fromSystemProperties() throws IOException {
+        String capturePath = System.getProperty(CAPTURE_PROPERTY);
+        byte[] capture = capturePath == null ? null : Files.readAllBytes(Paths.get(capturePath));
+        return new LoadGenerator(Integer.getInteger(BEACONS_PROPERTY, 1).intValue(),
+                Integer.getInteger(RATE_PROPERTY, 10).intValue(),
+                Long.getLong(DURATION_PROPERTY, 30L).longValue() * 1000,
+                capture,
+                Integer.getInteger(CHUNK_SIZE_PROPERTY, 8).intValue(),
+                System.getProperty(BACK_URL_PROPERTY),
+                System.getProperty(TOKEN_PROPERTY),
+                Integer.getInteger(BATCH_SIZE_PROPERTY, 100).intValue(),
+                Integer.getInteger("geoloc.queueCapacity", 10000).intValue(),
+                Integer.getInteger("geoloc.workers", Runtime.getRuntime().availableProcessors()).intValue());
+    }
+
+    /** Lance le tir, bloque pendant sa durée puis retourne le rapport. */
+    public Report run() throws IOException, InterruptedException {
+        BeaconGateway gateway = new BeaconGateway(queueCapacity, workers, sink);
+        ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor();
+        if (client != null) {
+            flusher.scheduleWithFixedDelay(new Runnable() {
+                public void run() {
+                    flushQuietly();
+                }
+            }, FLUSH_PERIOD, FLUSH_PERIOD, TimeUnit.MILLISECONDS);
+        }
+        long pollPeriod = Math.max(1, 1000 / rate);
+        gateway.start();
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < beacons; i++) {
+            String name = "replay-" + i;
+            ReplayTransport transport = capture == null ? ReplayTransport.synthetic(name, 1000, i, chunkSize)
+                    : new ReplayTransport(name, capture, chunkSize, true);
+            gateway.attach(transport, FIRST_BEACON_ID + i, pollPeriod, 0, 4);
+        }
+        Thread.sleep(duration);
+        gateway.close();
+        flusher.shutdown();
+        flusher.awaitTermination(5, TimeUnit.SECONDS);
+        if (client != null) {
+            flushQuietly();
+        }
+        long elapsed = System.currentTimeMillis() - start;
+
+        Report report = new Report(elapsed, latencies);
+        report.failed = client == null ? 0 : client.getFailed();
+        for (BeaconGateway.PortStats stats : gateway.getStats().values()) {
+            report.received += stats.getReceived();
+            report.handled += stats.getHandled();
+            report.dropped += stats.getDropped();
+            report.errors += stats.getErrors();
+        }
+        return report;
+    }
+
+    private void flushQuietly() {
+        try {
+            client.flush();
+        } catch (IOException e) {
+            System.out.println("Error: " + e.getMessage());
+        }
+    }
+
+    /** Résultat d'un tir. */
+    public static final class Report {
+
+        private final long elapsed;
+
+        private final LatencyRecorder latencies;
+
+        private long received;
+
+        private long handled;
+
+        private long dropped;
+
+        private long errors;
+
+        private long failed;
+
+        Report(long elapsed, LatencyRecorder latencies) {
+            this.elapsed = elapsed;
+            this.latencies = latencies;
+        }
+
+        /** Durée réelle du tir en ms. */
+        public long getElapsed() {
+            return elapsed;
+        }
+
+        /** Positions décodées. */
+        public long getReceived() {
+            return received;
+        }
+
+        /** Positions traitées par les workers. */
+        public long getHandled() {
+            return handled;
+        }
+
+        /** Positions perdues, file de la passerelle pleine. */
+        public long getDropped() {
+            return dropped;
+        }
+
+        /** Trames invalides et erreurs des workers. */
+        public long getErrors() {
+            return errors;
+        }
+
+        /** Positions refusées par le back ou perdues sur une erreur d'envoi. */
+        public long getFailed() {
+            return failed;
+        }
+
+        /** Positions acquittées par seconde. */
+        public double getThroughput() {
+            return latencies.getCount() * 1000d / Math.max(1, elapsed);
+        }
+
+        public LatencyRecorder getLatencies() {
+            return latencies;
+        }
+
+        @Override
+        public String toString() {
+            return "elapsed=" + elapsed + "ms received=" + received + " handled=" + handled + " dropped=" + dropped + " errors=" + errors
+                    + " failed=" + failed + " throughput=" + String.format("%.1f/s", getThroughput()) + " latency: " + latencies;
+        }
+    }
+}
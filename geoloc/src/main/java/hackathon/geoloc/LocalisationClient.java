@@ -0,0 +1,144 @@
+package hackathon.geoloc;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+
+/**
+ * Envoie les positions au back par lots, sur /rest/localisation/action/create-batch.
+ * <p>
+ * Utilisable comme {@link BeaconGateway.FixHandler} : les positions s'accumulent jusqu'à
+ * batchSize, le worker qui complète le lot l'envoie. {@link #flush()} envoie le lot en cours.
+ * La latence de chaque position (décodage → réponse du back) alimente le {@link LatencyRecorder}.
+ */
+public class LocalisationClient implements BeaconGateway.FixHandler {
+
+    /** Chemin de l'ingestion par lot, relatif à l'URL de l'application. */
+    static final String CREATE_BATCH_PATH = "/rest/localisation/action/create-batch";
+
+    private final URL url;
+
+    private final String token;
+
+    private final int batchSize;
+
+    private final LatencyRecorder latencies;
+
+    private final AtomicLong failed = new AtomicLong();
+
+    private List<Position> pending;
+
+    /**
+     * @param baseUrl URL de l'application, ex : http://localhost:8080/nuvia
+     * @param token jeton JWT envoyé en "Authorization: Bearer", null si aucun
+     */
+    public LocalisationClient(String baseUrl, String token, int batchSize, LatencyRecorder latencies) throws IOException {
+        this.url = new URL(baseUrl.replaceAll("/+$", "") + CREATE_BATCH_PATH);
+        this.token = token;
+        this.batchSize = Math.max(1, batchSize);
+        this.latencies = latencies;
+        this.pending = new ArrayList<Position>(this.batchSize);
+    }
+
+    public void handle(Position position) throws IOException {
+        List<Position> full = null;
+        synchronized (this) {
+            pending.add(position);
+            if (pending.size() >= batchSize) {
+                full = pending;
+                pending = new ArrayList<Position>(batchSize);
+            }
+        }
+        if (full != null) {
+            send(full);
+        }
+    }
+
+    /** Envoie les positions en attente. */
+    public void flush() throws IOException {
+        List<Position> batch;
+        synchronized (this) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = pending;
+            pending = new ArrayList<Position>(batchSize);
+        }
+        send(batch);
+    }
+
+    @SuppressWarnings("unchecked")
+    static String toJson(List<Position> batch) {
+        JSONArray array = new JSONArray();
+        for (Position position : batch) {
+            JSONObject fix = new JSONObject();
+            fix.put("baliseId", Long.valueOf(position.getBeaconId()));
+            fix.put("coordX", Integer.valueOf(position.getX()));
+            fix.put("coordY", Integer.valueOf(position.getY()));
+            array.add(fix);
+        }
+        return array.toJSONString();
+    }
+
+    /** Positions des lots refusés par le back ou perdus sur une erreur réseau. */
+    public long getFailed() {
+        return failed.get();
+    }
+
+    private void send(List<Position> batch) throws IOException {
+        try {
+            post(batch);
+        } catch (IOException e) {
+            failed.addAndGet(batch.size());
+            throw e;
+        }
+        long now = System.currentTimeMillis();
+        for (Position position : batch) {
+            latencies.record(now - position.getTimestamp());
+        }
+    }
+
+    private void post(List<Position> batch) throws IOException {
+        byte[] body = toJson(batch).getBytes(StandardCharsets.UTF_8);
+        // pas de disconnect() : la connexion keep-alive est réutilisée par l'envoi suivant
+        HttpURLConnection cnx = (HttpURLConnection) url.openConnection();
+        cnx.setRequestMethod("POST");
+        cnx.setDoOutput(true);
+        cnx.setFixedLengthStreamingMode(body.length);
+        cnx.setRequestProperty("Content-Type", "application/json");
+        if (token != null) {
+            cnx.setRequestProperty("Authorization", "Bearer " + token);
+        }
+        OutputStream out = cnx.getOutputStream();
+        try {
+            out.write(body);
+        } finally {
+            out.close();
+        }
+        int status = cnx.getResponseCode();
+        // la réponse est lue jusqu'au bout, sinon la connexion n'est pas réutilisée
+        InputStream in = status < 400 ? cnx.getInputStream() : cnx.getErrorStream();
+        if (in != null) {
+            try {
+                byte[] buffer = new byte[1024];
+                while (in.read(buffer) > -1) {
+                    // ignorée
+                }
+            } finally {
+                in.close();
+            }
+        }
+        if (status >= 300) {
+            throw new IOException("HTTP " + status + " on " + url);
+        }
+    }
+}
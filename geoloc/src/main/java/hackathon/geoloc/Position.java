@@ -0,0 +1,55 @@
+package hackathon.geoloc;
+
+/**
+ * Position d'une balise : coordonnées x/y et instant de réception.
+ * Instance immuable, elle peut être partagée entre threads sans synchronisation.
+ */
+public final class Position {
+
+    private final long beaconId;
+
+    private final long sequence;
+
+    private final int x;
+
+    private final int y;
+
+    private final long timestamp;
+
+    public Position(long beaconId, long sequence, int x, int y, long timestamp) {
+        this.beaconId = beaconId;
+        this.sequence = sequence;
+        this.x = x;
+        this.y = y;
+        this.timestamp = timestamp;
+    }
+
+    /** Identifiant de la balise émettrice. */
+    public long getBeaconId() {
+        return beaconId;
+    }
+
+    /** Numéro d'ordre de la position dans le flux de la balise (commence à 0). */
+    public long getSequence() {
+        return sequence;
+    }
+
+    public int getX() {
+        return x;
+    }
+
+    public int getY() {
+        return y;
+    }
+
+    /** Instant de réception, en millisecondes depuis l'epoch. */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /** Même format que celui émis par la balise. */
+    @Override
+    public String toString() {
+        return "x:" + x + " y:" + y;
+    }
+}
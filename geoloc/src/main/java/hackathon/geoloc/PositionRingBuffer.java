@@ -0,0 +1,198 @@
+package hackathon.geoloc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Buffer circulaire des dernières positions reçues, une file de N positions par balise.
+ * <p>
+ * Un seul producteur par balise (le lecteur du port série), autant de consommateurs que voulu.
+ * Aucun verrou : chaque case est protégée par un numéro de séquence (principe du seqlock),
+ * un lecteur qui croise une écriture recommence simplement sa lecture. Le producteur n'alloue
+ * rien, les coordonnées sont stockées dans des tableaux de long.
+ */
+public final class PositionRingBuffer {
+
+    /** Nombre de positions conservées par balise par défaut. */
+    public static final int DEFAULT_CAPACITY = 64;
+
+    /** Buffer partagé du processus. */
+    private static final PositionRingBuffer SHARED = new PositionRingBuffer(DEFAULT_CAPACITY);
+
+    private final int capacity;
+
+    private final ConcurrentMap<Long, Ring> rings = new ConcurrentHashMap<Long, Ring>();
+
+    /**
+     * @param capacity nombre de positions conservées par balise, arrondi à la puissance de 2 supérieure
+     */
+    public PositionRingBuffer(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        int size = 1;
+        while (size < capacity) {
+            size <<= 1;
+        }
+        this.capacity = size;
+    }
+
+    public static PositionRingBuffer shared() {
+        return SHARED;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Retourne la file d'une balise, créée au premier appel. Le producteur garde cette référence
+     * pour publier sans passer par la map.
+     */
+    public Ring ring(long beaconId) {
+        Long key = Long.valueOf(beaconId);
+        Ring ring = rings.get(key);
+        if (ring == null) {
+            Ring created = new Ring(beaconId, capacity);
+            ring = rings.putIfAbsent(key, created);
+            if (ring == null) {
+                ring = created;
+            }
+        }
+        return ring;
+    }
+
+    /** Publie une position pour la balise. Un seul thread doit publier pour une balise donnée. */
+    public long publish(long beaconId, int x, int y, long timestamp) {
+        return ring(beaconId).publish(x, y, timestamp);
+    }
+
+    /** Dernière position connue de la balise, ou null si aucune. */
+    public Position latest(long beaconId) {
+        Ring ring = rings.get(Long.valueOf(beaconId));
+        return ring == null ? null : ring.latest();
+    }
+
+    /** Balises ayant publié au moins une position. */
+    public Set<Long> beacons() {
+        return rings.keySet();
+    }
+
+    /** File circulaire d'une balise. */
+    public static final class Ring {
+
+        private static final long WRITING = -1L;
+
+        private final long beaconId;
+
+        private final int mask;
+
+        /** Séquence de la position présente dans chaque case, WRITING pendant une écriture. */
+        private final AtomicLongArray stamps;
+
+        /** x dans les 32 bits de poids fort, y dans les 32 bits de poids faible. */
+        private final AtomicLongArray coords;
+
+        private final AtomicLongArray timestamps;
+
+        /** Nombre de positions publiées, c'est aussi la séquence de la prochaine position. */
+        private final AtomicLong published = new AtomicLong();
+
+        Ring(long beaconId, int capacity) {
+            this.beaconId = beaconId;
+            this.mask = capacity - 1;
+            this.stamps = new AtomicLongArray(capacity);
+            this.coords = new AtomicLongArray(capacity);
+            this.timestamps = new AtomicLongArray(capacity);
+            for (int i = 0; i < capacity; i++) {
+                stamps.set(i, WRITING);
+            }
+        }
+
+        public long getBeaconId() {
+            return beaconId;
+        }
+
+        /**
+         * Publie une position, écrase la plus ancienne si la file est pleine.
+         * @return la séquence attribuée à la position
+         */
+        public long publish(int x, int y, long timestamp) {
+            long seq = published.get();
+            int slot = (int) seq & mask;
+            stamps.set(slot, WRITING);
+            coords.set(slot, ((long) x << 32) | (y & 0xFFFFFFFFL));
+            timestamps.set(slot, timestamp);
+            stamps.set(slot, seq);
+            published.set(seq + 1);
+            return seq;
+        }
+
+        /** Nombre total de positions publiées depuis la création. */
+        public long published() {
+            return published.get();
+        }
+
+        /** Dernière position publiée, ou null si aucune. */
+        public Position latest() {
+            while (true) {
+                long next = published.get();
+                if (next == 0) {
+                    return null;
+                }
+                Position p = read(next - 1);
+                if (p != null) {
+                    return p;
+                }
+                // écrasée pendant la lecture : on relit la plus récente
+            }
+        }
+
+        /**
+         * Lit la position de séquence seq.
+         * @return la position, ou null si elle a déjà été écrasée ou n'est pas encore publiée
+         */
+        public Position read(long seq) {
+            int slot = (int) seq & mask;
+            long before = stamps.get(slot);
+            if (before != seq) {
+                return null;
+            }
+            long xy = coords.get(slot);
+            long ts = timestamps.get(slot);
+            if (stamps.get(slot) != seq) {
+                return null;
+            }
+            return new Position(beaconId, seq, (int) (xy >> 32), (int) xy, ts);
+        }
+
+        /**
+         * Ajoute à out les positions publiées depuis la séquence from, les plus anciennes d'abord.
+         * Les positions déjà écrasées sont sautées.
+         * @return la séquence à passer au prochain appel
+         */
+        public long readFrom(long from, List<Position> out) {
+            long next = published.get();
+            long seq = Math.max(from, next - (mask + 1));
+            for (; seq < next; seq++) {
+                Position p = read(seq);
+                if (p != null) {
+                    out.add(p);
+                }
+            }
+            return next;
+        }
+
+        /** Positions encore présentes dans la file, les plus anciennes d'abord. */
+        public List<Position> snapshot() {
+            List<Position> out = new ArrayList<Position>(mask + 1);
+            readFrom(0, out);
+            return out;
+        }
+    }
+}
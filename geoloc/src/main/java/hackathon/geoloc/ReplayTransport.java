@@ -0,0 +1,113 @@
+package hackathon.geoloc;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * Transport local rejouant une capture du flux d'une balise, pour tester sans matériel.
+ * <p>
+ * Comme la balise, il répond à chaque écriture en renvoyant la ligne suivante de la capture.
+ * La ligne est livrée en morceaux de chunkSize octets pour reproduire des lectures coupées.
+ * La livraison se fait dans le thread qui écrit.
+ */
+public class ReplayTransport implements BeaconTransport {
+
+    private final String name;
+
+    private final byte[] capture;
+
+    private final int chunkSize;
+
+    private final boolean loop;
+
+    private int position;
+
+    private DataHandler handler;
+
+    public ReplayTransport(String name, byte[] capture, int chunkSize, boolean loop) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("chunkSize must be positive: " + chunkSize);
+        }
+        this.name = name;
+        this.capture = capture;
+        this.chunkSize = chunkSize;
+        this.loop = loop;
+    }
+
+    public ReplayTransport(String name, byte[] capture) {
+        this(name, capture, Integer.MAX_VALUE, false);
+    }
+
+    /** Lit toute la capture depuis le flux, qui est fermé. */
+    public static ReplayTransport fromStream(String name, InputStream in, int chunkSize, boolean loop) throws IOException {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int len;
+            while ((len = in.read(buffer)) > -1) {
+                out.write(buffer, 0, len);
+            }
+            return new ReplayTransport(name, out.toByteArray(), chunkSize, loop);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Capture synthétique : frames trames "x:NNN y:NNN" suivant une marche aléatoire autour de
+     * l'origine, reproductible pour une même graine. Rejouée en boucle.
+     */
+    public static ReplayTransport synthetic(String name, int frames, long seed, int chunkSize) {
+        Random random = new Random(seed);
+        StringBuilder capture = new StringBuilder(frames * 16);
+        int x = 0;
+        int y = 0;
+        for (int i = 0; i < frames; i++) {
+            x += random.nextInt(11) - 5;
+            y += random.nextInt(11) - 5;
+            capture.append("x:").append(x).append(" y:").append(y).append("\r\n");
+        }
+        return new ReplayTransport(name, capture.toString().getBytes(StandardCharsets.US_ASCII), chunkSize, true);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public synchronized void start(DataHandler handler) {
+        this.handler = handler;
+    }
+
+    public synchronized void write(byte[] data) {
+        if (handler == null || capture.length == 0) {
+            return;
+        }
+        if (position >= capture.length) {
+            if (!loop) {
+                return;
+            }
+            position = 0;
+        }
+        int end = position;
+        while (end < capture.length && capture[end++] != '\n') {
+            // jusqu'à la fin de ligne incluse
+        }
+        while (position < end) {
+            int len = Math.min(chunkSize, end - position);
+            handler.onData(capture, position, len);
+            position += len;
+        }
+    }
+
+    /** true quand toute la capture a été rejouée (jamais en boucle). */
+    public synchronized boolean isExhausted() {
+        return !loop && position >= capture.length;
+    }
+
+    public synchronized void close() {
+        handler = null;
+    }
+}
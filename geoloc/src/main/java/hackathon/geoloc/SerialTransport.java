@@ -0,0 +1,123 @@
+package hackathon.geoloc;
+
+import gnu.io.CommPort;
+import gnu.io.CommPortIdentifier;
+import gnu.io.SerialPort;
+import gnu.io.SerialPortEvent;
+import gnu.io.SerialPortEventListener;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.TooManyListenersException;
+
+/**
+ * Transport sur port série RXTX, piloté par événements : les octets sont lus sur
+ * DATA_AVAILABLE au lieu d'un thread bloqué en lecture.
+ */
+public class SerialTransport implements BeaconTransport, SerialPortEventListener {
+
+    public static final int BAUD_RATE = 115200;
+
+    private static final int OPEN_TIMEOUT = 2000;
+
+    private final String portName;
+
+    private final byte[] buffer = new byte[1024];
+
+    private SerialPort serialPort;
+
+    /** Flux de lecture, remis à null par {@link #close()} pendant que le thread RXTX peut le lire. */
+    private volatile InputStream in;
+
+    private OutputStream out;
+
+    private volatile DataHandler handler;
+
+    public SerialTransport(String portName) {
+        this.portName = portName;
+    }
+
+    public String getName() {
+        return portName;
+    }
+
+    public synchronized void start(DataHandler handler) throws IOException {
+        if (serialPort != null) {
+            throw new IllegalStateException("Port already started: " + portName);
+        }
+        try {
+            CommPortIdentifier portIdentifier = CommPortIdentifier.getPortIdentifier(portName);
+            if (portIdentifier.isCurrentlyOwned()) {
+                throw new IOException("Port is currently in use: " + portName);
+            }
+            CommPort commPort = portIdentifier.open(getClass().getName(), OPEN_TIMEOUT);
+            if (!(commPort instanceof SerialPort)) {
+                commPort.close();
+                throw new IOException("Only serial ports are handled: " + portName);
+            }
+            serialPort = (SerialPort) commPort;
+            serialPort.setSerialPortParams(BAUD_RATE, SerialPort.DATABITS_8, SerialPort.STOPBITS_1, SerialPort.PARITY_NONE);
+            in = serialPort.getInputStream();
+            out = serialPort.getOutputStream();
+            this.handler = handler;
+            serialPort.addEventListener(this);
+            serialPort.notifyOnDataAvailable(true);
+        } catch (IOException e) {
+            close();
+            throw e;
+        } catch (TooManyListenersException e) {
+            close();
+            throw new IOException("Unable to listen on " + portName, e);
+        } catch (Exception e) {
+            // NoSuchPortException, PortInUseException, UnsupportedCommOperationException
+            close();
+            throw new IOException("Unable to open " + portName, e);
+        }
+    }
+
+    /** Appelé par le thread de surveillance RXTX du port. */
+    public void serialEvent(SerialPortEvent event) {
+        if (event.getEventType() != SerialPortEvent.DATA_AVAILABLE) {
+            return;
+        }
+        DataHandler h = handler;
+        InputStream input = in;
+        if (h == null || input == null) {
+            // port en cours de fermeture
+            return;
+        }
+        try {
+            int available;
+            // on ne lit que ce qui est disponible : jamais de blocage dans le thread RXTX
+            while ((available = input.available()) > 0) {
+                int len = input.read(buffer, 0, Math.min(available, buffer.length));
+                if (len <= 0) {
+                    break;
+                }
+                h.onData(buffer, 0, len);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    public synchronized void write(byte[] data) throws IOException {
+        if (out == null) {
+            throw new IOException("Port not started: " + portName);
+        }
+        out.write(data);
+    }
+
+    public synchronized void close() {
+        handler = null;
+        if (serialPort != null) {
+            serialPort.notifyOnDataAvailable(false);
+            serialPort.removeEventListener();
+            serialPort.close();
+            serialPort = null;
+        }
+        in = null;
+        out = null;
+    }
+}
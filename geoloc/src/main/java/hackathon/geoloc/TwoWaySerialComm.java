@@ -1,116 +1,182 @@
 package hackathon.geoloc;
 
-import gnu.io.CommPort;
-import gnu.io.CommPortIdentifier;
-import gnu.io.SerialPort;
-
-import java.io.BufferedWriter;
-import java.io.FileDescriptor;
-import java.io.FileNotFoundException;
-import java.io.FileWriter;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.io.PrintWriter;
-import java.io.UnsupportedEncodingException;
-import java.io.Writer;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Paths;
-import java.nio.file.StandardOpenOption;
-
-import org.json.simple.JSONObject;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Connexion aux balises. Chaque port est lu sur événement (DATA_AVAILABLE) et interrogé par un
+ * scheduler commun, voir {@link BeaconSession}. Réglages par propriétés système :
+ * {@value #POLL_PERIOD_PROPERTY}, {@value #HEARTBEAT_TIMEOUT_PROPERTY}, {@value #MAX_IN_FLIGHT_PROPERTY}.
+ */
 public class TwoWaySerialComm
 {
+    /** Période d'interrogation de la balise en ms. */
+    public static final String POLL_PERIOD_PROPERTY = "geoloc.pollPeriod";
+
+    /** Silence en ms avant renvoi de la séquence de réveil. */
+    public static final String HEARTBEAT_TIMEOUT_PROPERTY = "geoloc.heartbeatTimeout";
+
+    /** Interrogations sans réponse tolérées. */
+    public static final String MAX_IN_FLIGHT_PROPERTY = "geoloc.maxInFlight";
+
+    private final ScheduledExecutorService scheduler;
+
+    private final boolean ownScheduler;
+
+    private final List<BeaconSession> sessions = new CopyOnWriteArrayList<BeaconSession>();
+
     public TwoWaySerialComm()
+    {
+        this(Executors.newSingleThreadScheduledExecutor(), true);
+    }
+
+    /** Le scheduler fourni n'est pas arrêté par {@link #close()}. */
+    public TwoWaySerialComm(ScheduledExecutorService scheduler)
+    {
+        this(scheduler, false);
+    }
+
+    private TwoWaySerialComm(ScheduledExecutorService scheduler, boolean ownScheduler)
     {
         super();
+        this.scheduler = scheduler;
+        this.ownScheduler = ownScheduler;
     }
     
-    void connect ( String portName ) throws Exception
+    BeaconSession connect ( String portName ) throws Exception
     {
-        CommPortIdentifier portIdentifier = CommPortIdentifier.getPortIdentifier(portName);
-        if ( portIdentifier.isCurrentlyOwned() )
-        {
-            System.out.println("Error: Port is currently in use");
+        return connect(new SerialTransport(portName), SerialReader.DEFAULT_BEACON_ID);
+    }
+
+    /** Ouvre une session sur le transport, les positions sont publiées pour la balise beaconId. */
+    public BeaconSession connect(BeaconTransport transport, long beaconId) throws IOException
+    {
+        BeaconSession session = new BeaconSession(transport, PositionRingBuffer.shared().ring(beaconId),
+                Long.getLong(POLL_PERIOD_PROPERTY, 100L).longValue(),
+                Long.getLong(HEARTBEAT_TIMEOUT_PROPERTY, 5000L).longValue(),
+                Integer.getInteger(MAX_IN_FLIGHT_PROPERTY, 4).intValue());
+        session.start(scheduler);
+        sessions.add(session);
+        System.out.println("Connected to " + transport.getName());
+        return session;
+    }
+
+    public List<BeaconSession> getSessions()
+    {
+        return sessions;
+    }
+
+    /** Ferme toutes les sessions puis arrête le scheduler s'il a été créé ici. */
+    public void close()
+    {
+        for (BeaconSession session : sessions) {
+            session.close();
         }
-        else
-        {
-            CommPort commPort = portIdentifier.open(this.getClass().getName(),2000);
-            
-            if ( commPort instanceof SerialPort )
-            {
-                SerialPort serialPort = (SerialPort) commPort;
-                serialPort.setSerialPortParams(115200,SerialPort.DATABITS_8,SerialPort.STOPBITS_1,SerialPort.PARITY_NONE);
-                
-                InputStream in = serialPort.getInputStream();
-                OutputStream out = serialPort.getOutputStream();
-                
-                String serialMessage = "\r\n\r\n";
-                OutputStream outstream = serialPort.getOutputStream();
-                outstream.write(serialMessage.getBytes());  // envoyer un message 
-                
-                System.out.println("---------------------------------------");
-                
-                (new Thread(new SerialReader(in))).start(); //ouverture de l'input vers le device
-
-                //String pos;
-                //Thread t = new Thread();
-                //t = (new Thread (new SerialWriter(out)));
-                //t.start();
-
-                (new Thread(new SerialWriter(out))).start(); // ouverture de l'output du device
-                
-                
+        sessions.clear();
+        if (ownScheduler) {
+            scheduler.shutdown();
+            try {
+                scheduler.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
             }
-            else
-            {
-                System.out.println("Error: Only serial ports are handled by this example.");
+        }
+    }
+
+    /** Ferme proprement les sessions à l'arrêt de la JVM. */
+    public void closeOnShutdown()
+    {
+        Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+            public void run() {
+                close();
             }
-        }     
+        }));
     }
     
-    /** */
-    public static class SerialReader implements Runnable 
+    /**
+     * Lecture bloquante d'un flux, conservée pour les sources qui ne sont pas des ports RXTX.
+     * Lit le flux de la balise et publie chaque position reçue dans le {@link PositionRingBuffer}.
+     * Les trames sont décodées par un {@link FrameDecoder} directement sur le buffer de lecture.
+     * Le fichier position.json n'est plus écrit que si la propriété système
+     * {@value #DEBUG_FILE_PROPERTY} est renseignée (ex : -Dgeoloc.debugFile=C:/tmp/position.json).
+     */
+    public static class SerialReader implements Runnable, FrameDecoder.Listener
     {
+        /** Propriété système donnant le fichier de debug où recopier les trames reçues. */
+        public static final String DEBUG_FILE_PROPERTY = "geoloc.debugFile";
+
+        /** Balise par défaut, celle utilisée côté back. */
+        public static final long DEFAULT_BEACON_ID = 1L;
+
         InputStream in;
 
-        PrintWriter writer;
+        private final PositionRingBuffer.Ring ring;
+
+        private final FrameDecoder decoder = new FrameDecoder(this);
+
+        private final String debugFile;
         
         public SerialReader ( InputStream in )
+        {
+            this(in, PositionRingBuffer.shared().ring(DEFAULT_BEACON_ID));
+        }
+
+        public SerialReader ( InputStream in, PositionRingBuffer.Ring ring )
         {
             this.in = in;
+            this.ring = ring;
+            this.debugFile = System.getProperty(DEBUG_FILE_PROPERTY);
         }
         
         public void run () {
             byte[] buffer = new byte[1024];
             int len = -1;
             try {
-                while ( ( len = this.in.read(buffer)) > -1 /*&& len > 13*/) {
-                	String coord = new String(buffer,0,len);
-                    System.out.print(coord);
-                    try {
-	                    //if (coord.length() > 0 && coord.substring(0,1).equals("x")) {
-                    	if (!("".equals(coord))) {
-		                    Writer output;
-		                    output = new BufferedWriter(new FileWriter("C:/tmp/position.json"));
-		                    String[] t = coord.split(" ");
-	                    	//output.append(t[0].split(":")[1] + " " + t[1].split(":")[1]);
-		                    output.append(coord);
-	                        output.close();
-	                    }
-                    } catch (ArrayIndexOutOfBoundsException e) {
-                    	continue;
+                while ( ( len = this.in.read(buffer)) > -1 ) {
+                    decoder.decode(buffer, 0, len);
+                    if (debugFile != null && len > 0) {
+                        System.out.write(buffer, 0, len);
+                        writeDebug(buffer, len);
                     }
                 }
             } catch ( IOException e ) {
                 e.printStackTrace();
             } 
         }
+
+        public void onFrame(int x, int y) {
+            ring.publish(x, y, System.currentTimeMillis());
+        }
+
+        public FrameDecoder getDecoder() {
+            return decoder;
+        }
+
+        private void writeDebug(byte[] buffer, int len) {
+            try {
+                OutputStream output = new FileOutputStream(debugFile);
+                try {
+                    output.write(buffer, 0, len);
+                } finally {
+                    output.close();
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
     }
 
-    /** */
+    /**
+     * @deprecated l'interrogation de la balise est faite par {@link BeaconSession}, sans thread dédié.
+     */
+    @Deprecated
     public static class SerialWriter implements Runnable {
         OutputStream out;
         
@@ -156,7 +222,9 @@ public class TwoWaySerialComm
     
     public static void main ( String[] args ) {
         try {
-            (new TwoWaySerialComm()).connect("COM3");
+            TwoWaySerialComm comm = new TwoWaySerialComm();
+            comm.closeOnShutdown();
+            comm.connect("COM3");
         }
         catch ( Exception e ) {
             e.printStackTrace();
@@ -1,5 +1,7 @@
 package hackathon.geoloc;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 import junit.framework.Test;
 import junit.framework.TestCase;
 import junit.framework.TestSuite;
@@ -35,4 +37,13 @@ public class AppTest
     {
         assertTrue( true );
     }
+
+    public void testGatewayHandlerCountsFixesWithoutBackend() throws Exception
+    {
+        AtomicLong handled = new AtomicLong();
+        BeaconGateway.FixHandler handler = App.fixHandler( handled, null, false );
+        handler.handle( new Position( 1, 0, 10, 20, 1000L ) );
+        handler.handle( new Position( 1, 1, 11, 21, 2000L ) );
+        assertEquals( 2L, handled.get() );
+    }
 }
@@ -0,0 +1,82 @@
+package hackathon.geoloc;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests de la passerelle multi-ports sur des transports de rejeu.
+ */
+public class BeaconGatewayTest
+    extends TestCase
+{
+    private static final byte[] CAPTURE = "x:1 y:1\r\nx:2 y:2\r\nx:3 y:3\r\nbad\r\nx:4 y:\r\n".getBytes();
+
+    public void testFixesOfAllPortsAreHandled() throws Exception
+    {
+        final ConcurrentLinkedQueue<Position> handled = new ConcurrentLinkedQueue<Position>();
+        BeaconGateway gateway = new BeaconGateway( 100, 2, new BeaconGateway.FixHandler()
+        {
+            public void handle( Position position )
+            {
+                handled.add( position );
+            }
+        } );
+        gateway.start();
+        ReplayTransport a = new ReplayTransport( "A", CAPTURE );
+        ReplayTransport b = new ReplayTransport( "B", CAPTURE );
+        gateway.attach( a, 101, 0, 0, 1 );
+        gateway.attach( b, 102, 0, 0, 1 );
+        for ( int i = 0; i < 5; i++ )
+        {
+            a.write( BeaconSession.POLL );
+            b.write( BeaconSession.POLL );
+        }
+        gateway.close();
+
+        assertEquals( 6, handled.size() );
+        Map<String, BeaconGateway.PortStats> stats = gateway.getStats();
+        assertEquals( 2, stats.size() );
+        assertEquals( 3, stats.get( "A" ).getReceived() );
+        assertEquals( 3, stats.get( "B" ).getHandled() );
+        assertEquals( 0, stats.get( "B" ).getDropped() );
+        assertEquals( 1, stats.get( "B" ).getErrors() );
+    }
+
+    public void testFullQueueDropsInsteadOfBlocking() throws Exception
+    {
+        BeaconGateway gateway = new BeaconGateway( 1, 1, new BeaconGateway.FixHandler()
+        {
+            public void handle( Position position )
+            {
+                // jamais appelé, les workers ne sont pas démarrés
+            }
+        } );
+        ReplayTransport a = new ReplayTransport( "A", CAPTURE );
+        gateway.attach( a, 201, 0, 0, 1 );
+        a.write( BeaconSession.POLL );
+        a.write( BeaconSession.POLL );
+        BeaconGateway.PortStats stats = gateway.getStats().get( "A" );
+        assertEquals( 3, stats.getReceived() );
+        assertEquals( 2, stats.getDropped() );
+        assertEquals( 1, gateway.getQueueSize() );
+        gateway.close();
+    }
+
+    public void testHandlerErrorsAreCounted() throws Exception
+    {
+        BeaconGateway gateway = new BeaconGateway( 10, 1, new BeaconGateway.FixHandler()
+        {
+            public void handle( Position position ) throws Exception
+            {
+                throw new Exception( "refused" );
+            }
+        } );
+        gateway.start();
+        gateway.attach( new ReplayTransport( "A", "x:1 y:1\n".getBytes() ), 301, 0, 0, 1 );
+        gateway.close();
+        assertEquals( 1, gateway.getStats().get( "A" ).getErrors() );
+        assertEquals( 0, gateway.getStats().get( "A" ).getHandled() );
+    }
+}
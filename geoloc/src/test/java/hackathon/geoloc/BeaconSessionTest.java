@@ -0,0 +1,76 @@
+package hackathon.geoloc;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests de la session balise sur un transport de rejeu.
+ */
+public class BeaconSessionTest
+    extends TestCase
+{
+    private static final byte[] CAPTURE = "x:1 y:2\r\nx:3 y:4\r\nx:5 y:6\r\n".getBytes();
+
+    private ScheduledExecutorService scheduler;
+
+    protected void setUp()
+    {
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    protected void tearDown()
+    {
+        scheduler.shutdownNow();
+    }
+
+    public void testEachPollReplaysNextFrame() throws Exception
+    {
+        ReplayTransport transport = new ReplayTransport( "replay", CAPTURE, 3, false );
+        PositionRingBuffer.Ring ring = new PositionRingBuffer( 8 ).ring( 1 );
+        BeaconSession session = new BeaconSession( transport, ring, 0, 0, 1 );
+        session.start( scheduler );
+
+        // la séquence de réveil renvoie la première trame, en morceaux de 3 octets
+        assertEquals( 1, ring.published() );
+        session.tick();
+        assertEquals( 1, ring.published() );
+
+        transport.write( BeaconSession.POLL );
+        transport.write( BeaconSession.POLL );
+        assertEquals( 3, ring.published() );
+        assertEquals( 5, ring.latest().getX() );
+        assertTrue( transport.isExhausted() );
+        assertEquals( 0, session.getDecoder().getErrors() );
+        session.close();
+    }
+
+    public void testPollsAreSkippedWhenBeaconDoesNotAnswer() throws Exception
+    {
+        ReplayTransport transport = new ReplayTransport( "silent", new byte[0] );
+        BeaconSession session = new BeaconSession( transport, new PositionRingBuffer( 8 ).ring( 1 ), 1000, 0, 2 );
+        session.start( scheduler );
+        for ( int i = 0; i < 5; i++ )
+        {
+            session.tick();
+        }
+        assertEquals( 2, session.getPolls() );
+        assertEquals( 3, session.getSkippedPolls() );
+        session.close();
+        session.tick();
+        assertEquals( 2, session.getPolls() );
+        assertTrue( session.isClosed() );
+    }
+
+    public void testHeartbeatAfterSilence() throws Exception
+    {
+        ReplayTransport transport = new ReplayTransport( "silent", new byte[0] );
+        BeaconSession session = new BeaconSession( transport, new PositionRingBuffer( 8 ).ring( 1 ), 1000, 1, 2 );
+        session.start( scheduler );
+        Thread.sleep( 5 );
+        session.tick();
+        assertEquals( 1, session.getHeartbeats() );
+        session.close();
+    }
+}
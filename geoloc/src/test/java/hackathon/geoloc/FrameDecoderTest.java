@@ -0,0 +1,74 @@
+package hackathon.geoloc;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests du décodeur de trames.
+ */
+public class FrameDecoderTest
+    extends TestCase
+{
+    private final List<int[]> frames = new ArrayList<int[]>();
+
+    private final FrameDecoder decoder = new FrameDecoder( new FrameDecoder.Listener()
+    {
+        public void onFrame( int x, int y )
+        {
+            frames.add( new int[] { x, y } );
+        }
+    } );
+
+    private int decode( String chunk )
+    {
+        byte[] bytes = chunk.getBytes();
+        return decoder.decode( bytes, 0, bytes.length );
+    }
+
+    private void assertFrame( int index, int x, int y )
+    {
+        assertEquals( x, frames.get( index )[0] );
+        assertEquals( y, frames.get( index )[1] );
+    }
+
+    public void testSingleFrame()
+    {
+        assertEquals( 1, decode( "x:123 y:456\r\n" ) );
+        assertFrame( 0, 123, 456 );
+    }
+
+    public void testFrameSplitAcrossReads()
+    {
+        assertEquals( 0, decode( "x:12" ) );
+        assertEquals( 0, decode( "3 y" ) );
+        assertEquals( 2, decode( ":45\r\nx:7 y:8\n" + "x:9" ) );
+        assertEquals( 1, decode( " y:10\r" ) );
+        assertEquals( 3, frames.size() );
+        assertFrame( 0, 123, 45 );
+        assertFrame( 1, 7, 8 );
+        assertFrame( 2, 9, 10 );
+    }
+
+    public void testNegativeValuesAndFramesWithoutLineEnd()
+    {
+        assertEquals( 2, decode( "x:-12 y:-3x:4 y:5 \n" ) );
+        assertFrame( 0, -12, -3 );
+        assertFrame( 1, 4, 5 );
+    }
+
+    public void testGarbageIsSkipped()
+    {
+        assertEquals( 1, decode( "\r\n> help\r\nx:1a y:2\nxx:3 y:4\n" ) );
+        assertFrame( 0, 3, 4 );
+        assertEquals( 2, decoder.getErrors() );
+        assertEquals( 1, decoder.getFrames() );
+    }
+
+    public void testOverflowIsRejected()
+    {
+        assertEquals( 0, decode( "x:1234567890 y:1\n" ) );
+        assertEquals( 1, decoder.getErrors() );
+    }
+}
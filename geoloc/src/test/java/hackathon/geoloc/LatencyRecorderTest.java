@@ -0,0 +1,41 @@
+package hackathon.geoloc;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests de l'histogramme de latences.
+ */
+public class LatencyRecorderTest
+    extends TestCase
+{
+    public void testEmptyRecorder()
+    {
+        LatencyRecorder recorder = new LatencyRecorder( 100 );
+        assertEquals( 0L, recorder.getCount() );
+        assertEquals( 0L, recorder.getPercentile( 99 ) );
+    }
+
+    public void testPercentiles()
+    {
+        LatencyRecorder recorder = new LatencyRecorder( 1000 );
+        for ( int i = 1; i <= 100; i++ )
+        {
+            recorder.record( i );
+        }
+        assertEquals( 100L, recorder.getCount() );
+        assertEquals( 50L, recorder.getPercentile( 50 ) );
+        assertEquals( 99L, recorder.getPercentile( 99 ) );
+        assertEquals( 100L, recorder.getMax() );
+        assertEquals( 50.5d, recorder.getMean(), 0.001d );
+    }
+
+    public void testValuesAboveMaxLatencyKeepTheirMax()
+    {
+        LatencyRecorder recorder = new LatencyRecorder( 10 );
+        recorder.record( 5 );
+        recorder.record( 5000 );
+        recorder.record( -3 );
+        assertEquals( 5000L, recorder.getPercentile( 100 ) );
+        assertEquals( 0L, recorder.getPercentile( 1 ) );
+    }
+}
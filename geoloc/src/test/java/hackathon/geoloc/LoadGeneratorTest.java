@@ -0,0 +1,60 @@
+package hackathon.geoloc;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests du banc de charge, sans back.
+ */
+public class LoadGeneratorTest
+    extends TestCase
+{
+    public void testSyntheticCaptureIsDecoded()
+    {
+        final List<Position> fixes = new ArrayList<Position>();
+        ReplayTransport transport = ReplayTransport.synthetic( "S", 3, 42L, 2 );
+        BeaconSession session = new BeaconSession( transport, new PositionRingBuffer( 4 ).ring( 1 ), 0, 0, 1 );
+        session.setListener( new BeaconSession.FixListener()
+        {
+            public void onFix( Position position )
+            {
+                fixes.add( position );
+            }
+        } );
+        transport.start( session );
+        for ( int i = 0; i < 4; i++ )
+        {
+            transport.write( BeaconSession.POLL );
+        }
+        assertEquals( 4, fixes.size() );
+        // rejouée en boucle : la 4e trame est la 1re
+        assertEquals( fixes.get( 0 ).getX(), fixes.get( 3 ).getX() );
+        assertEquals( 0L, session.getDecoder().getErrors() );
+    }
+
+    public void testLocalRunReportsThroughputAndLatency() throws Exception
+    {
+        LoadGenerator generator = new LoadGenerator( 3, 100, 500L, null, 3, null, null, 10, 1000, 2 );
+        LoadGenerator.Report report = generator.run();
+
+        assertTrue( report.getReceived() > 0 );
+        assertEquals( report.getReceived(), report.getHandled() );
+        assertEquals( 0L, report.getDropped() );
+        assertEquals( 0L, report.getErrors() );
+        assertEquals( report.getHandled(), report.getLatencies().getCount() );
+        assertTrue( report.getThroughput() > 0 );
+        assertTrue( report.getLatencies().getPercentile( 50 ) <= report.getLatencies().getPercentile( 99 ) );
+    }
+
+    public void testBatchJson()
+    {
+        List<Position> batch = new ArrayList<Position>();
+        batch.add( new Position( 7, 0, 12, -3, 0L ) );
+        String json = LocalisationClient.toJson( batch );
+        assertTrue( json.contains( "\"baliseId\":7" ) );
+        assertTrue( json.contains( "\"coordX\":12" ) );
+        assertTrue( json.contains( "\"coordY\":-3" ) );
+    }
+}
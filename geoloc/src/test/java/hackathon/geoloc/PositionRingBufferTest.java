@@ -0,0 +1,102 @@
+package hackathon.geoloc;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests du buffer circulaire de positions.
+ */
+public class PositionRingBufferTest
+    extends TestCase
+{
+    public void testLatestIsNullBeforeFirstPublish()
+    {
+        PositionRingBuffer buffer = new PositionRingBuffer( 4 );
+        assertNull( buffer.latest( 1 ) );
+        assertNull( buffer.ring( 1 ).latest() );
+    }
+
+    public void testPublishAndReadLatest()
+    {
+        PositionRingBuffer buffer = new PositionRingBuffer( 4 );
+        buffer.publish( 1, 120, -45, 1000L );
+        buffer.publish( 1, 121, 46, 2000L );
+
+        Position p = buffer.latest( 1 );
+        assertEquals( 1L, p.getBeaconId() );
+        assertEquals( 1L, p.getSequence() );
+        assertEquals( 121, p.getX() );
+        assertEquals( 46, p.getY() );
+        assertEquals( 2000L, p.getTimestamp() );
+        assertNull( buffer.latest( 2 ) );
+    }
+
+    public void testCapacityIsRoundedToPowerOfTwo()
+    {
+        assertEquals( 8, new PositionRingBuffer( 5 ).getCapacity() );
+        assertEquals( 1, new PositionRingBuffer( 1 ).getCapacity() );
+    }
+
+    public void testOldestPositionsAreOverwritten()
+    {
+        PositionRingBuffer.Ring ring = new PositionRingBuffer( 4 ).ring( 7 );
+        for ( int i = 0; i < 10; i++ )
+        {
+            ring.publish( i, i, i );
+        }
+        List<Position> snapshot = ring.snapshot();
+        assertEquals( 4, snapshot.size() );
+        assertEquals( 6, snapshot.get( 0 ).getX() );
+        assertEquals( 9, snapshot.get( 3 ).getX() );
+        assertNull( ring.read( 2 ) );
+    }
+
+    public void testReadFromReturnsOnlyNewPositions()
+    {
+        PositionRingBuffer.Ring ring = new PositionRingBuffer( 8 ).ring( 1 );
+        ring.publish( 1, 1, 1 );
+        ring.publish( 2, 2, 2 );
+
+        List<Position> out = new ArrayList<Position>();
+        long cursor = ring.readFrom( 0, out );
+        assertEquals( 2, out.size() );
+        assertEquals( 2L, cursor );
+
+        out.clear();
+        ring.publish( 3, 3, 3 );
+        cursor = ring.readFrom( cursor, out );
+        assertEquals( 1, out.size() );
+        assertEquals( 3, out.get( 0 ).getX() );
+        assertEquals( 3L, cursor );
+    }
+
+    public void testConcurrentReadersNeverSeeTornPositions() throws Exception
+    {
+        final PositionRingBuffer.Ring ring = new PositionRingBuffer( 4 ).ring( 1 );
+        final int count = 200000;
+        final boolean[] torn = new boolean[1];
+        Thread reader = new Thread( new Runnable()
+        {
+            public void run()
+            {
+                while ( ring.published() < count )
+                {
+                    Position p = ring.latest();
+                    if ( p != null && ( p.getX() != p.getY() || p.getX() != p.getSequence() ) )
+                    {
+                        torn[0] = true;
+                    }
+                }
+            }
+        } );
+        reader.start();
+        for ( int i = 0; i < count; i++ )
+        {
+            ring.publish( i, i, i );
+        }
+        reader.join();
+        assertFalse( torn[0] );
+    }
+}